@@ -0,0 +1,85 @@
+//
+// Copyright (C) 2006 United States Government as represented by the
+// Administrator of the National Aeronautics and Space Administration
+// (NASA).  All Rights Reserved.
+//
+// This software is distributed under the NASA Open Source Agreement
+// (NOSA), version 1.3.  The NOSA has been approved by the Open Source
+// Initiative.  See the file NOSA-1.3-JPF at the top of the distribution
+// directory tree for the complete NOSA document.
+//
+// THE SUBJECT SOFTWARE IS PROVIDED "AS IS" WITHOUT ANY WARRANTY OF ANY
+// KIND, EITHER EXPRESSED, IMPLIED, OR STATUTORY, INCLUDING, BUT NOT
+// LIMITED TO, ANY WARRANTY THAT THE SUBJECT SOFTWARE WILL CONFORM TO
+// SPECIFICATIONS, ANY IMPLIED WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+// A PARTICULAR PURPOSE, OR FREEDOM FROM INFRINGEMENT, ANY WARRANTY THAT
+// THE SUBJECT SOFTWARE WILL BE ERROR FREE, OR ANY WARRANTY THAT
+// DOCUMENTATION, IF PROVIDED, WILL CONFORM TO THE SUBJECT SOFTWARE.
+//
+package gov.nasa.jpf.bench;
+
+import gov.nasa.jpf.classfile.ClassFile;
+import gov.nasa.jpf.classfile.ClassFileException;
+import gov.nasa.jpf.classfile.ClassFileReaderAdapter;
+import gov.nasa.jpf.jvm.JVM;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * ClassFile parsing of (large) JPF classes. We use a reader that doesn't do
+ * anything, i.e. this measures the pure parsing overhead without creating
+ * ClassInfos
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ClassFileBenchmark {
+
+  @Param({"gov.nasa.jpf.jvm.ThreadInfo", "gov.nasa.jpf.jvm.JVM", "gov.nasa.jpf.classfile.ClassFile"})
+  String className;
+
+  byte[] data;
+  ClassFileReaderAdapter reader = new ClassFileReaderAdapter();
+
+  @Setup(Level.Trial)
+  public void readClassFile() throws IOException {
+    String resource = '/' + className.replace('.', '/') + ".class";
+    InputStream is = JVM.class.getResourceAsStream(resource);
+    if (is == null){
+      throw new IOException("class file not found: " + resource);
+    }
+
+    try {
+      ByteArrayOutputStream os = new ByteArrayOutputStream();
+      byte[] buf = new byte[4096];
+      int n;
+      while ((n = is.read(buf)) >= 0){
+        os.write(buf, 0, n);
+      }
+      data = os.toByteArray();
+
+    } finally {
+      is.close();
+    }
+  }
+
+  @Benchmark
+  public ClassFile parse() throws ClassFileException {
+    ClassFile cf = new ClassFile(className, data);
+    cf.parse(reader);
+    return cf;
+  }
+}
@@ -0,0 +1,100 @@
+//
+// Copyright (C) 2006 United States Government as represented by the
+// Administrator of the National Aeronautics and Space Administration
+// (NASA).  All Rights Reserved.
+//
+// This software is distributed under the NASA Open Source Agreement
+// (NOSA), version 1.3.  The NOSA has been approved by the Open Source
+// Initiative.  See the file NOSA-1.3-JPF at the top of the distribution
+// directory tree for the complete NOSA document.
+//
+// THE SUBJECT SOFTWARE IS PROVIDED "AS IS" WITHOUT ANY WARRANTY OF ANY
+// KIND, EITHER EXPRESSED, IMPLIED, OR STATUTORY, INCLUDING, BUT NOT
+// LIMITED TO, ANY WARRANTY THAT THE SUBJECT SOFTWARE WILL CONFORM TO
+// SPECIFICATIONS, ANY IMPLIED WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+// A PARTICULAR PURPOSE, OR FREEDOM FROM INFRINGEMENT, ANY WARRANTY THAT
+// THE SUBJECT SOFTWARE WILL BE ERROR FREE, OR ANY WARRANTY THAT
+// DOCUMENTATION, IF PROVIDED, WILL CONFORM TO THE SUBJECT SOFTWARE.
+//
+package gov.nasa.jpf.bench;
+
+/**
+ * single path target program with loops over common bytecodes, which is
+ * executed by the InstructionBenchmark
+ */
+public class InsnTarget {
+
+  static final int N = 20000;
+
+  int field;
+  static int staticField;
+
+  int add (int a, int b){
+    return a + b;
+  }
+
+  static int arithmetic() {
+    int s = 0;
+    long l = 1;
+    for (int i=0; i<N; i++){
+      s += (i * 7) % 13;
+      s ^= i << 2;
+      l = l * 31 + i;
+    }
+    return s + (int)l;
+  }
+
+  static int fields() {
+    InsnTarget o = new InsnTarget();
+    for (int i=0; i<N; i++){
+      o.field += i;
+      staticField = o.field - staticField;
+    }
+    return o.field;
+  }
+
+  static int arrays() {
+    int[] a = new int[64];
+    int s = 0;
+    for (int i=0; i<N; i++){
+      a[i & 63] = i;
+      s += a[(i + 1) & 63];
+    }
+    return s;
+  }
+
+  static int invocations() {
+    InsnTarget o = new InsnTarget();
+    int s = 0;
+    for (int i=0; i<N; i++){
+      s = o.add(s, i);
+    }
+    return s;
+  }
+
+  static int allocations() {
+    Object last = null;
+    for (int i=0; i<N; i++){
+      last = new int[] { i };
+    }
+    return ((int[])last)[0];
+  }
+
+  public static void main (String[] args){
+    String mode = args[0];
+
+    if ("arithmetic".equals(mode)){
+      arithmetic();
+    } else if ("fields".equals(mode)){
+      fields();
+    } else if ("arrays".equals(mode)){
+      arrays();
+    } else if ("invocations".equals(mode)){
+      invocations();
+    } else if ("allocations".equals(mode)){
+      allocations();
+    } else {
+      throw new IllegalArgumentException("unknown mode: " + mode);
+    }
+  }
+}
@@ -0,0 +1,66 @@
+//
+// Copyright (C) 2006 United States Government as represented by the
+// Administrator of the National Aeronautics and Space Administration
+// (NASA).  All Rights Reserved.
+//
+// This software is distributed under the NASA Open Source Agreement
+// (NOSA), version 1.3.  The NOSA has been approved by the Open Source
+// Initiative.  See the file NOSA-1.3-JPF at the top of the distribution
+// directory tree for the complete NOSA document.
+//
+// THE SUBJECT SOFTWARE IS PROVIDED "AS IS" WITHOUT ANY WARRANTY OF ANY
+// KIND, EITHER EXPRESSED, IMPLIED, OR STATUTORY, INCLUDING, BUT NOT
+// LIMITED TO, ANY WARRANTY THAT THE SUBJECT SOFTWARE WILL CONFORM TO
+// SPECIFICATIONS, ANY IMPLIED WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+// A PARTICULAR PURPOSE, OR FREEDOM FROM INFRINGEMENT, ANY WARRANTY THAT
+// THE SUBJECT SOFTWARE WILL BE ERROR FREE, OR ANY WARRANTY THAT
+// DOCUMENTATION, IF PROVIDED, WILL CONFORM TO THE SUBJECT SOFTWARE.
+//
+package gov.nasa.jpf.bench;
+
+import gov.nasa.jpf.Config;
+import gov.nasa.jpf.JPF;
+
+/**
+ * common setup for benchmarks that need a JPF instance.
+ *
+ * This has to be run from the jpf-core root directory (which is what the
+ * 'benchmark' Ant target does), so that jpf.properties and the build/benchmarks
+ * classpath entry are found
+ */
+public class JPFBenchmarkSupport {
+
+  // we don't want to measure console output
+  static final String[] QUIET_ARGS = {
+    "+report.console.start=",
+    "+report.console.transition=",
+    "+report.console.constraint=",
+    "+report.console.property_violation=",
+    "+report.console.finished=",
+    "+log.level=severe"
+  };
+
+  public static JPF createJPF (String... args){
+    String[] a = new String[QUIET_ARGS.length + args.length];
+    System.arraycopy(QUIET_ARGS, 0, a, 0, QUIET_ARGS.length);
+    System.arraycopy(args, 0, a, QUIET_ARGS.length, args.length);
+
+    Config conf = JPF.createConfig(a);
+    conf.append("classpath", "build/benchmarks", ","); // build/examples is already in there
+
+    return new JPF(conf);
+  }
+
+  /**
+   * create a JPF instance and initialize its VM, i.e. load the startup classes
+   * and create the main thread, but don't start the search yet
+   */
+  public static JPF createInitializedJPF (String... args){
+    JPF jpf = createJPF(args);
+
+    if (!jpf.getVM().initialize()){
+      throw new IllegalStateException("failed to initialize VM");
+    }
+    return jpf;
+  }
+}
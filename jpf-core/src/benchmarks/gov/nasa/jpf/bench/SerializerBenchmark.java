@@ -0,0 +1,73 @@
+//
+// Copyright (C) 2006 United States Government as represented by the
+// Administrator of the National Aeronautics and Space Administration
+// (NASA).  All Rights Reserved.
+//
+// This software is distributed under the NASA Open Source Agreement
+// (NOSA), version 1.3.  The NOSA has been approved by the Open Source
+// Initiative.  See the file NOSA-1.3-JPF at the top of the distribution
+// directory tree for the complete NOSA document.
+//
+// THE SUBJECT SOFTWARE IS PROVIDED "AS IS" WITHOUT ANY WARRANTY OF ANY
+// KIND, EITHER EXPRESSED, IMPLIED, OR STATUTORY, INCLUDING, BUT NOT
+// LIMITED TO, ANY WARRANTY THAT THE SUBJECT SOFTWARE WILL CONFORM TO
+// SPECIFICATIONS, ANY IMPLIED WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+// A PARTICULAR PURPOSE, OR FREEDOM FROM INFRINGEMENT, ANY WARRANTY THAT
+// THE SUBJECT SOFTWARE WILL BE ERROR FREE, OR ANY WARRANTY THAT
+// DOCUMENTATION, IF PROVIDED, WILL CONFORM TO THE SUBJECT SOFTWARE.
+//
+package gov.nasa.jpf.bench;
+
+import gov.nasa.jpf.JPF;
+import gov.nasa.jpf.jvm.JVM;
+import gov.nasa.jpf.jvm.StateSerializer;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * state serialization of synthetic heaps, which is what every new state
+ * costs in terms of state matching
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SerializerBenchmark {
+
+  @Param({"1000", "10000"})
+  int nObjects;
+
+  @Param({".jvm.serialize.CFSerializer", ".jvm.serialize.IncrementalSerializer"})
+  String serializer;
+
+  JVM vm;
+  StateSerializer ser;
+  int i;
+
+  @Setup(Level.Trial)
+  public void createHeap() {
+    JPF jpf = SyntheticHeap.createJPF(nObjects, "+vm.serializer.class=" + serializer);
+    vm = jpf.getVM();
+    ser = vm.getSerializer();
+  }
+
+  @Benchmark
+  public int[] getStoringDataUnchanged() {
+    return ser.getStoringData();
+  }
+
+  @Benchmark
+  public int[] getStoringDataModified() {
+    SyntheticHeap.modify(vm, i++);
+    return ser.getStoringData();
+  }
+}
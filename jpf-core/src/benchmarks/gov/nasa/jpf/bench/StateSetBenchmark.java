@@ -0,0 +1,92 @@
+//
+// Copyright (C) 2006 United States Government as represented by the
+// Administrator of the National Aeronautics and Space Administration
+// (NASA).  All Rights Reserved.
+//
+// This software is distributed under the NASA Open Source Agreement
+// (NOSA), version 1.3.  The NOSA has been approved by the Open Source
+// Initiative.  See the file NOSA-1.3-JPF at the top of the distribution
+// directory tree for the complete NOSA document.
+//
+// THE SUBJECT SOFTWARE IS PROVIDED "AS IS" WITHOUT ANY WARRANTY OF ANY
+// KIND, EITHER EXPRESSED, IMPLIED, OR STATUTORY, INCLUDING, BUT NOT
+// LIMITED TO, ANY WARRANTY THAT THE SUBJECT SOFTWARE WILL CONFORM TO
+// SPECIFICATIONS, ANY IMPLIED WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+// A PARTICULAR PURPOSE, OR FREEDOM FROM INFRINGEMENT, ANY WARRANTY THAT
+// THE SUBJECT SOFTWARE WILL BE ERROR FREE, OR ANY WARRANTY THAT
+// DOCUMENTATION, IF PROVIDED, WILL CONFORM TO THE SUBJECT SOFTWARE.
+//
+package gov.nasa.jpf.bench;
+
+import gov.nasa.jpf.jvm.JenkinsStateSet;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * JenkinsStateSet.add() for new and for already seen states. This replaces
+ * the ad hoc JenkinsStateSet.main() timing
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class StateSetBenchmark {
+
+  static final int N_STATES = 10000;
+
+  @Param({"64", "1024"})
+  int vectorLength;
+
+  int[][] states;
+  JenkinsStateSet set;
+
+  @Setup(Level.Trial)
+  public void createStates() {
+    states = new int[N_STATES][];
+    for (int i=0; i<N_STATES; i++){
+      int[] v = new int[vectorLength];
+      for (int j=0; j<vectorLength; j++){
+        v[j] = j - 42;
+      }
+      v[0] = i * 3;
+      states[i] = v;
+    }
+  }
+
+  @Setup(Level.Invocation)
+  public void createSet() {
+    set = new JenkinsStateSet();
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(N_STATES)
+  public int addNew() {
+    int id = 0;
+    for (int i=0; i<N_STATES; i++){
+      id = set.add(states[i]);
+    }
+    return id;
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(N_STATES)
+  public int addSeen() {
+    int id = 0;
+    int[] v = states[0];
+    set.add(v);
+    for (int i=0; i<N_STATES; i++){
+      id = set.add(v);
+    }
+    return id;
+  }
+}
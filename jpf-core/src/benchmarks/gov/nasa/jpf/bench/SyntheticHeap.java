@@ -0,0 +1,92 @@
+//
+// Copyright (C) 2006 United States Government as represented by the
+// Administrator of the National Aeronautics and Space Administration
+// (NASA).  All Rights Reserved.
+//
+// This software is distributed under the NASA Open Source Agreement
+// (NOSA), version 1.3.  The NOSA has been approved by the Open Source
+// Initiative.  See the file NOSA-1.3-JPF at the top of the distribution
+// directory tree for the complete NOSA document.
+//
+// THE SUBJECT SOFTWARE IS PROVIDED "AS IS" WITHOUT ANY WARRANTY OF ANY
+// KIND, EITHER EXPRESSED, IMPLIED, OR STATUTORY, INCLUDING, BUT NOT
+// LIMITED TO, ANY WARRANTY THAT THE SUBJECT SOFTWARE WILL CONFORM TO
+// SPECIFICATIONS, ANY IMPLIED WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+// A PARTICULAR PURPOSE, OR FREEDOM FROM INFRINGEMENT, ANY WARRANTY THAT
+// THE SUBJECT SOFTWARE WILL BE ERROR FREE, OR ANY WARRANTY THAT
+// DOCUMENTATION, IF PROVIDED, WILL CONFORM TO THE SUBJECT SOFTWARE.
+//
+package gov.nasa.jpf.bench;
+
+import gov.nasa.jpf.JPF;
+import gov.nasa.jpf.jvm.ClassInfo;
+import gov.nasa.jpf.jvm.ElementInfo;
+import gov.nasa.jpf.jvm.Heap;
+import gov.nasa.jpf.jvm.JVM;
+import gov.nasa.jpf.jvm.ThreadInfo;
+
+/**
+ * creates a synthetic heap of a given size, consisting of strings, int arrays
+ * and small object arrays that are referenced from HeapTarget.root
+ */
+public class SyntheticHeap {
+
+  public static JPF createJPF (int nObjects, String... args){
+    String[] a = new String[args.length + 1];
+    a[0] = "+target=" + HeapTarget.class.getName();
+    System.arraycopy(args, 0, a, 1, args.length);
+
+    JPF jpf = JPFBenchmarkSupport.createInitializedJPF(a);
+    populate(jpf.getVM(), nObjects);
+    return jpf;
+  }
+
+  static void populate (JVM vm, int nObjects){
+    Heap heap = vm.getHeap();
+    ThreadInfo ti = vm.getCurrentThread();
+
+    int rootRef = heap.newArray("Ljava/lang/Object;", nObjects, ti);
+    ElementInfo eiRoot = heap.get(rootRef);
+
+    for (int i=0; i<nObjects; i++){
+      int ref;
+
+      switch (i % 3){
+      case 0:
+        ref = heap.newString("object-" + i, ti);
+        break;
+      case 1:
+        ref = heap.newArray("I", 8, ti);
+        ElementInfo ei = heap.get(ref);
+        for (int j=0; j<8; j++){
+          ei.setIntElement(j, i+j);
+        }
+        break;
+      default:
+        ref = heap.newArray("Ljava/lang/Object;", 2, ti);
+        heap.get(ref).setReferenceElement(0, eiRoot.getReferenceElement(i-1));
+        heap.get(ref).setReferenceElement(1, eiRoot.getReferenceElement(i-2));
+      }
+
+      eiRoot = heap.get(rootRef);
+      eiRoot.setReferenceElement(i, ref);
+    }
+
+    ClassInfo ci = ClassInfo.getResolvedClassInfo(HeapTarget.class.getName());
+    ci.getStaticElementInfo().setReferenceField("root", rootRef);
+  }
+
+  /**
+   * modify one of the int arrays, to simulate a transition
+   */
+  static void modify (JVM vm, int i){
+    Heap heap = vm.getHeap();
+    ClassInfo ci = ClassInfo.getResolvedClassInfo(HeapTarget.class.getName());
+    ElementInfo eiRoot = heap.get( ci.getStaticElementInfo().getReferenceField("root"));
+
+    int n = eiRoot.arrayLength();
+    int idx = ((i % (n/3)) * 3) + 1;
+    ElementInfo ei = heap.get( eiRoot.getReferenceElement(idx));
+    ei.setIntElement(0, i);
+  }
+}
@@ -30,6 +30,7 @@ import gov.nasa.jpf.tool.RunJPF;
 import gov.nasa.jpf.util.JPFLogger;
 import gov.nasa.jpf.util.LogManager;
 import gov.nasa.jpf.util.Misc;
+import gov.nasa.jpf.util.Profiler;
 import gov.nasa.jpf.util.RunRegistry;
 
 import java.io.File;
@@ -616,6 +617,10 @@ public class JPF implements Runnable {
     RunRegistry.getDefaultRegistry().reset();
 
     if (isRunnable()) {
+      if (Profiler.ENABLED) {
+        Profiler.start(config);
+      }
+
       try {
         if (vm.initialize()) {
           status = Status.RUNNING;
@@ -662,6 +667,10 @@ public class JPF implements Runnable {
       } finally {
         status = Status.DONE;
 
+        if (Profiler.ENABLED) {
+          Profiler.stop();
+        }
+
         config.jpfRunTerminated();
         cleanUp();        
       }
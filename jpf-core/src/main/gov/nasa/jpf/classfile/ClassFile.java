@@ -79,6 +79,10 @@ public class ClassFile {
   int pos; // temp index value during parsing
   int pc; // bytecode pos relative to method code start
 
+  // optional pre-decoded utf8 constpool values (e.g. from a ClassFileCache),
+  // indexed like cpValue, which saves us the modified UTF-8 decoding
+  String[] cpStrings;
+
   
   //--- ctors
   public ClassFile (String typeName, byte[] data){
@@ -86,6 +90,12 @@ public class ClassFile {
     this.data = data;
   }
 
+  public ClassFile (String typeName, byte[] data, String[] cpStrings){
+    this.requestedTypeName = typeName;
+    this.data = data;
+    this.cpStrings = cpStrings;
+  }
+
   public ClassFile (String typeName, byte[] data, int offset){
     this.requestedTypeName = typeName;
     this.data = data;
@@ -150,6 +160,7 @@ public class ClassFile {
     }
     
     data = newData;
+    cpStrings = null; // they don't belong to the new data
   }
   
   /**
@@ -186,6 +197,26 @@ public class ClassFile {
     }
   }
 
+  /**
+   * return the utf8 values of the parsed constpool, indexed by cp index, with
+   * null values for all other entries. This is what can be passed into the
+   * ctor of a ClassFile for the same data to skip the utf8 decoding
+   */
+  public String[] getCpStrings(){
+    if (cpPos == null){
+      return null; // not parsed yet
+    }
+
+    String[] a = new String[cpPos.length];
+    for (int i=1; i<a.length; i++){
+      int j = cpPos[i];
+      if (j >= 0 && data[j] == CONSTANT_UTF8){
+        a[i] = (String) cpValue[i];
+      }
+    }
+    return a;
+  }
+
   //--- general attributes
   public static final String SYNTHETIC_ATTR = "Synthetic";
   public static final String DEPRECATED_ATTR = "Deprecated";
@@ -911,6 +942,7 @@ public class ClassFile {
     byte[] data = this.data;
     int[] dataIdx = this.cpPos;
     Object[] values = this.cpValue;
+    String[] strings = (cpStrings != null && cpStrings.length == cpCount) ? cpStrings : null;
 
     //--- first pass: store data index values and convert non-delegating constant values
     // cp_entry[0] is traditionally unused
@@ -923,7 +955,10 @@ public class ClassFile {
           dataIdx[i] = j++;
           int len = ((data[j++]&0xff) <<8) | (data[j++]&0xff);
 
-          String s = readModifiedUTF8String( data, j, len);
+          String s = (strings != null) ? strings[i] : null;
+          if (s == null){
+            s = readModifiedUTF8String( data, j, len);
+          }
           values[i] = s;
 
           j += len;
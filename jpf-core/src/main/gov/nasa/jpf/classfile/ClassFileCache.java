@@ -0,0 +1,374 @@
+//
+// Copyright (C) 2006 United States Government as represented by the
+// Administrator of the National Aeronautics and Space Administration
+// (NASA).  All Rights Reserved.
+//
+// This software is distributed under the NASA Open Source Agreement
+// (NOSA), version 1.3.  The NOSA has been approved by the Open Source
+// Initiative.  See the file NOSA-1.3-JPF at the top of the distribution
+// directory tree for the complete NOSA document.
+//
+// THE SUBJECT SOFTWARE IS PROVIDED "AS IS" WITHOUT ANY WARRANTY OF ANY
+// KIND, EITHER EXPRESSED, IMPLIED, OR STATUTORY, INCLUDING, BUT NOT
+// LIMITED TO, ANY WARRANTY THAT THE SUBJECT SOFTWARE WILL CONFORM TO
+// SPECIFICATIONS, ANY IMPLIED WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+// A PARTICULAR PURPOSE, OR FREEDOM FROM INFRINGEMENT, ANY WARRANTY THAT
+// THE SUBJECT SOFTWARE WILL BE ERROR FREE, OR ANY WARRANTY THAT
+// DOCUMENTATION, IF PROVIDED, WILL CONFORM TO THE SUBJECT SOFTWARE.
+//
+package gov.nasa.jpf.classfile;
+
+import gov.nasa.jpf.JPF;
+import gov.nasa.jpf.util.JPFLogger;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.HashSet;
+
+/**
+ * a persistent cache for classfile data and decoded constpool strings, to
+ * cut down the startup time of JPF runs that load the same (model) classes
+ * over and over again. Cache hits neither have to inflate jar entries nor
+ * decode modified UTF-8 constpool values.
+ *
+ * The cache keeps one file per classpath container, which starts with a
+ * version header and the container name, followed by an entry per class. Each
+ * entry is keyed by class name and the stamp of its classfile (jar entry CRC
+ * and size, or file modification time and length, see
+ * ClassFileContainer.getClassFileStamp()), i.e. entries for changed classfiles
+ * are ignored and replaced automatically. Cache files are memory mapped when
+ * the container is first used, and entries are only decoded on demand.
+ *
+ * Decoded entries are kept in memory, so that subsequent JPF runs within the
+ * same process (e.g. TestJPF) don't have to go to the files again. New entries
+ * are written back by store(), which replaces the cache file atomically so
+ * that concurrent JPF processes can share a cache directory.
+ *
+ * NOTE - ClassInfos, MethodInfos and their instructions are still created for
+ * each run, since they depend on the configured InstructionFactory and
+ * Attributor, and on listeners that modify classfiles while they get loaded.
+ * Such listeners have to use ClassFile.setData() instead of modifying the data
+ * in place, which would also change the cached data
+ *
+ * The cache is enabled by setting
+ *   vm.class_cache.dir = <directory>
+ */
+public class ClassFileCache {
+
+  static final int MAGIC = 0x4a504343; // 'JPCC'
+  static final int VERSION = 1;
+
+  static JPFLogger logger = JPF.getLogger("gov.nasa.jpf.classfile");
+
+  // caches are shared between all JPF instances of this process
+  static HashMap<File,ClassFileCache> caches = new HashMap<File,ClassFileCache>();
+
+  public static class Entry {
+    public final long stamp;
+    public final byte[] data;
+    public final String[] cpStrings;
+
+    Entry (long stamp, byte[] data, String[] cpStrings){
+      this.stamp = stamp;
+      this.data = data;
+      this.cpStrings = cpStrings;
+    }
+
+    /**
+     * u8 stamp, u4 dataLength, data, u4 cpCount, { u4 (nChars + 1), chars }
+     * where nChars+1 is 0 for cp entries that are not utf8 values
+     */
+    void writeTo (DataOutputStream out) throws IOException {
+      out.writeLong(stamp);
+      out.writeInt(data.length);
+      out.write(data);
+
+      out.writeInt(cpStrings.length);
+      for (int i=0; i<cpStrings.length; i++){
+        String s = cpStrings[i];
+        if (s == null){
+          out.writeInt(0);
+        } else {
+          out.writeInt(s.length() + 1);
+          out.writeChars(s);
+        }
+      }
+    }
+
+    static Entry readFrom (ByteBuffer buf){
+      long stamp = buf.getLong();
+
+      byte[] data = new byte[buf.getInt()];
+      buf.get(data);
+
+      String[] cpStrings = new String[buf.getInt()];
+      for (int i=0; i<cpStrings.length; i++){
+        int len = buf.getInt() - 1;
+        if (len >= 0){
+          char[] c = new char[len];
+          for (int j=0; j<len; j++){
+            c[j] = buf.getChar();
+          }
+          cpStrings[i] = new String(c);
+        }
+      }
+
+      return new Entry(stamp, data, cpStrings);
+    }
+  }
+
+  /**
+   * the cached classes of one classpath container
+   */
+  class ContainerCache {
+    final String containerName;
+    final File file;
+
+    // the mapped cache file and its entry positions and lengths, if there was one
+    MappedByteBuffer buf;
+    HashMap<String,int[]> index;
+
+    // the entries we have decoded or added
+    HashMap<String,Entry> entries = new HashMap<String,Entry>();
+    boolean isModified;
+
+    ContainerCache (String containerName){
+      this.containerName = containerName;
+      file = new File(dir, getCacheFileName(containerName));
+
+      if (file.isFile()){
+        load();
+      }
+    }
+
+    void load(){
+      RandomAccessFile raf = null;
+      try {
+        raf = new RandomAccessFile(file, "r");
+        FileChannel fc = raf.getChannel();
+        MappedByteBuffer mb = fc.map(FileChannel.MapMode.READ_ONLY, 0, fc.size());
+
+        if (mb.getInt() != MAGIC || mb.getInt() != VERSION || !containerName.equals(readString(mb))){
+          logger.info("ignoring outdated class cache ", file.getPath());
+          return;
+        }
+
+        int n = mb.getInt();
+        HashMap<String,int[]> idx = new HashMap<String,int[]>(n*2);
+        for (int i=0; i<n; i++){
+          String clsName = readString(mb);
+          int len = mb.getInt();
+          int pos = mb.position();
+          idx.put(clsName, new int[] { pos, len });
+          mb.position(pos + len);
+        }
+
+        buf = mb;
+        index = idx;
+
+      } catch (IOException iox){
+        logger.warning("cannot read class cache ", file.getPath(), ": ", iox);
+      } catch (RuntimeException rx){ // corrupted file (buffer underflow etc.)
+        logger.warning("corrupted class cache ", file.getPath(), ": ", rx);
+      } finally {
+        if (raf != null){
+          try {
+            raf.close(); // the mapping stays valid
+          } catch (IOException iox){
+            // nothing we can do
+          }
+        }
+      }
+    }
+
+    Entry get (String clsName){
+      Entry e = entries.get(clsName);
+
+      if (e == null && index != null){
+        int[] loc = index.get(clsName);
+        if (loc != null){
+          ByteBuffer b = buf.duplicate();
+          b.position(loc[0]);
+          e = Entry.readFrom(b);
+          entries.put(clsName, e);
+        }
+      }
+
+      return e;
+    }
+
+    void put (String clsName, Entry e){
+      entries.put(clsName, e);
+      isModified = true;
+    }
+
+    void store() throws IOException {
+      HashSet<String> names = new HashSet<String>(entries.keySet());
+      if (index != null){
+        names.addAll(index.keySet());
+      }
+
+      File tmp = File.createTempFile("jpf-", ".jcc", dir);
+      DataOutputStream out = new DataOutputStream( new BufferedOutputStream( new FileOutputStream(tmp)));
+      ByteArrayOutputStream bos = new ByteArrayOutputStream();
+      DataOutputStream eout = new DataOutputStream(bos);
+
+      try {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        writeString(out, containerName);
+
+        out.writeInt(names.size());
+        for (String clsName : names){
+          writeString(out, clsName);
+
+          Entry e = entries.get(clsName);
+          if (e != null){
+            bos.reset();
+            e.writeTo(eout);
+            eout.flush();
+            out.writeInt(bos.size());
+            bos.writeTo(out);
+
+          } else { // not decoded, just copy it
+            int[] loc = index.get(clsName);
+            byte[] b = new byte[loc[1]];
+            ByteBuffer bb = buf.duplicate();
+            bb.position(loc[0]);
+            bb.get(b);
+            out.writeInt(b.length);
+            out.write(b);
+          }
+        }
+      } finally {
+        out.close();
+      }
+
+      if (!tmp.renameTo(file)){
+        file.delete();
+        if (!tmp.renameTo(file)){
+          tmp.delete();
+          throw new IOException("cannot replace " + file.getPath());
+        }
+      }
+
+      isModified = false;
+    }
+  }
+
+
+  File dir;
+  HashMap<String,ContainerCache> containers = new HashMap<String,ContainerCache>();
+
+  // statistics
+  int nHits;
+  int nMisses;
+
+
+  public static synchronized ClassFileCache getCache (File dir){
+    File d = dir.getAbsoluteFile();
+    ClassFileCache cache = caches.get(d);
+
+    if (cache == null){
+      cache = new ClassFileCache(d);
+      caches.put(d, cache);
+    }
+
+    return cache;
+  }
+
+  protected ClassFileCache (File dir){
+    this.dir = dir;
+
+    if (!dir.isDirectory() && !dir.mkdirs()){
+      logger.warning("cannot create class cache directory ", dir.getPath());
+    }
+  }
+
+  static String getCacheFileName (String containerName){
+    // name collisions are detected when loading (we store the container name)
+    return Integer.toHexString(containerName.hashCode()) + '-' +
+           Integer.toHexString(containerName.length()) + ".jcc";
+  }
+
+  static String readString (ByteBuffer buf){
+    char[] c = new char[buf.getShort() & 0xffff];
+    for (int i=0; i<c.length; i++){
+      c[i] = buf.getChar();
+    }
+    return new String(c);
+  }
+
+  static void writeString (DataOutputStream out, String s) throws IOException {
+    out.writeShort(s.length());
+    out.writeChars(s);
+  }
+
+  protected ContainerCache getContainerCache (ClassFileContainer container){
+    String name = container.getName();
+    ContainerCache cc = containers.get(name);
+
+    if (cc == null){
+      cc = new ContainerCache(name);
+      containers.put(name, cc);
+    }
+
+    return cc;
+  }
+
+  /**
+   * return the cache entry for the given class if its stamp matches, null otherwise
+   */
+  public synchronized Entry get (ClassFileContainer container, String clsName, long stamp){
+    Entry e = getContainerCache(container).get(clsName);
+
+    if (e != null && e.stamp == stamp){
+      nHits++;
+      return e;
+    } else {
+      nMisses++;
+      return null;
+    }
+  }
+
+  public synchronized void put (ClassFileContainer container, String clsName, long stamp,
+                                byte[] data, String[] cpStrings){
+    getContainerCache(container).put(clsName, new Entry(stamp, data, cpStrings));
+  }
+
+  /**
+   * write back all containers with new entries
+   */
+  public synchronized void store (){
+    for (ContainerCache cc : containers.values()){
+      if (cc.isModified){
+        try {
+          cc.store();
+        } catch (IOException iox){
+          logger.warning("cannot store class cache for ", cc.containerName, ": ", iox);
+        }
+      }
+    }
+  }
+
+  public File getDirectory(){
+    return dir;
+  }
+
+  public int getNumberOfHits(){
+    return nHits;
+  }
+
+  public int getNumberOfMisses(){
+    return nMisses;
+  }
+}
@@ -22,6 +22,11 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 
@@ -44,6 +49,31 @@ public abstract class ClassFileContainer {
 
   public abstract byte[] getClassData(String clsName) throws ClassFileException;
 
+  /**
+   * return a value that changes if the classfile for clsName changes, or -1
+   * if there is no such classfile in this container. This is used to validate
+   * ClassFileCache entries without reading the classfile
+   */
+  public abstract long getClassFileStamp(String clsName);
+
+  /**
+   * can this container have classes of the given package? This is used by
+   * the ClassPath index to skip containers, i.e. it has to be conservative
+   * (return true if we don't know)
+   */
+  public boolean hasPackage (String pkgName){
+    return true;
+  }
+
+  /**
+   * return the names of all classes of the given package that are in this
+   * container, or null if the container can't enumerate its classes. This is
+   * used to detect shadowed classes
+   */
+  public Collection<String> getClassNames (String pkgName){
+    return null;
+  }
+
   protected void readFully(InputStream is, byte[] buf) throws ClassFileException {
     try {
       int nRead = 0;
@@ -69,6 +99,16 @@ public abstract class ClassFileContainer {
    * our factory method 
    */
   public static ClassFileContainer getClassFileContainer (String spec){
+    return getClassFileContainer(spec, false);
+  }
+
+  /**
+   * factory method for containers that are used by an indexed ClassPath,
+   * which have to be able to tell which packages they contain. Indexed jar
+   * containers use a shared MappedJar (if the jar supports it), and indexed
+   * directory containers remember the classes they don't have
+   */
+  public static ClassFileContainer getClassFileContainer (String spec, boolean indexed){
     
     int i = spec.indexOf(".jar");
     
@@ -94,7 +134,7 @@ public abstract class ClassFileContainer {
       jarFile = new File(jarPath);
       if (jarFile.isFile()){
         try {
-          return new JarContainer(jarFile, pathPrefix);
+          return new JarContainer(jarFile, pathPrefix, indexed);
         } catch (IOException ix) {
           return null;
         }
@@ -105,7 +145,7 @@ public abstract class ClassFileContainer {
     } else { // a dir
       File dir = new File(spec);
       if (dir.isDirectory()){
-        return new DirContainer(dir);
+        return new DirContainer(dir, indexed);
       } else {
         return null;
       }
@@ -121,14 +161,76 @@ class DirContainer extends ClassFileContainer {
 
   File dir;
 
+  // only used if we are indexed
+  HashMap<String,Boolean> packageDirs;
+  HashSet<String> missingClasses;
+
   DirContainer(File dir) {
+    this(dir, false);
+  }
+
+  DirContainer(File dir, boolean indexed) {
     super(dir.getPath());
     this.dir = dir;
+
+    if (indexed){
+      packageDirs = new HashMap<String,Boolean>();
+      missingClasses = new HashSet<String>();
+    }
   }
 
-  public byte[] getClassData(String clsName) throws ClassFileException {
+  public boolean hasPackage (String pkgName){
+    if (packageDirs != null){
+      Boolean b = packageDirs.get(pkgName);
+      if (b == null){
+        b = Boolean.valueOf( pkgName.length() == 0 ||
+                             new File(dir, pkgName.replace('.', File.separatorChar)).isDirectory());
+        packageDirs.put(pkgName, b);
+      }
+      return b.booleanValue();
+
+    } else {
+      return true;
+    }
+  }
+
+  boolean isMissing (String clsName){
+    return (missingClasses != null) && missingClasses.contains(clsName);
+  }
+
+  void setMissing (String clsName){
+    if (missingClasses != null){
+      missingClasses.add(clsName);
+    }
+  }
+
+  File getClassFile(String clsName){
     String pn = clsName.replace('.', File.separatorChar) + ".class";
-    File f = new File(dir, pn);
+    return new File(dir, pn);
+  }
+
+  public long getClassFileStamp(String clsName){
+    if (isMissing(clsName)){
+      return -1;
+    }
+
+    File f = getClassFile(clsName);
+    long lastModified = f.lastModified(); // 0 if it doesn't exist
+
+    if (lastModified != 0 && f.isFile()){
+      return ((lastModified << 20) ^ f.length()) & Long.MAX_VALUE;
+    } else {
+      setMissing(clsName);
+      return -1;
+    }
+  }
+
+  public byte[] getClassData(String clsName) throws ClassFileException {
+    if (isMissing(clsName)){
+      return null;
+    }
+
+    File f = getClassFile(clsName);
 
     if (f.isFile()) {
       FileInputStream fis = null;
@@ -158,15 +260,20 @@ class DirContainer extends ClassFileContainer {
       }
     }
 
+    setMissing(clsName);
     return null;
   }
 }
 
 class JarContainer extends ClassFileContainer {
 
-  JarFile jar;
+  JarFile jar;     // either this one
+  MappedJar mjar;  // or that one
   String pathPrefix; // optional
 
+  // package name -> class names, only computed if we are indexed
+  HashMap<String,ArrayList<String>> packages;
+
   JarContainer(File file) throws IOException {
     super(file.getPath());
 
@@ -174,11 +281,78 @@ class JarContainer extends ClassFileContainer {
   }
 
   JarContainer (File file, String pathPrefix) throws IOException {
+    this(file, pathPrefix, false);
+  }
+
+  JarContainer (File file, String pathPrefix, boolean indexed) throws IOException {
     super(getPath(file, pathPrefix));
 
-    jar = new JarFile(file);
-    
     this.pathPrefix = getNormalizedPathPrefix(pathPrefix);
+
+    if (indexed){
+      try {
+        mjar = MappedJar.getMappedJar(file);
+      } catch (IOException iox){
+        ClassPath.logger.info("cannot map jar, using JarFile: ", iox.getMessage());
+      }
+    }
+
+    if (mjar == null){
+      jar = new JarFile(file);
+    }
+
+    if (indexed){
+      createPackageIndex();
+    }
+  }
+
+  void createPackageIndex (){
+    packages = new HashMap<String,ArrayList<String>>();
+
+    if (mjar != null){
+      for (String eName : mjar.getEntryNames()){
+        addToPackageIndex(eName);
+      }
+    } else {
+      for (Enumeration<JarEntry> en = jar.entries(); en.hasMoreElements(); ){
+        addToPackageIndex(en.nextElement().getName());
+      }
+    }
+  }
+
+  void addToPackageIndex (String eName){
+    if (eName.endsWith(".class")){
+      if (pathPrefix != null){
+        if (eName.startsWith(pathPrefix)){
+          eName = eName.substring(pathPrefix.length());
+        } else {
+          return;
+        }
+      }
+
+      String clsName = eName.substring(0, eName.length() - 6).replace('/', '.');
+      int i = clsName.lastIndexOf('.');
+      String pkgName = (i < 0) ? "" : clsName.substring(0, i);
+
+      ArrayList<String> list = packages.get(pkgName);
+      if (list == null){
+        list = new ArrayList<String>();
+        packages.put(pkgName, list);
+      }
+      list.add(clsName);
+    }
+  }
+
+  public boolean hasPackage (String pkgName){
+    return (packages == null) || packages.containsKey(pkgName);
+  }
+
+  public Collection<String> getClassNames (String pkgName){
+    if (packages != null){
+      return packages.get(pkgName);
+    } else {
+      return null;
+    }
   }
 
   /**
@@ -238,14 +412,60 @@ class JarContainer extends ClassFileContainer {
     return pn;
   }
     
-  public byte[] getClassData(String clsName) throws ClassFileException {
+  String getEntryName(String clsName){
     String pn = clsName.replace('.', '/') + ".class";
     
     if (pathPrefix != null){
       pn = pathPrefix + pn;
     }
-    
-    JarEntry e = jar.getJarEntry(pn);
+
+    return pn;
+  }
+
+  JarEntry getClassEntry(String clsName){
+    return jar.getJarEntry(getEntryName(clsName));
+  }
+
+  public long getClassFileStamp(String clsName){
+    if (mjar != null){
+      MappedJar.Entry me = mjar.getEntry(getEntryName(clsName));
+      if (me != null){
+        // same as below, so that cache entries don't depend on the reader
+        return (((long)me.getSize() << 32) ^ me.getCrc()) & Long.MAX_VALUE;
+      } else {
+        return -1;
+      }
+    }
+
+    JarEntry e = getClassEntry(clsName);
+
+    if (e != null){
+      // the CRC comes from the central directory, we don't have to inflate anything
+      long crc = e.getCrc();
+      if (crc == -1){
+        crc = e.getTime();
+      }
+      return ((e.getSize() << 32) ^ crc) & Long.MAX_VALUE;
+
+    } else {
+      return -1;
+    }
+  }
+
+  public byte[] getClassData(String clsName) throws ClassFileException {
+    if (mjar != null){
+      MappedJar.Entry me = mjar.getEntry(getEntryName(clsName));
+      if (me != null){
+        try {
+          return mjar.getData(me);
+        } catch (IOException iox){
+          error("error reading jar entry " + me.getName() + ": " + iox.getMessage());
+        }
+      }
+      return null;
+    }
+
+    JarEntry e = getClassEntry(clsName);
 
     if (e != null) {
       InputStream is = null;
@@ -24,31 +24,102 @@ import gov.nasa.jpf.util.JPFLogger;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 
 /**
  * this is a lookup mechanism for class files that is based on an ordered
  * list of directory or jar entries
+ *
+ * Indexed ClassPaths (see setIndexed()) map package names to the containers
+ * that can have classes of this package, so that lookups don't have to try
+ * all containers. Package entries are computed on first use and keep the
+ * classpath order, i.e. the index does not change which classfile is found.
+ * When an entry is computed, we check if classes of the package are shadowed
+ * by a container that comes earlier in the classpath, and report this as a
+ * warning (once per pair of containers). Containers that were added with
+ * addSystemPathName() are not reported as shadowed, since model classes are
+ * supposed to replace standard library classes
  */
 public class ClassPath {
 
   public static class Match {
     public final byte[] data;
     public final ClassFileContainer container;
+
+    // only set if we have a cache
+    ClassFileCache cache;
+    String clsName;
+    long stamp;
+    ClassFileCache.Entry entry; // non-null if this is a cache hit
     
     Match (ClassFileContainer c, byte[] d){
       container = c;
       data = d;
     }
+
+    Match (ClassFileContainer c, byte[] d, ClassFileCache cache, String clsName, long stamp, ClassFileCache.Entry entry){
+      container = c;
+      data = d;
+      this.cache = cache;
+      this.clsName = clsName;
+      this.stamp = stamp;
+      this.entry = entry;
+    }
     
     public byte[] getBytes() {
       return data;
     }
+
+    public boolean isCached() {
+      return entry != null;
+    }
+
+    /**
+     * create a ClassFile for the matched data, which uses the cached constpool
+     * values if we have them
+     */
+    public ClassFile createClassFile (String typeName) {
+      if (entry != null){
+        return new ClassFile(typeName, data, entry.cpStrings);
+      } else {
+        return new ClassFile(typeName, data);
+      }
+    }
+
+    /**
+     * to be called after the ClassFile that was created by createClassFile()
+     * got parsed, so that we can cache it
+     */
+    public void classFileParsed (ClassFile cf) {
+      if (cache != null && entry == null && cf.getData() == data){ // not modified
+        String[] cpStrings = cf.getCpStrings();
+        if (cpStrings != null){
+          cache.put(container, clsName, stamp, data, cpStrings);
+        }
+      }
+    }
   }
   
   static JPFLogger logger = JPF.getLogger("gov.nasa.jpf.classfile");
   
   ArrayList<ClassFileContainer> pathElements;
 
+  ClassFileCache cache; // optional
+
+  boolean indexed;
+
+  // package name -> containers that can have classes of this package (in order)
+  HashMap<String,List<ClassFileContainer>> index;
+
+  // containers we don't report as shadowed
+  HashSet<ClassFileContainer> systemElements;
+
+  // "<shadowing>|<shadowed>" pairs that were already reported
+  HashSet<String> reportedShadows;
+
 
   public ClassPath(){
     pathElements = new ArrayList<ClassFileContainer>();
@@ -63,15 +134,139 @@ public class ClassPath {
   }
 
   public void addPathName(String pathName){
-    ClassFileContainer pe = ClassFileContainer.getClassFileContainer(pathName);
+    addContainer(pathName);
+  }
+
+  /**
+   * add a standard library element, which we don't report if it is shadowed
+   * by a preceding one
+   */
+  public void addSystemPathName(String pathName){
+    ClassFileContainer pe = addContainer(pathName);
+
+    if (pe != null){
+      if (systemElements == null){
+        systemElements = new HashSet<ClassFileContainer>();
+      }
+      systemElements.add(pe);
+    }
+  }
+
+  protected ClassFileContainer addContainer (String pathName){
+    ClassFileContainer pe = ClassFileContainer.getClassFileContainer(pathName, indexed);
 
     if (pe != null) {
       pathElements.add(pe);
+      if (index != null){
+        index.clear(); // package entries have to be re-computed
+      }
     } else {
       // would like to turn this into a warning, but the java.class.path at least
       // on OS X 10.6 contains non-existing elements
       logger.info("illegal classpath element ", pathName);
     }
+
+    return pe;
+  }
+
+  /**
+   * turn package indexing on or off. This has to be called before adding
+   * path elements, since indexing needs containers that can enumerate their
+   * packages
+   */
+  public void setIndexed (boolean indexed){
+    this.indexed = indexed;
+
+    if (indexed){
+      index = new HashMap<String,List<ClassFileContainer>>();
+      reportedShadows = new HashSet<String>();
+    } else {
+      index = null;
+    }
+  }
+
+  public boolean isIndexed(){
+    return indexed;
+  }
+
+  static String getPackageName (String clsName){
+    int i = clsName.lastIndexOf('.');
+    return (i < 0) ? "" : clsName.substring(0, i);
+  }
+
+  /**
+   * return the containers we have to search for clsName, in classpath order
+   */
+  protected List<ClassFileContainer> getContainers (String clsName){
+    if (index == null){
+      return pathElements;
+    }
+
+    String pkgName = getPackageName(clsName);
+    List<ClassFileContainer> list = index.get(pkgName);
+    if (list == null){
+      list = new ArrayList<ClassFileContainer>();
+      for (ClassFileContainer e : pathElements){
+        if (e.hasPackage(pkgName)){
+          list.add(e);
+        }
+      }
+
+      checkShadows(pkgName, list);
+      index.put(pkgName, list);
+    }
+
+    return list;
+  }
+
+  protected void checkShadows (String pkgName, List<ClassFileContainer> list){
+    int n = list.size();
+
+    for (int j=1; j<n; j++){
+      ClassFileContainer shadowed = list.get(j);
+      if (systemElements != null && systemElements.contains(shadowed)){
+        continue;
+      }
+
+      Collection<String> clsNames = shadowed.getClassNames(pkgName);
+      if (clsNames == null){
+        continue;
+      }
+
+      for (int i=0; i<j; i++){
+        ClassFileContainer e = list.get(i);
+        String key = e.getName() + '|' + shadowed.getName();
+        if (reportedShadows.contains(key)){
+          continue;
+        }
+
+        for (String clsName : clsNames){
+          if (e.getClassFileStamp(clsName) != -1){
+            logger.warning("classes of ", shadowed.getName(), " are shadowed by ",
+                           e.getName(), " (e.g. ", clsName, ')');
+            reportedShadows.add(key);
+            break;
+          }
+        }
+      }
+    }
+  }
+
+  public void setCache (ClassFileCache cache){
+    this.cache = cache;
+  }
+
+  public ClassFileCache getCache(){
+    return cache;
+  }
+
+  /**
+   * write back new cache entries, if we have a cache
+   */
+  public void storeCache(){
+    if (cache != null){
+      cache.store();
+    }
   }
 
   public String[] getPathNames(){
@@ -103,7 +298,11 @@ public class ClassPath {
   }
 
   public Match findMatch (String clsName) throws ClassFileException {
-    for (ClassFileContainer e : pathElements){
+    if (cache != null){
+      return findCachedMatch(clsName);
+    }
+
+    for (ClassFileContainer e : getContainers(clsName)){
       byte[] data = e.getClassData(clsName);
       if (data != null){
         logger.fine("loading ", clsName, " from ", e.getName());
@@ -114,8 +313,29 @@ public class ClassPath {
     return null;    
   }
 
+  protected Match findCachedMatch (String clsName) throws ClassFileException {
+    for (ClassFileContainer e : getContainers(clsName)){
+      long stamp = e.getClassFileStamp(clsName);
+      if (stamp != -1){
+        ClassFileCache.Entry entry = cache.get(e, clsName, stamp);
+        if (entry != null){
+          logger.fine("loading ", clsName, " from class cache of ", e.getName());
+          return new Match( e, entry.data, cache, clsName, stamp, entry);
+        }
+
+        byte[] data = e.getClassData(clsName);
+        if (data != null){
+          logger.fine("loading ", clsName, " from ", e.getName());
+          return new Match( e, data, cache, clsName, stamp, null);
+        }
+      }
+    }
+
+    return null;
+  }
+
   public byte[] getClassData(String clsName) throws ClassFileException {
-    for (ClassFileContainer e : pathElements){
+    for (ClassFileContainer e : getContainers(clsName)){
       byte[] data = e.getClassData(clsName);
       if (data != null){
         logger.fine("loading ", clsName, " from ", e.getName());
@@ -0,0 +1,300 @@
+//
+// Copyright (C) 2011 United States Government as represented by the
+// Administrator of the National Aeronautics and Space Administration
+// (NASA).  All Rights Reserved.
+//
+// This software is distributed under the NASA Open Source Agreement
+// (NOSA), version 1.3.  The NOSA has been approved by the Open Source
+// Initiative.  See the file NOSA-1.3-JPF at the top of the distribution
+// directory tree for the complete NOSA document.
+//
+// THE SUBJECT SOFTWARE IS PROVIDED "AS IS" WITHOUT ANY WARRANTY OF ANY
+// KIND, EITHER EXPRESSED, IMPLIED, OR STATUTORY, INCLUDING, BUT NOT
+// LIMITED TO, ANY WARRANTY THAT THE SUBJECT SOFTWARE WILL CONFORM TO
+// SPECIFICATIONS, ANY IMPLIED WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+// A PARTICULAR PURPOSE, OR FREEDOM FROM INFRINGEMENT, ANY WARRANTY THAT
+// THE SUBJECT SOFTWARE WILL BE ERROR FREE, OR ANY WARRANTY THAT
+// DOCUMENTATION, IF PROVIDED, WILL CONFORM TO THE SUBJECT SOFTWARE.
+//
+package gov.nasa.jpf.classfile;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * a read-only jar/zip reader that memory maps the whole file and reads the
+ * central directory directly from the mapped buffer, so that we neither go
+ * through JarFile entry lookups nor through the per entry InputStream and
+ * buffer copies of JarFile.getInputStream()
+ *
+ * Stored entries are copied straight out of the mapped buffer, deflated
+ * entries are inflated from it (Inflater only takes arrays as input, i.e. we
+ * still have to copy the compressed bytes).
+ *
+ * MappedJars are shared between all ClassFileContainers of the same process
+ * that refer to the same (unchanged) file, which also covers consecutive JPF
+ * runs of the same process (e.g. TestJPF)
+ *
+ * NOTE - this does not support ZIP64 archives, encrypted entries or
+ * compression methods other than stored or deflated. getMappedJar() throws
+ * an IOException for archives it can't handle, callers should fall back to
+ * JarFile in this case
+ */
+public class MappedJar {
+
+  static final int LOC_SIG = 0x04034b50;
+  static final int CEN_SIG = 0x02014b50;
+  static final int END_SIG = 0x06054b50;
+
+  static final int LOC_HDR = 30;
+  static final int CEN_HDR = 46;
+  static final int END_HDR = 22;
+
+  static final int STORED = 0;
+  static final int DEFLATED = 8;
+
+  static HashMap<String,MappedJar> mappedJars = new HashMap<String,MappedJar>();
+
+  public static class Entry {
+    final String name;
+    final int method;
+    final int compressedSize;
+    final int size;
+    final long crc;
+    final int headerOffset;
+    int dataOffset = -1; // computed on first read
+
+    Entry (String name, int method, int compressedSize, int size, long crc, int headerOffset){
+      this.name = name;
+      this.method = method;
+      this.compressedSize = compressedSize;
+      this.size = size;
+      this.crc = crc;
+      this.headerOffset = headerOffset;
+    }
+
+    public String getName(){
+      return name;
+    }
+
+    public int getSize(){
+      return size;
+    }
+
+    public long getCrc(){
+      return crc;
+    }
+  }
+
+  String path;
+  long lastModified;
+  long length;
+
+  ByteBuffer buf;
+  HashMap<String,Entry> entries;
+
+  Inflater inflater; // reused, access is synchronized
+  byte[] input;
+
+  /**
+   * get the shared MappedJar for this file, or create and register a new one
+   * if there is none yet or the file has changed
+   */
+  public static synchronized MappedJar getMappedJar (File file) throws IOException {
+    String path = file.getCanonicalPath();
+    MappedJar mj = mappedJars.get(path);
+
+    if (mj == null || mj.lastModified != file.lastModified() || mj.length != file.length()){
+      mj = new MappedJar(file, path);
+      mappedJars.put(path, mj);
+    }
+
+    return mj;
+  }
+
+  protected MappedJar (File file, String path) throws IOException {
+    this.path = path;
+    lastModified = file.lastModified();
+    length = file.length();
+
+    if (length > Integer.MAX_VALUE){
+      throw new IOException("jar too big to map: " + path);
+    }
+
+    RandomAccessFile raf = new RandomAccessFile(file, "r");
+    try {
+      FileChannel fc = raf.getChannel();
+      MappedByteBuffer mb = fc.map(FileChannel.MapMode.READ_ONLY, 0, length);
+      mb.order(ByteOrder.LITTLE_ENDIAN);
+      buf = mb;
+    } finally {
+      raf.close(); // the mapping stays valid
+    }
+
+    readCentralDirectory();
+  }
+
+  protected static void error (String msg) throws IOException {
+    throw new IOException(msg);
+  }
+
+  protected int findEnd () throws IOException {
+    int minPos = Math.max(0, buf.limit() - END_HDR - 0xffff); // max comment length
+
+    for (int pos = buf.limit() - END_HDR; pos >= minPos; pos--){
+      if (buf.getInt(pos) == END_SIG){
+        return pos;
+      }
+    }
+
+    error("no zip end header: " + path);
+    return -1;
+  }
+
+  static int getUShort (ByteBuffer b, int pos){
+    return b.getShort(pos) & 0xffff;
+  }
+
+  static long getUInt (ByteBuffer b, int pos){
+    return b.getInt(pos) & 0xffffffffL;
+  }
+
+  protected void readCentralDirectory () throws IOException {
+    int end = findEnd();
+
+    int nEntries = getUShort(buf, end + 10);
+    long cenSize = getUInt(buf, end + 12);
+    long cenOffset = getUInt(buf, end + 16);
+
+    if (nEntries == 0xffff || cenSize == 0xffffffffL || cenOffset == 0xffffffffL){
+      error("ZIP64 not supported: " + path);
+    }
+    if (cenOffset + cenSize > end){
+      error("corrupted central directory: " + path);
+    }
+
+    entries = new HashMap<String,Entry>(nEntries * 4 / 3 + 1);
+
+    byte[] nameBuf = new byte[256];
+    int pos = (int)cenOffset;
+    for (int i=0; i<nEntries; i++){
+      if (buf.getInt(pos) != CEN_SIG){
+        error("corrupted central directory entry " + i + ": " + path);
+      }
+
+      int flags = getUShort(buf, pos + 8);
+      int method = getUShort(buf, pos + 10);
+      long crc = getUInt(buf, pos + 16);
+      long compressedSize = getUInt(buf, pos + 20);
+      long size = getUInt(buf, pos + 24);
+      int nameLen = getUShort(buf, pos + 28);
+      int extraLen = getUShort(buf, pos + 30);
+      int commentLen = getUShort(buf, pos + 32);
+      long headerOffset = getUInt(buf, pos + 42);
+
+      if (nameLen > nameBuf.length){
+        nameBuf = new byte[nameLen];
+      }
+      ByteBuffer b = buf.duplicate();
+      b.position(pos + CEN_HDR);
+      b.get(nameBuf, 0, nameLen);
+      String name = new String(nameBuf, 0, nameLen, "UTF-8");
+
+      if (!name.endsWith("/")){ // we don't need dirs
+        if ((flags & 1) != 0){
+          error("encrypted entry " + name + ": " + path);
+        }
+        if (compressedSize > Integer.MAX_VALUE || size > Integer.MAX_VALUE || headerOffset > Integer.MAX_VALUE){
+          error("ZIP64 not supported: " + path);
+        }
+
+        entries.put(name, new Entry(name, method, (int)compressedSize, (int)size, crc, (int)headerOffset));
+      }
+
+      pos += CEN_HDR + nameLen + extraLen + commentLen;
+    }
+  }
+
+  public String getPath(){
+    return path;
+  }
+
+  public int getNumberOfEntries(){
+    return entries.size();
+  }
+
+  public Collection<String> getEntryNames(){
+    return entries.keySet();
+  }
+
+  public Entry getEntry (String name){
+    return entries.get(name);
+  }
+
+  /**
+   * get the uncompressed data of an entry
+   */
+  public synchronized byte[] getData (Entry e) throws IOException {
+    if (e.dataOffset < 0){
+      int hdr = e.headerOffset;
+      if (buf.getInt(hdr) != LOC_SIG){
+        error("corrupted local header of " + e.name + ": " + path);
+      }
+      // the local extra field can differ from the one in the central directory
+      e.dataOffset = hdr + LOC_HDR + getUShort(buf, hdr + 26) + getUShort(buf, hdr + 28);
+    }
+
+    byte[] data = new byte[e.size];
+    ByteBuffer b = buf.duplicate();
+    b.position(e.dataOffset);
+
+    if (e.method == STORED){
+      b.get(data);
+
+    } else if (e.method == DEFLATED){
+      int len = e.compressedSize;
+      if (input == null || input.length < len + 1){
+        input = new byte[len + 1];
+      }
+      b.get(input, 0, len);
+      input[len] = 0; // nowrap Inflaters need a dummy byte at the end
+
+      if (inflater == null){
+        inflater = new Inflater(true);
+      } else {
+        inflater.reset();
+      }
+      inflater.setInput(input, 0, len + 1);
+
+      try {
+        int n = 0;
+        while (n < data.length){
+          int k = inflater.inflate(data, n, data.length - n);
+          if (k == 0 && (inflater.finished() || inflater.needsInput())){
+            break;
+          }
+          n += k;
+        }
+        if (n != data.length){
+          error("premature end of entry " + e.name + ": " + path);
+        }
+      } catch (DataFormatException dfx){
+        error("corrupted entry " + e.name + ": " + path);
+      }
+
+    } else {
+      error("unsupported compression method " + e.method + " of entry " + e.name + ": " + path);
+    }
+
+    return data;
+  }
+}
@@ -54,6 +54,9 @@ public abstract class Area<EI extends ElementInfo> implements Iterable<EI> {
    */
   protected final BitSet hasChanged;
 
+  // optional log of element changes, only set if we use an UndoBacktracker
+  protected UndoLog undoLog;
+
   // our default memento implementation
   static abstract class AreaMemento<A extends Area>  {
     Memento<ElementInfo>[] liveEI;
@@ -420,6 +423,17 @@ public abstract class Area<EI extends ElementInfo> implements Iterable<EI> {
   public void markChanged (int index) {
     hasChanged.set(index);
     ks.changed();
+
+    if (undoLog != null){
+      EI ei = elements.get(index);
+      if (ei != null){ // removed elements are logged before they are gone
+        undoLog.logChange(ei);
+      }
+    }
+  }
+
+  public void setUndoLog (UndoLog log){
+    undoLog = log;
   }
 
   public void markUnchanged() {
@@ -442,6 +456,9 @@ public abstract class Area<EI extends ElementInfo> implements Iterable<EI> {
     assert (ei != null) : "trying to remove null object at index: " + index;
 
     if (ei.recycle()) {
+      if (undoLog != null){
+        undoLog.logChange(ei);
+      }
       elements.set(index, null);
       elements.squeeze();
       nElements--;
@@ -24,6 +24,7 @@ import gov.nasa.jpf.JPFConfigException;
 import gov.nasa.jpf.JPFException;
 import gov.nasa.jpf.JPFListener;
 import gov.nasa.jpf.classfile.ClassFile;
+import gov.nasa.jpf.classfile.ClassFileCache;
 import gov.nasa.jpf.classfile.ClassFileContainer;
 import gov.nasa.jpf.classfile.ClassFileException;
 import gov.nasa.jpf.classfile.ClassFileReaderAdapter;
@@ -1203,7 +1204,7 @@ public class ClassInfo extends InfoObject implements Iterable<MethodInfo>, Gener
         throw new NoClassInfoException(typeName);
       }
 
-      ClassFile cf = new ClassFile( typeName, match.getBytes());
+      ClassFile cf = match.createClassFile(typeName);
       
       JVM.getVM().notifyLoadClass(cf); // allow on-the-fly classfile modification
       
@@ -1213,6 +1214,8 @@ public class ClassInfo extends InfoObject implements Iterable<MethodInfo>, Gener
       if (!ci.getName().equals(typeName)){
         throw new NoClassInfoException("wrong class name, should be " + ci.getName());
       }
+
+      match.classFileParsed(cf);
       
       return ci;
       
@@ -1936,6 +1939,12 @@ public class ClassInfo extends InfoObject implements Iterable<MethodInfo>, Gener
 
   protected static void buildModelClassPath (Config config){
     cp = new ClassPath();
+    cp.setIndexed(config.getBoolean("vm.classpath.index", false));
+
+    String cacheDir = config.getString("vm.class_cache.dir");
+    if (cacheDir != null){
+      cp.setCache(ClassFileCache.getCache(new File(cacheDir)));
+    }
 
     for (File f : config.getPathArray("boot_classpath")){
       cp.addPathName(f.getAbsolutePath());
@@ -1949,7 +1958,7 @@ public class ClassInfo extends InfoObject implements Iterable<MethodInfo>, Gener
     String v = System.getProperty("sun.boot.class.path");
     if (v != null) {
       for (String pn : v.split(File.pathSeparator)){
-        cp.addPathName(pn);
+        cp.addSystemPathName(pn);
       }
     }
   }
@@ -65,10 +65,19 @@ public class DefaultSchedulerFactory implements SchedulerFactory {
     return list;
   }
 
+  /**
+   * the single point where we create thread CGs, which can be overridden by
+   * subclasses that need their own ThreadChoiceGenerator implementation
+   */
+  protected ChoiceGenerator<ThreadInfo> createThreadChoiceFromSet (String id, ThreadInfo[] choices,
+                                                                   boolean isSchedulingPoint) {
+    return new ThreadChoiceFromSet( id, choices, isSchedulingPoint);
+  }
+
   protected ChoiceGenerator<ThreadInfo> getRunnableCG (String id) {
     ThreadInfo[] choices = getRunnablesIfChoices();
     if (choices != null) {
-      return new ThreadChoiceFromSet( id, choices, true);
+      return createThreadChoiceFromSet( id, choices, true);
     } else {
       return null;
     }
@@ -137,7 +146,7 @@ public class DefaultSchedulerFactory implements SchedulerFactory {
         ss.setBlockedInAtomicSection();
       }
 
-      return new ThreadChoiceFromSet("monitorEnter", getRunnables(), true);
+      return createThreadChoiceFromSet("monitorEnter", getRunnables(), true);
 
     } else {
       if (ss.isAtomic()) {
@@ -165,7 +174,7 @@ public class DefaultSchedulerFactory implements SchedulerFactory {
       ss.setBlockedInAtomicSection();
     }
 
-    return new ThreadChoiceFromSet( "wait", getRunnables(), true);
+    return createThreadChoiceFromSet( "wait", getRunnables(), true);
   }
 
   public ChoiceGenerator<ThreadInfo> createNotifyCG (ElementInfo ei, ThreadInfo ti) {
@@ -178,7 +187,7 @@ public class DefaultSchedulerFactory implements SchedulerFactory {
       // if there are less than 2 threads waiting, there is no nondeterminism
       return null;
     } else {
-      return new ThreadChoiceFromSet( "notify", waiters, false);
+      return createThreadChoiceFromSet( "notify", waiters, false);
     }
   }
 
@@ -201,7 +210,7 @@ public class DefaultSchedulerFactory implements SchedulerFactory {
       ss.setBlockedInAtomicSection();
     }
 
-    return new ThreadChoiceFromSet( "park", getRunnables(), true);
+    return createThreadChoiceFromSet( "park", getRunnables(), true);
   }
   
   public ChoiceGenerator<ThreadInfo> createUnparkCG (ThreadInfo tiUnparked) {
@@ -337,7 +346,7 @@ public class DefaultSchedulerFactory implements SchedulerFactory {
     // a subsequent call to vm.isEndState()
     // <2do> FIXME this is redundant and error prone
     if (tl.hasAnyAliveThread()) {
-      return new ThreadChoiceFromSet( "terminate", getRunnablesWithout(terminateThread), true);
+      return createThreadChoiceFromSet( "terminate", getRunnablesWithout(terminateThread), true);
     } else {
       return null;
     }
@@ -345,6 +345,7 @@ public abstract class ElementInfo implements Cloneable, Restorable<ElementInfo>
         b = b.clone();
         refTid = b;
         attributes |= ATTR_REFTID_CHANGED;
+        markAreaChanged();
       }
       b.set(tid);
     }
@@ -358,6 +359,7 @@ public abstract class ElementInfo implements Cloneable, Restorable<ElementInfo>
         b = b.clone();
         refTid = b;
         attributes |= ATTR_REFTID_CHANGED;
+        markAreaChanged();
       }
       b.clear(tid);
     }
@@ -2089,7 +2091,10 @@ public abstract class ElementInfo implements Cloneable, Restorable<ElementInfo>
   }
 
   public void setConstructed() {
-    attributes |= (ATTR_CONSTRUCTED | ATTR_ATTRIBUTE_CHANGED);
+    if ((attributes & ATTR_CONSTRUCTED) == 0){
+      attributes |= (ATTR_CONSTRUCTED | ATTR_ATTRIBUTE_CHANGED);
+      markAreaChanged();
+    }
   }
 
   public void restoreFields(Fields f) {
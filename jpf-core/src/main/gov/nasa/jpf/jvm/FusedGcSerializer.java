@@ -0,0 +1,36 @@
+//
+// Copyright (C) 2006 United States Government as represented by the
+// Administrator of the National Aeronautics and Space Administration
+// (NASA).  All Rights Reserved.
+//
+// This software is distributed under the NASA Open Source Agreement
+// (NOSA), version 1.3.  The NOSA has been approved by the Open Source
+// Initiative.  See the file NOSA-1.3-JPF at the top of the distribution
+// directory tree for the complete NOSA document.
+//
+// THE SUBJECT SOFTWARE IS PROVIDED "AS IS" WITHOUT ANY WARRANTY OF ANY
+// KIND, EITHER EXPRESSED, IMPLIED, OR STATUTORY, INCLUDING, BUT NOT
+// LIMITED TO, ANY WARRANTY THAT THE SUBJECT SOFTWARE WILL CONFORM TO
+// SPECIFICATIONS, ANY IMPLIED WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+// A PARTICULAR PURPOSE, OR FREEDOM FROM INFRINGEMENT, ANY WARRANTY THAT
+// THE SUBJECT SOFTWARE WILL BE ERROR FREE, OR ANY WARRANTY THAT
+// DOCUMENTATION, IF PROVIDED, WILL CONFORM TO THE SUBJECT SOFTWARE.
+//
+package gov.nasa.jpf.jvm;
+
+/**
+ * a StateSerializer that can collect garbage as part of its own heap
+ * traversal, so that states which need a gc only pay for one reachability
+ * analysis instead of separate gc mark and serialization walks
+ *
+ * this is used by the JVM if 'vm.gc.fused' is set
+ */
+public interface FusedGcSerializer extends StateSerializer {
+
+  /**
+   * request that the next getStoringData() also collects garbage. Returns
+   * false if this is not supported in the current configuration (heap type
+   * etc.), in which case the caller has to do a normal gc
+   */
+  boolean requestGc ();
+}
@@ -23,11 +23,13 @@ import gov.nasa.jpf.JPF;
 import gov.nasa.jpf.JPFException;
 import gov.nasa.jpf.JPFListenerException;
 import gov.nasa.jpf.classfile.ClassFile;
+import gov.nasa.jpf.classfile.ClassPath;
 import gov.nasa.jpf.jvm.bytecode.FieldInstruction;
 import gov.nasa.jpf.jvm.bytecode.Instruction;
 import gov.nasa.jpf.jvm.choice.ThreadChoiceFromSet;
 import gov.nasa.jpf.util.JPFLogger;
 import gov.nasa.jpf.util.Misc;
+import gov.nasa.jpf.util.Profiler;
 
 import java.io.PrintWriter;
 import java.nio.ByteOrder;
@@ -96,6 +98,9 @@ public class JVM {
    * <2do> get rid of the 'lasts' in favor of queries on the insn, the executing
    * thread, and the VM. This is superfluous work to for every notification
    * (even if there are no listeners using it) that can easily lead to inconsistencies
+   *
+   * NOTE - the lasts are only set if there is a listener that implements the
+   * respective notification (see VMListenerSubscriptions)
    */
   protected Transition      lastTrailInfo;
   protected ClassInfo       lastClassInfo;
@@ -127,6 +132,12 @@ public class JVM {
    creating objects on each notification */
   protected VMListener[] listeners = new VMListener[0];
 
+  /** the listeners per notification, indexed by VMListenerSubscriptions event ids.
+   These only contain the listeners that really implement the respective
+   callback, so that notifications nobody is interested in (esp. the per
+   instruction ones) don't cost anything. Recomputed on add/removeListener */
+  protected VMListener[][] eventListeners = VMListenerSubscriptions.getEventListeners(listeners);
+
   /** did we get a new transition */
   protected boolean transitionOccurred;
 
@@ -137,6 +148,7 @@ public class JVM {
 
   // JVM options we use frequently
   protected boolean runGc;
+  protected boolean fusedGc;
   protected boolean treeOutput;
   protected boolean pathOutput;
   protected boolean indentOutput;
@@ -163,6 +175,7 @@ public class JVM {
     config = conf;
 
     runGc = config.getBoolean("vm.gc", true);
+    fusedGc = config.getBoolean("vm.gc.fused", false);
 
     treeOutput = config.getBoolean("vm.tree_output", true);
     // we have to defer setting pathOutput until we have a reporter registered
@@ -225,7 +238,10 @@ public class JVM {
    * called after the JPF run is finished. Shouldn't be public, but is called by JPF
    */
   public void cleanUp(){
-    // nothing yet
+    ClassPath cp = ClassInfo.getModelClassPath();
+    if (cp != null){
+      cp.storeCache(); // in case we have a ClassFileCache with new entries
+    }
   }
   
   protected boolean getPlatformEndianness (Config config){
@@ -603,6 +619,16 @@ public class JVM {
   public void addListener (VMListener newListener) {
     log.info("VMListener added: ", newListener);
     listeners = Misc.appendElement(listeners, newListener);
+    eventListeners = VMListenerSubscriptions.getEventListeners(listeners);
+  }
+
+  /**
+   * are there listeners that have to see each executed instruction? If not,
+   * ThreadInfo can execute straight-line code blocks without notifications
+   */
+  public boolean hasInstructionListeners () {
+    return (eventListeners[VMListenerSubscriptions.EXECUTE_INSTRUCTION].length > 0) ||
+           (eventListeners[VMListenerSubscriptions.INSTRUCTION_EXECUTED].length > 0);
   }
 
   public boolean hasListenerOfType (Class<?> listenerCls) {
@@ -615,6 +641,7 @@ public class JVM {
   
   public void removeListener (VMListener removeListener) {
     listeners = Misc.removeElement(listeners, removeListener);
+    eventListeners = VMListenerSubscriptions.getEventListeners(listeners);
   }
 
   public void setTraceReplay (boolean isReplay) {
@@ -651,13 +678,18 @@ public class JVM {
   }
 
   protected void notifyChoiceGeneratorRegistered (ChoiceGenerator<?>cg, ThreadInfo ti) {
+    VMListener[] ls = eventListeners[VMListenerSubscriptions.CG_REGISTERED];
+    if (ls.length == 0) {
+      return;
+    }
+
     try {
       lastThreadInfo = ti;
       lastInstruction = ti.getPC();
       lastChoiceGenerator = cg;
 
-      for (int i = 0; i < listeners.length; i++) {
-        listeners[i].choiceGeneratorRegistered(this);
+      for (int i = 0; i < ls.length; i++) {
+        ls[i].choiceGeneratorRegistered(this);
       }
       lastChoiceGenerator = null;
     } catch (UncaughtException x) {
@@ -670,10 +702,15 @@ public class JVM {
   }
 
   protected void notifyChoiceGeneratorSet (ChoiceGenerator<?>cg) {
+    VMListener[] ls = eventListeners[VMListenerSubscriptions.CG_SET];
+    if (ls.length == 0) {
+      return;
+    }
+
     try {
       lastChoiceGenerator = cg;
-      for (int i = 0; i < listeners.length; i++) {
-        listeners[i].choiceGeneratorSet(this);
+      for (int i = 0; i < ls.length; i++) {
+        ls[i].choiceGeneratorSet(this);
       }
       lastChoiceGenerator = null;
     } catch (UncaughtException x) {
@@ -686,11 +723,16 @@ public class JVM {
   }
 
   protected void notifyChoiceGeneratorAdvanced (ChoiceGenerator<?>cg) {
+    VMListener[] ls = eventListeners[VMListenerSubscriptions.CG_ADVANCED];
+    if (ls.length == 0) {
+      return;
+    }
+
     try {
       lastChoiceGenerator = cg;
 
-      for (int i = 0; i < listeners.length; i++) {
-        listeners[i].choiceGeneratorAdvanced(this);
+      for (int i = 0; i < ls.length; i++) {
+        ls[i].choiceGeneratorAdvanced(this);
       }
       lastChoiceGenerator = null;
     } catch (UncaughtException x) {
@@ -703,11 +745,16 @@ public class JVM {
   }
 
   protected void notifyChoiceGeneratorProcessed (ChoiceGenerator<?>cg) {
+    VMListener[] ls = eventListeners[VMListenerSubscriptions.CG_PROCESSED];
+    if (ls.length == 0) {
+      return;
+    }
+
     try {
       lastChoiceGenerator = cg;
 
-      for (int i = 0; i < listeners.length; i++) {
-        listeners[i].choiceGeneratorProcessed(this);
+      for (int i = 0; i < ls.length; i++) {
+        ls[i].choiceGeneratorProcessed(this);
       }
       lastChoiceGenerator = null;
     } catch (UncaughtException x) {
@@ -720,13 +767,18 @@ public class JVM {
   }
 
   protected void notifyExecuteInstruction (ThreadInfo ti, Instruction insn) {
+    VMListener[] ls = eventListeners[VMListenerSubscriptions.EXECUTE_INSTRUCTION];
+    if (ls.length == 0) {
+      return;
+    }
+
     try {
       lastThreadInfo = ti;
       nextInstruction = insn;
       lastInstruction = insn; // <2do> debatable - we need to revisit the whole last... business (see header)
 
-      for (int i = 0; i < listeners.length; i++) {
-        listeners[i].executeInstruction(this);
+      for (int i = 0; i < ls.length; i++) {
+        ls[i].executeInstruction(this);
       }
 
       //nextInstruction = null;
@@ -742,14 +794,19 @@ public class JVM {
   }
 
   protected void notifyInstructionExecuted (ThreadInfo ti, Instruction insn, Instruction nextInsn) {
+    VMListener[] ls = eventListeners[VMListenerSubscriptions.INSTRUCTION_EXECUTED];
+    if (ls.length == 0) {
+      return;
+    }
+
     try {
       lastThreadInfo = ti;
       lastInstruction = insn;
       nextInstruction = nextInsn;
 
       //listener.instructionExecuted(this);
-      for (int i = 0; i < listeners.length; i++) {
-        listeners[i].instructionExecuted(this);
+      for (int i = 0; i < ls.length; i++) {
+        ls[i].instructionExecuted(this);
       }
 
       //nextInstruction = null;
@@ -765,11 +822,16 @@ public class JVM {
   }
 
   protected void notifyThreadStarted (ThreadInfo ti) {
+    VMListener[] ls = eventListeners[VMListenerSubscriptions.THREAD_STARTED];
+    if (ls.length == 0) {
+      return;
+    }
+
     try {
       lastThreadInfo = ti;
 
-      for (int i = 0; i < listeners.length; i++) {
-        listeners[i].threadStarted(this);
+      for (int i = 0; i < ls.length; i++) {
+        ls[i].threadStarted(this);
       }
       //lastThreadInfo = null;
     } catch (UncaughtException x) {
@@ -784,12 +846,17 @@ public class JVM {
   // NOTE: the supplied ThreadInfo does NOT have to be the running thread, as this
   // notification can occur as a result of a lock operation in the current thread
   protected void notifyThreadBlocked (ThreadInfo ti) {
+    VMListener[] ls = eventListeners[VMListenerSubscriptions.THREAD_BLOCKED];
+    if (ls.length == 0) {
+      return;
+    }
+
     try {
       lastThreadInfo = ti;
       lastElementInfo = ti.getLockObject();
 
-      for (int i = 0; i < listeners.length; i++) {
-        listeners[i].threadBlocked(this);
+      for (int i = 0; i < ls.length; i++) {
+        ls[i].threadBlocked(this);
       }
       //lastThreadInfo = null;
     } catch (UncaughtException x) {
@@ -802,11 +869,16 @@ public class JVM {
   }
 
   protected void notifyThreadWaiting (ThreadInfo ti) {
+    VMListener[] ls = eventListeners[VMListenerSubscriptions.THREAD_WAITING];
+    if (ls.length == 0) {
+      return;
+    }
+
     try {
       lastThreadInfo = ti;
 
-      for (int i = 0; i < listeners.length; i++) {
-        listeners[i].threadWaiting(this);
+      for (int i = 0; i < ls.length; i++) {
+        ls[i].threadWaiting(this);
       }
       //lastThreadInfo = null;
     } catch (UncaughtException x) {
@@ -819,11 +891,16 @@ public class JVM {
   }
 
   protected void notifyThreadNotified (ThreadInfo ti) {
+    VMListener[] ls = eventListeners[VMListenerSubscriptions.THREAD_NOTIFIED];
+    if (ls.length == 0) {
+      return;
+    }
+
     try {
       lastThreadInfo = ti;
 
-      for (int i = 0; i < listeners.length; i++) {
-        listeners[i].threadNotified(this);
+      for (int i = 0; i < ls.length; i++) {
+        ls[i].threadNotified(this);
       }
       //lastThreadInfo = null;
     } catch (UncaughtException x) {
@@ -836,11 +913,16 @@ public class JVM {
   }
 
   protected void notifyThreadInterrupted (ThreadInfo ti) {
+    VMListener[] ls = eventListeners[VMListenerSubscriptions.THREAD_INTERRUPTED];
+    if (ls.length == 0) {
+      return;
+    }
+
     try {
       lastThreadInfo = ti;
 
-      for (int i = 0; i < listeners.length; i++) {
-        listeners[i].threadInterrupted(this);
+      for (int i = 0; i < ls.length; i++) {
+        ls[i].threadInterrupted(this);
       }
       //lastThreadInfo = null;
     } catch (UncaughtException x) {
@@ -853,11 +935,16 @@ public class JVM {
   }
 
   protected void notifyThreadTerminated (ThreadInfo ti) {
+    VMListener[] ls = eventListeners[VMListenerSubscriptions.THREAD_TERMINATED];
+    if (ls.length == 0) {
+      return;
+    }
+
     try {
       lastThreadInfo = ti;
 
-      for (int i = 0; i < listeners.length; i++) {
-        listeners[i].threadTerminated(this);
+      for (int i = 0; i < ls.length; i++) {
+        ls[i].threadTerminated(this);
       }
       //lastThreadInfo = null;
     } catch (UncaughtException x) {
@@ -870,11 +957,16 @@ public class JVM {
   }
 
   protected void notifyThreadScheduled (ThreadInfo ti) {
+    VMListener[] ls = eventListeners[VMListenerSubscriptions.THREAD_SCHEDULED];
+    if (ls.length == 0) {
+      return;
+    }
+
     try {
       lastThreadInfo = ti;
 
-      for (int i = 0; i < listeners.length; i++) {
-        listeners[i].threadScheduled(this);
+      for (int i = 0; i < ls.length; i++) {
+        ls[i].threadScheduled(this);
       }
       //lastThreadInfo = null;
     } catch (UncaughtException x) {
@@ -887,9 +979,14 @@ public class JVM {
   }
   
   protected void notifyLoadClass (ClassFile cf){
+    VMListener[] ls = eventListeners[VMListenerSubscriptions.LOAD_CLASS];
+    if (ls.length == 0) {
+      return;
+    }
+
     try {
-      for (int i = 0; i < listeners.length; i++) {
-        listeners[i].loadClass(this, cf);
+      for (int i = 0; i < ls.length; i++) {
+        ls[i].loadClass(this, cf);
       }
     } catch (UncaughtException x) {
       throw x;
@@ -901,11 +998,16 @@ public class JVM {
   }
 
   protected void notifyClassLoaded(ClassInfo ci) {
+    VMListener[] ls = eventListeners[VMListenerSubscriptions.CLASS_LOADED];
+    if (ls.length == 0) {
+      return;
+    }
+
     try {
       lastClassInfo = ci;
 
-      for (int i = 0; i < listeners.length; i++) {
-        listeners[i].classLoaded(this);
+      for (int i = 0; i < ls.length; i++) {
+        ls[i].classLoaded(this);
       }
       //lastClassInfo = null;
     } catch (UncaughtException x) {
@@ -918,12 +1020,17 @@ public class JVM {
   }
 
   protected void notifyObjectCreated(ThreadInfo ti, ElementInfo ei) {
+    VMListener[] ls = eventListeners[VMListenerSubscriptions.OBJECT_CREATED];
+    if (ls.length == 0) {
+      return;
+    }
+
     try {
       lastThreadInfo = ti;
       lastElementInfo = ei;
 
-      for (int i = 0; i < listeners.length; i++) {
-        listeners[i].objectCreated(this);
+      for (int i = 0; i < ls.length; i++) {
+        ls[i].objectCreated(this);
       }
 
       //lastElementInfo = null;
@@ -938,11 +1045,16 @@ public class JVM {
   }
 
   protected void notifyObjectReleased(ElementInfo ei) {
+    VMListener[] ls = eventListeners[VMListenerSubscriptions.OBJECT_RELEASED];
+    if (ls.length == 0) {
+      return;
+    }
+
     try {
       lastElementInfo = ei;
 
-      for (int i = 0; i < listeners.length; i++) {
-        listeners[i].objectReleased(this);
+      for (int i = 0; i < ls.length; i++) {
+        ls[i].objectReleased(this);
       }
       //lastElementInfo = null;
     } catch (UncaughtException x) {
@@ -955,12 +1067,17 @@ public class JVM {
   }
 
   protected void notifyObjectLocked(ThreadInfo ti, ElementInfo ei) {
+    VMListener[] ls = eventListeners[VMListenerSubscriptions.OBJECT_LOCKED];
+    if (ls.length == 0) {
+      return;
+    }
+
     try {
       lastThreadInfo = ti;
       lastElementInfo = ei;
 
-      for (int i = 0; i < listeners.length; i++) {
-        listeners[i].objectLocked(this);
+      for (int i = 0; i < ls.length; i++) {
+        ls[i].objectLocked(this);
       }
 
       //lastElementInfo = null;
@@ -975,12 +1092,17 @@ public class JVM {
   }
 
   protected void notifyObjectUnlocked(ThreadInfo ti, ElementInfo ei) {
+    VMListener[] ls = eventListeners[VMListenerSubscriptions.OBJECT_UNLOCKED];
+    if (ls.length == 0) {
+      return;
+    }
+
     try {
       lastThreadInfo = ti;
       lastElementInfo = ei;
 
-      for (int i = 0; i < listeners.length; i++) {
-        listeners[i].objectUnlocked(this);
+      for (int i = 0; i < ls.length; i++) {
+        ls[i].objectUnlocked(this);
       }
 
       //lastElementInfo = null;
@@ -995,12 +1117,17 @@ public class JVM {
   }
 
   protected void notifyObjectWait(ThreadInfo ti, ElementInfo ei) {
+    VMListener[] ls = eventListeners[VMListenerSubscriptions.OBJECT_WAIT];
+    if (ls.length == 0) {
+      return;
+    }
+
     try {
       lastThreadInfo = ti;
       lastElementInfo = ei;
 
-      for (int i = 0; i < listeners.length; i++) {
-        listeners[i].objectWait(this);
+      for (int i = 0; i < ls.length; i++) {
+        ls[i].objectWait(this);
       }
 
       //lastElementInfo = null;
@@ -1015,12 +1142,17 @@ public class JVM {
   }
 
   protected void notifyObjectNotifies(ThreadInfo ti, ElementInfo ei) {
+    VMListener[] ls = eventListeners[VMListenerSubscriptions.OBJECT_NOTIFY];
+    if (ls.length == 0) {
+      return;
+    }
+
     try {
       lastThreadInfo = ti;
       lastElementInfo = ei;
 
-      for (int i = 0; i < listeners.length; i++) {
-        listeners[i].objectNotify(this);
+      for (int i = 0; i < ls.length; i++) {
+        ls[i].objectNotify(this);
       }
 
       //lastElementInfo = null;
@@ -1035,12 +1167,17 @@ public class JVM {
   }
 
   protected void notifyObjectNotifiesAll(ThreadInfo ti, ElementInfo ei) {
+    VMListener[] ls = eventListeners[VMListenerSubscriptions.OBJECT_NOTIFY_ALL];
+    if (ls.length == 0) {
+      return;
+    }
+
     try {
       lastThreadInfo = ti;
       lastElementInfo = ei;
 
-      for (int i = 0; i < listeners.length; i++) {
-        listeners[i].objectNotifyAll(this);
+      for (int i = 0; i < ls.length; i++) {
+        ls[i].objectNotifyAll(this);
       }
 
       //lastElementInfo = null;
@@ -1055,9 +1192,14 @@ public class JVM {
   }
 
   protected void notifyGCBegin() {
+    VMListener[] ls = eventListeners[VMListenerSubscriptions.GC_BEGIN];
+    if (ls.length == 0) {
+      return;
+    }
+
     try {
-      for (int i = 0; i < listeners.length; i++) {
-        listeners[i].gcBegin(this);
+      for (int i = 0; i < ls.length; i++) {
+        ls[i].gcBegin(this);
       }
 
     } catch (UncaughtException x) {
@@ -1070,9 +1212,14 @@ public class JVM {
   }
 
   protected void notifyGCEnd() {
+    VMListener[] ls = eventListeners[VMListenerSubscriptions.GC_END];
+    if (ls.length == 0) {
+      return;
+    }
+
     try {
-      for (int i = 0; i < listeners.length; i++) {
-        listeners[i].gcEnd(this);
+      for (int i = 0; i < ls.length; i++) {
+        ls[i].gcEnd(this);
       }
     } catch (UncaughtException x) {
       throw x;
@@ -1084,12 +1231,17 @@ public class JVM {
   }
 
   protected void notifyExceptionThrown(ThreadInfo ti, ElementInfo ei) {
+    VMListener[] ls = eventListeners[VMListenerSubscriptions.EXCEPTION_THROWN];
+    if (ls.length == 0) {
+      return;
+    }
+
     try {
       lastThreadInfo = ti;
       lastElementInfo = ei;
 
-      for (int i = 0; i < listeners.length; i++) {
-        listeners[i].exceptionThrown(this);
+      for (int i = 0; i < ls.length; i++) {
+        ls[i].exceptionThrown(this);
       }
 
       lastElementInfo = null;
@@ -1104,10 +1256,15 @@ public class JVM {
   }
 
   protected void notifyExceptionBailout(ThreadInfo ti) {
+    VMListener[] ls = eventListeners[VMListenerSubscriptions.EXCEPTION_BAILOUT];
+    if (ls.length == 0) {
+      return;
+    }
+
     try {
       lastThreadInfo = ti;
-      for (int i = 0; i < listeners.length; i++) {
-        listeners[i].exceptionBailout(this);
+      for (int i = 0; i < ls.length; i++) {
+        ls[i].exceptionBailout(this);
       }
       lastThreadInfo = null;
     } catch (UncaughtException x) {
@@ -1120,10 +1277,15 @@ public class JVM {
   }
 
   protected void notifyExceptionHandled(ThreadInfo ti) {
+    VMListener[] ls = eventListeners[VMListenerSubscriptions.EXCEPTION_HANDLED];
+    if (ls.length == 0) {
+      return;
+    }
+
     try {
       lastThreadInfo = ti;
-      for (int i = 0; i < listeners.length; i++) {
-        listeners[i].exceptionHandled(this);
+      for (int i = 0; i < ls.length; i++) {
+        ls[i].exceptionHandled(this);
       }
       lastThreadInfo = null;
     } catch (UncaughtException x) {
@@ -1136,12 +1298,17 @@ public class JVM {
   }
 
   protected void notifyMethodEntered(ThreadInfo ti, MethodInfo mi) {
+    VMListener[] ls = eventListeners[VMListenerSubscriptions.METHOD_ENTERED];
+    if (ls.length == 0) {
+      return;
+    }
+
     try {
       lastThreadInfo = ti;
       lastMethodInfo = mi;
 
-      for (int i = 0; i < listeners.length; i++) {
-        listeners[i].methodEntered(this);
+      for (int i = 0; i < ls.length; i++) {
+        ls[i].methodEntered(this);
       }
       lastMethodInfo = null;
       lastThreadInfo = null;
@@ -1155,12 +1322,17 @@ public class JVM {
   }
 
   protected void notifyMethodExited(ThreadInfo ti, MethodInfo mi) {
+    VMListener[] ls = eventListeners[VMListenerSubscriptions.METHOD_EXITED];
+    if (ls.length == 0) {
+      return;
+    }
+
     try {
       lastThreadInfo = ti;
       lastMethodInfo = mi;
 
-      for (int i = 0; i < listeners.length; i++) {
-        listeners[i].methodExited(this);
+      for (int i = 0; i < ls.length; i++) {
+        ls[i].methodExited(this);
       }
       lastMethodInfo = null;
       lastThreadInfo = null;
@@ -1431,6 +1603,15 @@ public class JVM {
     return stateSet;
   }
 
+  /**
+   * replace the StateSet, or turn off state matching (and storage) altogether
+   * by setting it to null. This is for searches that don't match states
+   */
+  public void setStateSet (StateSet newStateSet) {
+    stateSet = newStateSet;
+    if (stateSet != null) stateSet.attach(this);
+  }
+
   /**
    * return the last registered SystemState's ChoiceGenerator object
    * NOTE: there might be more than one ChoiceGenerator associated with the
@@ -1706,7 +1887,10 @@ public class JVM {
   public boolean backtrack () {
     transitionOccurred = false;
 
+    long t = Profiler.ENABLED ? System.nanoTime() : 0;
     boolean success = backtracker.backtrack();
+    if (Profiler.ENABLED) Profiler.BACKTRACK.record(t);
+
     if (success) {
       if (CHECK_CONSISTENCY) checkConsistency(false);
       
@@ -1775,18 +1959,23 @@ public class JVM {
     // cannot be easily enforced.
 
     // actually, it hasn't occurred yet, but will
+    long t = Profiler.ENABLED ? System.nanoTime() : 0;
     transitionOccurred = ss.initializeNextTransition(this);
-    
+    if (Profiler.ENABLED) Profiler.CG_INIT.record(t);
+
     if (transitionOccurred){
       if (CHECK_CONSISTENCY) {
         checkConsistency(true); // don't push an inconsistent state
       }
 
+      if (Profiler.ENABLED) t = System.nanoTime();
       backtracker.pushKernelState();
+      if (Profiler.ENABLED) Profiler.STATE_PUSH.record(t);
 
       // cache this before we execute (and increment) the next insn(s)
       lastTrailInfo = path.getLast();
 
+      if (Profiler.ENABLED) t = System.nanoTime();
       try {
         ss.executeNextTransition(jvm);
 
@@ -1794,8 +1983,11 @@ public class JVM {
         // we don't pass this up since it means there were insns executed and we are
         // in a consistent state
       } // every other exception goes upwards
+      if (Profiler.ENABLED) Profiler.EXECUTE.record(t);
 
+      if (Profiler.ENABLED) t = System.nanoTime();
       backtracker.pushSystemState();
+      if (Profiler.ENABLED) Profiler.STATE_PUSH.record(t);
       updatePath();
 
       if (!isIgnoredState()) {
@@ -1803,15 +1995,35 @@ public class JVM {
         // matching states out of ignored transitions is also not a good idea
         // because this transition is usually incomplete
 
+        boolean isFusedGc = false;
+
         if (runGc && !hasPendingException()) {
-          ss.gcIfNeeded();
+          if (fusedGc && ss.isGCNeeded()){
+            // let the serializer collect the garbage during its heap traversal
+            isFusedGc = requestFusedGc();
+          }
+          if (!isFusedGc){
+            if (Profiler.ENABLED) t = System.nanoTime();
+            ss.gcIfNeeded();
+            if (Profiler.ENABLED) Profiler.GC.record(t);
+          }
         }
 
         if (stateSet != null) {
+          if (isFusedGc){
+            getKernelState().changed(); // make sure we don't get a cached serialization
+          }
+
           newStateId = stateSet.size();
+          if (Profiler.ENABLED) t = System.nanoTime();
           int id = stateSet.addCurrent();
+          if (Profiler.ENABLED) Profiler.STATE_MATCH.record(t);
           ss.setId(id);
 
+          if (isFusedGc){
+            ss.gcPerformed();
+          }
+
         } else { // this is 'state-less' model checking, i.e. we don't match states
           ss.setId(++newStateId); // but we still should have states numbered in case listeners use the id
         }
@@ -1825,6 +2037,18 @@ public class JVM {
     }
   }
 
+  /**
+   * check if the serializer can collect garbage while it computes the state
+   * that is added to the stateSet, and if so, request it
+   */
+  protected boolean requestFusedGc () {
+    if (stateSet instanceof SerializingStateSet && serializer instanceof FusedGcSerializer){
+      return ((FusedGcSerializer)serializer).requestGc();
+    }
+
+    return false;
+  }
+
   /**
    * Prints the current stack trace. Just for debugging purposes
    */
@@ -1841,8 +2065,10 @@ public class JVM {
     if (state.path == null) {
       throw new JPFException("tried to restore partial VMState: " + state);
     }
+    long t = Profiler.ENABLED ? System.nanoTime() : 0;
     backtracker.restoreState(state.getBkState());
     path = state.path.clone();
+    if (Profiler.ENABLED) Profiler.RESTORE.record(t);
   }
 
   public void activateGC () {
@@ -27,10 +27,14 @@ package gov.nasa.jpf.jvm;
 
 //import gov.nasa.jpf.util.LongVector;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
 /**
  * Implements StateSet based on Jenkins hashes.
  */
-public class JenkinsStateSet extends SerializingStateSet {
+public class JenkinsStateSet extends SerializingStateSet implements CheckpointableStateSet {
   static final double MAX_LOAD = 0.7;
   static final int INIT_SIZE = 65536;
 
@@ -57,6 +61,15 @@ public class JenkinsStateSet extends SerializingStateSet {
   public int size () {
     return lastStateId + 1;
   }
+
+  /**
+   * the fill ratio of the hash table. Note this might be called from
+   * monitoring threads while we rehash
+   */
+  public double getLoadFactor () {
+    int[] tbl = hashtable;
+    return (tbl != null) ? (double)size() / tbl.length : 0.0;
+  }
  
   public static long longLookup3Hash(int[] val) {
     // Jenkins' LOOKUP3 hash  (May 2006)
@@ -100,6 +113,10 @@ public class JenkinsStateSet extends SerializingStateSet {
   
   public int add (int[] val) {
     long hash = longLookup3Hash(val); // this is the expensive part
+    return addHash(hash);
+  }
+
+  protected int addHash (long hash) {
     int i;
     
     // hash table lookup & add; open-addressed, double hashing
@@ -163,6 +180,20 @@ public class JenkinsStateSet extends SerializingStateSet {
     return lastStateId;
   }
   
+  //--- CheckpointableStateSet interface
+
+  public void writeStates (DataOutputStream out, int fromId) throws IOException {
+    for (int i=fromId; i<=lastStateId; i++){
+      out.writeLong(fingerprints[i]);
+    }
+  }
+
+  public void readStates (DataInputStream in, int nStates) throws IOException {
+    for (int i=0; i<nStates; i++){
+      addHash(in.readLong());
+    }
+  }
+
   void growFingerprint (int minSize){
     // we don't try to be fancy here
     int newSize = fingerprints.length *2;
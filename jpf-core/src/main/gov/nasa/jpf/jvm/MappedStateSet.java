@@ -0,0 +1,253 @@
+//
+// Copyright (C) 2006 United States Government as represented by the
+// Administrator of the National Aeronautics and Space Administration
+// (NASA).  All Rights Reserved.
+//
+// This software is distributed under the NASA Open Source Agreement
+// (NOSA), version 1.3.  The NOSA has been approved by the Open Source
+// Initiative.  See the file NOSA-1.3-JPF at the top of the distribution
+// directory tree for the complete NOSA document.
+//
+// THE SUBJECT SOFTWARE IS PROVIDED "AS IS" WITHOUT ANY WARRANTY OF ANY
+// KIND, EITHER EXPRESSED, IMPLIED, OR STATUTORY, INCLUDING, BUT NOT
+// LIMITED TO, ANY WARRANTY THAT THE SUBJECT SOFTWARE WILL CONFORM TO
+// SPECIFICATIONS, ANY IMPLIED WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+// A PARTICULAR PURPOSE, OR FREEDOM FROM INFRINGEMENT, ANY WARRANTY THAT
+// THE SUBJECT SOFTWARE WILL BE ERROR FREE, OR ANY WARRANTY THAT
+// DOCUMENTATION, IF PROVIDED, WILL CONFORM TO THE SUBJECT SOFTWARE.
+//
+package gov.nasa.jpf.jvm;
+
+import gov.nasa.jpf.Config;
+import gov.nasa.jpf.JPFException;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * a JenkinsStateSet variant that keeps its fingerprints outside of the Java
+ * heap, either in direct buffers or in memory mapped files.
+ *
+ * The table is split into a (power of two) number of partitions, which are
+ * selected by the upper fingerprint bits. Each partition is an open addressed,
+ * double hashing table of (fingerprint,id) entries that grows independently,
+ * i.e. a rehash only has to touch 1/nPartitions of all states, and we don't need
+ * a separate id-indexed fingerprint array anymore.
+ *
+ * If 'vm.storage.dir' is set, partitions are mapped from (already unlinked)
+ * temp files in this directory, which lets the OS page out cold parts of the
+ * table to disk. Otherwise we use direct buffers, which only count against
+ * -XX:MaxDirectMemorySize, not -Xmx
+ *
+ * Config options:
+ *   vm.storage.partitions = <number of partitions, rounded up to power of 2> (default 256)
+ *   vm.storage.init_size  = <initial entries per partition> (default 4096)
+ *   vm.storage.dir        = <directory for mapped partition files> (default: none)
+ */
+public class MappedStateSet extends SerializingStateSet {
+
+  static final double MAX_LOAD = 0.7;
+
+  // each entry is a long fingerprint followed by an int (id + 1), 0 means empty
+  static final int ENTRY_SIZE = 12;
+  static final int ID_OFFSET = 8;
+
+  // we can't have more bytes in a single ByteBuffer
+  static final int MAX_CAPACITY = Integer.highestOneBit(Integer.MAX_VALUE / ENTRY_SIZE);
+
+  class Partition {
+    ByteBuffer table;
+    int capacity;  // always a power of 2
+    int count;
+    int nextRehash;
+
+    Partition (int capacity){
+      table = allocate(capacity);
+      this.capacity = capacity;
+      nextRehash = (int)(MAX_LOAD * capacity);
+    }
+
+    int add (long hash){
+      ByteBuffer tbl = table;
+      int mask = capacity - 1;
+      int idx = (int)hash & mask;
+      int delta = (int)(hash >>> 32) | 1; // must be odd!
+      int pos;
+
+      while (true){
+        pos = idx * ENTRY_SIZE;
+        int id = tbl.getInt(pos + ID_OFFSET);
+        if (id == 0){
+          break;
+        }
+        if (tbl.getLong(pos) == hash){
+          return id - 1; // in table, 1 higher
+        }
+        idx = (idx + delta) & mask;
+      }
+
+      //--- only reached if state is new
+
+      if (count >= nextRehash){
+        grow();
+        pos = findFreePos(table, capacity - 1, hash);
+      }
+
+      if (lastStateId == Integer.MAX_VALUE - 1){
+        throw new JPFException("state id space exhausted");
+      }
+
+      lastStateId++;
+      table.putLong(pos, hash);
+      table.putInt(pos + ID_OFFSET, lastStateId + 1);
+      count++;
+
+      return lastStateId;
+    }
+
+    void grow (){
+      if (capacity >= MAX_CAPACITY){
+        throw new JPFException("state storage partition exhausted, increase vm.storage.partitions");
+      }
+
+      int newCapacity = capacity << 1;
+      ByteBuffer newTable = allocate(newCapacity);
+      int newMask = newCapacity - 1;
+
+      ByteBuffer tbl = table;
+      int len = capacity * ENTRY_SIZE;
+      for (int pos = 0; pos < len; pos += ENTRY_SIZE){
+        int id = tbl.getInt(pos + ID_OFFSET);
+        if (id != 0){
+          long h = tbl.getLong(pos);
+          int newPos = findFreePos(newTable, newMask, h);
+          newTable.putLong(newPos, h);
+          newTable.putInt(newPos + ID_OFFSET, id);
+        }
+      }
+
+      // the old buffer (and its mapping) goes away once it is collected
+      table = newTable;
+      capacity = newCapacity;
+      nextRehash = (int)(MAX_LOAD * newCapacity);
+    }
+  }
+
+  static int findFreePos (ByteBuffer tbl, int mask, long hash){
+    int idx = (int)hash & mask;
+    int delta = (int)(hash >>> 32) | 1;
+    int pos = idx * ENTRY_SIZE;
+
+    while (tbl.getInt(pos + ID_OFFSET) != 0){ // we know enough slots exist
+      idx = (idx + delta) & mask;
+      pos = idx * ENTRY_SIZE;
+    }
+    return pos;
+  }
+
+
+  int lastStateId = -1;
+
+  Partition[] partitions;
+  int partitionShift;
+  int partitionMask;
+
+  File dir;  // if set, we use memory mapped files in this dir
+
+  public MappedStateSet (Config conf){
+    this( conf.getInt("vm.storage.partitions", 256),
+          conf.getInt("vm.storage.init_size", 4096),
+          getStorageDir(conf));
+  }
+
+  public MappedStateSet (int nPartitions, int initSize, File dir){
+    this.dir = dir;
+
+    int n = (nPartitions <= 1) ? 1 : Integer.highestOneBit(nPartitions - 1) << 1;
+    int bits = Integer.numberOfTrailingZeros(n);
+    partitionShift = 64 - bits;  // 64 is a shift by 0, which is masked out
+    partitionMask = n - 1;
+
+    int cap = (initSize <= 16) ? 16 : Integer.highestOneBit(initSize - 1) << 1;
+    if (cap > MAX_CAPACITY){
+      cap = MAX_CAPACITY;
+    }
+
+    partitions = new Partition[n];
+    for (int i=0; i<n; i++){
+      partitions[i] = new Partition(cap);
+    }
+  }
+
+  static File getStorageDir (Config conf){
+    String dirName = conf.getString("vm.storage.dir");
+    if (dirName != null){
+      File d = new File(dirName);
+      if (!d.isDirectory() && !d.mkdirs()){
+        throw new JPFException("cannot create state storage directory: " + dirName);
+      }
+      return d;
+    }
+    return null;
+  }
+
+  ByteBuffer allocate (int nEntries){
+    int nBytes = nEntries * ENTRY_SIZE;
+
+    if (dir == null){
+      return ByteBuffer.allocateDirect(nBytes).order(ByteOrder.nativeOrder());
+
+    } else {
+      try {
+        File f = File.createTempFile("jpf-states", ".bin", dir);
+        RandomAccessFile raf = new RandomAccessFile(f, "rw");
+        try {
+          raf.setLength(nBytes); // new file contents are zero
+          ByteBuffer buf = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, nBytes);
+          return buf.order(ByteOrder.nativeOrder());
+
+        } finally {
+          raf.close(); // the mapping stays valid
+          if (!f.delete()){ // not all platforms allow this while mapped
+            f.deleteOnExit();
+          }
+        }
+      } catch (IOException iox){
+        throw new JPFException("cannot map state storage file in " + dir + ": " + iox);
+      }
+    }
+  }
+
+  public int size () {
+    return lastStateId + 1;
+  }
+
+  /**
+   * total number of entry slots over all partitions
+   */
+  public long getCapacity (){
+    long n = 0;
+    for (Partition p : partitions){
+      n += p.capacity;
+    }
+    return n;
+  }
+
+  /**
+   * the fill ratio over all partitions. Note this might be called from
+   * monitoring threads while a partition grows
+   */
+  public double getLoadFactor () {
+    long cap = getCapacity();
+    return (cap > 0) ? (double)size() / cap : 0.0;
+  }
+
+  protected int add (int[] val){
+    long hash = JenkinsStateSet.longLookup3Hash(val);
+    return partitions[(int)(hash >>> partitionShift) & partitionMask].add(hash);
+  }
+}
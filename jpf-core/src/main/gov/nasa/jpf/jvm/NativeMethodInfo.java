@@ -48,6 +48,8 @@ public class NativeMethodInfo extends MethodInfo {
   Method mth; // the native method to execute in lieu
   NativePeer peer;
 
+  NativeStub stub; // if set, we use this instead of reflection
+
   public NativeMethodInfo (MethodInfo mi, Method mth, NativePeer peer){
     super(mi.globalId);
 
@@ -70,6 +72,10 @@ public class NativeMethodInfo extends MethodInfo {
     this.peer = peer;
     this.mth = mth;
 
+    if (mth != null && NativePeer.useStubs){
+      stub = NativeStubGenerator.getStub(this, mth);
+    }
+
     CodeBuilder cb = createCodeBuilder();
  
     cb.executenative(this);
@@ -107,6 +113,10 @@ public class NativeMethodInfo extends MethodInfo {
     return mth;
   }
 
+  public NativeStub getStub() {
+    return stub;
+  }
+
   @Override
   public String getStackTraceSource() {
     if (peer != null){
@@ -124,8 +134,13 @@ public class NativeMethodInfo extends MethodInfo {
   @Override
   protected StackFrame createStackFrame (ThreadInfo ti){
     StackFrame caller = ti.getTopFrame();
-    Object[] args = getArguments(ti);
-    return new NativeStackFrame(this, caller, args);
+
+    if (stub != null){
+      return new NativeStackFrame(this, caller); // stubs get the args from the caller
+    } else {
+      Object[] args = getArguments(ti);
+      return new NativeStackFrame(this, caller, args);
+    }
   }
 
   public Instruction executeNative (ThreadInfo ti) {
@@ -141,6 +156,10 @@ public class NativeMethodInfo extends MethodInfo {
                                         "cannot find native " + ci.getName() + '.' + getName());
     }
 
+    if (stub != null) {
+      return executeStub(ti, env, nativeFrame);
+    }
+
     try {
       args = nativeFrame.getArguments();
 
@@ -201,12 +220,66 @@ public class NativeMethodInfo extends MethodInfo {
     }
   }
 
+  /**
+   * the stub version of executeNative(), which doesn't need to box arguments
+   * and return values. The return value is already stored in the nativeFrame
+   * when the stub returns
+   */
+  protected Instruction executeStub (ThreadInfo ti, MJIEnv env, NativeStackFrame nativeFrame) {
+    int objRef = isStatic() ? ci.getClassObjectRef() : nativeFrame.getThis();
+
+    try {
+      stub.call(env, objRef, nativeFrame.getPrevious(), nativeFrame);
+
+    } catch (UncaughtException ux) {
+      throw ux;
+    } catch (Throwable t) {
+      // same as for reflection calls, we don't hand them back to the application
+      throw new JPFNativePeerException("exception in native method "
+          + ci.getName() + '.' + getName(), t);
+    }
+
+    if (env.hasException()) {
+      return ti.throwException( env.popException());
+    }
+
+    StackFrame top = ti.getTopFrame();
+    if (top == nativeFrame){ // no roundtrips, straight return
+      if (env.isInvocationRepeated()){
+        return nativeFrame.getPC();
+
+      } else {
+        nativeFrame.setReturnAttr(env.getReturnAttribute());
+        return nativeFrame.getPC().getNext(); // that should be the NATIVERETURN
+      }
+
+    } else {
+      // direct calls from within the native method, the invoke gets reexecuted
+      return top.getPC();
+    }
+  }
+
   /**
    * Get and convert the native method parameters off the ThreadInfo stack.
    * Use the MethodInfo parameter type info for this (not the reflect.Method
    * type array), or otherwise we won't have any type check
    */
   protected Object[] getArguments (ThreadInfo ti) {
+    int objRef;
+    if (isStatic()) {
+      objRef = ci.getClassObjectRef();
+    } else {
+      objRef = ti.getCalleeThis(this);
+    }
+
+    return getArguments(ti.getMJIEnv(), ti.getTopFrame(), objRef);
+  }
+
+  /**
+   * the version that can be used once the NativeStackFrame is pushed, i.e.
+   * the caller is not the top frame anymore
+   */
+  protected Object[] getArguments (MJIEnv env, StackFrame caller, int objRef) {
     // these are just local refs to speed up
     int      nArgs = getNumberOfArguments();
     byte[]   argTypes = getArgumentTypes();
@@ -218,7 +291,6 @@ public class NativeMethodInfo extends MethodInfo {
     int      i, j, k;
     int      ival;
     long     lval;
-    StackFrame caller = ti.getTopFrame();
 
 
     for (i = 0, stackOffset = 0, j = nArgs + 1, k = nArgs - 1;
@@ -286,13 +358,8 @@ public class NativeMethodInfo extends MethodInfo {
     }
 
     //--- set  our standard MJI header arguments
-    if (isStatic()) {
-      a[1] = new Integer(ci.getClassObjectRef());
-    } else {
-      a[1] = new Integer(ti.getCalleeThis(this));
-    }
-
-    a[0] = ti.getMJIEnv();
+    a[1] = new Integer(objRef);
+    a[0] = env;
 
     return a;
   }
@@ -49,6 +49,9 @@ public class NativePeer {
   static Config config;
   static boolean noOrphanMethods;
 
+  // do we call peer methods through generated NativeStubs instead of reflection
+  static boolean useStubs;
+
   static String[] peerPackages;
 
   ClassInfo ci;
@@ -64,6 +67,7 @@ public class NativePeer {
 
     config = conf;
     noOrphanMethods = conf.getBoolean("vm.no_orphan_methods", false);
+    useStubs = conf.getBoolean("vm.peer_stubs", false);
 
     return true;
   }
@@ -46,7 +46,13 @@ public class NativeStackFrame extends StackFrame {
   Object ret;
   Object retAttr;
 
-  // our argument registers
+  // unboxed return value that was set by a NativeStub
+  long rawRet;
+  boolean hasRawRet;
+
+  // our argument registers. This is null if the method is called through a
+  // NativeStub, which reads the arguments directly from the caller's operand
+  // stack. They are computed on demand in this case
   Object[] args;
 
   public NativeStackFrame (NativeMethodInfo mi, StackFrame caller, Object[] argValues){
@@ -59,6 +65,13 @@ public class NativeStackFrame extends StackFrame {
     args = argValues;
   }
 
+  /**
+   * constructor for methods that are called through NativeStubs
+   */
+  public NativeStackFrame (NativeMethodInfo mi, StackFrame caller){
+    this(mi, caller, null);
+  }
+
   public StackFrame clone () {
     NativeStackFrame sf = (NativeStackFrame) super.clone();
 
@@ -97,15 +110,76 @@ public class NativeStackFrame extends StackFrame {
 
   public void setReturnValue(Object r){
     ret = r;
+    hasRawRet = false;
+  }
+
+  /**
+   * set the return value without boxing, this is used by NativeStubs for
+   * boolean, byte, char, short, int, float (bits) and reference values
+   */
+  public void setRawReturnValue (int v){
+    rawRet = v;
+    hasRawRet = true;
+    ret = null;
+  }
+
+  /**
+   * set the return value without boxing, this is used by NativeStubs for
+   * long and double (bits) values
+   */
+  public void setRawReturnValue (long v){
+    rawRet = v;
+    hasRawRet = true;
+    ret = null;
+  }
+
+  public boolean hasRawReturnValue() {
+    return hasRawRet;
+  }
+
+  public long getRawReturnValue() {
+    return rawRet;
   }
 
   public void clearReturnValue() {
     ret = null;
     retAttr = null;
+    hasRawRet = false;
   }
 
   public Object getReturnValue() {
-    return ret;
+    if (hasRawRet){
+      return getBoxedReturnValue(mi.getReturnTypeCode(), rawRet);
+    } else {
+      return ret;
+    }
+  }
+
+  /**
+   * turn a raw return value into the object that would have been returned by
+   * a reflection call of the peer method
+   */
+  public static Object getBoxedReturnValue (byte retType, long raw){
+    switch (retType){
+    case Types.T_BOOLEAN:
+      return Boolean.valueOf(raw != 0);
+    case Types.T_BYTE:
+      return Byte.valueOf((byte)raw);
+    case Types.T_CHAR:
+      return Character.valueOf((char)raw);
+    case Types.T_SHORT:
+      return Short.valueOf((short)raw);
+    case Types.T_LONG:
+      return Long.valueOf(raw);
+    case Types.T_FLOAT:
+      return Float.valueOf(Types.intToFloat((int)raw));
+    case Types.T_DOUBLE:
+      return Double.valueOf(Types.longToDouble(raw));
+    case Types.T_VOID:
+      return null;
+    default: // int and references
+      return Integer.valueOf((int)raw);
+    }
   }
 
   public Object getReturnAttr() {
@@ -113,6 +187,14 @@ public class NativeStackFrame extends StackFrame {
   }
 
   public Object[] getArguments() {
+    if (args == null && prev != null){
+      // we were called through a NativeStub, the arguments are still on the caller's stack
+      NativeMethodInfo nmi = (NativeMethodInfo)mi;
+      ThreadInfo ti = ThreadInfo.getCurrentThread();
+      MJIEnv env = (ti != null) ? ti.getMJIEnv() : null;
+      int objRef = mi.isStatic() ? mi.getClassInfo().getClassObjectRef() : thisRef;
+      args = nmi.getArguments(env, prev, objRef);
+    }
     return args;
   }
 
@@ -123,7 +205,10 @@ public class NativeStackFrame extends StackFrame {
     // a previous transition
 
     if (pc instanceof NATIVERETURN){
-      if (ret != null && ret instanceof Integer && mi.isReferenceReturnType()) {
+      if (hasRawRet && mi.isReferenceReturnType()) {
+        heap.markThreadRoot((int)rawRet, tid);
+
+      } else if (ret != null && ret instanceof Integer && mi.isReferenceReturnType()) {
         int ref = ((Integer) ret).intValue();
         heap.markThreadRoot(ref, tid);
       }
@@ -136,12 +221,18 @@ public class NativeStackFrame extends StackFrame {
     if (ret != null){
       hd.add(ret);
     }
+    if (hasRawRet){
+      hd.add(rawRet);
+    }
     if (retAttr != null){
       hd.add(retAttr);
     }
 
-    for (Object a : args){
-      hd.add(a);
+    // stub called frames don't have args, but they are on the caller's stack anyways
+    if (args != null){
+      for (Object a : args){
+        hd.add(a);
+      }
     }
   }
 
@@ -159,16 +250,21 @@ public class NativeStackFrame extends StackFrame {
     if (ret != o.ret){
       return false;
     }
-    if (retAttr != o.retAttr){
+    if (hasRawRet != o.hasRawRet || rawRet != o.rawRet){
       return false;
     }
-
-    if (args.length != o.args.length){
+    if (retAttr != o.retAttr){
       return false;
     }
 
-    if (!Misc.compare(args.length, args, o.args)){
-      return false;
+    if (args != null && o.args != null){
+      if (args.length != o.args.length){
+        return false;
+      }
+
+      if (!Misc.compare(args.length, args, o.args)){
+        return false;
+      }
     }
 
     return true;
@@ -181,7 +277,7 @@ public class NativeStackFrame extends StackFrame {
     pw.print("NativeStackFrame@");
     pw.print(Integer.toHexString(objectHashCode()));
     pw.print("{ret=");
-    pw.print(ret);
+    pw.print(getReturnValue());
     if (retAttr != null){
       pw.print('(');
       pw.print(retAttr);
@@ -0,0 +1,37 @@
+//
+// Copyright (C) 2011 United States Government as represented by the
+// Administrator of the National Aeronautics and Space Administration
+// (NASA).  All Rights Reserved.
+//
+// This software is distributed under the NASA Open Source Agreement
+// (NOSA), version 1.3.  The NOSA has been approved by the Open Source
+// Initiative.  See the file NOSA-1.3-JPF at the top of the distribution
+// directory tree for the complete NOSA document.
+//
+// THE SUBJECT SOFTWARE IS PROVIDED "AS IS" WITHOUT ANY WARRANTY OF ANY
+// KIND, EITHER EXPRESSED, IMPLIED, OR STATUTORY, INCLUDING, BUT NOT
+// LIMITED TO, ANY WARRANTY THAT THE SUBJECT SOFTWARE WILL CONFORM TO
+// SPECIFICATIONS, ANY IMPLIED WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+// A PARTICULAR PURPOSE, OR FREEDOM FROM INFRINGEMENT, ANY WARRANTY THAT
+// THE SUBJECT SOFTWARE WILL BE ERROR FREE, OR ANY WARRANTY THAT
+// DOCUMENTATION, IF PROVIDED, WILL CONFORM TO THE SUBJECT SOFTWARE.
+//
+package gov.nasa.jpf.jvm;
+
+/**
+ * base for generated native peer call stubs, which call a peer method
+ * directly instead of going through Method.invoke(). Stubs read the
+ * arguments from the operand stack of the caller and store the return value
+ * as a raw int/long in the NativeStackFrame, so that neither the arguments
+ * nor the return value have to be boxed.
+ *
+ * Concrete stubs are created by NativeStubGenerator
+ */
+public abstract class NativeStub {
+
+  /**
+   * call the peer method with the arguments that are on the operand stack of
+   * the caller, and store the return value (if any) in the frame
+   */
+  public abstract void call (MJIEnv env, int objRef, StackFrame caller, NativeStackFrame frame);
+}
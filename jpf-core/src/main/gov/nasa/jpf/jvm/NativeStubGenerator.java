@@ -0,0 +1,399 @@
+//
+// Copyright (C) 2011 United States Government as represented by the
+// Administrator of the National Aeronautics and Space Administration
+// (NASA).  All Rights Reserved.
+//
+// This software is distributed under the NASA Open Source Agreement
+// (NOSA), version 1.3.  The NOSA has been approved by the Open Source
+// Initiative.  See the file NOSA-1.3-JPF at the top of the distribution
+// directory tree for the complete NOSA document.
+//
+// THE SUBJECT SOFTWARE IS PROVIDED "AS IS" WITHOUT ANY WARRANTY OF ANY
+// KIND, EITHER EXPRESSED, IMPLIED, OR STATUTORY, INCLUDING, BUT NOT
+// LIMITED TO, ANY WARRANTY THAT THE SUBJECT SOFTWARE WILL CONFORM TO
+// SPECIFICATIONS, ANY IMPLIED WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+// A PARTICULAR PURPOSE, OR FREEDOM FROM INFRINGEMENT, ANY WARRANTY THAT
+// THE SUBJECT SOFTWARE WILL BE ERROR FREE, OR ANY WARRANTY THAT
+// DOCUMENTATION, IF PROVIDED, WILL CONFORM TO THE SUBJECT SOFTWARE.
+//
+package gov.nasa.jpf.jvm;
+
+import gov.nasa.jpf.JPF;
+import gov.nasa.jpf.util.JPFLogger;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.HashMap;
+
+/**
+ * generates NativeStub classes for native peer methods.
+ *
+ * For a peer method 'static R m (MJIEnv env, int objRef, A0 a0, .. An an)'
+ * we create a class that is equivalent to
+ *
+ *   public final class NativeStub$<n> extends NativeStub {
+ *     public void call (MJIEnv env, int objRef, StackFrame caller, NativeStackFrame frame){
+ *       frame.setRawReturnValue( Peer.m( env, objRef, (A0)caller.peek(<offset0>), ..));
+ *     }
+ *   }
+ *
+ * i.e. the argument stack offsets and conversions (float bits, narrowing etc.)
+ * are resolved at generation time. Stubs are defined in a ClassLoader that
+ * delegates to the one of the peer class, and are shared between all JPF
+ * runs of this process.
+ *
+ * We only generate stubs for public peer classes, and if the argument and
+ * return value slot sizes of the model method and the peer method match.
+ * getStub() returns null otherwise, in which case the NativeMethodInfo has to
+ * use reflection
+ */
+class NativeStubGenerator {
+
+  static JPFLogger logger = JPF.getLogger("gov.nasa.jpf.jvm.NativePeer");
+
+  static final String STUB_BASE = "gov/nasa/jpf/jvm/NativeStub";
+  static final String STUB_PREFIX = "gov.nasa.jpf.jvm.NativeStub$";
+
+  static final String CALL_DESC = "(Lgov/nasa/jpf/jvm/MJIEnv;ILgov/nasa/jpf/jvm/StackFrame;Lgov/nasa/jpf/jvm/NativeStackFrame;)V";
+
+  // the few bytecodes we need
+  static final int ALOAD_0 = 0x2a;
+  static final int ALOAD_1 = 0x2b;
+  static final int ILOAD_2 = 0x1c;
+  static final int ALOAD_3 = 0x2d;
+  static final int ALOAD = 0x19;
+  static final int SIPUSH = 0x11;
+  static final int I2B = 0x91;
+  static final int I2C = 0x92;
+  static final int I2S = 0x93;
+  static final int RETURN = 0xb1;
+  static final int INVOKEVIRTUAL = 0xb6;
+  static final int INVOKESPECIAL = 0xb7;
+  static final int INVOKESTATIC = 0xb8;
+
+  static class StubLoader extends ClassLoader {
+    StubLoader (ClassLoader parent){
+      super(parent);
+    }
+
+    Class<?> defineStub (String clsName, byte[] data){
+      return defineClass(clsName, data, 0, data.length);
+    }
+  }
+
+  static HashMap<Method,NativeStub> stubs = new HashMap<Method,NativeStub>();
+  static HashMap<ClassLoader,StubLoader> loaders = new HashMap<ClassLoader,StubLoader>();
+  static int nStubs;
+
+  /**
+   * the constpool of the class we generate. Entries are written in the order
+   * in which they are requested, i.e. dependencies come first
+   */
+  static class ConstPool {
+    ByteArrayOutputStream buf = new ByteArrayOutputStream(512);
+    DataOutputStream out = new DataOutputStream(buf);
+    HashMap<String,Integer> entries = new HashMap<String,Integer>();
+    int count = 1;
+
+    int get (String key){
+      Integer idx = entries.get(key);
+      if (idx != null){
+        return idx.intValue();
+      } else {
+        return -1;
+      }
+    }
+
+    int newEntry (String key){
+      entries.put(key, count);
+      return count++;
+    }
+
+    int utf8 (String s) throws IOException {
+      int idx = get("U" + s);
+      if (idx < 0){
+        idx = newEntry("U" + s);
+        out.writeByte(1);
+        out.writeUTF(s);
+      }
+      return idx;
+    }
+
+    int cls (String name) throws IOException {
+      int idx = get("C" + name);
+      if (idx < 0){
+        int nameIdx = utf8(name);
+        idx = newEntry("C" + name);
+        out.writeByte(7);
+        out.writeShort(nameIdx);
+      }
+      return idx;
+    }
+
+    int methodRef (String clsName, String name, String desc) throws IOException {
+      String key = "M" + clsName + '.' + name + desc;
+      int idx = get(key);
+      if (idx < 0){
+        int clsIdx = cls(clsName);
+        int nameIdx = utf8(name);
+        int descIdx = utf8(desc);
+        int natIdx = get("N" + name + desc);
+        if (natIdx < 0){
+          natIdx = newEntry("N" + name + desc);
+          out.writeByte(12);
+          out.writeShort(nameIdx);
+          out.writeShort(descIdx);
+        }
+
+        idx = newEntry(key);
+        out.writeByte(10);
+        out.writeShort(clsIdx);
+        out.writeShort(natIdx);
+      }
+      return idx;
+    }
+  }
+
+  static int getSize (Class<?> t){
+    return (t == long.class || t == double.class) ? 2 : 1;
+  }
+
+  static int getSize (byte typeCode){
+    return (typeCode == Types.T_LONG || typeCode == Types.T_DOUBLE) ? 2 : 1;
+  }
+
+  static String getDescriptor (Class<?> t){
+    if (t == void.class) return "V";
+    if (t == boolean.class) return "Z";
+    if (t == byte.class) return "B";
+    if (t == char.class) return "C";
+    if (t == short.class) return "S";
+    if (t == int.class) return "I";
+    if (t == long.class) return "J";
+    if (t == float.class) return "F";
+    if (t == double.class) return "D";
+    if (t.isArray()) return t.getName().replace('.', '/');
+    return 'L' + t.getName().replace('.', '/') + ';';
+  }
+
+  static String getDescriptor (Method mth){
+    StringBuilder sb = new StringBuilder();
+    sb.append('(');
+    for (Class<?> t : mth.getParameterTypes()){
+      sb.append(getDescriptor(t));
+    }
+    sb.append(')');
+    sb.append(getDescriptor(mth.getReturnType()));
+    return sb.toString();
+  }
+
+  /**
+   * can we call mth with the operand stack layout of mi, and push its
+   * return value according to the mi return type
+   */
+  static boolean isCompatible (MethodInfo mi, Method mth){
+    Class<?> peerCls = mth.getDeclaringClass();
+    if (!Modifier.isPublic(peerCls.getModifiers()) || !Modifier.isPublic(mth.getModifiers())
+            || !Modifier.isStatic(mth.getModifiers())){
+      return false;
+    }
+
+    Class<?>[] pTypes = mth.getParameterTypes();
+    byte[] argTypes = mi.getArgumentTypes();
+    if (pTypes.length != argTypes.length + 2){
+      return false;
+    }
+
+    for (int i=0; i<argTypes.length; i++){
+      Class<?> t = pTypes[i+2];
+      if (!t.isPrimitive() || getSize(t) != getSize(argTypes[i])){
+        return false;
+      }
+    }
+
+    Class<?> rt = mth.getReturnType();
+    byte retType = mi.getReturnTypeCode();
+    if (retType == Types.T_VOID){
+      return rt == void.class;
+    } else {
+      return (rt != void.class) && rt.isPrimitive() && (getSize(rt) == getSize(retType));
+    }
+  }
+
+  /**
+   * return the shared stub for this peer method, or null if we can't create one
+   */
+  static synchronized NativeStub getStub (MethodInfo mi, Method mth){
+    if (!isCompatible(mi, mth)){
+      logger.fine("no stub for incompatible peer method: ", mth);
+      return null;
+    }
+
+    NativeStub stub = stubs.get(mth);
+    if (stub == null){
+      try {
+        ClassLoader peerLoader = mth.getDeclaringClass().getClassLoader();
+        StubLoader loader = loaders.get(peerLoader);
+        if (loader == null){
+          loader = new StubLoader(peerLoader);
+          loaders.put(peerLoader, loader);
+        }
+
+        String clsName = STUB_PREFIX + nStubs++;
+        byte[] data = createStubClass(clsName.replace('.', '/'), mth);
+        Class<?> stubCls = loader.defineStub(clsName, data);
+        stub = (NativeStub) stubCls.newInstance();
+
+        stubs.put(mth, stub);
+
+      } catch (Throwable t){ // we just fall back to reflection
+        logger.warning("failed to create stub for ", mth, ": ", t);
+        return null;
+      }
+    }
+
+    return stub;
+  }
+
+  static byte[] createStubClass (String clsName, Method mth) throws IOException {
+    ConstPool cp = new ConstPool();
+
+    int thisIdx = cp.cls(clsName);
+    int superIdx = cp.cls(STUB_BASE);
+    int codeIdx = cp.utf8("Code");
+    int initIdx = cp.utf8("<init>");
+    int initDescIdx = cp.utf8("()V");
+    int callIdx = cp.utf8("call");
+    int callDescIdx = cp.utf8(CALL_DESC);
+
+    //--- <init>
+    ByteArrayOutputStream initBuf = new ByteArrayOutputStream();
+    DataOutputStream init = new DataOutputStream(initBuf);
+    init.writeByte(ALOAD_0);
+    init.writeByte(INVOKESPECIAL);
+    init.writeShort(cp.methodRef(STUB_BASE, "<init>", "()V"));
+    init.writeByte(RETURN);
+
+    //--- call
+    ByteArrayOutputStream callBuf = new ByteArrayOutputStream();
+    DataOutputStream call = new DataOutputStream(callBuf);
+
+    Class<?>[] pTypes = mth.getParameterTypes();
+    Class<?> rt = mth.getReturnType();
+    boolean isVoid = (rt == void.class);
+
+    int argSlots = 0;
+    for (int i=2; i<pTypes.length; i++){
+      argSlots += getSize(pTypes[i]);
+    }
+
+    if (!isVoid){
+      call.writeByte(ALOAD); // the NativeStackFrame
+      call.writeByte(4);
+    }
+    call.writeByte(ALOAD_1); // env
+    call.writeByte(ILOAD_2); // objRef
+
+    int offset = argSlots;
+    for (int i=2; i<pTypes.length; i++){
+      Class<?> t = pTypes[i];
+      offset -= getSize(t);
+
+      call.writeByte(ALOAD_3); // caller
+      call.writeByte(SIPUSH);
+      call.writeShort(offset);
+
+      if (getSize(t) == 2){
+        call.writeByte(INVOKEVIRTUAL);
+        call.writeShort(cp.methodRef("gov/nasa/jpf/jvm/StackFrame", "longPeek", "(I)J"));
+        if (t == double.class){
+          call.writeByte(INVOKESTATIC);
+          call.writeShort(cp.methodRef("java/lang/Double", "longBitsToDouble", "(J)D"));
+        }
+
+      } else {
+        call.writeByte(INVOKEVIRTUAL);
+        call.writeShort(cp.methodRef("gov/nasa/jpf/jvm/StackFrame", "peek", "(I)I"));
+        if (t == boolean.class){
+          call.writeByte(INVOKESTATIC);
+          call.writeShort(cp.methodRef("gov/nasa/jpf/jvm/Types", "intToBoolean", "(I)Z"));
+        } else if (t == byte.class){
+          call.writeByte(I2B);
+        } else if (t == char.class){
+          call.writeByte(I2C);
+        } else if (t == short.class){
+          call.writeByte(I2S);
+        } else if (t == float.class){
+          call.writeByte(INVOKESTATIC);
+          call.writeShort(cp.methodRef("java/lang/Float", "intBitsToFloat", "(I)F"));
+        }
+      }
+    }
+
+    call.writeByte(INVOKESTATIC);
+    call.writeShort(cp.methodRef(mth.getDeclaringClass().getName().replace('.', '/'),
+                                 mth.getName(), getDescriptor(mth)));
+
+    if (!isVoid){
+      if (rt == float.class){
+        call.writeByte(INVOKESTATIC);
+        call.writeShort(cp.methodRef("java/lang/Float", "floatToIntBits", "(F)I"));
+      } else if (rt == double.class){
+        call.writeByte(INVOKESTATIC);
+        call.writeShort(cp.methodRef("java/lang/Double", "doubleToLongBits", "(D)J"));
+      }
+
+      call.writeByte(INVOKEVIRTUAL);
+      call.writeShort(cp.methodRef("gov/nasa/jpf/jvm/NativeStackFrame", "setRawReturnValue",
+                                   (getSize(rt) == 2) ? "(J)V" : "(I)V"));
+    }
+    call.writeByte(RETURN);
+
+    //--- the class
+    ByteArrayOutputStream clsBuf = new ByteArrayOutputStream(1024);
+    DataOutputStream out = new DataOutputStream(clsBuf);
+
+    out.writeInt(0xcafebabe);
+    out.writeShort(0);
+    out.writeShort(49); // no StackMapTables required (we don't branch anyways)
+
+    out.writeShort(cp.count);
+    cp.out.flush();
+    cp.buf.writeTo(out);
+
+    out.writeShort(Modifier.PUBLIC | Modifier.FINAL | 0x20); // ACC_SUPER
+    out.writeShort(thisIdx);
+    out.writeShort(superIdx);
+    out.writeShort(0); // interfaces
+    out.writeShort(0); // fields
+
+    out.writeShort(2); // methods
+    writeMethod(out, initIdx, initDescIdx, codeIdx, 1, 1, initBuf.toByteArray());
+    writeMethod(out, callIdx, callDescIdx, codeIdx, 3 + argSlots + 2, 5, callBuf.toByteArray());
+
+    out.writeShort(0); // class attributes
+
+    out.flush();
+    return clsBuf.toByteArray();
+  }
+
+  static void writeMethod (DataOutputStream out, int nameIdx, int descIdx, int codeIdx,
+                           int maxStack, int maxLocals, byte[] code) throws IOException {
+    out.writeShort(Modifier.PUBLIC);
+    out.writeShort(nameIdx);
+    out.writeShort(descIdx);
+
+    out.writeShort(1); // Code attribute
+    out.writeShort(codeIdx);
+    out.writeInt(12 + code.length);
+    out.writeShort(maxStack);
+    out.writeShort(maxLocals);
+    out.writeInt(code.length);
+    out.write(code);
+    out.writeShort(0); // exception table
+    out.writeShort(0); // code attributes
+  }
+}
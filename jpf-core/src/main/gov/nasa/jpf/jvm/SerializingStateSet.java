@@ -18,6 +18,8 @@
 //
 package gov.nasa.jpf.jvm;
 
+import gov.nasa.jpf.util.Profiler;
+
 
 public abstract class SerializingStateSet implements StateSet {
   protected StateSerializer serializer;
@@ -27,8 +29,20 @@ public abstract class SerializingStateSet implements StateSet {
   }
   
   public int addCurrent () {
-    return add(serializer.getStoringData());
+    long t = Profiler.ENABLED ? System.nanoTime() : 0;
+    int[] state = serializer.getStoringData();
+    if (Profiler.ENABLED) Profiler.SERIALIZE.record(t);
+
+    return add(state);
   }
   
   protected abstract int add(int[] state);
+
+  /**
+   * the fill ratio of the underlying hash table, or -1 if there is none
+   * (or we don't know). Note this can be called from monitoring threads
+   */
+  public double getLoadFactor () {
+    return -1.0;
+  }
 }
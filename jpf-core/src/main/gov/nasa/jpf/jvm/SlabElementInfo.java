@@ -0,0 +1,132 @@
+//
+// Copyright (C) 2006 United States Government as represented by the
+// Administrator of the National Aeronautics and Space Administration
+// (NASA).  All Rights Reserved.
+//
+// This software is distributed under the NASA Open Source Agreement
+// (NOSA), version 1.3.  The NOSA has been approved by the Open Source
+// Initiative.  See the file NOSA-1.3-JPF at the top of the distribution
+// directory tree for the complete NOSA document.
+//
+// THE SUBJECT SOFTWARE IS PROVIDED "AS IS" WITHOUT ANY WARRANTY OF ANY
+// KIND, EITHER EXPRESSED, IMPLIED, OR STATUTORY, INCLUDING, BUT NOT
+// LIMITED TO, ANY WARRANTY THAT THE SUBJECT SOFTWARE WILL CONFORM TO
+// SPECIFICATIONS, ANY IMPLIED WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+// A PARTICULAR PURPOSE, OR FREEDOM FROM INFRINGEMENT, ANY WARRANTY THAT
+// THE SUBJECT SOFTWARE WILL BE ERROR FREE, OR ANY WARRANTY THAT
+// DOCUMENTATION, IF PROVIDED, WILL CONFORM TO THE SUBJECT SOFTWARE.
+//
+package gov.nasa.jpf.jvm;
+
+import gov.nasa.jpf.util.FixedBitSet;
+
+/**
+ * the DynamicElementInfo that is used by the SlabHeap.
+ *
+ * Instance fields are stored in SlabFields views, which are modified in place.
+ * Our mementos therefore have to keep a copy of the slot values, which is
+ * created when the memento is taken (the NamedFields based default creates the
+ * copy on the next write instead). Restoring a memento copies the values back
+ * into the slab, unless the object was not modified since the memento was
+ * taken or restored.
+ *
+ * New objects also share their (still empty) refTid sets, which are cloned
+ * by ElementInfo on the first modification
+ */
+public class SlabElementInfo extends DynamicElementInfo {
+
+  // refTid sets of new objects, per thread id
+  static FixedBitSet[] refTidPool = new FixedBitSet[0];
+
+  static void resetRefTidPool() {
+    refTidPool = new FixedBitSet[0];
+  }
+
+  static class SlabEIMemento extends EIMemento<SlabElementInfo> {
+
+    // the view we have copied the slots from. This is only used as an
+    // identity check to avoid copying the values back in restore()
+    SlabFields view;
+
+    SlabEIMemento (SlabElementInfo ei){
+      super(ei);
+
+      if (fields instanceof SlabFields){
+        view = (SlabFields)fields;
+        fields = view.clone();
+      }
+    }
+
+    @Override
+    public ElementInfo restore (ElementInfo ei){
+      SlabElementInfo sei = (ei != null) ? (SlabElementInfo) ei : get();
+      if (sei == null){
+        sei = new SlabElementInfo();
+      }
+
+      Fields f = sei.fields;
+      super.restore(sei);
+
+      if (view != null){
+        if (f == view && view.isBound()){
+          sei.fields = view; // values weren't modified, no need to copy
+        } else {
+          SlabHeap heap = (SlabHeap) JVM.getVM().getHeap();
+          view = heap.restoreSlabFields(ref, (NamedFields)fields, f);
+          sei.fields = view;
+        }
+      }
+
+      return sei;
+    }
+  }
+
+
+  public SlabElementInfo () {
+  }
+
+  public SlabElementInfo (ClassInfo ci, Fields f, Monitor m, int tid) {
+    super(ci, f, m, tid);
+  }
+
+  @Override
+  protected FixedBitSet createRefTid (int tid){
+    FixedBitSet[] pool = refTidPool;
+
+    if (tid >= pool.length){
+      FixedBitSet[] a = new FixedBitSet[tid+1];
+      System.arraycopy(pool, 0, a, 0, pool.length);
+      refTidPool = pool = a;
+    }
+
+    FixedBitSet b = pool[tid];
+    if (b == null){
+      b = super.createRefTid(tid);
+      pool[tid] = b;
+    }
+
+    return b;
+  }
+
+  @Override
+  public Memento<ElementInfo> getMemento(){
+    return new SlabEIMemento(this);
+  }
+
+  /**
+   * we don't clone SlabFields, but we replace the view so that its identity
+   * changes. Fields that are not slab allocated (e.g. from Object.clone())
+   * are moved into the slab
+   */
+  @Override
+  protected Fields cloneFields() {
+    if ((attributes & ATTR_FIELDS_CHANGED) == 0) {
+      SlabHeap heap = (SlabHeap) JVM.getVM().getHeap();
+      fields = heap.cloneSlabFields(this);
+      attributes |= ATTR_FIELDS_CHANGED;
+      markAreaChanged();
+    }
+
+    return fields;
+  }
+}
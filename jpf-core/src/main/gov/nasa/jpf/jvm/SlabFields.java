@@ -0,0 +1,265 @@
+//
+// Copyright (C) 2006 United States Government as represented by the
+// Administrator of the National Aeronautics and Space Administration
+// (NASA).  All Rights Reserved.
+//
+// This software is distributed under the NASA Open Source Agreement
+// (NOSA), version 1.3.  The NOSA has been approved by the Open Source
+// Initiative.  See the file NOSA-1.3-JPF at the top of the distribution
+// directory tree for the complete NOSA document.
+//
+// THE SUBJECT SOFTWARE IS PROVIDED "AS IS" WITHOUT ANY WARRANTY OF ANY
+// KIND, EITHER EXPRESSED, IMPLIED, OR STATUTORY, INCLUDING, BUT NOT
+// LIMITED TO, ANY WARRANTY THAT THE SUBJECT SOFTWARE WILL CONFORM TO
+// SPECIFICATIONS, ANY IMPLIED WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+// A PARTICULAR PURPOSE, OR FREEDOM FROM INFRINGEMENT, ANY WARRANTY THAT
+// THE SUBJECT SOFTWARE WILL BE ERROR FREE, OR ANY WARRANTY THAT
+// DOCUMENTATION, IF PROVIDED, WILL CONFORM TO THE SUBJECT SOFTWARE.
+//
+package gov.nasa.jpf.jvm;
+
+import gov.nasa.jpf.util.HashData;
+import gov.nasa.jpf.util.IntVector;
+
+/**
+ * value container for non-array objects that stores its slots in a region of
+ * a shared int[] slab block (see SlabHeap), instead of a private int[] array.
+ *
+ * SlabFields are views that are bound to the region of their object reference.
+ * Different from NamedFields, they are not copied on first write - since
+ * the memento of a SlabElementInfo stores a copy of the slots, the region can
+ * be modified in place. The SlabHeap still replaces the view object on the first
+ * modification after a memento was taken, so that Fields identity keeps
+ * indicating unchanged values (as used by the IncrementalSerializer).
+ *
+ * A view that is replaced by another view of the same object is unbound, i.e.
+ * it doesn't have any values anymore. A view that loses its region to another
+ * object is detached, i.e. it keeps a private copy of its values.
+ */
+public class SlabFields extends Fields {
+
+  // the slab block we live in, or our private values if we are detached.
+  // Null if we are unbound
+  int[] block;
+
+  // first slot index in block. Bound regions are preceded by a header slot,
+  // hence base is 0 for detached views
+  int base;
+
+  // number of slots
+  int size;
+
+  SlabFields (int[] block, int base, int size){
+    this.block = block;
+    this.base = base;
+    this.size = size;
+  }
+
+  boolean isBound() {
+    return (block != null) && (base > 0);
+  }
+
+  void unbind() {
+    block = null;
+  }
+
+  void detach() {
+    if (isBound()){
+      int[] values = new int[size];
+      System.arraycopy(block, base, values, 0, size);
+      block = values;
+      base = 0;
+    }
+  }
+
+  void clear() {
+    int[] b = block;
+    for (int i=base, iEnd=base+size; i<iEnd; i++){
+      b[i] = 0;
+    }
+  }
+
+  void copyFrom (NamedFields other){
+    System.arraycopy(other.values, 0, block, base, size);
+    copyAttrs(other);
+  }
+
+  public int size() {
+    return size;
+  }
+
+  /**
+   * note this returns a copy, use getIntValue() for read access
+   */
+  public int[] asFieldSlots() {
+    int[] values = new int[size];
+    System.arraycopy(block, base, values, 0, size);
+    return values;
+  }
+
+  public int getHeapSize () {
+    return size*4;
+  }
+
+  // our low level getters and setters
+  public int getIntValue (int index) {
+    return block[base + index];
+  }
+
+  public int getReferenceValue (int index) {
+    return block[base + index];
+  }
+
+  public long getLongValue (int index) {
+    int i = base + index;
+    return Types.intsToLong(block[i + 1], block[i]);
+  }
+
+  public boolean getBooleanValue (int index) {
+    return Types.intToBoolean(block[base + index]);
+  }
+
+  public byte getByteValue (int index) {
+    return (byte) block[base + index];
+  }
+
+  public char getCharValue (int index) {
+    return (char) block[base + index];
+  }
+
+  public short getShortValue (int index) {
+    return (short) block[base + index];
+  }
+
+  public float getFloatValue (int index) {
+    return Types.intToFloat(block[base + index]);
+  }
+
+  public double getDoubleValue (int index) {
+    int i = base + index;
+    return Types.intsToDouble( block[i + 1], block[i]);
+  }
+
+  //--- the field modifier methods
+
+  public void setReferenceValue (int index, int newValue) {
+    block[base + index] = newValue;
+  }
+
+  public void setBooleanValue (int index, boolean newValue) {
+    block[base + index] = newValue ? 1 : 0;
+  }
+
+  public void setByteValue (int index, byte newValue) {
+    block[base + index] = newValue;
+  }
+
+  public void setCharValue (int index, char newValue) {
+    block[base + index] = (int)newValue;
+  }
+
+  public void setShortValue (int index, short newValue) {
+    block[base + index] = newValue;
+  }
+
+  public void setFloatValue (int index, float newValue) {
+    block[base + index] = Types.floatToInt(newValue);
+  }
+
+  public void setIntValue (int index, int newValue) {
+    block[base + index] = newValue;
+  }
+
+  public void setLongValue (int index, long newValue) {
+    int i = base + index;
+    block[i] = Types.hiLong(newValue);
+    block[i + 1] = Types.loLong(newValue);
+  }
+
+  public void setDoubleValue (int index, double newValue) {
+    int i = base + index;
+    block[i] = Types.hiDouble(newValue);
+    block[i + 1] = Types.loDouble(newValue);
+  }
+
+  /**
+   * clones are not slab-allocated, we return a NamedFields copy. This is
+   * what mementos and Object.clone() use
+   */
+  public NamedFields clone () {
+    NamedFields f = new NamedFields(size);
+    System.arraycopy(block, base, f.values, 0, size);
+    f.copyAttrs(this);
+    return f;
+  }
+
+  /**
+   * Checks for equality - this is value based, so it also works between
+   * SlabFields and NamedFields
+   */
+  public boolean equals (Object o) {
+    if (o instanceof Fields) {
+      Fields other = (Fields) o;
+      if (other instanceof ArrayFields){
+        return false;
+      }
+
+      int[] b = block;
+      int off = base;
+      int l = size;
+      if (other instanceof SlabFields){
+        if (((SlabFields)other).size != l){
+          return false;
+        }
+      } else if (other instanceof NamedFields){
+        if (((NamedFields)other).size() != l){
+          return false;
+        }
+      } else {
+        return false;
+      }
+
+      for (int i = 0; i < l; i++) {
+        if (b[off+i] != other.getIntValue(i)) {
+          return false;
+        }
+      }
+
+      return super.compareAttrs(other);
+
+    } else {
+      return false;
+    }
+  }
+
+  // serialization interface
+  public void appendTo(IntVector v) {
+    v.append(block, base, size);
+  }
+
+  public void hash (HashData hd) {
+    int[] b = block;
+    for (int i=base, iEnd=base+size; i < iEnd; i++) {
+      hd.add(b[i]);
+    }
+  }
+
+  public String toString () {
+    StringBuilder sb = new StringBuilder("SlabFields[");
+
+    sb.append("values=");
+    sb.append('[');
+
+    for (int i = 0; i < size; i++) {
+      if (i != 0) {
+        sb.append(',');
+      }
+      sb.append(block[base+i]);
+    }
+
+    sb.append(']');
+    sb.append(']');
+
+    return sb.toString();
+  }
+}
@@ -0,0 +1,256 @@
+//
+// Copyright (C) 2006 United States Government as represented by the
+// Administrator of the National Aeronautics and Space Administration
+// (NASA).  All Rights Reserved.
+//
+// This software is distributed under the NASA Open Source Agreement
+// (NOSA), version 1.3.  The NOSA has been approved by the Open Source
+// Initiative.  See the file NOSA-1.3-JPF at the top of the distribution
+// directory tree for the complete NOSA document.
+//
+// THE SUBJECT SOFTWARE IS PROVIDED "AS IS" WITHOUT ANY WARRANTY OF ANY
+// KIND, EITHER EXPRESSED, IMPLIED, OR STATUTORY, INCLUDING, BUT NOT
+// LIMITED TO, ANY WARRANTY THAT THE SUBJECT SOFTWARE WILL CONFORM TO
+// SPECIFICATIONS, ANY IMPLIED WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+// A PARTICULAR PURPOSE, OR FREEDOM FROM INFRINGEMENT, ANY WARRANTY THAT
+// THE SUBJECT SOFTWARE WILL BE ERROR FREE, OR ANY WARRANTY THAT
+// DOCUMENTATION, IF PROVIDED, WILL CONFORM TO THE SUBJECT SOFTWARE.
+//
+package gov.nasa.jpf.jvm;
+
+import gov.nasa.jpf.Config;
+import gov.nasa.jpf.util.IntVector;
+import gov.nasa.jpf.util.SparseObjVector;
+
+/**
+ * a SparseClusterArrayHeap that stores the instance fields of (non-array)
+ * objects in large shared int[] slab blocks, instead of a NamedFields object
+ * with its own int[] array per object.
+ *
+ * Each object reference owns a slab region of [header, slot0, .. slotN-1],
+ * which is accessed through a SlabFields view. The region is re-used if the
+ * reference is re-allocated with the same number of slots, otherwise it goes
+ * into a per-size free list. Since SlabElementInfo mementos copy the slot
+ * values, regions are modified in place and don't need copy-on-first-write.
+ *
+ * New objects also share a single empty Monitor, which is cloned by ElementInfo
+ * once the object gets locked, and the refTid sets of their creating threads.
+ * Arrays keep their typed ArrayFields.
+ *
+ * Note that ElementInfos are still created per object - they are referenced
+ * by identity from too many places (locked object lists, mementos, FieldLockInfos).
+ *
+ * Config options:
+ *   vm.heap.class = gov.nasa.jpf.jvm.SlabHeap
+ *   vm.heap.slab.max_fields = <max number of slots for slab allocated objects> (default 64)
+ */
+public class SlabHeap extends SparseClusterArrayHeap {
+
+  static final int BLOCK_BITS = 16;
+  static final int BLOCK_SIZE = 1 << BLOCK_BITS;
+  static final int BLOCK_MASK = BLOCK_SIZE -1;
+
+  // objects with more slots use NamedFields
+  protected int maxSlots;
+
+  // shared by all new objects
+  protected Monitor emptyMonitor = new Monitor();
+
+  // the slab blocks, and the next unused slot in the last one
+  protected int[][] blocks = new int[0][];
+  protected int top = BLOCK_SIZE;
+
+  // free region addresses (blockIndex << BLOCK_BITS | header index), per size
+  protected IntVector[] freeLists;
+
+  // the SlabFields that currently own the region of an object reference
+  protected SparseObjVector<SlabFields> owners = new SparseObjVector<SlabFields>();
+
+  // statistics
+  protected int nRegions;
+  protected int nFreeRegions;
+
+
+  public SlabHeap (Config config, KernelState ks){
+    super(config, ks);
+
+    maxSlots = Math.min(config.getInt("vm.heap.slab.max_fields", 64), BLOCK_SIZE/2);
+    freeLists = new IntVector[maxSlots+1];
+
+    SlabElementInfo.resetRefTidPool();
+  }
+
+  //--- the SparseClusterArrayHeap allocation hooks
+
+  protected DynamicElementInfo createElementInfo (ClassInfo ci, Fields f, Monitor m, ThreadInfo ti){
+    int tid = ti == null ? 0 : ti.getId();
+    return new SlabElementInfo(ci,f,m,tid);
+  }
+
+  protected Fields createInstanceFields (ClassInfo ci, int objref){
+    int size = ci.getInstanceDataSize();
+
+    if (isSlabSize(size)){
+      SlabFields f = acquireRegion(objref, size, null);
+      f.clear();
+      return f;
+
+    } else {
+      return ci.createInstanceFields();
+    }
+  }
+
+  protected Monitor createMonitor (){
+    return emptyMonitor;
+  }
+
+  //--- SlabElementInfo support
+
+  protected boolean isSlabSize (int size){
+    return (size > 0 && size <= maxSlots);
+  }
+
+  /**
+   * this is called when a SlabElementInfo gets modified for the first time
+   * after it was stored or restored
+   */
+  Fields cloneSlabFields (SlabElementInfo ei){
+    Fields f = ei.fields;
+    int objref = ei.getObjectRef();
+
+    if (f instanceof SlabFields){
+      SlabFields v = (SlabFields)f;
+
+      if (v.isBound()){
+        // no need to copy, just replace the view
+        SlabFields vNew = new SlabFields(v.block, v.base, v.size);
+        vNew.fieldAttrs = v.fieldAttrs;
+        vNew.objectAttr = v.objectAttr;
+
+        v.unbind();
+        owners.set(objref, vNew);
+        return vNew;
+      }
+    }
+
+    if (!(f instanceof ArrayFields)){
+      // we got these from a non-slab memento or Object.clone(), move them into the slab
+      int size = ei.getClassInfo().getInstanceDataSize();
+      if (isSlabSize(size)){
+        SlabFields vNew = acquireRegion(objref, size, f);
+        for (int i=0; i<size; i++){
+          vNew.setIntValue(i, f.getIntValue(i));
+        }
+        vNew.copyAttrs(f);
+        return vNew;
+      }
+    }
+
+    return f.clone();
+  }
+
+  /**
+   * get a bound view with the values of a memento
+   */
+  SlabFields restoreSlabFields (int objref, NamedFields values, Fields replaced){
+    SlabFields f = acquireRegion(objref, values.size(), replaced);
+    f.copyFrom(values);
+    return f;
+  }
+
+  /**
+   * get a new view for the region of 'objref', which is allocated if there is
+   * none yet, or if it has the wrong size. Values of the new view are undefined.
+   *
+   * If the region was owned by the 'replaced' view, it is unbound. Any other
+   * previous owner (belonging to an ElementInfo that is not in the heap anymore)
+   * is detached, so that it keeps its values
+   */
+  protected SlabFields acquireRegion (int objref, int size, Fields replaced){
+    SlabFields f = null;
+    SlabFields owner = owners.get(objref);
+
+    if (owner != null && owner.isBound()){
+      int[] block = owner.block;
+      int base = owner.base;
+
+      if (owner == replaced){
+        owner.unbind();
+      } else {
+        owner.detach();
+      }
+
+      if (owner.size == size){
+        f = new SlabFields(block, base, size);
+      } else {
+        free(block, base, owner.size);
+      }
+    }
+
+    if (f == null){
+      f = allocate(size);
+    }
+
+    owners.set(objref, f);
+    return f;
+  }
+
+  protected SlabFields allocate (int size){
+    IntVector freeList = freeLists[size];
+
+    if (freeList != null && freeList.size() > 0){
+      int n = freeList.size() -1;
+      int addr = freeList.get(n);
+      freeList.setSize(n);
+      nFreeRegions--;
+
+      return new SlabFields(blocks[addr >>> BLOCK_BITS], (addr & BLOCK_MASK) + 1, size);
+
+    } else {
+      if (top + size + 1 > BLOCK_SIZE){
+        int n = blocks.length;
+        int[][] a = new int[n+1][];
+        System.arraycopy(blocks, 0, a, 0, n);
+        a[n] = new int[BLOCK_SIZE];
+        blocks = a;
+        top = 0;
+      }
+
+      int blockIdx = blocks.length -1;
+      int[] block = blocks[blockIdx];
+
+      block[top] = blockIdx; // the header
+      int base = top + 1;
+      top = base + size;
+      nRegions++;
+
+      return new SlabFields(block, base, size);
+    }
+  }
+
+  protected void free (int[] block, int base, int size){
+    IntVector freeList = freeLists[size];
+    if (freeList == null){
+      freeList = new IntVector();
+      freeLists[size] = freeList;
+    }
+
+    int blockIdx = block[base-1];
+    freeList.add( (blockIdx << BLOCK_BITS) | (base-1));
+    nFreeRegions++;
+  }
+
+  //--- statistics
+
+  public int getNumberOfSlabBlocks() {
+    return blocks.length;
+  }
+
+  public int getNumberOfRegions() {
+    return nRegions;
+  }
+
+  public int getNumberOfFreeRegions() {
+    return nFreeRegions;
+  }
+}
@@ -75,6 +75,9 @@ public class SparseClusterArrayHeap extends SparseClusterArray<ElementInfo> impl
   // this is set to false upon backtrack/restore
   protected boolean liveBitValue;
 
+  // optional log of element changes, only set if we use an UndoBacktracker
+  protected UndoLog undoLog;
+
 
   public static class Snapshot<T> extends SparseClusterArray.Snapshot<ElementInfo,T> {
     int attributes;
@@ -151,6 +154,14 @@ public class SparseClusterArrayHeap extends SparseClusterArray<ElementInfo> impl
     return new DynamicElementInfo(ci,f,m,tid);
   }
 
+  protected Fields createInstanceFields (ClassInfo ci, int objref){
+    return ci.createInstanceFields();
+  }
+
+  protected Monitor createMonitor (){
+    return new Monitor();
+  }
+
   public <T> Snapshot<T> getSnapshot (Transformer<ElementInfo,T> transformer){
     Snapshot snap = new Snapshot(nSet);
     populateSnapshot(snap,transformer);
@@ -173,6 +184,52 @@ public class SparseClusterArrayHeap extends SparseClusterArray<ElementInfo> impl
     liveBitValue = false; // always start with false after a restore
   }
 
+  /**
+   * a snapshot that only contains our own (copy-on-first-write) data, but no
+   * elements. This is for backtrackers that restore the elements themselves
+   */
+  public Snapshot<Memento<ElementInfo>> getAttributeSnapshot (){
+    Snapshot<Memento<ElementInfo>> snap = new Snapshot<Memento<ElementInfo>>(0);
+
+    snap.pinDownList = pinDownList;
+    snap.internStrings = internStrings;
+    snap.attributes = attributes & ATTR_STORE_MASK;
+
+    return snap;
+  }
+
+  public void restoreAttributeSnapshot (Snapshot<?> snap){
+    pinDownList = snap.pinDownList;
+    internStrings = snap.internStrings;
+    attributes = snap.attributes;
+  }
+
+  public void setUndoLog (UndoLog log){
+    undoLog = log;
+  }
+
+  /**
+   * reinstate a logged element value, which is either a memento or null if
+   * the object did not exist at that time. Only used by the UndoLog
+   */
+  void restoreElement (int objref, Memento<ElementInfo> m){
+    ElementInfo ei = null;
+    if (m != null){
+      ei = m.restore(null); // this usually gets us the same ElementInfo object
+      ei.cachedMemento = m;
+    }
+
+    ElementInfo eiCur = get(objref);
+    if (eiCur != ei){
+      if (eiCur != null){
+        set(objref, null);
+      }
+      if (ei != null){
+        set(objref, ei);
+      }
+    }
+  }
+
   //--- Heap interface
 
   public boolean isGcEnabled (){
@@ -218,7 +275,7 @@ public class SparseClusterArrayHeap extends SparseClusterArray<ElementInfo> impl
     Fields  f = ci.createArrayFields(type, nElements,
                                      Types.getTypeSize(elementType),
                                      Types.isReference(elementType));
-    Monitor  m = new Monitor();
+    Monitor  m = createMonitor();
     DynamicElementInfo ei = createElementInfo(ci, f, m, ti);
 
     int tid = (ti != null) ? ti.getId() : 0;
@@ -229,7 +286,7 @@ public class SparseClusterArrayHeap extends SparseClusterArray<ElementInfo> impl
     ei.setObjectRef(index);
     set(index, ei);
     
-    attributes |= ATTR_ELEMENTS_CHANGED;
+    markChanged(index);
 
     vm.notifyObjectCreated(ti, ei);
 
@@ -239,21 +296,21 @@ public class SparseClusterArrayHeap extends SparseClusterArray<ElementInfo> impl
   }
 
   public int newObject(ClassInfo ci, ThreadInfo ti) {
-    // create the thing itself
-    Fields f = ci.createInstanceFields();
-    Monitor m = new Monitor();
-    ElementInfo ei = createElementInfo(ci, f, m, ti);
-
     // get next free objRef into thread cluster
     int tid = (ti != null) ? ti.getId() : 0;
     int index = firstNullIndex(tid << S1, MAX_CLUSTER_ENTRIES);
     if (index < 0){
       throw new JPFException("per-thread heap limit exceeded");
     }
+
+    // create the thing itself
+    Fields f = createInstanceFields(ci, index);
+    Monitor m = createMonitor();
+    ElementInfo ei = createElementInfo(ci, f, m, ti);
     ei.setObjectRef(index);
     set(index, ei);
 
-    attributes |= ATTR_ELEMENTS_CHANGED;
+    markChanged(index);
 
     // and do the default (const) field initialization
     ci.initializeInstanceData(ei);
@@ -375,6 +432,7 @@ public class SparseClusterArrayHeap extends SparseClusterArray<ElementInfo> impl
   public void registerPinDown(int objref){
     ElementInfo ei = get(objref);
     if (ei != null) {
+      markChanged(objref); // the pinDown count is a stored attribute
       if (ei.incPinDown()){
         addToPinDownList(objref);
       }
@@ -386,6 +444,7 @@ public class SparseClusterArrayHeap extends SparseClusterArray<ElementInfo> impl
   public void releasePinDown(int objref){
     ElementInfo ei = get(objref);
     if (ei != null) {
+      markChanged(objref);
       if (ei.decPinDown()){
         removeFromPinDownList(objref);
       }
@@ -426,22 +485,48 @@ public class SparseClusterArrayHeap extends SparseClusterArray<ElementInfo> impl
   }
   
   public void gc() {
+    startGc();
+    markRoots();
+    sweep();
+  }
+
+  //--- the gc phases, which are public so that clients that traverse the heap
+  // anyways (like a CFSerializer in fused gc mode) can mark live objects along
+  // the way, instead of requiring a separate mark phase
+
+  /**
+   * reset the mark state. Between startGc() and markRoots(), clients can
+   * setMarked() objects they find to be live, but then also have to
+   * queueMark() all references of these objects they don't mark themselves
+   */
+  public void startGc() {
     vm.notifyGCBegin();
 
     markQueue.clear();
     weakRefs = null;
     liveBitValue = !liveBitValue;
+  }
 
+  /**
+   * mark everything that is reachable from the roots (pinned down objects,
+   * thread stacks and statics). Objects that are already marked are not
+   * traced again
+   */
+  public void markRoots() {
     markPinDownList();
     vm.getThreadList().markRoots(this); // mark thread stacks
     vm.getStaticArea().markRoots(this); // mark objects referenced from StaticArea ElementInfos
 
-    // add pinned down objects
-
     // at this point, all roots should be in the markQueue, but not traced yet
 
     markQueue.process(this); // trace all entries - this gets recursive
-    
+  }
+
+  /**
+   * release all objects that are not marked, and reset the mark state of the
+   * live ones
+   */
+  public void sweep() {
     ThreadInfo ti = vm.getCurrentThread();
     int tid = ti.getId();
     boolean isThreadTermination = ti.isTerminated();
@@ -467,6 +552,9 @@ public class SparseClusterArrayHeap extends SparseClusterArray<ElementInfo> impl
         
         // <2do> still have to process finalizers here, which might make the object live again
         vm.notifyObjectReleased(ei);
+        if (undoLog != null){
+          undoLog.logChange(ei);
+        }
         set(ei.getObjectRef(), null);   // <2do> - do we need a separate remove?
       }
     }
@@ -537,6 +625,13 @@ public class SparseClusterArrayHeap extends SparseClusterArray<ElementInfo> impl
 
   public void markChanged(int objref) {
     attributes |= ATTR_ELEMENTS_CHANGED;
+
+    if (undoLog != null){
+      ElementInfo ei = get(objref);
+      if (ei != null){
+        undoLog.logChange(ei);
+      }
+    }
   }
 
   public void hash(HashData hd) {
@@ -98,6 +98,35 @@ public class StaticArea extends Area<StaticElementInfo> implements Restorable<St
   }
 
 
+  /**
+   * reinstate a logged element value, which is either a memento or null if
+   * the class was not registered at that time. Only used by the UndoLog
+   */
+  void restoreElement (int index, Memento<ElementInfo> m){
+    StaticElementInfo sei = null;
+    if (m != null){
+      sei = (StaticElementInfo) m.restore(null);
+      sei.cachedMemento = m;
+    }
+
+    StaticElementInfo seiCur = elements.get(index);
+    if (seiCur != sei){
+      if (seiCur != null){
+        seiCur.getClassInfo().setStaticElementInfo(null);
+        elements.set(index, null);
+        nElements--;
+      }
+      if (sei != null){
+        set(index, sei);
+        nElements++;
+      }
+    }
+
+    if (sei != null){
+      sei.getClassInfo().setStaticElementInfo(sei);
+    }
+  }
+
   /**
    * Returns the index of a given class.
    */
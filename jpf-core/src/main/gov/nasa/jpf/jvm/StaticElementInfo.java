@@ -110,6 +110,7 @@ public final class StaticElementInfo extends ElementInfo implements Restorable<E
     if (refTid == null){
       refTid = createRefTid( ti.getId());
       attributes |= ElementInfo.ATTR_REFTID_CHANGED;
+      markAreaChanged();
       return true;
     } else {
       return super.checkUpdatedSharedness(ti);
@@ -265,6 +266,7 @@ public final class StaticElementInfo extends ElementInfo implements Restorable<E
   public void setClassObjectRef(int r) {
     classObjectRef = r;
     attributes |= ATTR_COR_CHANGED;
+    markAreaChanged();
   }
 
   public String toString() {
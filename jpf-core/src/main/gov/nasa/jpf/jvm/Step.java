@@ -25,8 +25,9 @@ import java.util.WeakHashMap;
 
 /**
  * this corresponds to an executed instruction. Note that we can have a
- * potentially huge number of Steps, hence we want to save objects here
- * (e.g. Collection overhead)
+ * potentially huge number of Steps, hence we don't store them - Transitions
+ * keep a compact StepTrail encoding, and Steps are only transient views that
+ * are created when iterating over a Transition
  */
 public class Step {
 
@@ -35,6 +36,10 @@ public class Step {
   private final Instruction insn;
   Step next;
 
+  // if this is a view of a recorded step, comments are stored in the Transition
+  private Transition transition;
+  private int index;
+
   public Step (Instruction insn) {
     if (insn == null)
       throw new IllegalArgumentException("insn == null");
@@ -42,7 +47,17 @@ public class Step {
     this.insn = insn;
   }
 
+  Step (Instruction insn, Transition transition, int index) {
+    this(insn);
+
+    this.transition = transition;
+    this.index = index;
+  }
+
   public Step getNext() {
+    if (next == null && transition != null) {
+      next = transition.getStep(index+1);
+    }
     return next;
   }
 
@@ -51,11 +66,19 @@ public class Step {
   }
 
   public void setComment (String s) {
-    s_comments.put(this, s);
+    if (transition != null) {
+      transition.setStepComment(index, s);
+    } else {
+      s_comments.put(this, s);
+    }
   }
 
   public String getComment () {
-    return s_comments.get(this);
+    if (transition != null) {
+      return transition.getStepComment(index);
+    } else {
+      return s_comments.get(this);
+    }
   }
 
   public String getLineString () {
@@ -0,0 +1,325 @@
+//
+// Copyright (C) 2011 United States Government as represented by the
+// Administrator of the National Aeronautics and Space Administration
+// (NASA).  All Rights Reserved.
+//
+// This software is distributed under the NASA Open Source Agreement
+// (NOSA), version 1.3.  The NOSA has been approved by the Open Source
+// Initiative.  See the file NOSA-1.3-JPF at the top of the distribution
+// directory tree for the complete NOSA document.
+//
+// THE SUBJECT SOFTWARE IS PROVIDED "AS IS" WITHOUT ANY WARRANTY OF ANY
+// KIND, EITHER EXPRESSED, IMPLIED, OR STATUTORY, INCLUDING, BUT NOT
+// LIMITED TO, ANY WARRANTY THAT THE SUBJECT SOFTWARE WILL CONFORM TO
+// SPECIFICATIONS, ANY IMPLIED WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+// A PARTICULAR PURPOSE, OR FREEDOM FROM INFRINGEMENT, ANY WARRANTY THAT
+// THE SUBJECT SOFTWARE WILL BE ERROR FREE, OR ANY WARRANTY THAT
+// DOCUMENTATION, IF PROVIDED, WILL CONFORM TO THE SUBJECT SOFTWARE.
+//
+package gov.nasa.jpf.jvm;
+
+import gov.nasa.jpf.jvm.bytecode.Instruction;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+
+/**
+ * compact encoding of the instructions that were executed within a
+ * Transition, which replaces the linked lists of Step objects we used to keep
+ * for each executed instruction.
+ *
+ * Steps are stored as runs of consecutive instructions of the same method,
+ * i.e. as (method id, first insn index, length) triples in a growable int[]
+ * block. Loops are run-length encoded: if the last k runs (k <= MAX_PERIOD)
+ * are repeated, the repetition is replaced by a (REPEAT, k, n) entry that
+ * stands for n more iterations of the k preceding runs. As long as the
+ * executed runs follow the loop body, we only increment n.
+ *
+ * Method ids are indexes into a MethodTable that is shared by all
+ * transitions of a SystemState, so that we don't depend on MethodInfo
+ * globalIds (which are not unique for synthetic methods, and get reset for
+ * each JPF run).
+ *
+ * Steps are decoded lazily when iterating, see Transition
+ */
+class StepTrail implements Cloneable {
+
+  static final int REPEAT = -1;    // marker in the method slot of repeat entries
+  static final int MAX_PERIOD = 4; // max number of runs in loop bodies
+
+  /**
+   * maps MethodInfos to the ids we store in the trail
+   */
+  static class MethodTable {
+    ArrayList<MethodInfo> methods = new ArrayList<MethodInfo>();
+    IdentityHashMap<MethodInfo,Integer> ids = new IdentityHashMap<MethodInfo,Integer>();
+
+    int getId (MethodInfo mi){
+      Integer id = ids.get(mi);
+      if (id == null){
+        id = methods.size();
+        methods.add(mi);
+        ids.put(mi, id);
+      }
+      return id.intValue();
+    }
+
+    MethodInfo getMethodInfo (int id){
+      return methods.get(id);
+    }
+  }
+
+  MethodTable methods;
+
+  int[] data = new int[12];
+  int size; // number of used data elements, always a multiple of 3
+
+  // the open run, which is not yet stored in data
+  MethodInfo curMi;
+  int curMid;
+  int curStart;
+  int curLen;
+
+  // data position of the repeat entry at the end of data, or -1 if the last
+  // run didn't continue a loop. 'repeatMatched' is the number of body runs of
+  // the next iteration we already have seen
+  int repeatPos = -1;
+  int repeatMatched;
+
+  int nSteps;
+
+  StepTrail (MethodTable methods){
+    this.methods = methods;
+  }
+
+  public StepTrail clone() {
+    try {
+      StepTrail t = (StepTrail) super.clone();
+      t.data = data.clone();
+      return t;
+    } catch (CloneNotSupportedException x){
+      return null; // can't happen
+    }
+  }
+
+  int size(){
+    return nSteps;
+  }
+
+  void add (Instruction insn){
+    MethodInfo mi = insn.getMethodInfo();
+    int idx = insn.getInstructionIndex();
+
+    if (curLen > 0 && mi == curMi && idx == curStart + curLen){
+      curLen++;
+
+    } else {
+      if (curLen > 0){
+        addRun(curMid, curStart, curLen);
+      }
+
+      if (mi != curMi){
+        curMi = mi;
+        curMid = methods.getId(mi);
+      }
+      curStart = idx;
+      curLen = 1;
+    }
+
+    nSteps++;
+  }
+
+  Instruction getLastInstruction (){
+    if (curLen > 0){
+      return curMi.getInstruction(curStart + curLen - 1);
+    } else {
+      return null;
+    }
+  }
+
+  protected void append (int mid, int start, int len){
+    if (size + 3 > data.length){
+      int[] a = new int[data.length * 2];
+      System.arraycopy(data, 0, a, 0, size);
+      data = a;
+    }
+
+    data[size++] = mid;
+    data[size++] = start;
+    data[size++] = len;
+  }
+
+  protected boolean isSameRun (int pos, int mid, int start, int len){
+    return (data[pos] == mid) && (data[pos+1] == start) && (data[pos+2] == len);
+  }
+
+  protected void addRun (int mid, int start, int len){
+    if (repeatPos >= 0){ // are we still in the loop
+      int k = data[repeatPos+1];
+      int bodyPos = repeatPos - 3*k;
+
+      if (isSameRun(bodyPos + 3*repeatMatched, mid, start, len)){
+        if (++repeatMatched == k){
+          data[repeatPos+2]++;
+          repeatMatched = 0;
+        }
+        return;
+
+      } else { // loop exit, store the partial iteration
+        int n = repeatMatched;
+        repeatPos = -1;
+        repeatMatched = 0;
+
+        for (int i=0; i<n; i++){
+          int p = bodyPos + 3*i;
+          append(data[p], data[p+1], data[p+2]);
+        }
+      }
+    }
+
+    append(mid, start, len);
+    detectRepeat();
+  }
+
+  /**
+   * check if the last k runs repeat the k runs before them, and replace them
+   * with a repeat entry if so
+   */
+  protected void detectRepeat (){
+    int nEntries = size / 3;
+
+    for (int k=1; k<=MAX_PERIOD && 2*k <= nEntries; k++){
+      int p0 = size - 6*k;
+      int p1 = size - 3*k;
+      boolean isRepeat = true;
+
+      for (int i=0; i<k; i++){
+        int a = p0 + 3*i;
+        int b = p1 + 3*i;
+        if (data[a] == REPEAT || !isSameRun(a, data[b], data[b+1], data[b+2])){
+          isRepeat = false;
+          break;
+        }
+      }
+
+      if (isRepeat){
+        size = p1;
+        append(REPEAT, k, 1);
+        repeatPos = size - 3;
+        repeatMatched = 0;
+        return;
+      }
+    }
+  }
+
+  /**
+   * remove the step with the given index. Since this can split runs and loop
+   * bodies, we just decode the trail and encode it again without the step
+   */
+  void remove (int index){
+    ArrayList<Instruction> insns = new ArrayList<Instruction>(nSteps);
+    RunCursor cursor = new RunCursor();
+    while (cursor.nextRun()){
+      for (int i=0; i<cursor.len; i++){
+        insns.add(cursor.mi.getInstruction(cursor.start + i));
+      }
+    }
+    insns.remove(index);
+
+    size = 0;
+    curMi = null;
+    curLen = 0;
+    repeatPos = -1;
+    repeatMatched = 0;
+    nSteps = 0;
+
+    for (Instruction insn : insns){
+      add(insn);
+    }
+  }
+
+  /**
+   * iterates over the runs of the trail, including the partial loop
+   * iteration and the open run
+   */
+  class RunCursor {
+    int pos;         // next data position
+
+    int repLeft;     // number of remaining iterations of the current repeat
+    int repBodyPos;  // start of the current repeat body
+    int repEnd;      // data position of the current repeat entry
+    int bodyPos;     // next run within the current repeat body
+
+    int tailRuns;    // number of partial loop iteration runs we returned
+    boolean openRunDone;
+
+    // the current run
+    MethodInfo mi;
+    int start;
+    int len;
+
+    void setRun (int p){
+      mi = methods.getMethodInfo(data[p]);
+      start = data[p+1];
+      len = data[p+2];
+    }
+
+    boolean nextRun (){
+      while (true){
+        if (repLeft > 0){
+          if (bodyPos < repEnd){
+            setRun(bodyPos);
+            bodyPos += 3;
+            return true;
+          }
+          if (--repLeft > 0){
+            bodyPos = repBodyPos;
+          }
+          continue;
+        }
+
+        if (pos < size){
+          if (data[pos] == REPEAT){
+            int k = data[pos+1];
+            repLeft = data[pos+2];
+            repEnd = pos;
+            repBodyPos = bodyPos = pos - 3*k;
+            pos += 3;
+            continue;
+
+          } else {
+            setRun(pos);
+            pos += 3;
+            return true;
+          }
+        }
+
+        if (repeatPos >= 0 && tailRuns < repeatMatched){
+          int k = data[repeatPos+1];
+          setRun(repeatPos - 3*k + 3*tailRuns);
+          tailRuns++;
+          return true;
+        }
+
+        if (!openRunDone){
+          openRunDone = true;
+          if (curLen > 0){
+            mi = curMi;
+            start = curStart;
+            len = curLen;
+            return true;
+          }
+        }
+
+        return false;
+      }
+    }
+  }
+
+  /**
+   * the number of ints we use to store the steps
+   */
+  int getEncodedSize (){
+    return size + ((curLen > 0) ? 3 : 0);
+  }
+}
@@ -212,6 +212,9 @@ public class SystemState {
   /** do we want executed insns to be recorded */
   boolean recordSteps;
 
+  /** the methods referenced from the StepTrails of our Transitions */
+  StepTrail.MethodTable stepMethods;
+
   /**
    * Creates a new system state.
    */
@@ -616,6 +619,19 @@ public class SystemState {
     GCNeeded = true;
   }
 
+  public boolean isGCNeeded () {
+    return GCNeeded;
+  }
+
+  /**
+   * reset the gc request if the garbage was collected outside of gcIfNeeded(),
+   * e.g. by a FusedGcSerializer
+   */
+  public void gcPerformed () {
+    GCNeeded = false;
+    nAlloc = 0;
+  }
+
   public void gcIfNeeded () {
     if (GCNeeded) {
       ks.gc();
@@ -825,8 +841,10 @@ public class SystemState {
     // this can require a lot of memory, so we should only store
     // executed insns if we have to
     if (recordSteps) {
-      Step step = new Step(pc);
-      trail.addStep( step);
+      if (stepMethods == null) {
+        stepMethods = new StepTrail.MethodTable();
+      }
+      trail.addStep( pc, stepMethods);
     } else {
       trail.incStepCount();
     }
@@ -331,6 +331,13 @@ public class ThreadInfo
    * chance and avoid interference with the IdleLoop listener
    */
   static int maxTransitionLength;
+
+  /**
+   * execute runs of block local instructions (see Instruction.isBlockLocal())
+   * without per instruction notifications and bookkeeping if there are no
+   * instruction listeners
+   */
+  static boolean executeBlocks;
   
   
   static boolean init (Config config) {
@@ -351,6 +358,7 @@ public class ThreadInfo
     porSyncDetection = porInEffect && config.getBoolean("vm.por.sync_detection");
     
     maxTransitionLength = config.getInt("vm.max_transition_length", 5000);
+    executeBlocks = config.getBoolean("vm.execute_blocks", false);
     
     return true;
   }
@@ -2167,12 +2175,19 @@ public class ThreadInfo
       setPC(pc);
     }
     
+    // we can't skip notifications if somebody wants to see all instructions
+    boolean blocks = executeBlocks && !vm.hasInstructionListeners() && !log.isLoggable(Level.FINER);
+
     // this constitutes the main transition loop. It gobbles up
     // insns until someone registered a ChoiceGenerator, there are no insns left,
     // the transition was explicitly marked as ignored, or we have reached a
     // max insn count and preempt the thread upon the next available backjump
     while (pc != null) {
-      nextPc = executeInstruction();
+      if (blocks && pc.isBlockLocal()){
+        nextPc = executeBlock(ss);
+      } else {
+        nextPc = executeInstruction();
+      }
       
       if (ss.breakTransition()) {
         break;
@@ -2248,6 +2263,50 @@ public class ThreadInfo
     }
   }
 
+  /**
+   * execute a run of block local instructions, starting with the current pc.
+   * This is the fast path of executeTransition() that is used if there are
+   * no instruction listeners, i.e. we don't have to notify, don't check for
+   * skipped instructions, and set the pc directly in the top frame, which
+   * only has to be cloned once (block local instructions don't have
+   * transients to clean up either).
+   * The run ends at the first instruction that is not block local, or if an
+   * instruction registers a ChoiceGenerator or changes the top frame (e.g.
+   * by throwing an exception)
+   */
+  protected Instruction executeBlock (SystemState ss) {
+    KernelState ks = vm.getKernelState();
+    StackFrame frame = topClone(); // make sure the frame isn't replaced while we execute
+    Instruction pc = frame.getPC();
+
+    do {
+      frame.setPC(pc); // exception handling needs the current pc
+      logInstruction = true;
+      skipInstruction = false;
+      nextPc = null; // otherwise isFirstStepInsn() is wrong from the second insn on
+      nextPc = pc.execute(ss, ks, this);
+      executedInstructions++;
+
+      if (logInstruction) {
+        ss.recordExecutionStep(pc);
+      }
+
+      if (top != frame) { // exception, or somebody pushed or popped frames
+        if (top != null) {
+          setPC(nextPc);
+          return nextPc;
+        } else {
+          return null;
+        }
+      }
+
+      pc = nextPc;
+    } while (pc != null && !ss.breakTransition() && pc.isBlockLocal());
+
+    frame.setPC(pc);
+    return pc;
+  }
+
   /**
    * execute instruction hidden from any listeners, and do not
    * record it in the path
@@ -18,19 +18,28 @@
 //
 package gov.nasa.jpf.jvm;
 
+import gov.nasa.jpf.jvm.bytecode.Instruction;
+
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
 
 /**
  * concrete type to store execution paths. TrailInfo corresponds to Transition,
  * i.e. all instructions executed in the context of a vm.forward() leading
  * into a new state
+ *
+ * the executed instructions are stored in a compact StepTrail encoding, Step
+ * objects are only created on demand when iterating or querying steps
  */
 public class Transition implements Iterable<Step>, Cloneable {
 
   ChoiceGenerator<?> cg;
   ThreadInfo ti;
 
-  private Step   first, last;
+  StepTrail steps;   // null if we don't record steps
+  private HashMap<Integer,String> comments; // step index -> comment
   int nSteps;
 
   private Object annotation;
@@ -50,6 +59,13 @@ public class Transition implements Iterable<Step>, Cloneable {
       // the deep copy references
       t.cg = (ChoiceGenerator<?>)cg.clone();
       t.ti = (ThreadInfo)ti.clone();
+
+      if (steps != null){
+        t.steps = steps.clone();
+      }
+      if (comments != null){
+        t.comments = new HashMap<Integer,String>(comments);
+      }
       
       return t;
       
@@ -59,6 +75,7 @@ public class Transition implements Iterable<Step>, Cloneable {
   }
   
   public String getLabel () {
+    Step last = getLastStep();
     if (last != null) {
       return last.getLineString();
     } else {
@@ -92,13 +109,31 @@ public class Transition implements Iterable<Step>, Cloneable {
 
   // don't use this for step iteration - this is very inefficient
   public Step getStep (int index) {
-    Step s = first;
-    for (int i=0; s != null && i < index; i++) s = s.next;
-    return s;
+    if (steps != null && index >= 0 && index < steps.size()){
+      StepIterator it = new StepIterator();
+      Step s = null;
+      for (int i=0; i <= index; i++) s = it.next();
+      return s;
+    }
+    return null;
   }
 
   public Step getLastStep () {
-    return last;
+    if (steps != null){
+      Instruction insn = steps.getLastInstruction();
+      if (insn != null){
+        return new Step(insn, this, steps.size()-1);
+      }
+    }
+    return null;
+  }
+
+  /**
+   * the number of steps we actually recorded, which can be less than
+   * getStepCount() if step recording was turned off during this transition
+   */
+  public int getRecordedStepCount () {
+    return (steps != null) ? steps.size() : 0;
   }
 
   public int getStepCount () {
@@ -125,46 +160,107 @@ public class Transition implements Iterable<Step>, Cloneable {
     nSteps++;
   }
 
-  void addStep (Step step) {
-    if (first == null) {
-      first = step;
-      last = step;
-    } else {
-      last.next = step;
-      last = step;
+  void addStep (Instruction insn, StepTrail.MethodTable methods) {
+    if (steps == null) {
+      steps = new StepTrail(methods);
     }
+    steps.add(insn);
     nSteps++;
   }
 
+  void setStepComment (int index, String comment) {
+    if (comments == null) {
+      comments = new HashMap<Integer,String>();
+    }
+    comments.put(index, comment);
+  }
+
+  String getStepComment (int index) {
+    return (comments != null) ? comments.get(index) : null;
+  }
+
+  void removeStep (int index) {
+    steps.remove(index);
+    nSteps--;
+
+    if (comments != null) {
+      HashMap<Integer,String> map = new HashMap<Integer,String>();
+      for (Map.Entry<Integer,String> e : comments.entrySet()) {
+        int i = e.getKey();
+        if (i < index) {
+          map.put(i, e.getValue());
+        } else if (i > index) {
+          map.put(i-1, e.getValue());
+        }
+      }
+      comments = map;
+    }
+  }
+
+  /**
+   * decodes the StepTrail on the fly. remove() has to re-encode the trail,
+   * i.e. it is expensive and should only be used for post-processing
+   */
   public class StepIterator implements Iterator<Step> {
-    Step cur;
+    StepTrail.RunCursor cursor = (steps != null) ? steps.new RunCursor() : null;
+    int runIdx;  // index of the next step within the current run
+    int index;   // index of the next step
+    Step prev, cur;
+    boolean canRemove;
+
+    // position the cursor after the first idx steps of the (re-encoded) trail
+    void seek (int idx) {
+      cursor = steps.new RunCursor();
+      runIdx = 0;
+      for (int n = 0; n < idx && cursor.nextRun(); n += runIdx) {
+        runIdx = Math.min(cursor.len, idx - n);
+      }
+    }
 
     public boolean hasNext () {
-      return (cur != last);
+      return (steps != null) && (index < steps.size());
     }
 
     public Step next () {
-      if (cur == null) {
-        cur = first;
-      } else {
-        if (cur != last) {
-          cur = cur.next;
-        } else {
-          return null;
-        }
+      if (!hasNext()) {
+        throw new NoSuchElementException();
       }
-      return cur;
+
+      if (index == 0 || runIdx == cursor.len) {
+        cursor.nextRun();
+        runIdx = 0;
+      }
+
+      Step s = new Step(cursor.mi.getInstruction(cursor.start + runIdx), Transition.this, index);
+      if (cur != null) {
+        cur.next = s;
+      }
+      prev = cur;
+      cur = s;
+      canRemove = true;
+
+      runIdx++;
+      index++;
+      return s;
     }
 
+    /**
+     * remove the step that was returned by the last next() call
+     */
     public void remove () {
-      if (cur == null) {
-        first = first.next;
-      } else {
-        Step s;
-        for (s = first; s.next != cur; s = s.next);
-        s.next = cur.next;
-        cur = cur.next;
+      if (!canRemove) {
+        throw new IllegalStateException();
+      }
+      canRemove = false;
+
+      index--;
+      removeStep(index);
+
+      if (prev != null) {
+        prev.next = null; // looked up again by getNext()
       }
+      cur = prev;
+      seek(index);
     }
   }
 
@@ -0,0 +1,225 @@
+//
+// Copyright (C) 2006 United States Government as represented by the
+// Administrator of the National Aeronautics and Space Administration
+// (NASA).  All Rights Reserved.
+//
+// This software is distributed under the NASA Open Source Agreement
+// (NOSA), version 1.3.  The NOSA has been approved by the Open Source
+// Initiative.  See the file NOSA-1.3-JPF at the top of the distribution
+// directory tree for the complete NOSA document.
+//
+// THE SUBJECT SOFTWARE IS PROVIDED "AS IS" WITHOUT ANY WARRANTY OF ANY
+// KIND, EITHER EXPRESSED, IMPLIED, OR STATUTORY, INCLUDING, BUT NOT
+// LIMITED TO, ANY WARRANTY THAT THE SUBJECT SOFTWARE WILL CONFORM TO
+// SPECIFICATIONS, ANY IMPLIED WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+// A PARTICULAR PURPOSE, OR FREEDOM FROM INFRINGEMENT, ANY WARRANTY THAT
+// THE SUBJECT SOFTWARE WILL BE ERROR FREE, OR ANY WARRANTY THAT
+// DOCUMENTATION, IF PROVIDED, WILL CONFORM TO THE SUBJECT SOFTWARE.
+//
+package gov.nasa.jpf.jvm;
+
+import gov.nasa.jpf.JPFConfigException;
+import gov.nasa.jpf.util.ImmutableList;
+
+/**
+ * a Backtracker that does not store complete KernelState snapshots, but only
+ * logs the objects and classes that are changed during a transition.
+ *
+ * The DefaultBacktracker stores a memento of the whole heap and static area
+ * for each transition, i.e. the backtrack stack grows with (search depth x
+ * number of live objects), which limits deep searches. This one keeps an
+ * UndoLog of the ElementInfos that were created, modified or released, and
+ * rolls them back on backtrack(). The per-transition overhead is proportional
+ * to the number of changed objects, plus a memento of the ThreadList (which
+ * already is incremental, since StackFrames are copy-on-first-write and
+ * unchanged threads reuse their cached mementos).
+ *
+ * Since RestorableStates have to be restorable from arbitrary other states,
+ * getRestorableState() still uses a full KernelState memento, i.e. searches
+ * that restore states (like heuristic searches) don't gain anything.
+ *
+ * This requires the SparseClusterArrayHeap (vm.heap.class), and is selected
+ * with
+ *   vm.backtracker.class = gov.nasa.jpf.jvm.UndoBacktracker
+ */
+public class UndoBacktracker implements Backtracker {
+
+  // what we keep per transition
+  static class Checkpoint {
+    final UndoLog.Entry mark;
+    final Memento<ThreadList> threads;
+    final SparseClusterArrayHeap.Snapshot<?> heapAttrs;
+    final Checkpoint next;
+
+    Checkpoint (UndoLog.Entry mark, Memento<ThreadList> threads,
+                SparseClusterArrayHeap.Snapshot<?> heapAttrs, Checkpoint next){
+      this.mark = mark;
+      this.threads = threads;
+      this.heapAttrs = heapAttrs;
+      this.next = next;
+    }
+  }
+
+  protected SystemState ss;
+  protected KernelState ks;
+  protected SparseClusterArrayHeap heap;
+  protected StaticArea statics;
+
+  protected UndoLog log;
+
+  /** the transition checkpoints */
+  protected Checkpoint kstack;
+
+  /** and that adds the SystemState specifics */
+  protected ImmutableList<Object> sstack;
+
+  // head of the log when we last updated the cached mementos
+  protected UndoLog.Entry lastMark;
+
+  public void attach (JVM jvm) {
+    ss = jvm.getSystemState();
+    ks = ss.getKernelState();
+
+    Heap h = ks.getHeap();
+    if (!(h instanceof SparseClusterArrayHeap)){
+      throw new JPFConfigException("UndoBacktracker requires vm.heap.class=gov.nasa.jpf.jvm.SparseClusterArrayHeap");
+    }
+    heap = (SparseClusterArrayHeap) h;
+    statics = ks.getStaticArea();
+
+    // note that we don't install the log until we push the first state, there
+    // is no need to log anything we can't backtrack to
+  }
+
+  /**
+   * make sure all ElementInfos have valid cachedMementos before we install the
+   * log. This is the only time we have to touch all objects
+   */
+  protected void initializeLog () {
+    for (ElementInfo ei : heap){
+      if (ei.hasChanged() || ei.cachedMemento == null){
+        ei.cachedMemento = ei.getMemento();
+      }
+    }
+    for (ElementInfo ei : statics){
+      if (ei.hasChanged() || ei.cachedMemento == null){
+        ei.cachedMemento = ei.getMemento();
+      }
+    }
+
+    log = new UndoLog(heap, statics);
+    heap.setUndoLog(log);
+    statics.setUndoLog(log);
+  }
+
+  //--- the backtrack support (depth first only)
+
+  protected void backtrackKernelState() {
+    Checkpoint cp = kstack;
+    kstack = cp.next;
+
+    // order does matter: threads need to be restored before the heap
+    cp.threads.restore(ks.threads);
+    log.revertTo(cp.mark);
+    heap.restoreAttributeSnapshot(cp.heapAttrs);
+
+    heap.markUnchanged();
+    statics.markUnchanged();
+    lastMark = cp.mark;
+  }
+
+  protected void backtrackSystemState() {
+    Object o = sstack.head;
+    sstack = sstack.tail;
+    ss.backtrackTo(o);
+  }
+
+  public boolean backtrack () {
+    if (sstack != null) {
+
+      backtrackKernelState();
+      backtrackSystemState();
+
+      return true;
+    } else {
+      // we are back to the top of where we can backtrack to
+      return false;
+    }
+  }
+
+  /**
+   * this is called before the next transition is executed. All we have to do
+   * is to refresh the cached mementos of what was changed since the last
+   * checkpoint, and remember where we are in the log
+   */
+  public void pushKernelState () {
+    if (log == null){
+      initializeLog();
+    } else {
+      log.checkpoint(lastMark);
+    }
+
+    UndoLog.Entry mark = log.getHead();
+    lastMark = mark;
+
+    kstack = new Checkpoint(mark, ks.threads.getMemento(), heap.getAttributeSnapshot(), kstack);
+
+    heap.markUnchanged();
+    statics.markUnchanged();
+  }
+
+  public void pushSystemState () {
+    sstack = new ImmutableList<Object>(ss.getBacktrackData(),sstack);
+  }
+
+  /**
+   * total number of ElementInfo changes that were logged so far
+   */
+  public long getNumberOfLoggedChanges () {
+    return (log != null) ? log.getNumberOfEntries() : 0;
+  }
+
+
+  //--- the restore support
+
+  class RestorableStateImpl implements RestorableState {
+    final Checkpoint savedKstack;
+    final ImmutableList<Object> savedSstack;
+    final UndoLog.Entry savedHead;
+
+    final Memento<KernelState> kcur;
+    final Object scur;
+
+    RestorableStateImpl() {
+      savedKstack = kstack;
+      savedSstack = sstack;
+      savedHead = (log != null) ? log.getHead() : null;
+
+      kcur = ks.getMemento(); // this also updates all cachedMementos
+      scur = ss.getRestoreData();
+    }
+
+    void restore() {
+      kstack = savedKstack;
+      sstack = savedSstack;
+
+      // restoring the full memento doesn't go through the log, and it leaves
+      // all ElementInfos with valid cachedMementos
+      kcur.restore(ks);
+      ss.restoreTo(scur);
+
+      if (log != null){
+        log.setHead(savedHead);
+        lastMark = savedHead;
+      }
+    }
+  }
+
+  public void restoreState (RestorableState state) {
+    ((RestorableStateImpl) state).restore();
+  }
+
+  public RestorableState getRestorableState() {
+    return new RestorableStateImpl();
+  }
+}
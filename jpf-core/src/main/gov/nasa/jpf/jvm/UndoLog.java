@@ -0,0 +1,114 @@
+//
+// Copyright (C) 2006 United States Government as represented by the
+// Administrator of the National Aeronautics and Space Administration
+// (NASA).  All Rights Reserved.
+//
+// This software is distributed under the NASA Open Source Agreement
+// (NOSA), version 1.3.  The NOSA has been approved by the Open Source
+// Initiative.  See the file NOSA-1.3-JPF at the top of the distribution
+// directory tree for the complete NOSA document.
+//
+// THE SUBJECT SOFTWARE IS PROVIDED "AS IS" WITHOUT ANY WARRANTY OF ANY
+// KIND, EITHER EXPRESSED, IMPLIED, OR STATUTORY, INCLUDING, BUT NOT
+// LIMITED TO, ANY WARRANTY THAT THE SUBJECT SOFTWARE WILL CONFORM TO
+// SPECIFICATIONS, ANY IMPLIED WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+// A PARTICULAR PURPOSE, OR FREEDOM FROM INFRINGEMENT, ANY WARRANTY THAT
+// THE SUBJECT SOFTWARE WILL BE ERROR FREE, OR ANY WARRANTY THAT
+// DOCUMENTATION, IF PROVIDED, WILL CONFORM TO THE SUBJECT SOFTWARE.
+//
+package gov.nasa.jpf.jvm;
+
+/**
+ * a LIFO log of ElementInfo before-images, which is used by the UndoBacktracker
+ * to roll back the heap and static area without having to snapshot them.
+ *
+ * Once installed, the areas log each object (or class) that is created, changed
+ * or released, together with its cachedMemento at that time. Since the
+ * cachedMemento of an unchanged ElementInfo always reflects its current state
+ * (and is null for objects that were created after the last checkpoint), this
+ * is the value we have to reinstate when undoing. Fields, Monitors and refTids
+ * are copy-on-first-write, i.e. a before-image only refers to the frozen
+ * objects and does not copy any values.
+ *
+ * Entries are immutable and only prepended, so a checkpoint is just the head
+ * entry at that time, and we can share log tails between RestorableStates
+ */
+public class UndoLog {
+
+  static class Entry {
+    final int ref;
+    final boolean isStatic;
+    final Memento<ElementInfo> before; // null if the element did not exist
+    final Entry next;
+
+    Entry (int ref, boolean isStatic, Memento<ElementInfo> before, Entry next){
+      this.ref = ref;
+      this.isStatic = isStatic;
+      this.before = before;
+      this.next = next;
+    }
+  }
+
+  protected SparseClusterArrayHeap heap;
+  protected StaticArea statics;
+
+  protected Entry head;
+  protected long nEntries; // total number of logged entries, for statistics
+
+  public UndoLog (SparseClusterArrayHeap heap, StaticArea statics){
+    this.heap = heap;
+    this.statics = statics;
+  }
+
+  /**
+   * to be called by the areas before an element is changed or released, and
+   * after it got created.
+   * Note it doesn't hurt if an element is logged more than once between two
+   * checkpoints, the oldest entry wins when we roll back
+   */
+  public void logChange (ElementInfo ei){
+    head = new Entry(ei.getObjectRef(), (ei instanceof StaticElementInfo),
+                     ei.cachedMemento, head);
+    nEntries++;
+  }
+
+  Entry getHead (){
+    return head;
+  }
+
+  void setHead (Entry e){
+    head = e;
+  }
+
+  public long getNumberOfEntries (){
+    return nEntries;
+  }
+
+  /**
+   * make sure all elements that were logged since 'mark' have an up-to-date
+   * cachedMemento, so that subsequent changes log the right before-image. This
+   * only touches the elements that actually changed
+   */
+  void checkpoint (Entry mark){
+    for (Entry e = head; e != mark; e = e.next){
+      ElementInfo ei = e.isStatic ? statics.get(e.ref) : heap.get(e.ref);
+      if (ei != null && (ei.hasChanged() || ei.cachedMemento == null)){
+        ei.cachedMemento = ei.getMemento();
+      }
+    }
+  }
+
+  /**
+   * roll back all changes that were logged after 'mark', youngest first
+   */
+  void revertTo (Entry mark){
+    for (Entry e = head; e != mark; e = e.next){
+      if (e.isStatic){
+        statics.restoreElement(e.ref, e.before);
+      } else {
+        heap.restoreElement(e.ref, e.before);
+      }
+    }
+    head = mark;
+  }
+}
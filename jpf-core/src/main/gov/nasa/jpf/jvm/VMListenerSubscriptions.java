@@ -0,0 +1,180 @@
+//
+// Copyright (C) 2006 United States Government as represented by the
+// Administrator of the National Aeronautics and Space Administration
+// (NASA).  All Rights Reserved.
+//
+// This software is distributed under the NASA Open Source Agreement
+// (NOSA), version 1.3.  The NOSA has been approved by the Open Source
+// Initiative.  See the file NOSA-1.3-JPF at the top of the distribution
+// directory tree for the complete NOSA document.
+//
+// THE SUBJECT SOFTWARE IS PROVIDED "AS IS" WITHOUT ANY WARRANTY OF ANY
+// KIND, EITHER EXPRESSED, IMPLIED, OR STATUTORY, INCLUDING, BUT NOT
+// LIMITED TO, ANY WARRANTY THAT THE SUBJECT SOFTWARE WILL CONFORM TO
+// SPECIFICATIONS, ANY IMPLIED WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+// A PARTICULAR PURPOSE, OR FREEDOM FROM INFRINGEMENT, ANY WARRANTY THAT
+// THE SUBJECT SOFTWARE WILL BE ERROR FREE, OR ANY WARRANTY THAT
+// DOCUMENTATION, IF PROVIDED, WILL CONFORM TO THE SUBJECT SOFTWARE.
+//
+package gov.nasa.jpf.jvm;
+
+import gov.nasa.jpf.ListenerAdapter;
+import gov.nasa.jpf.PropertyListenerAdapter;
+import gov.nasa.jpf.classfile.ClassFile;
+
+import java.lang.reflect.Method;
+import java.util.HashMap;
+
+/**
+ * computes which VMListener callbacks a listener actually implements, so that
+ * the JVM can keep per-event listener arrays and skip notifications nobody
+ * is interested in (esp. the per-instruction ones).
+ *
+ * Most listeners extend ListenerAdapter or PropertyListenerAdapter, and only
+ * override a few of their (empty) VMListener methods. We look up the declaring
+ * class of each VMListener method of a listener class via reflection, and
+ * don't subscribe it to the events that are still implemented by one of the
+ * adapters. The result is cached per listener class.
+ *
+ * Listeners that implement VMListener directly are subscribed to all events
+ */
+public class VMListenerSubscriptions {
+
+  //--- the event ids, in VMListener order
+  public static final int EXECUTE_INSTRUCTION = 0;
+  public static final int INSTRUCTION_EXECUTED = 1;
+  public static final int THREAD_STARTED = 2;
+  public static final int THREAD_BLOCKED = 3;
+  public static final int THREAD_WAITING = 4;
+  public static final int THREAD_NOTIFIED = 5;
+  public static final int THREAD_INTERRUPTED = 6;
+  public static final int THREAD_TERMINATED = 7;
+  public static final int THREAD_SCHEDULED = 8;
+  public static final int LOAD_CLASS = 9;
+  public static final int CLASS_LOADED = 10;
+  public static final int OBJECT_CREATED = 11;
+  public static final int OBJECT_RELEASED = 12;
+  public static final int OBJECT_LOCKED = 13;
+  public static final int OBJECT_UNLOCKED = 14;
+  public static final int OBJECT_WAIT = 15;
+  public static final int OBJECT_NOTIFY = 16;
+  public static final int OBJECT_NOTIFY_ALL = 17;
+  public static final int GC_BEGIN = 18;
+  public static final int GC_END = 19;
+  public static final int EXCEPTION_THROWN = 20;
+  public static final int EXCEPTION_BAILOUT = 21;
+  public static final int EXCEPTION_HANDLED = 22;
+  public static final int CG_REGISTERED = 23;
+  public static final int CG_SET = 24;
+  public static final int CG_ADVANCED = 25;
+  public static final int CG_PROCESSED = 26;
+  public static final int METHOD_ENTERED = 27;
+  public static final int METHOD_EXITED = 28;
+
+  public static final int NUMBER_OF_EVENTS = 29;
+
+  static final String[] methodNames = {
+    "executeInstruction", "instructionExecuted",
+    "threadStarted", "threadBlocked", "threadWaiting", "threadNotified",
+    "threadInterrupted", "threadTerminated", "threadScheduled",
+    "loadClass", "classLoaded",
+    "objectCreated", "objectReleased", "objectLocked", "objectUnlocked",
+    "objectWait", "objectNotify", "objectNotifyAll",
+    "gcBegin", "gcEnd",
+    "exceptionThrown", "exceptionBailout", "exceptionHandled",
+    "choiceGeneratorRegistered", "choiceGeneratorSet", "choiceGeneratorAdvanced", "choiceGeneratorProcessed",
+    "methodEntered", "methodExited"
+  };
+
+  static final Class<?>[] vmArgs = { JVM.class };
+  static final Class<?>[] loadClassArgs = { JVM.class, ClassFile.class };
+
+  // the adapter classes that only have empty VMListener methods
+  static final Class<?>[] adapterClasses = { ListenerAdapter.class, PropertyListenerAdapter.class };
+
+  static HashMap<Class<?>,boolean[]> subscriptionCache = new HashMap<Class<?>,boolean[]>();
+
+  static final VMListener[] EMPTY = new VMListener[0];
+
+
+  public static String getEventName (int eventId){
+    return methodNames[eventId];
+  }
+
+  static boolean isAdapterClass (Class<?> cls){
+    for (Class<?> c : adapterClasses){
+      if (c == cls){
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * returns a boolean array indexed by event id that tells if the listener class
+   * implements the corresponding notification
+   */
+  public static synchronized boolean[] getSubscriptions (Class<? extends VMListener> cls){
+    boolean[] subscribed = subscriptionCache.get(cls);
+
+    if (subscribed == null){
+      subscribed = new boolean[NUMBER_OF_EVENTS];
+
+      for (int i=0; i<NUMBER_OF_EVENTS; i++){
+        Class<?>[] args = (i == LOAD_CLASS) ? loadClassArgs : vmArgs;
+        try {
+          Method m = cls.getMethod(methodNames[i], args);
+          subscribed[i] = !isAdapterClass(m.getDeclaringClass());
+        } catch (NoSuchMethodException x){
+          subscribed[i] = true; // can't happen for a VMListener, but be safe
+        } catch (SecurityException x){
+          subscribed[i] = true;
+        }
+      }
+
+      subscriptionCache.put(cls, subscribed);
+    }
+
+    return subscribed;
+  }
+
+  public static boolean isSubscribed (VMListener listener, int eventId){
+    return getSubscriptions(listener.getClass())[eventId];
+  }
+
+  /**
+   * create the per-event listener arrays, preserving registration order
+   */
+  public static VMListener[][] getEventListeners (VMListener[] listeners){
+    VMListener[][] eventListeners = new VMListener[NUMBER_OF_EVENTS][];
+    boolean[][] subscriptions = new boolean[listeners.length][];
+
+    for (int j=0; j<listeners.length; j++){
+      subscriptions[j] = getSubscriptions(listeners[j].getClass());
+    }
+
+    for (int i=0; i<NUMBER_OF_EVENTS; i++){
+      int n = 0;
+      for (int j=0; j<listeners.length; j++){
+        if (subscriptions[j][i]){
+          n++;
+        }
+      }
+
+      if (n == 0){
+        eventListeners[i] = EMPTY;
+
+      } else {
+        VMListener[] a = new VMListener[n];
+        for (int j=0, k=0; j<listeners.length; j++){
+          if (subscriptions[j][i]){
+            a[k++] = listeners[j];
+          }
+        }
+        eventListeners[i] = a;
+      }
+    }
+
+    return eventListeners;
+  }
+}
@@ -39,6 +39,23 @@ public abstract class Instruction implements InstructionVisitorAcceptor {
 
   protected static final List<String> unimplemented = new ArrayList<String>();
   
+  // constants, local variable and operand stack ops, arithmetic, conversions
+  // and comparisons - see isBlockLocal()
+  static final boolean[] blockLocalOpcodes = new boolean[256];
+  static {
+    int[][] ranges = {
+        { 0x00, 0x11 },  // nop .. sipush
+        { 0x14, 0x2d },  // ldc2_w, iload .. aload_3
+        { 0x36, 0x4e },  // istore .. astore_3
+        { 0x57, 0x98 }   // pop .. dcmpg (incl. iinc)
+    };
+    for (int[] r : ranges){
+      for (int bc = r[0]; bc <= r[1]; bc++){
+        blockLocalOpcodes[bc] = true;
+      }
+    }
+  }
+
   protected int insnIndex;        // code[] index of instruction
   protected int position;     // accumulated bytecode position (prev pos + prev bc-length)
   protected MethodInfo mi;    // the method this insn belongs to
@@ -70,6 +87,19 @@ public abstract class Instruction implements InstructionVisitorAcceptor {
   }
 
 
+  /**
+   * can this instruction be executed as part of a straight-line block (see
+   * ThreadInfo.executeBlock()), i.e. it does not branch, invoke, return,
+   * allocate, throw explicitly, or access fields or arrays. Field access is
+   * excluded since we can't tell statically if the object is shared. Such
+   * instructions can still register ChoiceGenerators (e.g. symbolic
+   * conversions) or throw exceptions, which the block execution checks for
+   */
+  public boolean isBlockLocal() {
+    int bc = getByteCode();
+    return (bc >= 0) && (bc < blockLocalOpcodes.length) && blockLocalOpcodes[bc];
+  }
+
   /**
    * is this one of our own, artificial insns?
    */
@@ -37,6 +37,10 @@ public class NATIVERETURN extends ReturnInstruction {
   Object retAttr;
   Byte retType;
 
+  // unboxed return value of stub called methods
+  long rawRet;
+  boolean hasRawRet;
+
   // this is more simple than a normal ReturnInstruction because NativeMethodInfos
   // are not synchronized, and NativeStackFrames are never the first frame in a thread
   @Override
@@ -68,6 +72,7 @@ public class NATIVERETURN extends ReturnInstruction {
     ret = null;
     retAttr = null;
     returnFrame = null;
+    hasRawRet = false;
   }
   
   @Override
@@ -93,7 +98,13 @@ public class NATIVERETURN extends ReturnInstruction {
 
     returnFrame = nativeFrame;
 
-    ret = nativeFrame.getReturnValue();
+    hasRawRet = nativeFrame.hasRawReturnValue();
+    if (hasRawRet){
+      rawRet = nativeFrame.getRawReturnValue();
+      ret = null;
+    } else {
+      ret = nativeFrame.getReturnValue();
+    }
     retAttr = nativeFrame.getReturnAttr();
     retType = nativeFrame.getMethodInfo().getReturnTypeCode();
   }
@@ -104,6 +115,32 @@ public class NATIVERETURN extends ReturnInstruction {
     long lval;
     int  retSize = 1;
 
+    if (hasRawRet) { // set by a NativeStub, no need to unbox
+      switch (retType) {
+      case Types.T_LONG:
+      case Types.T_DOUBLE:
+        ti.longPush(rawRet);
+        retSize = 2;
+        break;
+      case Types.T_REFERENCE:
+      case Types.T_ARRAY:
+        ti.push((int)rawRet, true);
+        break;
+      default:
+        ti.push((int)rawRet, false);
+      }
+
+      if (retAttr != null) {
+        StackFrame frame = ti.getTopFrame();
+        if (retSize == 1) {
+          frame.setOperandAttr(retAttr);
+        } else {
+          frame.setLongOperandAttr(retAttr);
+        }
+      }
+      return;
+    }
+
     // in case of a return type mismatch, we get a ClassCastException, which
     // is handled in executeMethod() and reported as a InvocationTargetException
     // (not completely accurate, but we rather go with safety)
@@ -176,6 +213,9 @@ public class NATIVERETURN extends ReturnInstruction {
   @Override
   public Object getReturnValue(ThreadInfo ti) {
     if (isCompleted(ti)){
+      if (hasRawRet){
+        return NativeStackFrame.getBoxedReturnValue(retType, rawRet);
+      }
       return ret;
     } else {
       NativeStackFrame nativeFrame = (NativeStackFrame) ti.getTopFrame();
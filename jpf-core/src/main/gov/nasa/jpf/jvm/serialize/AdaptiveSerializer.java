@@ -47,6 +47,11 @@ public class AdaptiveSerializer extends CFSerializer {
     isSchedulingPoint = (nextCg != null) && nextCg.isSchedulingPoint();
   }
 
+  @Override
+  public boolean requestGc () {
+    return false; // we don't always traverse all live objects
+  }
+
   @Override
   protected void queueReference(ElementInfo ei){
     if (traverseObjects){
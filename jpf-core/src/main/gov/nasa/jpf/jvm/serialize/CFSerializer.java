@@ -19,9 +19,20 @@
 
 package gov.nasa.jpf.jvm.serialize;
 
+import gov.nasa.jpf.jvm.ClassInfo;
 import gov.nasa.jpf.jvm.ElementInfo;
+import gov.nasa.jpf.jvm.FieldInfo;
+import gov.nasa.jpf.jvm.Fields;
+import gov.nasa.jpf.jvm.FusedGcSerializer;
+import gov.nasa.jpf.jvm.Heap;
+import gov.nasa.jpf.jvm.SparseClusterArrayHeap;
 import gov.nasa.jpf.jvm.StackFrame;
 import gov.nasa.jpf.jvm.bytecode.Instruction;
+import gov.nasa.jpf.util.BitArray;
+import gov.nasa.jpf.util.FinalBitSet;
+import gov.nasa.jpf.util.ObjVector;
+
+import java.util.ArrayList;
 
 /**
  * a FilteringSerializer that performs on-the-fly heap canonicalization to
@@ -40,8 +51,18 @@ import gov.nasa.jpf.jvm.bytecode.Instruction;
  * because then this range will experience scheduling dependent orders. A hybrid
  * approach in which only this segment is canonicalized might work, but it is
  * questionable if the overhead is worth the effort.
+ *
+ * Since we don't use the ElementInfo mark bits to keep track of what we have
+ * seen, this serializer can also collect garbage along the way (see
+ * FusedGcSerializer). In this mode we mark all objects we serialize as live,
+ * queue the references we don't follow (filtered fields) for the gc, and let
+ * the heap finish the mark phase from its roots and sweep before we serialize
+ * the thread states. Since the referents of WeakReferences can only be
+ * serialized once we know if they survived, they are appended after the sweep.
+ * We do the same without gc, so that a state gets the same serialization
+ * no matter if the transition that led to it collected garbage or not
  */
-public class CFSerializer extends FilteringSerializer {
+public class CFSerializer extends FilteringSerializer implements FusedGcSerializer {
 
   // we flip this on every serialization, which helps us to avoid passes
   // over the serialized objects to reset their sids. This work by resetting
@@ -51,6 +72,67 @@ public class CFSerializer extends FilteringSerializer {
 
   int sidCount;
 
+  //--- fused gc support
+
+  // set by requestGc(), reset after the next serialization
+  SparseClusterArrayHeap gcHeap;
+
+  // are we in the gc mark phase, i.e. before the heap got swept
+  boolean isMarking;
+
+  // the WeakReference objects we serialized, in order of traversal (also without gc)
+  ArrayList<ElementInfo> weakRefs = new ArrayList<ElementInfo>();
+
+  // the reference slots that are not followed by the serializer, indexed by class uniqueId
+  final ObjVector<FinalBitSet> instanceGcRefMasks = new ObjVector<FinalBitSet>();
+
+
+  public boolean requestGc () {
+    Heap h = ks.getHeap();
+    if (h instanceof SparseClusterArrayHeap){
+      gcHeap = (SparseClusterArrayHeap)h;
+      return true;
+    } else {
+      return false;
+    }
+  }
+
+  /**
+   * the storage offset of the WeakReference field that is not traced by the gc.
+   * NOTE - this only works with our own WeakReference implementation (see
+   * ElementInfo.markRecursive())
+   */
+  protected int getWeakReferentSlot (ClassInfo ci){
+    for (; ci != null; ci = ci.getSuperClass()){
+      if (ci.isReferenceClassInfo()){
+        return ci.getDeclaredInstanceField(0).getStorageOffset();
+      }
+    }
+    return -1;
+  }
+
+  protected FinalBitSet getInstanceGcRefMask (ClassInfo ci){
+    int cid = ci.getUniqueId();
+    FinalBitSet v = instanceGcRefMasks.get(cid);
+    if (v == null) {
+      FinalBitSet refs = getInstanceRefMask(ci);
+      int weakSlot = ci.isWeakReference() ? getWeakReferentSlot(ci) : -1;
+
+      BitArray b = new BitArray(ci.getInstanceDataSize());
+      int n = ci.getNumberOfInstanceFields();
+      for (int i=0; i<n; i++){
+        FieldInfo fi = ci.getInstanceField(i);
+        int idx = fi.getStorageOffset();
+        if (fi.isReference() && !refs.get(idx) && idx != weakSlot){
+          b.set(idx);
+        }
+      }
+      v = FinalBitSet.create(b);
+      instanceGcRefMasks.set(cid, v);
+    }
+    return v;
+  }
+
   @Override
   protected void initReferenceQueue() {
     super.initReferenceQueue();
@@ -69,10 +151,13 @@ public class CFSerializer extends FilteringSerializer {
     refQueue.add(ei);
   }
 
-  @Override
-  public void processReference(int objref) {
+  /**
+   * turn a reference value into its canonical (traversal order) value, queueing
+   * objects we haven't seen before in this serialization run
+   */
+  protected int getCanonicalReference(int objref) {
     if (objref < 0) {
-      buf.add(-1);
+      return -1;
 
     } else {
       ElementInfo ei = heap.get(objref);
@@ -93,10 +178,15 @@ public class CFSerializer extends FilteringSerializer {
         sid = -sid;
       }
 
-      // note that we always add the absolute sid value
-      buf.add(sid);
+      // note that we always return the absolute sid value
+      return sid;
     }
   }
+
+  @Override
+  public void processReference(int objref) {
+    buf.add(getCanonicalReference(objref));
+  }
   
   @Override
   protected void serializeFrame(StackFrame frame){
@@ -124,6 +214,146 @@ public class CFSerializer extends FilteringSerializer {
   protected void processReferenceQueue() {
     refQueue.process(this);
   }
+
+  @Override
+  public void processElementInfo(ElementInfo ei) {
+    if (gcHeap != null && !ei.isArray()) {
+      ClassInfo ci = ei.getClassInfo();
+
+      if (isMarking) {
+        // everything we don't follow has to be traced by the gc
+        FinalBitSet gcRefs = getInstanceGcRefMask(ci);
+        Fields fields = ei.getFields();
+        int n = ci.getInstanceDataSize();
+        for (int i = 0; i < n; i++) {
+          if (gcRefs.get(i)) {
+            gcHeap.queueMark(fields.getIntValue(i));
+          }
+        }
+
+        if (ci.isWeakReference()) {
+          gcHeap.registerWeakReference(ei);
+        }
+      }
+    }
+
+    if (!ei.isArray() && ei.getClassInfo().isWeakReference()) {
+      weakRefs.add(ei);
+    }
+
+    if (isMarking) {
+      ei.setMarked();
+    }
+
+    super.processElementInfo(ei);
+  }
+
+  @Override
+  protected void processNamedFields (ClassInfo ci, Fields fields){
+    if (ci.isWeakReference()) {
+      // skip the referent, we serialize it after the heap (and sweep)
+      FinalBitSet filtered = getInstanceFilterMask(ci);
+      FinalBitSet refs = getInstanceRefMask(ci);
+      int weakSlot = getWeakReferentSlot(ci);
+
+      int n = ci.getInstanceDataSize();
+      for (int i = 0; i < n; i++) {
+        if (!filtered.get(i) && i != weakSlot) {
+          int v = fields.getIntValue(i);
+          if (refs.get(i)) {
+            processReference(v);
+          } else {
+            buf.add(v);
+          }
+        }
+      }
+
+    } else {
+      super.processNamedFields(ci, fields);
+    }
+  }
+
+  /**
+   * serialize the referents of all WeakReferences we have seen so far, which
+   * at this point are either live or reset by the gc (if we collected any).
+   * Note this can reach new WeakReferences
+   */
+  protected void serializeWeakReferents (){
+    for (int i=0; i<weakRefs.size(); i++){
+      ElementInfo ei = weakRefs.get(i);
+      ClassInfo ci = ei.getClassInfo();
+      int weakSlot = getWeakReferentSlot(ci);
+
+      if (!getInstanceFilterMask(ci).get(weakSlot)){
+        processReference(ei.getFields().getIntValue(weakSlot));
+        processReferenceQueue();
+      }
+    }
+
+    weakRefs.clear();
+  }
+
+  protected int[] computeStoringDataWithGc() {
+    buf.clear();
+    heap = gcHeap;
+    initReferenceQueue();
+
+    gcHeap.startGc();
+    isMarking = true;
+
+    //--- serialize and mark everything we reach through non-filtered references
+    serializeStackFrames();
+    serializeStatics();
+    processReferenceQueue();
+    isMarking = false;
+
+    //--- let the heap mark the rest and collect
+    gcHeap.markRoots();
+    gcHeap.sweep();
+    ks.getStaticArea().cleanUpDanglingReferences(gcHeap);
+
+    serializeWeakReferents();
+    serializeThreadStates();
+
+    return buf.toArray();
+  }
+
+  @Override
+  protected int[] computeStoringData() {
+    if (gcHeap != null) {
+      try {
+        return computeStoringDataWithGc();
+      } finally {
+        gcHeap = null;
+        isMarking = false;
+        weakRefs.clear();
+      }
+
+    } else {
+      try {
+        return computeStoringDataWithoutGc();
+      } finally {
+        weakRefs.clear();
+      }
+    }
+  }
+
+  // same as FilteringSerializer, except of the WeakReference referents, which
+  // have to be in the same place as with gc
+  protected int[] computeStoringDataWithoutGc() {
+    buf.clear();
+    heap = ks.getHeap();
+    initReferenceQueue();
+
+    serializeStackFrames();
+    serializeStatics();
+    processReferenceQueue();
+
+    serializeWeakReferents();
+    serializeThreadStates();
+
+    return buf.toArray();
+  }
   
   @Override
   protected int getSerializedReferenceValue (ElementInfo ei){
@@ -31,6 +31,7 @@ import gov.nasa.jpf.jvm.JVM;
 import gov.nasa.jpf.jvm.MethodInfo;
 import gov.nasa.jpf.jvm.ReferenceProcessor;
 import gov.nasa.jpf.jvm.ReferenceQueue;
+import gov.nasa.jpf.jvm.SlabFields;
 import gov.nasa.jpf.jvm.StackFrame;
 import gov.nasa.jpf.jvm.StaticArea;
 import gov.nasa.jpf.jvm.StaticElementInfo;
@@ -227,14 +228,30 @@ public class FilteringSerializer extends AbstractSerializer implements ElementIn
     // we would have to blank the filtered slots and then visit the
     // non-filtered reference slots, i.e. do two iterations over
     // the mask bit sets
-    int[] values = fields.asFieldSlots();
-    for (int i = 0; i < values.length; i++) {
-      if (!filtered.get(i)) {
-        int v = values[i];
-        if (refs.get(i)) {
-          processReference(v);
-        } else {
-          buf.add(v);
+    if (fields instanceof SlabFields) {
+      // asFieldSlots() would copy the slots out of the slab
+      int n = ci.getInstanceDataSize();
+      for (int i = 0; i < n; i++) {
+        if (!filtered.get(i)) {
+          int v = fields.getIntValue(i);
+          if (refs.get(i)) {
+            processReference(v);
+          } else {
+            buf.add(v);
+          }
+        }
+      }
+
+    } else {
+      int[] values = fields.asFieldSlots();
+      for (int i = 0; i < values.length; i++) {
+        if (!filtered.get(i)) {
+          int v = values[i];
+          if (refs.get(i)) {
+            processReference(v);
+          } else {
+            buf.add(v);
+          }
         }
       }
     }
@@ -0,0 +1,520 @@
+//
+// Copyright (C) 2010 United States Government as represented by the
+// Administrator of the National Aeronautics and Space Administration
+// (NASA).  All Rights Reserved.
+//
+// This software is distributed under the NASA Open Source Agreement
+// (NOSA), version 1.3.  The NOSA has been approved by the Open Source
+// Initiative.  See the file NOSA-1.3-JPF at the top of the distribution
+// directory tree for the complete NOSA document.
+//
+// THE SUBJECT SOFTWARE IS PROVIDED "AS IS" WITHOUT ANY WARRANTY OF ANY
+// KIND, EITHER EXPRESSED, IMPLIED, OR STATUTORY, INCLUDING, BUT NOT
+// LIMITED TO, ANY WARRANTY THAT THE SUBJECT SOFTWARE WILL CONFORM TO
+// SPECIFICATIONS, ANY IMPLIED WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+// A PARTICULAR PURPOSE, OR FREEDOM FROM INFRINGEMENT, ANY WARRANTY THAT
+// THE SUBJECT SOFTWARE WILL BE ERROR FREE, OR ANY WARRANTY THAT
+// DOCUMENTATION, IF PROVIDED, WILL CONFORM TO THE SUBJECT SOFTWARE.
+//
+
+package gov.nasa.jpf.jvm.serialize;
+
+import gov.nasa.jpf.ListenerAdapter;
+import gov.nasa.jpf.jvm.ArrayFields;
+import gov.nasa.jpf.jvm.ClassInfo;
+import gov.nasa.jpf.jvm.ElementInfo;
+import gov.nasa.jpf.jvm.Fields;
+import gov.nasa.jpf.jvm.JVM;
+import gov.nasa.jpf.jvm.SlabFields;
+import gov.nasa.jpf.jvm.StackFrame;
+import gov.nasa.jpf.jvm.StaticArea;
+import gov.nasa.jpf.jvm.StaticElementInfo;
+import gov.nasa.jpf.jvm.ThreadInfo;
+import gov.nasa.jpf.jvm.bytecode.Instruction;
+import gov.nasa.jpf.search.Search;
+import gov.nasa.jpf.util.FinalBitSet;
+import gov.nasa.jpf.util.IndexIterator;
+import gov.nasa.jpf.util.IntVector;
+import gov.nasa.jpf.util.ObjVector;
+import gov.nasa.jpf.util.SparseClusterArray;
+
+import java.util.List;
+
+/**
+ * a CFSerializer that does not re-serialize the whole heap for each new state,
+ * but keeps 64bit hashes of the non-reference data per object, per class
+ * (statics) and per stack frame, and only recomputes the ones that have changed.
+ *
+ * We still have to traverse the heap from the roots to compute the canonical
+ * (traversal order) reference values, which also means we only include
+ * reachable objects, but for each object we only visit its reference slots.
+ * Everything is hashed in the same order in which CFSerializer writes it, hence
+ * this serializer matches the same states as a (non fused-gc) CFSerializer,
+ * modulo hash collisions. The only difference is that we also hash which frame
+ * slots hold references, which is determined by the code position anyways.
+ *
+ * We can't use the Area/Heap change bits for caching since they are relative to
+ * the last stored memento, i.e. they don't tell us anything after a backtrack.
+ * What we use instead is the copy-on-write discipline of Fields and StackFrames:
+ * once a Fields object is stored (ElementInfo.haveFieldsChanged() is false), it
+ * is never modified again - the next write clones it. The same holds for
+ * StackFrames that are not flagged as changed (ThreadInfo.topClone()). Hence a
+ * cached hash stays valid as long as the ElementInfo still refers to the
+ * same, unchanged Fields instance, no matter how we got to this state.
+ *
+ * Cache entries of collected objects are evicted when the gc releases them,
+ * entries of objects that went away because of a backtrack are evicted once
+ * they outnumber the ones we used in the last serialization
+ *
+ * The resulting storing data is just a few ints per thread, which is then hashed
+ * by the StateSet as usual.
+ */
+public class IncrementalSerializer extends CFSerializer {
+
+  static class ObjectHash {
+    Fields fields;   // the (unchanged) Fields instance the hash was computed for
+    long hash;
+    int epoch;       // the serialization that last used this entry
+  }
+
+  static class FrameCache {
+    StackFrame[] frames = new StackFrame[32];   // indexed by frame depth, bottom frame is 0
+    long[] hashes = new long[32];
+
+    void ensureCapacity (int n){
+      if (n > frames.length){
+        int newSize = Math.max(n, frames.length*2);
+
+        StackFrame[] newFrames = new StackFrame[newSize];
+        System.arraycopy(frames, 0, newFrames, 0, frames.length);
+        frames = newFrames;
+
+        long[] newHashes = new long[newSize];
+        System.arraycopy(hashes, 0, newHashes, 0, hashes.length);
+        hashes = newHashes;
+      }
+    }
+  }
+
+  /**
+   * evicts object hash cache entries for objects that are gone
+   */
+  class CacheEvicter extends ListenerAdapter {
+    @Override
+    public void objectReleased (JVM jvm){
+      evictObjectHash(jvm.getLastElementInfo().getObjectRef());
+    }
+
+    @Override
+    public void stateBacktracked (Search search){
+      if (nObjectHashes > 2*nReached){
+        evictStaleObjectHashes();
+      }
+    }
+  }
+
+  // object hash cache, indexed by object reference
+  protected SparseClusterArray<ObjectHash> objectHashes = new SparseClusterArray<ObjectHash>();
+  protected int nObjectHashes;
+
+  // static field hash cache, indexed by ClassInfo uniqueId
+  protected final ObjVector<ObjectHash> staticHashes = new ObjVector<ObjectHash>();
+
+  // frame hash caches, indexed by thread id
+  protected final ObjVector<FrameCache> frameCaches = new ObjVector<FrameCache>();
+
+  // the running hash of the current serialization, processReference() adds to it
+  protected long stateHash;
+
+  // number of the current serialization, and number of objects we have reached in it
+  protected int epoch;
+  protected int nReached;
+
+  // some statistics
+  protected long nHashed;
+  protected long nCached;
+
+
+  @Override
+  public void attach(JVM jvm) {
+    super.attach(jvm);
+
+    jvm.getJPF().addListener(new CacheEvicter());
+  }
+
+  /**
+   * we need to see all objects before they are collected, so we don't
+   * support fused gc
+   */
+  @Override
+  public boolean requestGc () {
+    return false;
+  }
+
+
+  //--- the hash primitives
+
+  static final long SEED = 0x9e3779b97f4a7c15L;
+
+  protected static long addToHash (long h, int v){
+    h += (v & 0xffffffffL);
+    h *= 0x9e3779b97f4a7c15L;
+    return h ^ (h >>> 32);
+  }
+
+  // Murmur3 fmix64
+  protected static long finalizeHash (long h){
+    h ^= h >>> 33;
+    h *= 0xff51afd7ed558ccdL;
+    h ^= h >>> 33;
+    h *= 0xc4ceb9fe1a85ec53L;
+    h ^= h >>> 33;
+    return h;
+  }
+
+  protected static long addToHash (long h, long v){
+    return addToHash( addToHash(h, (int)(v >>> 32)), (int)v);
+  }
+
+  protected void addLong (long v){
+    buf.add((int)(v >>> 32));
+    buf.add((int)v);
+  }
+
+  @Override
+  public void processReference(int objref) {
+    stateHash = addToHash(stateHash, getCanonicalReference(objref));
+  }
+
+
+  //--- heap objects
+
+  // this only hashes the non-reference data, references are added in traversal order
+  protected long computeObjectHash (ElementInfo ei){
+    Fields fields = ei.getFields();
+    ClassInfo ci = ei.getClassInfo();
+
+    long h = addToHash(SEED, ci.getUniqueId());
+
+    if (fields instanceof ArrayFields){ // not filtered
+      ArrayFields afields = (ArrayFields)fields;
+      h = addToHash(h, afields.arrayLength());
+
+      if (!afields.isReferenceArray()){
+        // no need to duplicate all the type specific packing, we just use buf
+        // as a scratch area (it isn't used for anything else before we are done
+        // with the heap)
+        buf.clear();
+        afields.appendTo(buf);
+        int len = buf.size();
+        for (int i=0; i<len; i++){
+          h = addToHash(h, buf.get(i));
+        }
+      }
+
+    } else { // named fields, filtered
+      FinalBitSet filtered = getInstanceFilterMask(ci);
+      FinalBitSet refs = getInstanceRefMask(ci);
+      if (fields instanceof SlabFields) {
+        int n = ci.getInstanceDataSize();
+        for (int i = 0; i < n; i++) {
+          if (!filtered.get(i) && !refs.get(i)) {
+            h = addToHash(h, fields.getIntValue(i));
+          }
+        }
+      } else {
+        int[] values = fields.asFieldSlots();
+        for (int i = 0; i < values.length; i++) {
+          if (!filtered.get(i) && !refs.get(i)) {
+            h = addToHash(h, values[i]);
+          }
+        }
+      }
+    }
+
+    nHashed++;
+    return h;
+  }
+
+  protected long getObjectHash (ElementInfo ei){
+    if (ei.haveFieldsChanged()){
+      // fields are still open for modification, don't cache
+      return computeObjectHash(ei);
+
+    } else {
+      int ref = ei.getObjectRef();
+      Fields fields = ei.getFields();
+      ObjectHash oh = objectHashes.get(ref);
+
+      if (oh == null){
+        oh = new ObjectHash();
+        objectHashes.set(ref, oh);
+        nObjectHashes++;
+
+      } else if (oh.fields == fields){
+        nCached++;
+        oh.epoch = epoch;
+        return oh.hash;
+      }
+
+      oh.fields = fields;
+      oh.hash = computeObjectHash(ei);
+      oh.epoch = epoch;
+      return oh.hash;
+    }
+  }
+
+  protected void evictObjectHash (int ref){
+    if (objectHashes.get(ref) != null){
+      objectHashes.set(ref, null);
+      nObjectHashes--;
+    }
+  }
+
+  protected void evictStaleObjectHashes (){
+    IntVector stale = new IntVector();
+
+    IndexIterator it = objectHashes.getElementIndexIterator();
+    for (int ref = it.next(); ref >= 0; ref = it.next()){
+      if (objectHashes.get(ref).epoch != epoch){
+        stale.add(ref);
+      }
+    }
+
+    int n = stale.size();
+    for (int i=0; i<n; i++){
+      objectHashes.set(stale.get(i), null);
+    }
+    nObjectHashes -= n;
+  }
+
+  // called in traversal order from the reference queue
+  @Override
+  public void processElementInfo(ElementInfo ei) {
+    stateHash = addToHash(stateHash, getObjectHash(ei));
+    nReached++;
+
+    Fields fields = ei.getFields();
+    if (fields instanceof ArrayFields){
+      ArrayFields afields = (ArrayFields)fields;
+      if (afields.isReferenceArray()){
+        int[] values = afields.asReferenceArray();
+        for (int i = 0; i < values.length; i++) {
+          processReference(values[i]);
+        }
+      }
+
+    } else {
+      ClassInfo ci = ei.getClassInfo();
+      FinalBitSet filtered = getInstanceFilterMask(ci);
+      FinalBitSet refs = getInstanceRefMask(ci);
+      int weakSlot = -1;
+
+      if (ci.isWeakReference()){
+        // referents go last, same as in CFSerializer
+        weakSlot = getWeakReferentSlot(ci);
+        weakRefs.add(ei);
+      }
+
+      int n = ci.getInstanceDataSize();
+      for (int i = 0; i < n; i++) {
+        if (refs.get(i) && !filtered.get(i) && i != weakSlot) {
+          processReference(fields.getIntValue(i));
+        }
+      }
+    }
+  }
+
+
+  //--- statics
+
+  protected long computeStaticHash (StaticElementInfo sei){
+    Fields fields = sei.getFields();
+    ClassInfo ci = sei.getClassInfo();
+    FinalBitSet filtered = getStaticFilterMask(ci);
+    FinalBitSet refs = getStaticRefMask(ci);
+
+    long h = addToHash(SEED, ci.getUniqueId());
+
+    int max = ci.getStaticDataSize();
+    for (int i = 0; i < max; i++) {
+      if (!filtered.get(i) && !refs.get(i)) {
+        h = addToHash(h, fields.getIntValue(i));
+      }
+    }
+
+    nHashed++;
+    return h;
+  }
+
+  protected long getStaticHash (StaticElementInfo sei){
+    if (sei.haveFieldsChanged()){
+      return computeStaticHash(sei);
+
+    } else {
+      int cid = sei.getClassInfo().getUniqueId();
+      Fields fields = sei.getFields();
+      ObjectHash oh = staticHashes.get(cid);
+
+      if (oh == null){
+        oh = new ObjectHash();
+        staticHashes.set(cid, oh);
+
+      } else if (oh.fields == fields){
+        nCached++;
+        return oh.hash;
+      }
+
+      oh.fields = fields;
+      oh.hash = computeStaticHash(sei);
+      return oh.hash;
+    }
+  }
+
+  @Override
+  protected void serializeStatics(){
+    StaticArea statics = ks.getStaticArea();
+    stateHash = addToHash(stateHash, statics.getLength());
+
+    for (StaticElementInfo sei : statics) {
+      serializeClass(sei);
+    }
+  }
+
+  @Override
+  protected void serializeClass (StaticElementInfo sei){
+    // the class init status is not part of the Fields
+    stateHash = addToHash(stateHash, sei.getStatus());
+    stateHash = addToHash(stateHash, getStaticHash(sei));
+
+    Fields fields = sei.getFields();
+    ClassInfo ci = sei.getClassInfo();
+    FinalBitSet filtered = getStaticFilterMask(ci);
+    FinalBitSet refs = getStaticRefMask(ci);
+    int max = ci.getStaticDataSize();
+    for (int i = 0; i < max; i++) {
+      if (refs.get(i) && !filtered.get(i)) {
+        processReference(fields.getIntValue(i));
+      }
+    }
+  }
+
+
+  //--- threads
+
+  // this only hashes the non-reference slots, references are added in traversal order
+  protected long computeFrameHash (StackFrame frame){
+    long h = addToHash(SEED, frame.getMethodInfo().getGlobalId());
+
+    Instruction pc = frame.getPC();
+    h = addToHash(h, (pc != null) ? pc.getInstructionIndex() : -1);
+
+    int len = frame.getTopPos()+1;
+    h = addToHash(h, len);
+
+    int[] slots = frame.getSlots();
+    for (int i = 0; i < len; i++) {
+      if (frame.isReferenceSlot(i)) {
+        h = addToHash(h, -1); // the slot layout is given by the pc
+      } else {
+        h = addToHash(h, slots[i]);
+      }
+    }
+
+    nHashed++;
+    return h;
+  }
+
+  protected long getFrameHash (FrameCache fc, int depth, StackFrame frame){
+    if (frame.hasChanged()){
+      return computeFrameHash(frame);
+
+    } else {
+      if (fc.frames[depth] == frame){
+        nCached++;
+      } else {
+        fc.frames[depth] = frame;
+        fc.hashes[depth] = computeFrameHash(frame);
+      }
+      return fc.hashes[depth];
+    }
+  }
+
+  @Override
+  protected void serializeStackFrames(ThreadInfo ti){
+    int tid = ti.getId();
+    FrameCache fc = frameCaches.get(tid);
+    if (fc == null){
+      fc = new FrameCache();
+      frameCaches.set(tid, fc);
+    }
+
+    int depth = ti.getStackDepth();
+    fc.ensureCapacity(depth);
+
+    // we need to add the thread object itself as a root
+    processReference( ti.getThreadObjectRef());
+
+    // same (top down) order as CFSerializer, so that we get the same sids
+    for (StackFrame frame = ti.getTopFrame(); frame != null; frame = frame.getPrevious()){
+      depth--;
+      stateHash = addToHash(stateHash, getFrameHash(fc, depth, frame));
+
+      int len = frame.getTopPos()+1;
+      int[] slots = frame.getSlots();
+      for (int i = 0; i < len; i++) {
+        if (frame.isReferenceSlot(i)) {
+          processReference(slots[i]);
+        }
+      }
+    }
+  }
+
+  @Override
+  protected void serializeLockedObjects(List<ElementInfo> lockedObjects){
+    // we have to be order independent, and can afford a proper hash here
+    int n = lockedObjects.size();
+    long h = 0;
+    for (int i=0; i<n; i++){
+      h += finalizeHash( addToHash(SEED, getSerializedReferenceValue(lockedObjects.get(i))));
+    }
+    buf.add(n);
+    addLong(h);
+  }
+
+
+  //--- our main purpose in life
+
+  @Override
+  protected int[] computeStoringData() {
+    heap = ks.getHeap();
+    weakRefs.clear();
+    initReferenceQueue();
+
+    epoch++;
+    nReached = 0;
+    stateHash = SEED;
+
+    serializeStackFrames();
+    serializeStatics();
+    processReferenceQueue();
+    serializeWeakReferents();
+
+    buf.clear();
+    buf.add(nReached);
+    addLong(finalizeHash(stateHash));
+
+    // the lock state refers to the sids we just assigned
+    serializeThreadStates();
+
+    return buf.toArray();
+  }
+
+  public long getNumberOfHashed(){
+    return nHashed;
+  }
+
+  public long getNumberOfCached(){
+    return nCached;
+  }
+}
@@ -51,6 +51,11 @@ public class TopFrameSerializer extends CFSerializer {
   }
 
 
+  @Override
+  public boolean requestGc () {
+    return false; // we only serialize the top frames, i.e. we don't reach all live objects
+  }
+
   @Override
   protected void queueReference(ElementInfo ei){
     if (traverseObjects){
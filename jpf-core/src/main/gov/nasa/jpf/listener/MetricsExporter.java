@@ -0,0 +1,450 @@
+//
+// Copyright (C) 2011 United States Government as represented by the
+// Administrator of the National Aeronautics and Space Administration
+// (NASA).  All Rights Reserved.
+//
+// This software is distributed under the NASA Open Source Agreement
+// (NOSA), version 1.3.  The NOSA has been approved by the Open Source
+// Initiative.  See the file NOSA-1.3-JPF at the top of the distribution
+// directory tree for the complete NOSA document.
+//
+// THE SUBJECT SOFTWARE IS PROVIDED "AS IS" WITHOUT ANY WARRANTY OF ANY
+// KIND, EITHER EXPRESSED, IMPLIED, OR STATUTORY, INCLUDING, BUT NOT
+// LIMITED TO, ANY WARRANTY THAT THE SUBJECT SOFTWARE WILL CONFORM TO
+// SPECIFICATIONS, ANY IMPLIED WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+// A PARTICULAR PURPOSE, OR FREEDOM FROM INFRINGEMENT, ANY WARRANTY THAT
+// THE SUBJECT SOFTWARE WILL BE ERROR FREE, OR ANY WARRANTY THAT
+// DOCUMENTATION, IF PROVIDED, WILL CONFORM TO THE SUBJECT SOFTWARE.
+//
+package gov.nasa.jpf.listener;
+
+import gov.nasa.jpf.Config;
+import gov.nasa.jpf.JPF;
+import gov.nasa.jpf.ListenerAdapter;
+import gov.nasa.jpf.annotation.JPFOption;
+import gov.nasa.jpf.annotation.JPFOptions;
+import gov.nasa.jpf.jvm.ChoiceGenerator;
+import gov.nasa.jpf.jvm.JVM;
+import gov.nasa.jpf.jvm.SerializingStateSet;
+import gov.nasa.jpf.jvm.StateSet;
+import gov.nasa.jpf.jvm.ThreadChoiceGenerator;
+import gov.nasa.jpf.search.Search;
+import gov.nasa.jpf.util.JPFLogger;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.util.Timer;
+import java.util.TimerTask;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * listener that exports live search metrics while JPF is running, as a JMX
+ * MBean and/or as a snapshot file that is written periodically.
+ *
+ * The search thread only updates primitive counters in the listener
+ * notifications, i.e. it doesn't allocate or synchronize. Snapshots and
+ * rates are computed by a background timer thread, which might see
+ * slightly stale values.
+ *
+ * Snapshot files are either CSV (one line per interval is appended) or JSON
+ * (the file is replaced with the last snapshot)
+ */
+@JPFOptions({
+  @JPFOption(type = "String", key = "metrics.file", defaultValue = "", comment = "file to write snapshots to"),
+  @JPFOption(type = "String", key = "metrics.format", defaultValue = "csv", comment = "snapshot format (csv or json)"),
+  @JPFOption(type = "Long", key = "metrics.interval", defaultValue = "10000", comment = "snapshot interval [msec]"),
+  @JPFOption(type = "Boolean", key = "metrics.jmx", defaultValue = "true", comment = "register a JMX MBean"),
+  @JPFOption(type = "String", key = "metrics.solver_counter", defaultValue = "", comment = "MetricsExporter.Counter class for solver calls")
+})
+public class MetricsExporter extends ListenerAdapter implements MetricsExporterMBean {
+
+  static JPFLogger log = JPF.getLogger("gov.nasa.jpf.listener.MetricsExporter");
+
+  static final String OBJECT_NAME = "gov.nasa.jpf:type=MetricsExporter";
+
+  static final String CSV_HEADER = "time,new,visited,end,backtracked,states/sec,new ratio,depth,max depth,"
+                               + "stateset size,stateset load,heap objects,gc cycles,used memory,"
+                               + "thread cgs,data cgs,solver calls,solver calls/sec";
+
+  /**
+   * to be implemented by extensions that call decision procedures (e.g.
+   * jpf-symbc), so that we can report solver call rates. The value is
+   * read from our background thread. Set with metrics.solver_counter
+   */
+  public interface Counter {
+    long getValue();
+  }
+
+  // configuration
+  File file;
+  boolean isJSON;
+  long interval;
+  boolean useJMX;
+  Counter solverCounter;
+
+  JVM vm;
+  StateSet stateSet;
+  Timer timer;
+  ObjectName objectName;
+
+  // updated by the search thread
+  long startTime;
+  long newStates;
+  long visitedStates;
+  long endStates;
+  long backtracked;
+  int depth;
+  int maxDepth;
+  int heapObjects;
+  int gcCycles;
+  int threadCGs;
+  int dataCGs;
+
+  // counters are cumulative over all runs in this JVM, we report per run
+  long solverCallsBase;
+
+  // updated by the snapshot thread
+  long lastTime;
+  long lastStates;
+  long lastSolverCalls;
+  double statesPerSecond;
+  double solverCallsPerSecond;
+
+  public MetricsExporter (Config conf, JPF jpf){
+    String fname = conf.getString("metrics.file");
+    if (fname != null && fname.length() > 0){
+      file = new File(fname);
+    }
+    isJSON = "json".equalsIgnoreCase(conf.getString("metrics.format", "csv"));
+    interval = Math.max(conf.getDuration("metrics.interval", 10000), 100);
+    useJMX = conf.getBoolean("metrics.jmx", true);
+    solverCounter = conf.getInstance("metrics.solver_counter", Counter.class);
+
+    vm = jpf.getVM();
+  }
+
+  //--- the search thread part
+
+  public void searchStarted (Search search){
+    stateSet = vm.getStateSet();
+    startTime = System.currentTimeMillis();
+    lastTime = startTime;
+
+    if (solverCounter != null){
+      solverCallsBase = solverCounter.getValue();
+    }
+
+    if (useJMX){
+      registerMBean();
+    }
+
+    if (file != null){
+      if (!isJSON){
+        writeCSVHeader();
+      }
+    }
+
+    timer = new Timer("jpf-metrics", true);
+    timer.schedule( new TimerTask(){
+      public void run(){
+        snapshot();
+      }
+    }, interval, interval);
+  }
+
+  public void stateAdvanced (Search search){
+    if (search.isNewState()){
+      newStates++;
+      heapObjects = vm.getHeap().size();
+    } else {
+      visitedStates++;
+    }
+
+    if (search.isEndState()){
+      endStates++;
+    }
+
+    depth = search.getDepth();
+    if (depth > maxDepth){
+      maxDepth = depth;
+    }
+  }
+
+  public void stateBacktracked (Search search){
+    backtracked++;
+    depth = search.getDepth();
+  }
+
+  public void stateRestored (Search search){
+    depth = search.getDepth();
+  }
+
+  public void gcBegin (JVM vm){
+    gcCycles++;
+  }
+
+  public void choiceGeneratorSet (JVM vm){
+    ChoiceGenerator<?> cg = vm.getChoiceGenerator();
+    if (cg instanceof ThreadChoiceGenerator){
+      threadCGs++;
+    } else {
+      dataCGs++;
+    }
+  }
+
+  public void searchFinished (Search search){
+    if (timer != null){
+      timer.cancel();
+      timer = null;
+    }
+
+    snapshot(); // make sure the last values are in the file
+
+    if (objectName != null){
+      unregisterMBean();
+    }
+  }
+
+  //--- the snapshot thread part
+
+  protected void registerMBean (){
+    try {
+      MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      objectName = new ObjectName(OBJECT_NAME);
+      if (server.isRegistered(objectName)){ // left over from a previous run
+        server.unregisterMBean(objectName);
+      }
+      server.registerMBean(this, objectName);
+
+    } catch (Exception x){ // JMX throws a whole zoo of checked exceptions
+      log.warning("could not register MBean: ", x);
+      objectName = null;
+    }
+  }
+
+  protected void unregisterMBean (){
+    try {
+      ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+    } catch (Exception x){
+      log.warning("could not unregister MBean: ", x);
+    }
+    objectName = null;
+  }
+
+  /**
+   * update the rates and write the snapshot file. This is called from the
+   * timer thread, and once more at the end of the search
+   */
+  protected synchronized void snapshot (){
+    long now = System.currentTimeMillis();
+    long states = newStates + visitedStates;
+    long solverCalls = getSolverCalls();
+
+    long dt = now - lastTime;
+    if (dt > 0){
+      statesPerSecond = (states - lastStates) * 1000.0 / dt;
+      solverCallsPerSecond = (solverCalls - lastSolverCalls) * 1000.0 / dt;
+    }
+    lastTime = now;
+    lastStates = states;
+    lastSolverCalls = solverCalls;
+
+    if (file != null){
+      if (isJSON){
+        writeJSON();
+      } else {
+        writeCSV();
+      }
+    }
+  }
+
+  protected void writeCSVHeader (){
+    try {
+      PrintWriter pw = new PrintWriter( new FileWriter(file));
+      pw.println(CSV_HEADER);
+      pw.close();
+    } catch (IOException iox){
+      log.warning("could not write metrics file " + file + ": " + iox);
+      file = null;
+    }
+  }
+
+  protected void writeCSV (){
+    try {
+      PrintWriter pw = new PrintWriter( new FileWriter(file, true));
+      pw.print(getElapsedTime());
+      pw.print(',');
+      pw.print(getNewStates());
+      pw.print(',');
+      pw.print(getVisitedStates());
+      pw.print(',');
+      pw.print(getEndStates());
+      pw.print(',');
+      pw.print(getBacktracked());
+      pw.print(',');
+      pw.print(format(getStatesPerSecond()));
+      pw.print(',');
+      pw.print(format(getNewStateRatio()));
+      pw.print(',');
+      pw.print(getDepth());
+      pw.print(',');
+      pw.print(getMaxDepth());
+      pw.print(',');
+      pw.print(getStateSetSize());
+      pw.print(',');
+      pw.print(format(getStateSetLoad()));
+      pw.print(',');
+      pw.print(getHeapObjects());
+      pw.print(',');
+      pw.print(getGcCycles());
+      pw.print(',');
+      pw.print(getUsedMemory());
+      pw.print(',');
+      pw.print(getThreadCGs());
+      pw.print(',');
+      pw.print(getDataCGs());
+      pw.print(',');
+      pw.print(getSolverCalls());
+      pw.print(',');
+      pw.println(format(getSolverCallsPerSecond()));
+      pw.close();
+
+    } catch (IOException iox){
+      log.warning("could not write metrics file " + file + ": " + iox);
+    }
+  }
+
+  protected void writeJSON (){
+    // write to a temp file first, so that readers never see a partial snapshot
+    File tmp = new File(file.getPath() + ".tmp");
+    try {
+      PrintWriter pw = new PrintWriter( new FileWriter(tmp));
+      pw.println("{");
+      pw.println("  \"time\": " + getElapsedTime() + ",");
+      pw.println("  \"new\": " + getNewStates() + ",");
+      pw.println("  \"visited\": " + getVisitedStates() + ",");
+      pw.println("  \"end\": " + getEndStates() + ",");
+      pw.println("  \"backtracked\": " + getBacktracked() + ",");
+      pw.println("  \"states_per_sec\": " + format(getStatesPerSecond()) + ",");
+      pw.println("  \"new_ratio\": " + format(getNewStateRatio()) + ",");
+      pw.println("  \"depth\": " + getDepth() + ",");
+      pw.println("  \"max_depth\": " + getMaxDepth() + ",");
+      pw.println("  \"stateset_size\": " + getStateSetSize() + ",");
+      pw.println("  \"stateset_load\": " + format(getStateSetLoad()) + ",");
+      pw.println("  \"heap_objects\": " + getHeapObjects() + ",");
+      pw.println("  \"gc_cycles\": " + getGcCycles() + ",");
+      pw.println("  \"used_memory\": " + getUsedMemory() + ",");
+      pw.println("  \"thread_cgs\": " + getThreadCGs() + ",");
+      pw.println("  \"data_cgs\": " + getDataCGs() + ",");
+      pw.println("  \"solver_calls\": " + getSolverCalls() + ",");
+      pw.println("  \"solver_calls_per_sec\": " + format(getSolverCallsPerSecond()));
+      pw.println("}");
+      pw.close();
+
+      // this atomically replaces the old file on POSIX systems. Some platforms
+      // can't rename over an existing file, in which case readers might not
+      // find a snapshot for a moment
+      if (!tmp.renameTo(file)){
+        file.delete();
+        if (!tmp.renameTo(file)){
+          log.warning("could not rename metrics file: " + tmp);
+        }
+      }
+
+    } catch (IOException iox){
+      log.warning("could not write metrics file " + file + ": " + iox);
+    }
+  }
+
+  static String format (double d){
+    return Double.toString( Math.round(d * 100) / 100.0);
+  }
+
+  //--- MetricsExporterMBean interface
+
+  public long getElapsedTime(){
+    return System.currentTimeMillis() - startTime;
+  }
+
+  public long getNewStates(){
+    return newStates;
+  }
+
+  public long getVisitedStates(){
+    return visitedStates;
+  }
+
+  public long getEndStates(){
+    return endStates;
+  }
+
+  public long getBacktracked(){
+    return backtracked;
+  }
+
+  public double getStatesPerSecond(){
+    return statesPerSecond;
+  }
+
+  public double getNewStateRatio(){
+    long n = newStates;
+    long total = n + visitedStates;
+    return (total > 0) ? (double)n / total : 0.0;
+  }
+
+  public int getDepth(){
+    return depth;
+  }
+
+  public int getMaxDepth(){
+    return maxDepth;
+  }
+
+  public int getStateSetSize(){
+    StateSet s = stateSet;
+    return (s != null) ? s.size() : 0;
+  }
+
+  public double getStateSetLoad(){
+    StateSet s = stateSet;
+    if (s instanceof SerializingStateSet){
+      return ((SerializingStateSet)s).getLoadFactor();
+    } else {
+      return -1.0; // unknown
+    }
+  }
+
+  public int getHeapObjects(){
+    return heapObjects;
+  }
+
+  public int getGcCycles(){
+    return gcCycles;
+  }
+
+  public long getUsedMemory(){
+    Runtime rt = Runtime.getRuntime();
+    return rt.totalMemory() - rt.freeMemory();
+  }
+
+  public int getThreadCGs(){
+    return threadCGs;
+  }
+
+  public int getDataCGs(){
+    return dataCGs;
+  }
+
+  public long getSolverCalls(){
+    return (solverCounter != null) ? solverCounter.getValue() - solverCallsBase : 0;
+  }
+
+  public double getSolverCallsPerSecond(){
+    return solverCallsPerSecond;
+  }
+}
@@ -28,6 +28,7 @@ import gov.nasa.jpf.jvm.Step;
 import gov.nasa.jpf.jvm.Transition;
 import gov.nasa.jpf.jvm.bytecode.Instruction;
 import gov.nasa.jpf.util.Left;
+import gov.nasa.jpf.util.Profiler;
 import gov.nasa.jpf.util.RepositoryEntry;
 
 import java.io.FileNotFoundException;
@@ -373,6 +374,10 @@ public class ConsolePublisher extends Publisher {
     pw.println("states:             new=" + stat.newStates + ", visited=" + stat.visitedStates
             + ", backtracked=" + stat.backtracked + ", end=" + stat.endStates);
     pw.println("search:             maxDepth=" + stat.maxDepth + ", constraints hit=" + stat.constraints);
+    if (stat.replayedStates > 0){
+      pw.println("replay:             states=" + stat.replayedStates + ", transitions=" + stat.replayedTransitions
+              + ", checkpoint hits=" + stat.checkpointHits);
+    }
     pw.println("choice generators:  thread=" + stat.threadCGs
             + " (signal=" + stat.signalCGs + ", lock=" + stat.monitorCGs + ", shared ref=" + stat.sharedAccessCGs
             + "), data=" + stat.dataCGs);
@@ -385,6 +390,10 @@ public class ConsolePublisher extends Publisher {
 
     pw.println("loaded code:        classes=" + ClassInfo.getNumberOfLoadedClasses() + ", methods="
             + MethodInfo.getNumberOfLoadedMethods());    
+
+    if (Profiler.ENABLED){
+      Profiler.printReport(pw);
+    }
   }
   
   public void publishStatistics() {
@@ -30,8 +30,11 @@ import gov.nasa.jpf.jvm.bytecode.FieldInstruction;
 import gov.nasa.jpf.jvm.bytecode.Instruction;
 import gov.nasa.jpf.jvm.bytecode.InvokeInstruction;
 import gov.nasa.jpf.jvm.bytecode.LockInstruction;
+import gov.nasa.jpf.search.CheckpointClient;
 import gov.nasa.jpf.search.Search;
 
+import java.io.Serializable;
+
 /**
  * simple structure to hold statistics info created by Reporters/Publishers
  * this is kind of a second tier SearchListener, which does not
@@ -44,8 +47,12 @@ import gov.nasa.jpf.search.Search;
  * 
  * Note that Statistics might be accessed by a background thread
  * reporting JPF progress, hence we have to synchronize
+ *
+ * Statistics are stored in search checkpoints, so that resumed searches
+ * report the totals
  */
-public class Statistics extends ListenerAdapter implements Cloneable {
+@SuppressWarnings("serial")
+public class Statistics extends ListenerAdapter implements Cloneable, Serializable, CheckpointClient<Statistics> {
     
   // we make these public since we don't want to add a gazillion of
   // getters for these purely informal numbers
@@ -71,6 +78,11 @@ public class Statistics extends ListenerAdapter implements Cloneable {
   public long nReleasedObjects = 0;
   public int maxLiveObjects = 0;
 
+  // only set by searches that replay states from their choice trails (see setReplayStatistics)
+  public long replayedStates = 0;
+  public long replayedTransitions = 0;
+  public long checkpointHits = 0;
+
   public Statistics clone() {
     try {
       return (Statistics)super.clone();
@@ -79,6 +91,39 @@ public class Statistics extends ListenerAdapter implements Cloneable {
     }
   }
   
+  //--- CheckpointClient interface
+
+  public Statistics getCheckpoint() {
+    return clone();
+  }
+
+  public void restoreCheckpoint (Statistics s) {
+    maxUsed = s.maxUsed;
+    newStates = s.newStates;
+    backtracked = s.backtracked;
+    restored = s.restored;
+    processed = s.processed;
+    constraints = s.constraints;
+    visitedStates = s.visitedStates;
+    endStates = s.endStates;
+    maxDepth = s.maxDepth;
+
+    gcCycles = s.gcCycles;
+    insns = s.insns;
+    threadCGs = s.threadCGs;
+    sharedAccessCGs = s.sharedAccessCGs;
+    monitorCGs = s.monitorCGs;
+    signalCGs = s.signalCGs;
+    dataCGs = s.dataCGs;
+    nNewObjects = s.nNewObjects;
+    nReleasedObjects = s.nReleasedObjects;
+    maxLiveObjects = s.maxLiveObjects;
+
+    replayedStates = s.replayedStates;
+    replayedTransitions = s.replayedTransitions;
+    checkpointHits = s.checkpointHits;
+  }
+
   public void gcBegin (JVM vm) {
     int heapSize = vm.getHeap().size();
     if (heapSize > maxLiveObjects){
@@ -158,6 +203,16 @@ public class Statistics extends ListenerAdapter implements Cloneable {
   public void stateRestored (Search search){
     restored++;
   }
+
+  /**
+   * called by searches that re-create states by replaying choice trails, we
+   * don't know about replays from the listener notifications alone
+   */
+  public void setReplayStatistics (long states, long transitions, long hits){
+    replayedStates = states;
+    replayedTransitions = transitions;
+    checkpointHits = hits;
+  }
     
   public void searchConstraintHit (Search search){
     constraints++;
@@ -11,6 +11,7 @@ import gov.nasa.jpf.jvm.StackFrame;
 import gov.nasa.jpf.jvm.Step;
 import gov.nasa.jpf.jvm.ThreadInfo;
 import gov.nasa.jpf.jvm.Transition;
+import gov.nasa.jpf.util.Profiler;
 import gov.nasa.jpf.util.RepositoryEntry;
 
 import java.io.FileNotFoundException;
@@ -236,6 +237,17 @@ public class XMLPublisher extends Publisher {
     out.println("    <backtracked-states>" + stat.backtracked + "</backtracked-states>");
     out.println("    <end-states>" + stat.endStates + "</end-states>");
     out.println("    <max-memory unit=\"MB\">" + (stat.maxUsed >>20) + "</max-memory>");
+
+    if (Profiler.ENABLED){
+      out.println("    <profile>");
+      for (Profiler.Phase p : Profiler.getPhases()){
+        if (p.getCount() > 0){
+          out.println("      <phase name=\"" + p.getName() + "\" count=\"" + p.getCount()
+                  + "\" total-ns=\"" + p.getTotalTime() + "\" max-ns=\"" + p.getMaxTime() + "\"/>");
+        }
+      }
+      out.println("    </profile>");
+    }
     out.println("  </statistics>");
   }
 
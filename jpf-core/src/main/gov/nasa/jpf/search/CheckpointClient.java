@@ -0,0 +1,44 @@
+//
+// Copyright (C) 2011 United States Government as represented by the
+// Administrator of the National Aeronautics and Space Administration
+// (NASA).  All Rights Reserved.
+//
+// This software is distributed under the NASA Open Source Agreement
+// (NOSA), version 1.3.  The NOSA has been approved by the Open Source
+// Initiative.  See the file NOSA-1.3-JPF at the top of the distribution
+// directory tree for the complete NOSA document.
+//
+// THE SUBJECT SOFTWARE IS PROVIDED "AS IS" WITHOUT ANY WARRANTY OF ANY
+// KIND, EITHER EXPRESSED, IMPLIED, OR STATUTORY, INCLUDING, BUT NOT
+// LIMITED TO, ANY WARRANTY THAT THE SUBJECT SOFTWARE WILL CONFORM TO
+// SPECIFICATIONS, ANY IMPLIED WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+// A PARTICULAR PURPOSE, OR FREEDOM FROM INFRINGEMENT, ANY WARRANTY THAT
+// THE SUBJECT SOFTWARE WILL BE ERROR FREE, OR ANY WARRANTY THAT
+// DOCUMENTATION, IF PROVIDED, WILL CONFORM TO THE SUBJECT SOFTWARE.
+//
+package gov.nasa.jpf.search;
+
+import java.io.Serializable;
+
+/**
+ * interface for listeners that have to keep their state across search
+ * checkpoints, i.e. if a search is resumed with 'search.resume'. This is
+ * the persistent counterpart of StateExtensionClient.
+ *
+ * Checkpoint objects are stored with standard Java serialization, keyed by
+ * the listener class name
+ */
+public interface CheckpointClient <T extends Serializable> {
+
+  /**
+   * the object to store in the next checkpoint. This is called from the
+   * search thread, i.e. it should return a copy of mutable state
+   */
+  T getCheckpoint();
+
+  /**
+   * called after the search was started, before it continues from the
+   * checkpoint
+   */
+  void restoreCheckpoint (T checkpoint);
+}
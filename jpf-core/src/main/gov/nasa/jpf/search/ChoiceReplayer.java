@@ -0,0 +1,79 @@
+//
+// Copyright (C) 2006 United States Government as represented by the
+// Administrator of the National Aeronautics and Space Administration
+// (NASA).  All Rights Reserved.
+//
+// This software is distributed under the NASA Open Source Agreement
+// (NOSA), version 1.3.  The NOSA has been approved by the Open Source
+// Initiative.  See the file NOSA-1.3-JPF at the top of the distribution
+// directory tree for the complete NOSA document.
+//
+// THE SUBJECT SOFTWARE IS PROVIDED "AS IS" WITHOUT ANY WARRANTY OF ANY
+// KIND, EITHER EXPRESSED, IMPLIED, OR STATUTORY, INCLUDING, BUT NOT
+// LIMITED TO, ANY WARRANTY THAT THE SUBJECT SOFTWARE WILL CONFORM TO
+// SPECIFICATIONS, ANY IMPLIED WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+// A PARTICULAR PURPOSE, OR FREEDOM FROM INFRINGEMENT, ANY WARRANTY THAT
+// THE SUBJECT SOFTWARE WILL BE ERROR FREE, OR ANY WARRANTY THAT
+// DOCUMENTATION, IF PROVIDED, WILL CONFORM TO THE SUBJECT SOFTWARE.
+//
+package gov.nasa.jpf.search;
+
+import gov.nasa.jpf.ListenerAdapter;
+import gov.nasa.jpf.jvm.ChoiceGenerator;
+import gov.nasa.jpf.jvm.JVM;
+
+/**
+ * listener that forces ChoiceGenerators along a given choice trail. Each entry
+ * of the trail is the processed number of choices of the ChoiceGenerator with
+ * the same position on the path, as in ChoiceGenerator.getAll().
+ *
+ * Replayed ChoiceGenerators are set done, i.e. we never backtrack into them,
+ * unless the trail is replayed with 'keepChoices' set (e.g. when resuming a
+ * search from a checkpoint), in which case their remaining choices are
+ * explored when we backtrack
+ */
+public class ChoiceReplayer extends ListenerAdapter {
+
+  int[] trail;
+  int next;
+  boolean keepChoices;
+
+  public void setTrail (int[] trail){
+    setTrail(trail, 0);
+  }
+
+  /**
+   * replay the trail starting at index 'start', i.e. we are already in the
+   * state that is reached by the first 'start' choices
+   */
+  public void setTrail (int[] trail, int start){
+    setTrail(trail, start, false);
+  }
+
+  public void setTrail (int[] trail, int start, boolean keepChoices){
+    this.trail = trail;
+    next = start;
+    this.keepChoices = keepChoices;
+  }
+
+  public boolean isReplaying (){
+    return (trail != null) && (next < trail.length);
+  }
+
+  public int getTrailLength (){
+    return (trail != null) ? trail.length : 0;
+  }
+
+  public void choiceGeneratorAdvanced (JVM vm) {
+    if (isReplaying()){
+      ChoiceGenerator<?> cg = vm.getLastChoiceGenerator();
+
+      // this is the first advance of this CG, which already got us the first choice
+      if (keepChoices){
+        cg.advance(trail[next++] - 1);
+      } else {
+        cg.select(trail[next++] - 1);
+      }
+    }
+  }
+}
@@ -20,17 +20,50 @@ package gov.nasa.jpf.search;
 
 
 import gov.nasa.jpf.Config;
+import gov.nasa.jpf.JPFException;
 import gov.nasa.jpf.jvm.JVM;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
+
 
 /**
  * standard depth first model checking (but can be bounded by search depth
  * and/or explicit Verify.ignoreIf)
+ *
+ * long running searches can be checkpointed periodically, and resumed from
+ * the last checkpoint (see SearchCheckpoint):
+ *   search.checkpoint          = <file> to write checkpoints to
+ *   search.checkpoint.interval = <min duration between checkpoints> (default 10min)
+ *   search.resume              = <checkpoint file> to resume from
  */
 public class DFSearch extends Search {
 
+  protected SearchCheckpoint checkpoint;
+  protected long checkpointInterval;
+  protected long nextCheckpoint;
+
+  protected File resumeFile;
+
   public DFSearch (Config config, JVM vm) {
   	super(config,vm);
+
+    String fname = config.getString("search.checkpoint");
+    if (fname != null){
+      checkpoint = new SearchCheckpoint( new File(fname));
+      checkpointInterval = config.getDuration("search.checkpoint.interval", 600000);
+    }
+
+    fname = config.getString("search.resume");
+    if (fname != null){
+      resumeFile = new File(fname);
+      if (!resumeFile.isFile()){
+        throw new JPFException("search checkpoint not found: " + fname);
+      }
+    }
   }
 
   public boolean requestBacktrack () {
@@ -67,8 +100,19 @@ public class DFSearch extends Search {
 
     notifySearchStarted();
 
+    // the last state of a resumed path is already visited, but we still
+    // have to explore it
+    boolean isResumed = (resumeFile != null) && resume();
+
+    if (checkpoint != null){
+      nextCheckpoint = System.currentTimeMillis() + checkpointInterval;
+    }
+
     while (!done) {
-      if (checkAndResetBacktrackRequest() || !isNewState() || isEndState() || isIgnoredState() || depthLimitReached ) {
+      if (isResumed){
+        isResumed = false;
+
+      } else if (checkAndResetBacktrackRequest() || !isNewState() || isEndState() || isIgnoredState() || depthLimitReached ) {
         if (!backtrack()) { // backtrack not possible, done
           break;
         }
@@ -104,6 +148,13 @@ public class DFSearch extends Search {
           break;
         }
 
+        if (checkpoint != null && isNewState() && !isEndState() && !isIgnoredState()){
+          if (System.currentTimeMillis() >= nextCheckpoint){
+            storeCheckpoint();
+            nextCheckpoint = System.currentTimeMillis() + checkpointInterval;
+          }
+        }
+
       } else { // forward did not execute any instructions
         notifyStateProcessed();
       }
@@ -116,4 +167,91 @@ public class DFSearch extends Search {
   public boolean supportsBacktrack () {
     return true;
   }
+
+  //--- checkpoint support
+
+  /**
+   * the CheckpointClient search listeners, keyed by class name (plus
+   * instance number if there are several of the same class)
+   */
+  protected HashMap<String,CheckpointClient<?>> getCheckpointClients (){
+    HashMap<String,CheckpointClient<?>> clients = new HashMap<String,CheckpointClient<?>>();
+
+    for (SearchListener l : listeners){
+      if (l instanceof CheckpointClient){
+        String key = l.getClass().getName();
+        for (int i=1; clients.containsKey(key); i++){
+          key = l.getClass().getName() + '#' + i;
+        }
+        clients.put(key, (CheckpointClient<?>)l);
+      }
+    }
+
+    return clients;
+  }
+
+  protected void storeCheckpoint (){
+    HashMap<String,Serializable> clientData = new HashMap<String,Serializable>();
+    for (Map.Entry<String,CheckpointClient<?>> e : getCheckpointClients().entrySet()){
+      clientData.put(e.getKey(), e.getValue().getCheckpoint());
+    }
+
+    try {
+      checkpoint.store(getChoiceTrail(), vm.getStateSet(), clientData);
+      log.info("stored search checkpoint at depth ", depth, ": ", checkpoint.getFile());
+
+    } catch (IOException iox){
+      // not fatal, the search can go on
+      log.warning("could not store search checkpoint " + checkpoint.getFile() + ": " + iox);
+    }
+  }
+
+  /**
+   * restore the visited states and listeners from the checkpoint, and then
+   * replay its path without backtracking or notifications (listeners already
+   * saw these states before the checkpoint was taken). The ChoiceGenerators
+   * along the path keep their remaining choices
+   */
+  @SuppressWarnings({"unchecked","rawtypes"})
+  protected boolean resume (){
+    SearchCheckpoint cp = new SearchCheckpoint(resumeFile);
+
+    try {
+      cp.load(vm.getStateSet());
+
+      if (checkpoint != null && checkpoint.getFile().getAbsoluteFile().equals(resumeFile.getAbsoluteFile())){
+        cp.truncateStates(); // go on with it
+        checkpoint = cp;
+      }
+    } catch (IOException iox){
+      throw new JPFException("could not read search checkpoint " + resumeFile + ": " + iox);
+    }
+
+    HashMap<String,Serializable> clientData = cp.getClientData();
+    for (Map.Entry<String,CheckpointClient<?>> e : getCheckpointClients().entrySet()){
+      Serializable data = clientData.get(e.getKey());
+      if (data != null){
+        ((CheckpointClient)e.getValue()).restoreCheckpoint(data);
+      }
+    }
+
+    int[] trail = cp.getTrail();
+    ChoiceReplayer replayer = new ChoiceReplayer();
+    replayer.setTrail(trail, 0, true);
+    vm.addListener(replayer);
+
+    try {
+      while (replayer.isReplaying()){
+        if (!forward()){
+          throw new JPFException("checkpoint trail diverged at depth " + depth);
+        }
+        depth++;
+      }
+    } finally {
+      vm.removeListener(replayer);
+    }
+
+    log.info("resumed search from checkpoint ", resumeFile, " at depth ", depth);
+    return (trail.length > 0);
+  }
 }
@@ -26,6 +26,7 @@ import gov.nasa.jpf.JPFException;
 import gov.nasa.jpf.JPFListenerException;
 import gov.nasa.jpf.Property;
 import gov.nasa.jpf.State;
+import gov.nasa.jpf.jvm.ChoiceGenerator;
 import gov.nasa.jpf.jvm.JVM;
 import gov.nasa.jpf.jvm.Path;
 import gov.nasa.jpf.jvm.ThreadList;
@@ -540,6 +541,22 @@ public abstract class Search {
     return vm.backtrack();
   }
 
+  /**
+   * the processed number of choices of all ChoiceGenerators on the current
+   * path, in the order of ChoiceGenerator.getAll(). This can be used to
+   * re-execute the path from the initial state (see ChoiceReplayer)
+   */
+  protected int[] getChoiceTrail (){
+    ChoiceGenerator<?>[] cgs = vm.getChoiceGenerators();
+    int[] trail = new int[cgs.length];
+
+    for (int i=0; i<cgs.length; i++){
+      trail[i] = cgs[i].getProcessedNumberOfChoices();
+    }
+
+    return trail;
+  }
+
   public void setIgnoredState (boolean cond) {
     vm.ignoreState(cond);
   }
@@ -0,0 +1,210 @@
+//
+// Copyright (C) 2011 United States Government as represented by the
+// Administrator of the National Aeronautics and Space Administration
+// (NASA).  All Rights Reserved.
+//
+// This software is distributed under the NASA Open Source Agreement
+// (NOSA), version 1.3.  The NOSA has been approved by the Open Source
+// Initiative.  See the file NOSA-1.3-JPF at the top of the distribution
+// directory tree for the complete NOSA document.
+//
+// THE SUBJECT SOFTWARE IS PROVIDED "AS IS" WITHOUT ANY WARRANTY OF ANY
+// KIND, EITHER EXPRESSED, IMPLIED, OR STATUTORY, INCLUDING, BUT NOT
+// LIMITED TO, ANY WARRANTY THAT THE SUBJECT SOFTWARE WILL CONFORM TO
+// SPECIFICATIONS, ANY IMPLIED WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+// A PARTICULAR PURPOSE, OR FREEDOM FROM INFRINGEMENT, ANY WARRANTY THAT
+// THE SUBJECT SOFTWARE WILL BE ERROR FREE, OR ANY WARRANTY THAT
+// DOCUMENTATION, IF PROVIDED, WILL CONFORM TO THE SUBJECT SOFTWARE.
+//
+package gov.nasa.jpf.search;
+
+import gov.nasa.jpf.jvm.CheckpointableStateSet;
+import gov.nasa.jpf.jvm.StateSet;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.io.Serializable;
+import java.util.HashMap;
+
+/**
+ * persistent snapshot of a depth first search, which can be used to resume
+ * the search after JPF was terminated.
+ *
+ * A checkpoint consists of two files:
+ *   <file>         - the choice trail of the current path, the number of
+ *                    visited states, and the CheckpointClient objects
+ *   <file>.states  - the visited states of a CheckpointableStateSet
+ *
+ * The states file is only appended to, i.e. each checkpoint just writes the
+ * states that were added since the last one. The main file is small and gets
+ * replaced after the states are on disk, by renaming a temp file over it. On
+ * platforms where this rename can't replace an existing file, the old one is
+ * first moved to <file>.bak, which load() falls back to if <file> is missing.
+ * The main file only refers to the states that were stored when it was
+ * written, so if we die in the middle of a checkpoint, the previous one is
+ * still consistent.
+ *
+ * NOTE - states are stored as fingerprints of their serialized form, which
+ * depends on class loading order etc. If a resumed search computes different
+ * fingerprints for the same program states, they are explored again. This
+ * is safe, but costs time
+ */
+public class SearchCheckpoint {
+
+  static final int MAGIC = 0x4a504643; // "JPFC"
+
+  protected File file;
+  protected File statesFile;
+
+  protected int nStoredStates;   // number of states in the states file
+  protected boolean isAppending; // false until we wrote or loaded states
+
+  // what we restore from a loaded checkpoint
+  protected int[] trail;
+  protected HashMap<String,Serializable> clientData;
+
+  public SearchCheckpoint (File file){
+    this.file = file;
+    statesFile = new File(file.getPath() + ".states");
+  }
+
+  public File getFile(){
+    return file;
+  }
+
+  protected File getBackupFile(){
+    return new File(file.getPath() + ".bak");
+  }
+
+  public int[] getTrail(){
+    return trail;
+  }
+
+  public HashMap<String,Serializable> getClientData(){
+    return clientData;
+  }
+
+  public int getNumberOfStoredStates(){
+    return nStoredStates;
+  }
+
+  /**
+   * write a new checkpoint for the search path described by 'trail'
+   */
+  public void store (int[] trail, StateSet stateSet, HashMap<String,Serializable> clientData) throws IOException {
+    int nStates = nStoredStates;
+
+    if (stateSet instanceof CheckpointableStateSet){
+      FileOutputStream fos = new FileOutputStream(statesFile, isAppending);
+      DataOutputStream out = new DataOutputStream( new BufferedOutputStream(fos, 65536));
+      try {
+        ((CheckpointableStateSet)stateSet).writeStates(out, nStoredStates);
+        out.flush();
+        fos.getFD().sync(); // the main file must not refer to states that aren't on disk
+      } finally {
+        out.close();
+      }
+      nStates = stateSet.size();
+      isAppending = true;
+    }
+
+    File tmp = new File(file.getPath() + ".tmp");
+    FileOutputStream fos = new FileOutputStream(tmp);
+    ObjectOutputStream out = new ObjectOutputStream( new BufferedOutputStream(fos));
+    try {
+      out.writeInt(MAGIC);
+      out.writeInt(nStates);
+      out.writeInt(trail.length);
+      for (int i=0; i<trail.length; i++){
+        out.writeInt(trail[i]);
+      }
+      out.writeObject(clientData);
+      out.flush();
+      fos.getFD().sync();
+    } finally {
+      out.close();
+    }
+
+    // this atomically replaces the old file on POSIX systems, but might not
+    // be supported if the target exists
+    if (!tmp.renameTo(file)){
+      File bak = getBackupFile();
+      bak.delete();
+      if (file.exists() && !file.renameTo(bak)){
+        throw new IOException("cannot rename checkpoint file: " + file);
+      }
+      if (!tmp.renameTo(file)){
+        // the old checkpoint is still in the .bak file
+        throw new IOException("cannot rename checkpoint file: " + tmp);
+      }
+      bak.delete();
+    }
+
+    nStoredStates = nStates;
+  }
+
+  /**
+   * read the checkpoint, adding its visited states to 'stateSet'
+   */
+  @SuppressWarnings("unchecked")
+  public void load (StateSet stateSet) throws IOException {
+    File f = file;
+    if (!f.exists() && getBackupFile().exists()){
+      f = getBackupFile(); // we died while replacing the checkpoint
+    }
+
+    ObjectInputStream in = new ObjectInputStream( new BufferedInputStream( new FileInputStream(f)));
+    int nStates;
+    try {
+      if (in.readInt() != MAGIC){
+        throw new IOException("not a search checkpoint: " + f);
+      }
+      nStates = in.readInt();
+      trail = new int[in.readInt()];
+      for (int i=0; i<trail.length; i++){
+        trail[i] = in.readInt();
+      }
+      clientData = (HashMap<String,Serializable>) in.readObject();
+
+    } catch (ClassNotFoundException cnfx){
+      throw new IOException("unknown checkpoint client class: " + cnfx.getMessage());
+    } finally {
+      in.close();
+    }
+
+    if (nStates > 0 && stateSet instanceof CheckpointableStateSet){
+      DataInputStream sin = new DataInputStream( new BufferedInputStream( new FileInputStream(statesFile), 65536));
+      try {
+        ((CheckpointableStateSet)stateSet).readStates(sin, nStates);
+      } finally {
+        sin.close();
+      }
+    }
+
+    nStoredStates = nStates;
+  }
+
+  /**
+   * prepare to write the next checkpoints of a resumed search into the same
+   * file. The states file can contain states of a checkpoint that didn't
+   * complete, which we have to cut off
+   */
+  public void truncateStates () throws IOException {
+    RandomAccessFile raf = new RandomAccessFile(statesFile, "rw");
+    try {
+      raf.setLength((long)nStoredStates * 8);
+    } finally {
+      raf.close();
+    }
+    isAppending = true;
+  }
+}
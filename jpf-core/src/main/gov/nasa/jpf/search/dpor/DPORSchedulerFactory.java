@@ -0,0 +1,54 @@
+//
+// Copyright (C) 2006 United States Government as represented by the
+// Administrator of the National Aeronautics and Space Administration
+// (NASA).  All Rights Reserved.
+//
+// This software is distributed under the NASA Open Source Agreement
+// (NOSA), version 1.3.  The NOSA has been approved by the Open Source
+// Initiative.  See the file NOSA-1.3-JPF at the top of the distribution
+// directory tree for the complete NOSA document.
+//
+// THE SUBJECT SOFTWARE IS PROVIDED "AS IS" WITHOUT ANY WARRANTY OF ANY
+// KIND, EITHER EXPRESSED, IMPLIED, OR STATUTORY, INCLUDING, BUT NOT
+// LIMITED TO, ANY WARRANTY THAT THE SUBJECT SOFTWARE WILL CONFORM TO
+// SPECIFICATIONS, ANY IMPLIED WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+// A PARTICULAR PURPOSE, OR FREEDOM FROM INFRINGEMENT, ANY WARRANTY THAT
+// THE SUBJECT SOFTWARE WILL BE ERROR FREE, OR ANY WARRANTY THAT
+// DOCUMENTATION, IF PROVIDED, WILL CONFORM TO THE SUBJECT SOFTWARE.
+//
+package gov.nasa.jpf.search.dpor;
+
+import gov.nasa.jpf.Config;
+import gov.nasa.jpf.jvm.ChoiceGenerator;
+import gov.nasa.jpf.jvm.DefaultSchedulerFactory;
+import gov.nasa.jpf.jvm.JVM;
+import gov.nasa.jpf.jvm.SystemState;
+import gov.nasa.jpf.jvm.ThreadInfo;
+
+/**
+ * SchedulerFactory for dynamic partial order reduction. We create scheduling
+ * points at the same places as the DefaultSchedulerFactory, but they are
+ * DPORThreadChoices that only explore the current thread unless the
+ * DPORSearch finds a race that requires another one.
+ *
+ * This has to be used together with the DPORSearch, any other search would
+ * just explore one interleaving:
+ *   vm.scheduler_factory.class = gov.nasa.jpf.search.dpor.DPORSchedulerFactory
+ *   search.class = gov.nasa.jpf.search.dpor.DPORSearch
+ */
+public class DPORSchedulerFactory extends DefaultSchedulerFactory {
+
+  public DPORSchedulerFactory (Config config, JVM vm, SystemState ss) {
+    super(config, vm, ss);
+  }
+
+  protected ChoiceGenerator<ThreadInfo> createThreadChoiceFromSet (String id, ThreadInfo[] choices,
+                                                                   boolean isSchedulingPoint) {
+    if (isSchedulingPoint && choices.length > 1) {
+      return new DPORThreadChoice( id, choices, ThreadInfo.getCurrentThread());
+    } else {
+      // notify choices are not scheduling points, they pick the notified waiter
+      return super.createThreadChoiceFromSet( id, choices, isSchedulingPoint);
+    }
+  }
+}
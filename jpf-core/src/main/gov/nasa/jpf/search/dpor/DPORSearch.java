@@ -0,0 +1,351 @@
+//
+// Copyright (C) 2006 United States Government as represented by the
+// Administrator of the National Aeronautics and Space Administration
+// (NASA).  All Rights Reserved.
+//
+// This software is distributed under the NASA Open Source Agreement
+// (NOSA), version 1.3.  The NOSA has been approved by the Open Source
+// Initiative.  See the file NOSA-1.3-JPF at the top of the distribution
+// directory tree for the complete NOSA document.
+//
+// THE SUBJECT SOFTWARE IS PROVIDED "AS IS" WITHOUT ANY WARRANTY OF ANY
+// KIND, EITHER EXPRESSED, IMPLIED, OR STATUTORY, INCLUDING, BUT NOT
+// LIMITED TO, ANY WARRANTY THAT THE SUBJECT SOFTWARE WILL CONFORM TO
+// SPECIFICATIONS, ANY IMPLIED WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+// A PARTICULAR PURPOSE, OR FREEDOM FROM INFRINGEMENT, ANY WARRANTY THAT
+// THE SUBJECT SOFTWARE WILL BE ERROR FREE, OR ANY WARRANTY THAT
+// DOCUMENTATION, IF PROVIDED, WILL CONFORM TO THE SUBJECT SOFTWARE.
+//
+package gov.nasa.jpf.search.dpor;
+
+import gov.nasa.jpf.Config;
+import gov.nasa.jpf.JPFConfigException;
+import gov.nasa.jpf.ListenerAdapter;
+import gov.nasa.jpf.jvm.ChoiceGenerator;
+import gov.nasa.jpf.jvm.ElementInfo;
+import gov.nasa.jpf.jvm.JVM;
+import gov.nasa.jpf.jvm.StaticElementInfo;
+import gov.nasa.jpf.jvm.ThreadInfo;
+import gov.nasa.jpf.jvm.bytecode.ArrayInstruction;
+import gov.nasa.jpf.jvm.bytecode.FieldInstruction;
+import gov.nasa.jpf.jvm.bytecode.Instruction;
+import gov.nasa.jpf.search.DFSearch;
+import gov.nasa.jpf.util.IntVector;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * depth first search with dynamic partial order reduction (Flanagan/Godefroid,
+ * POPL 2005), optionally combined with sleep sets.
+ *
+ * The DPORSchedulerFactory creates scheduling points that only explore one
+ * thread. We record the shared fields, array elements and locks each
+ * transition accesses, and keep vector clocks for the happens-before relation
+ * between the transitions on the current path. If a new transition of thread
+ * p is dependent on an earlier transition of another thread that does not
+ * happen-before it (i.e. there is a race), we add p to the backtrack set of
+ * the scheduling point that precedes the earlier transition, or all threads
+ * if p wasn't runnable there. Backtrack sets are therefore computed lazily,
+ * while the search goes forward.
+ *
+ * DPOR is not sound in combination with state matching (a matched state
+ * would hide races with its already explored successors), which is why we
+ * treat all states as new. This means programs with cyclic state spaces need
+ * a search.depth_limit. Since we never look up states, we also remove the
+ * StateSet of the VM, so that states are not serialized and stored for
+ * nothing, no matter what vm.storage.class is set to.
+ *
+ * Config options:
+ *   search.dpor.sleep_sets = <boolean> (default true)
+ */
+public class DPORSearch extends DFSearch {
+
+  protected boolean useSleepSets;
+
+  // the transitions of the current path
+  protected ArrayList<Transition> path = new ArrayList<Transition>();
+
+  // per thread id: index of its last transition on the path, and of the transition that started it
+  protected int[] lastOfThread = new int[8];
+  protected int[] startedBy = new int[8];
+
+  // what the currently executed transition accessed (key -> isWrite)
+  protected HashMap<Long,Boolean> accesses = new HashMap<Long,Boolean>();
+
+  // the threads the currently executed transition started
+  protected IntVector started = new IntVector();
+
+  // statistics
+  protected long nRaces;
+  protected long nBacktracksAdded;
+
+  static final int[] EMPTY_CLOCK = new int[0];
+
+  /**
+   * collects the accesses of the current transition. We only record shared
+   * objects, everything else cannot cause races
+   */
+  class AccessTracker extends ListenerAdapter {
+
+    public void instructionExecuted (JVM vm) {
+      Instruction insn = vm.getLastInstruction();
+
+      if (vm.getNextInstruction() == insn) {
+        return; // top half of a scheduling point, will be re-executed
+      }
+
+      if (insn instanceof FieldInstruction) {
+        FieldInstruction finsn = (FieldInstruction) insn;
+        ElementInfo ei = finsn.getLastElementInfo();
+        if (ei != null && ei.isShared()) {
+          int fidx = finsn.getFieldInfo().getFieldIndex();
+          long key = (ei instanceof StaticElementInfo) ?
+                        Transition.getStaticFieldKey(ei.getObjectRef(), fidx) :
+                        Transition.getFieldKey(ei.getObjectRef(), fidx);
+          addAccess(key, !finsn.isRead());
+        }
+
+      } else if (insn instanceof ArrayInstruction) {
+        ArrayInstruction ainsn = (ArrayInstruction) insn;
+        ThreadInfo ti = vm.getLastThreadInfo();
+        int aref = ainsn.getArrayRef(ti);
+        if (aref != -1) {
+          ElementInfo ei = vm.getHeap().get(aref);
+          if (ei != null && ei.isShared()) {
+            addAccess(Transition.getFieldKey(aref, ainsn.getIndex(ti)), !ainsn.isRead());
+          }
+        }
+      }
+    }
+
+    public void objectLocked (JVM vm) {
+      addAccess(Transition.getLockKey(vm.getLastElementInfo().getObjectRef()), true);
+    }
+
+    public void threadStarted (JVM vm) {
+      int tid = vm.getLastThreadInfo().getId();
+      startedBy = ensureCapacity(startedBy, tid);
+      startedBy[tid] = path.size() + 1; // the one we are executing
+      started.add(tid);
+    }
+
+    public void threadTerminated (JVM vm) {
+      // joiners synchronize on the thread object
+      addAccess(Transition.getLockKey(vm.getLastThreadInfo().getThreadObjectRef()), true);
+    }
+
+    public void choiceGeneratorSet (JVM vm) {
+      ChoiceGenerator<?> cg = vm.getChoiceGenerator();
+      if (useSleepSets && (cg instanceof DPORThreadChoice) && !path.isEmpty()) {
+        ((DPORThreadChoice)cg).setSleepSet(path.get(path.size()-1).sleepSet);
+      }
+    }
+  }
+
+  public DPORSearch (Config config, JVM vm) {
+    super(config, vm);
+
+    if (!(vm.getSchedulerFactory() instanceof DPORSchedulerFactory)) {
+      throw new JPFConfigException("DPORSearch requires vm.scheduler_factory.class=" +
+                                   DPORSchedulerFactory.class.getName());
+    }
+
+    useSleepSets = config.getBoolean("search.dpor.sleep_sets", true);
+
+    // we don't match states, so don't pay for storing them
+    vm.setStateSet(null);
+
+    vm.addListener(new AccessTracker());
+  }
+
+  static int[] ensureCapacity (int[] a, int idx) {
+    if (idx >= a.length) {
+      int[] newA = new int[Math.max(idx+1, a.length*2)];
+      System.arraycopy(a, 0, newA, 0, a.length);
+      return newA;
+    }
+    return a;
+  }
+
+  protected void addAccess (long key, boolean isWrite) {
+    if (isWrite) {
+      accesses.put(key, Boolean.TRUE);
+    } else if (!accesses.containsKey(key)) {
+      accesses.put(key, Boolean.FALSE);
+    }
+  }
+
+  /**
+   * the most recent DPOR scheduling point on the path
+   */
+  protected DPORThreadChoice getSchedulingPoint () {
+    for (ChoiceGenerator<?> cg = vm.getChoiceGenerator(); cg != null; cg = cg.getPreviousChoiceGenerator()) {
+      if (cg instanceof DPORThreadChoice) {
+        return (DPORThreadChoice) cg;
+      }
+    }
+    return null;
+  }
+
+  protected Transition createTransition () {
+    ThreadInfo ti = vm.getCurrentThread();
+    int tid = ti.getId();
+    int n = path.size() + 1;
+
+    lastOfThread = ensureCapacity(lastOfThread, tid);
+    startedBy = ensureCapacity(startedBy, tid);
+
+    long[] keys = new long[accesses.size()];
+    boolean[] isWrite = new boolean[keys.length];
+    int i = 0;
+    for (Map.Entry<Long,Boolean> e : accesses.entrySet()) {
+      keys[i] = e.getKey();
+      isWrite[i++] = e.getValue();
+    }
+
+    Transition t = new Transition(n, tid, getSchedulingPoint(), lastOfThread[tid], keys, isWrite);
+    if (started.size() > 0) {
+      t.startedThreads = started.toArray();
+    }
+    return t;
+  }
+
+  /**
+   * the vector clock of thread 'tid' before transition 't'
+   */
+  protected int[] getThreadClock (Transition t) {
+    if (t.prevOfThread > 0) {
+      return path.get(t.prevOfThread-1).clock;
+    }
+
+    int starter = startedBy[t.tid];
+    if (starter > 0 && starter < t.index) {
+      return path.get(starter-1).clock;
+    }
+
+    return EMPTY_CLOCK;
+  }
+
+  /**
+   * this is the core of DPOR - check if the new transition races with any
+   * previous one, update the backtrack sets accordingly, and compute its clock
+   */
+  protected void analyzeTransition (Transition t) {
+    int[] threadClock = getThreadClock(t);
+    int[] clock = threadClock;
+
+    for (int k=0; k<t.keys.length; k++) {
+      long key = t.keys[k];
+      boolean isWrite = t.isWrite[k];
+      boolean isLatest = true;
+
+      for (int i=t.index-2; i>=0; i--) {
+        Transition u = path.get(i);
+
+        if (u.tid != t.tid && u.isDependent(key, isWrite) && !u.happensBefore(threadClock)) {
+          // a race - we have to check if executing our thread before u makes a difference
+          if (isLatest) {
+            isLatest = false;
+            nRaces++;
+
+            if (u.cg != null && u.cg.addBacktrack(t.tid)) {
+              nBacktracksAdded++;
+            }
+          }
+
+          clock = Transition.join(clock, u.clock);
+        }
+      }
+    }
+
+    clock = ensureCapacity(clock, t.tid);
+    if (clock == threadClock) {
+      clock = clock.clone();
+    }
+    clock[t.tid] = t.index;
+    t.clock = clock;
+  }
+
+  protected void updateSleepSet (Transition t) {
+    DPORThreadChoice cg = t.cg;
+    List<Transition> sleepSet;
+
+    if (cg != null && (t.index == 1 || path.get(t.index-2).cg != cg)) {
+      // we start at a scheduling point
+      sleepSet = cg.getCurrentSleepSet();
+      cg.setCurrentTransition(t);
+    } else {
+      sleepSet = (t.index > 1) ? path.get(t.index-2).sleepSet : null;
+    }
+
+    if (sleepSet != null && !sleepSet.isEmpty()) {
+      ArrayList<Transition> list = new ArrayList<Transition>(sleepSet.size());
+      for (Transition s : sleepSet) {
+        if (s.tid != t.tid && !s.isDependent(t)) {
+          list.add(s);
+        }
+      }
+      t.sleepSet = list.isEmpty() ? null : list;
+    }
+  }
+
+  protected boolean forward () {
+    accesses.clear();
+    started.clear();
+
+    boolean ret = super.forward();
+
+    if (ret) {
+      Transition t = createTransition();
+
+      analyzeTransition(t);
+      if (useSleepSets) {
+        updateSleepSet(t);
+      }
+
+      path.add(t);
+      lastOfThread[t.tid] = t.index;
+    }
+
+    return ret;
+  }
+
+  protected boolean backtrack () {
+    boolean ret = super.backtrack();
+
+    if (ret && !path.isEmpty()) {
+      Transition t = path.remove(path.size()-1);
+      lastOfThread[t.tid] = t.prevOfThread;
+
+      if (t.startedThreads != null) {
+        for (int tid : t.startedThreads) {
+          startedBy[tid] = 0;
+        }
+      }
+    }
+
+    return ret;
+  }
+
+  /**
+   * we don't do state matching, see class comment
+   */
+  public boolean isNewState () {
+    return transitionOccurred();
+  }
+
+  public long getNumberOfRaces () {
+    return nRaces;
+  }
+
+  public long getNumberOfAddedBacktracks () {
+    return nBacktracksAdded;
+  }
+
+  public int getPathLength () {
+    return path.size();
+  }
+}
@@ -0,0 +1,224 @@
+//
+// Copyright (C) 2006 United States Government as represented by the
+// Administrator of the National Aeronautics and Space Administration
+// (NASA).  All Rights Reserved.
+//
+// This software is distributed under the NASA Open Source Agreement
+// (NOSA), version 1.3.  The NOSA has been approved by the Open Source
+// Initiative.  See the file NOSA-1.3-JPF at the top of the distribution
+// directory tree for the complete NOSA document.
+//
+// THE SUBJECT SOFTWARE IS PROVIDED "AS IS" WITHOUT ANY WARRANTY OF ANY
+// KIND, EITHER EXPRESSED, IMPLIED, OR STATUTORY, INCLUDING, BUT NOT
+// LIMITED TO, ANY WARRANTY THAT THE SUBJECT SOFTWARE WILL CONFORM TO
+// SPECIFICATIONS, ANY IMPLIED WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+// A PARTICULAR PURPOSE, OR FREEDOM FROM INFRINGEMENT, ANY WARRANTY THAT
+// THE SUBJECT SOFTWARE WILL BE ERROR FREE, OR ANY WARRANTY THAT
+// DOCUMENTATION, IF PROVIDED, WILL CONFORM TO THE SUBJECT SOFTWARE.
+//
+package gov.nasa.jpf.search.dpor;
+
+import gov.nasa.jpf.jvm.ThreadChoiceGenerator;
+import gov.nasa.jpf.jvm.ThreadInfo;
+import gov.nasa.jpf.jvm.choice.ThreadChoiceFromSet;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * a ThreadChoiceGenerator for dynamic partial order reduction. Instead of
+ * enumerating all threads that were runnable when it was created, it starts
+ * with a single choice (preferably the current thread), and only explores
+ * the other ones if the DPORSearch adds them to its backtrack set because it
+ * found a race with a later transition.
+ *
+ * Threads in the sleep set we got from our parent transition are never
+ * selected, since their next transition was already explored in an
+ * equivalent interleaving.
+ */
+public class DPORThreadChoice extends ThreadChoiceFromSet {
+
+  protected int preferred;        // the initial choice, if it isn't asleep
+  protected boolean isInitialized;
+
+  protected boolean[] backtrack;  // the choices we have to explore
+  protected boolean[] explored;   // the choices we already did (or are doing)
+
+  // the transitions executed for the explored choices, set by the search
+  protected Transition[] transitions;
+
+  // the transitions we inherited from the parent that don't have to be re-explored
+  protected List<Transition> sleepSet;
+
+  public DPORThreadChoice (String id, ThreadInfo[] set, ThreadInfo preferredThread) {
+    super(id, set, true);
+
+    preferred = 0;
+    for (int i=0; i<set.length; i++) {
+      if (set[i] == preferredThread) {
+        preferred = i;
+        break;
+      }
+    }
+
+    backtrack = new boolean[set.length];
+    explored = new boolean[set.length];
+    transitions = new Transition[set.length];
+  }
+
+  public void reset () {
+    super.reset();
+
+    isInitialized = false;
+    Arrays.fill(backtrack, false);
+    Arrays.fill(explored, false);
+    Arrays.fill(transitions, null);
+  }
+
+  protected boolean isAsleep (int idx) {
+    if (sleepSet != null) {
+      int tid = values[idx].getId();
+      for (Transition t : sleepSet) {
+        if (t.getThreadId() == tid) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  protected void initialize () {
+    if (!isInitialized) {
+      isInitialized = true;
+
+      if (!isAsleep(preferred)) {
+        backtrack[preferred] = true;
+      } else {
+        for (int i=0; i<values.length; i++) {
+          if (!isAsleep(i)) {
+            backtrack[i] = true;
+            break;
+          }
+        }
+      }
+    }
+  }
+
+  protected int nextChoiceIndex () {
+    initialize();
+
+    for (int i=0; i<values.length; i++) {
+      if (backtrack[i] && !explored[i]) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  public boolean hasMoreChoices () {
+    return !isDone && (nextChoiceIndex() >= 0);
+  }
+
+  public void advance () {
+    int i = nextChoiceIndex();
+    if (i >= 0) {
+      count = i;
+      explored[i] = true;
+    }
+  }
+
+  /**
+   * used for replaying choice trails, which are based on the processed
+   * number of choices (i.e. count + 1)
+   */
+  public void select (int nChoice) {
+    initialize();
+
+    if (nChoice >= 0 && nChoice < values.length) {
+      count = nChoice;
+      backtrack[nChoice] = true;
+      explored[nChoice] = true;
+    }
+    setDone();
+  }
+
+  //--- the DPOR interface
+
+  /**
+   * add a thread to the backtrack set. If it wasn't enabled (runnable) when
+   * we were created, we have to explore all other choices instead
+   *
+   * @return true if this added new choices
+   */
+  public boolean addBacktrack (int tid) {
+    initialize();
+
+    for (int i=0; i<values.length; i++) {
+      if (values[i].getId() == tid) {
+        return addBacktrackIndex(i);
+      }
+    }
+
+    boolean added = false;
+    for (int i=0; i<values.length; i++) {
+      added |= addBacktrackIndex(i);
+    }
+    return added;
+  }
+
+  protected boolean addBacktrackIndex (int i) {
+    if (!backtrack[i] && !explored[i] && !isAsleep(i)) {
+      backtrack[i] = true;
+      return true;
+    }
+    return false;
+  }
+
+  public int getNumberOfExploredChoices () {
+    int n = 0;
+    for (int i=0; i<explored.length; i++) {
+      if (explored[i]) {
+        n++;
+      }
+    }
+    return n;
+  }
+
+  public void setSleepSet (List<Transition> sleepSet) {
+    this.sleepSet = sleepSet;
+  }
+
+  public void setCurrentTransition (Transition t) {
+    if (count >= 0) {
+      transitions[count] = t;
+    }
+  }
+
+  /**
+   * the sleep set for the transition that starts with the current choice,
+   * which is what we inherited plus what we already explored from here
+   */
+  public List<Transition> getCurrentSleepSet () {
+    ArrayList<Transition> list = null;
+
+    for (int i=0; i<transitions.length; i++) {
+      if (i != count && transitions[i] != null) {
+        if (list == null) {
+          list = (sleepSet != null) ? new ArrayList<Transition>(sleepSet) : new ArrayList<Transition>();
+        }
+        list.add(transitions[i]);
+      }
+    }
+
+    return (list != null) ? list : sleepSet;
+  }
+
+  public ThreadChoiceGenerator reorder (Comparator<ThreadInfo> comparator) {
+    ThreadInfo[] newValues = values.clone();
+    Arrays.sort(newValues, comparator);
+
+    return new DPORThreadChoice( id, newValues, values[preferred]);
+  }
+}
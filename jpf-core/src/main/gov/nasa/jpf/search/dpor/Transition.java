@@ -0,0 +1,132 @@
+//
+// Copyright (C) 2006 United States Government as represented by the
+// Administrator of the National Aeronautics and Space Administration
+// (NASA).  All Rights Reserved.
+//
+// This software is distributed under the NASA Open Source Agreement
+// (NOSA), version 1.3.  The NOSA has been approved by the Open Source
+// Initiative.  See the file NOSA-1.3-JPF at the top of the distribution
+// directory tree for the complete NOSA document.
+//
+// THE SUBJECT SOFTWARE IS PROVIDED "AS IS" WITHOUT ANY WARRANTY OF ANY
+// KIND, EITHER EXPRESSED, IMPLIED, OR STATUTORY, INCLUDING, BUT NOT
+// LIMITED TO, ANY WARRANTY THAT THE SUBJECT SOFTWARE WILL CONFORM TO
+// SPECIFICATIONS, ANY IMPLIED WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+// A PARTICULAR PURPOSE, OR FREEDOM FROM INFRINGEMENT, ANY WARRANTY THAT
+// THE SUBJECT SOFTWARE WILL BE ERROR FREE, OR ANY WARRANTY THAT
+// DOCUMENTATION, IF PROVIDED, WILL CONFORM TO THE SUBJECT SOFTWARE.
+//
+package gov.nasa.jpf.search.dpor;
+
+import java.util.List;
+
+/**
+ * what DPORSearch keeps for each transition on the current path: the thread
+ * that executed it, the shared memory locations and locks it accessed, its
+ * vector clock, and the sleep set of the state it leads to.
+ *
+ * Accesses are encoded as long keys (object reference in the upper, field or
+ * element index in the lower 32 bits), two of them are dependent if they
+ * refer to the same location and at least one of them is a write. Lock
+ * acquisitions are treated as writes of a pseudo location of the lock object.
+ */
+public class Transition {
+
+  static final int LOCK_SLOT = -1;
+
+  public static long getFieldKey (int objRef, int fieldIndex) {
+    return ((long)objRef << 32) | (fieldIndex & 0xffffffffL);
+  }
+
+  public static long getStaticFieldKey (int classIndex, int fieldIndex) {
+    // static areas have their own index space, so we use negative refs
+    return ((long)(-1 - classIndex) << 32) | (fieldIndex & 0xffffffffL);
+  }
+
+  public static long getLockKey (int objRef) {
+    return getFieldKey(objRef, LOCK_SLOT);
+  }
+
+  final int index;          // 1-based position on the path
+  final int tid;
+  final DPORThreadChoice cg; // the scheduling point that picked our thread (can be null)
+  final int prevOfThread;   // index of the previous transition of the same thread, 0 if none
+
+  long[] keys;
+  boolean[] isWrite;
+
+  // ids of the threads we started, which have to be reset on backtrack
+  int[] startedThreads;
+
+  // clock[t] is the index of the last transition of thread t that happens-before us
+  int[] clock;
+
+  // the sleep set of the state we lead to
+  List<Transition> sleepSet;
+
+  Transition (int index, int tid, DPORThreadChoice cg, int prevOfThread, long[] keys, boolean[] isWrite) {
+    this.index = index;
+    this.tid = tid;
+    this.cg = cg;
+    this.prevOfThread = prevOfThread;
+    this.keys = keys;
+    this.isWrite = isWrite;
+  }
+
+  public int getIndex() {
+    return index;
+  }
+
+  public int getThreadId() {
+    return tid;
+  }
+
+  public int getNumberOfAccesses() {
+    return keys.length;
+  }
+
+  public boolean isDependent (long key, boolean write) {
+    for (int i=0; i<keys.length; i++) {
+      if (keys[i] == key && (write || isWrite[i])) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  public boolean isDependent (Transition other) {
+    for (int i=0; i<keys.length; i++) {
+      if (other.isDependent(keys[i], isWrite[i])) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * does this transition happen-before whatever has the vector clock 'c'
+   */
+  boolean happensBefore (int[] c) {
+    return (tid < c.length) && (index <= c[tid]);
+  }
+
+  static int[] join (int[] c1, int[] c2) {
+    if (c2.length > c1.length) {
+      int[] tmp = c1;
+      c1 = c2;
+      c2 = tmp;
+    }
+
+    int[] c = c1.clone();
+    for (int i=0; i<c2.length; i++) {
+      if (c2[i] > c[i]) {
+        c[i] = c2[i];
+      }
+    }
+    return c;
+  }
+
+  public String toString() {
+    return "Transition[" + index + ",tid=" + tid + ",accesses=" + keys.length + ']';
+  }
+}
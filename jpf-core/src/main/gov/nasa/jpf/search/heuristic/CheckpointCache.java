@@ -0,0 +1,162 @@
+//
+// Copyright (C) 2006 United States Government as represented by the
+// Administrator of the National Aeronautics and Space Administration
+// (NASA).  All Rights Reserved.
+// 
+// This software is distributed under the NASA Open Source Agreement
+// (NOSA), version 1.3.  The NOSA has been approved by the Open Source
+// Initiative.  See the file NOSA-1.3-JPF at the top of the distribution
+// directory tree for the complete NOSA document.
+// 
+// THE SUBJECT SOFTWARE IS PROVIDED "AS IS" WITHOUT ANY WARRANTY OF ANY
+// KIND, EITHER EXPRESSED, IMPLIED, OR STATUTORY, INCLUDING, BUT NOT
+// LIMITED TO, ANY WARRANTY THAT THE SUBJECT SOFTWARE WILL CONFORM TO
+// SPECIFICATIONS, ANY IMPLIED WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+// A PARTICULAR PURPOSE, OR FREEDOM FROM INFRINGEMENT, ANY WARRANTY THAT
+// THE SUBJECT SOFTWARE WILL BE ERROR FREE, OR ANY WARRANTY THAT
+// DOCUMENTATION, IF PROVIDED, WILL CONFORM TO THE SUBJECT SOFTWARE.
+//
+package gov.nasa.jpf.search.heuristic;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * a bounded LRU cache of states that are keyed by their choice trail, which
+ * can be searched for the longest cached prefix of a given trail, i.e. the
+ * nearest ancestor of a state we have to replay.
+ *
+ * The values are usually RestorableVMStates, but we don't care here
+ */
+public class CheckpointCache<T> {
+
+  /**
+   * the first 'length' elements of a choice trail
+   */
+  static class Key {
+    final int[] trail;
+    final int length;
+    final int hash;
+
+    Key (int[] trail, int length, int hash){
+      this.trail = trail;
+      this.length = length;
+      this.hash = hash;
+    }
+
+    public int hashCode() {
+      return hash;
+    }
+
+    public boolean equals (Object o){
+      if (o instanceof Key){
+        Key other = (Key)o;
+        if (other.length == length && other.hash == hash){
+          int[] a = other.trail;
+          for (int i=0; i<length; i++){
+            if (a[i] != trail[i]){
+              return false;
+            }
+          }
+          return true;
+        }
+      }
+      return false;
+    }
+  }
+
+  /**
+   * a cached state, together with the trail length it corresponds to
+   */
+  public static class Checkpoint<T> {
+    final int depth;
+    final T state;
+
+    Checkpoint (int depth, T state){
+      this.depth = depth;
+      this.state = state;
+    }
+
+    public int getDepth() {
+      return depth;
+    }
+
+    public T getState() {
+      return state;
+    }
+  }
+
+  protected int maxSize;
+  protected LinkedHashMap<Key,Checkpoint<T>> map;
+
+  // statistics
+  protected long hits;
+  protected long misses;
+
+  @SuppressWarnings("serial")
+  public CheckpointCache (int maxSize){
+    this.maxSize = maxSize;
+
+    map = new LinkedHashMap<Key,Checkpoint<T>>(16, 0.75f, true){
+      protected boolean removeEldestEntry (Map.Entry<Key,Checkpoint<T>> eldest){
+        return size() > CheckpointCache.this.maxSize;
+      }
+    };
+  }
+
+  static int[] getPrefixHashes (int[] trail){
+    int[] h = new int[trail.length+1];
+    h[0] = 1;
+    for (int i=0; i<trail.length; i++){
+      h[i+1] = 31*h[i] + trail[i];
+    }
+    return h;
+  }
+
+  public void put (int[] trail, T state){
+    if (maxSize > 0){
+      int[] h = getPrefixHashes(trail);
+      map.put( new Key(trail, trail.length, h[trail.length]),
+               new Checkpoint<T>(trail.length, state));
+    }
+  }
+
+  /**
+   * find the cached state with the longest choice trail that is a prefix
+   * of (or the same as) 'trail'. Found entries become the most recently used
+   *
+   * @return the checkpoint, or null if there is none
+   */
+  public Checkpoint<T> getNearest (int[] trail){
+    if (!map.isEmpty()){
+      int[] h = getPrefixHashes(trail);
+
+      for (int len=trail.length; len > 0; len--){
+        Checkpoint<T> cp = map.get( new Key(trail, len, h[len]));
+        if (cp != null){
+          hits++;
+          return cp;
+        }
+      }
+    }
+
+    misses++;
+    return null;
+  }
+
+  public void clear() {
+    map.clear();
+  }
+
+  public int size() {
+    return map.size();
+  }
+
+  public long getNumberOfHits() {
+    return hits;
+  }
+
+  public long getNumberOfMisses() {
+    return misses;
+  }
+}
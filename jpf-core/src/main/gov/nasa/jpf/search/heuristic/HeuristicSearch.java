@@ -19,7 +19,12 @@
 package gov.nasa.jpf.search.heuristic;
 
 import gov.nasa.jpf.Config;
+import gov.nasa.jpf.JPFException;
 import gov.nasa.jpf.jvm.JVM;
+import gov.nasa.jpf.jvm.RestorableVMState;
+import gov.nasa.jpf.report.Reporter;
+import gov.nasa.jpf.report.Statistics;
+import gov.nasa.jpf.search.ChoiceReplayer;
 import gov.nasa.jpf.search.Search;
 
 import java.util.ArrayList;
@@ -56,12 +61,35 @@ public abstract class HeuristicSearch extends Search {
    */
   protected boolean isBeamSearch;
 
+  /*
+   * queued states that don't have a RestorableVMState (e.g. because the queue
+   * spilled them to disk) are re-executed along their choice trail, starting
+   * from the nearest cached ancestor state or the initial state
+   */
+  protected RestorableVMState initialState;
+  protected ChoiceReplayer replayer;
+  protected CheckpointCache<RestorableVMState> checkpoints;
+
+  /*
+   * in replay mode we don't store RestorableVMStates for queued states at all,
+   * only their choice trails
+   */
+  protected boolean isReplaySearch;
+
+  // replay statistics
+  protected long replayedStates;
+  protected long replayedTransitions;
+
   
   public HeuristicSearch (Config config, JVM vm) {
     super(config, vm);
     
     useAstar = config.getBoolean("search.heuristic.astar");
     isBeamSearch = config.getBoolean("search.heuristic.beam_search");
+
+    isReplaySearch = config.getBoolean("search.heuristic.replay");
+    checkpoints = new CheckpointCache<RestorableVMState>(
+                          config.getInt("search.heuristic.replay.checkpoints", 64));
   }
 
   
@@ -86,6 +114,22 @@ public abstract class HeuristicSearch extends Search {
   public void setPathSensitive (boolean isPathSensitive) {
     this.isPathSensitive = isPathSensitive;
   }  
+
+  public boolean isReplaySearch() {
+    return isReplaySearch;
+  }
+
+  public long getNumberOfReplayedStates() {
+    return replayedStates;
+  }
+
+  public long getNumberOfReplayedTransitions() {
+    return replayedTransitions;
+  }
+
+  public long getNumberOfCheckpointHits() {
+    return checkpoints.getNumberOfHits();
+  }
   
   void backtrackToParent () {
     backtrack();
@@ -165,7 +209,15 @@ public abstract class HeuristicSearch extends Search {
 
   
   private void restoreState (HeuristicState hState) {    
-    vm.restoreState(hState.getVMState());
+    RestorableVMState vmState = hState.getVMState();
+    if (vmState != null) {
+      vm.restoreState(vmState);
+    } else {
+      replayState(hState);
+
+      // our children will be replayed from here, unless it gets evicted
+      checkpoints.put(hState.getChoiceTrail(), vm.getRestorableState());
+    }
 
     // note we have to query the depth from the VM because the state is taken from the queue
     // and we have no idea when it was entered there
@@ -173,8 +225,56 @@ public abstract class HeuristicSearch extends Search {
     notifyStateRestored();
   }
    
+  /**
+   * get to a state we don't have a RestorableVMState for by restoring the
+   * nearest cached ancestor (or the initial state) and then re-executing the
+   * rest of its choice trail. We don't notify about the replayed states, they
+   * were already seen when the state was queued
+   */
+  protected void replayState (HeuristicState hState) {
+    int[] trail = hState.getChoiceTrail();
+    if (trail == null) {
+      throw new JPFException("queued state without VM state and choice trail: " + hState.getStateId());
+    }
+
+    if (replayer == null) {
+      replayer = new ChoiceReplayer();
+      vm.addListener(replayer);
+    }
+
+    CheckpointCache.Checkpoint<RestorableVMState> cp = checkpoints.getNearest(trail);
+    if (cp != null) {
+      vm.restoreState(cp.getState());
+      replayer.setTrail(trail, cp.getDepth());
+    } else {
+      vm.restoreState(initialState);
+      replayer.setTrail(trail);
+    }
+
+    while (replayer.isReplaying()) {
+      if (!vm.forward()) {
+        throw new JPFException("choice trail of state " + hState.getStateId() +
+                               " diverged at depth " + vm.getPathLength());
+      }
+      replayedTransitions++;
+    }
+
+    replayedStates++;
+    publishReplayStatistics();
+  }
+
+  protected void publishReplayStatistics () {
+    Reporter reporter = vm.getJPF().getReporter();
+    Statistics stat = (reporter != null) ? reporter.getStatistics() : null;
+    if (stat != null) {
+      stat.setReplayStatistics(replayedStates, replayedTransitions,
+                               checkpoints.getNumberOfHits());
+    }
+  }
+  
   public void search () {
         
+    initialState = vm.getRestorableState();
     queueCurrentState();
     notifyStateStored();
     
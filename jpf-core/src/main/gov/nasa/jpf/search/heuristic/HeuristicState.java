@@ -29,17 +29,37 @@ import gov.nasa.jpf.jvm.RestorableVMState;
  */
 public abstract class HeuristicState {
   
-  protected RestorableVMState vmState;
+  protected RestorableVMState vmState; // null if the state has to be replayed
   protected int     stateId;
+
+  // optional, the choices that lead to this state from the initial state
+  protected int[]   choiceTrail;
     
   public HeuristicState (JVM vm) {
     stateId = vm.getStateId();
     vmState = vm.getRestorableState();
   }
+
+  /**
+   * a state that can only be reached by replaying its choice trail, e.g.
+   * because it was read back from a queue that spilled it to disk
+   */
+  protected HeuristicState (int stateId, int[] choiceTrail) {
+    this.stateId = stateId;
+    this.choiceTrail = choiceTrail;
+  }
   
   public RestorableVMState getVMState () {
     return vmState;
   }
+
+  public int[] getChoiceTrail () {
+    return choiceTrail;
+  }
+
+  public void setChoiceTrail (int[] choiceTrail) {
+    this.choiceTrail = choiceTrail;
+  }
   
   public int getStateId() {
     return stateId;
@@ -34,6 +34,12 @@ public class PrioritizedState extends HeuristicState implements Comparable<Prior
     this.heuristicValue = heuristicValue;
   }
 
+  public PrioritizedState(int stateId, int heuristicValue, int[] choiceTrail) {
+    super(stateId, choiceTrail);
+
+    this.heuristicValue = heuristicValue;
+  }
+
   public int getPriority () {
     return heuristicValue;
   }
@@ -32,7 +32,8 @@ public abstract class SimplePriorityHeuristic extends HeuristicSearch {
   public SimplePriorityHeuristic (Config config, JVM vm) {
     super(config,vm);
 
-    queue = new StaticPriorityQueue(config);    
+    queue = config.getInstance("search.heuristic.queue.class", StaticPriorityQueue.class,
+                               StaticPriorityQueue.class.getName());
   }
 
   protected abstract int computeHeuristicValue ();
@@ -58,7 +59,15 @@ public abstract class SimplePriorityHeuristic extends HeuristicSearch {
       }
     }
     
-    PrioritizedState hState = new PrioritizedState(vm,heuristicValue);
+    PrioritizedState hState;
+    if (isReplaySearch) {
+      hState = new PrioritizedState(vm.getStateId(), heuristicValue, getChoiceTrail());
+    } else {
+      hState = new PrioritizedState(vm,heuristicValue);
+      if (queue.needsChoiceTrails()) {
+        hState.setChoiceTrail(getChoiceTrail());
+      }
+    }
     
     queue.add(hState);
     
@@ -0,0 +1,393 @@
+//
+// Copyright (C) 2006 United States Government as represented by the
+// Administrator of the National Aeronautics and Space Administration
+// (NASA).  All Rights Reserved.
+//
+// This software is distributed under the NASA Open Source Agreement
+// (NOSA), version 1.3.  The NOSA has been approved by the Open Source
+// Initiative.  See the file NOSA-1.3-JPF at the top of the distribution
+// directory tree for the complete NOSA document.
+//
+// THE SUBJECT SOFTWARE IS PROVIDED "AS IS" WITHOUT ANY WARRANTY OF ANY
+// KIND, EITHER EXPRESSED, IMPLIED, OR STATUTORY, INCLUDING, BUT NOT
+// LIMITED TO, ANY WARRANTY THAT THE SUBJECT SOFTWARE WILL CONFORM TO
+// SPECIFICATIONS, ANY IMPLIED WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+// A PARTICULAR PURPOSE, OR FREEDOM FROM INFRINGEMENT, ANY WARRANTY THAT
+// THE SUBJECT SOFTWARE WILL BE ERROR FREE, OR ANY WARRANTY THAT
+// DOCUMENTATION, IF PROVIDED, WILL CONFORM TO THE SUBJECT SOFTWARE.
+//
+package gov.nasa.jpf.search.heuristic;
+
+import gov.nasa.jpf.Config;
+import gov.nasa.jpf.JPFException;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+
+/**
+ * a StaticPriorityQueue that only keeps the highest priority states in memory,
+ * and spills the rest to disk.
+ *
+ * Once the number of in-memory states reaches 'search.heuristic.queue.mem_limit',
+ * the lower priority half of them is written as a sorted run into a segment
+ * file. Spilled states don't keep their RestorableVMState, only their priority,
+ * id and choice trail, i.e. the search has to replay them from the initial
+ * state once they come up again (see HeuristicSearch.replayState()).
+ *
+ * first() compares the best in-memory state with the heads of all segments,
+ * and moves the best segment head back into memory if it has a higher priority,
+ * so the queue order is the same as for a StaticPriorityQueue. Since segments
+ * are sorted, they are only read sequentially. If there are more than
+ * 'search.heuristic.queue.max_segments' segments, they are merged into one.
+ *
+ * The queue limit applies to all states, in memory or on disk. Once it is
+ * reached, a new state replaces the lowest priority one, which can be the
+ * last entry of a segment. Segments therefore keep the priorities and ids of
+ * their entries in memory, so that we can drop their tails without touching
+ * the file.
+ *
+ * NOTE - only the in-memory states are visible through the Set interface
+ * (iterator(), contains() etc.), but size() includes the spilled ones
+ *
+ * Config options:
+ *   search.heuristic.queue.mem_limit    = <max number of in-memory states> (default 4096)
+ *   search.heuristic.queue.max_segments = <max number of segment files> (default 16)
+ *   search.heuristic.queue.dir          = <directory for segment files> (default: java.io.tmpdir)
+ */
+@SuppressWarnings("serial")
+public class SpillingPriorityQueue extends StaticPriorityQueue {
+
+  /**
+   * a sorted run of spilled states. Each entry is stored as
+   *   priority, stateId, trail length, trail values
+   */
+  static class Segment {
+    File file;
+    DataInputStream in;
+    int[] priorities;       // of all entries, so that we know our tail
+    int[] stateIds;
+    int next;               // index of the next entry to read
+    int end;                // entries from here on are dropped
+    PrioritizedState head;  // entry at next-1, null if we are exhausted
+
+    Segment (File file, int[] priorities, int[] stateIds, int nEntries) throws IOException {
+      this.file = file;
+      this.priorities = priorities;
+      this.stateIds = stateIds;
+      end = nEntries;
+      in = new DataInputStream( new BufferedInputStream( new FileInputStream(file)));
+
+      readHead();
+    }
+
+    void readHead() throws IOException {
+      if (next < end) {
+        int priority = in.readInt();
+        int stateId = in.readInt();
+        int[] trail = new int[in.readInt()];
+        for (int i=0; i<trail.length; i++) {
+          trail[i] = in.readInt();
+        }
+
+        head = new PrioritizedState(stateId, priority, trail);
+        next++;
+
+      } else {
+        head = null;
+        close();
+      }
+    }
+
+    /**
+     * same as PrioritizedState.compareTo(), for our lowest priority entry
+     */
+    int compareTail (int priority, int stateId) {
+      int diff = priorities[end-1] - priority;
+      return (diff != 0) ? diff : (stateIds[end-1] - stateId);
+    }
+
+    int compareTail (PrioritizedState s) {
+      return compareTail(s.getPriority(), s.getStateId());
+    }
+
+    int compareTail (Segment seg) {
+      return compareTail(seg.priorities[seg.end-1], seg.stateIds[seg.end-1]);
+    }
+
+    /**
+     * drop our lowest priority entry, which might be the head
+     */
+    void dropTail() {
+      if (end == next) {
+        end--;
+        head = null;
+        close();
+      } else {
+        end--;
+      }
+    }
+
+    PrioritizedState poll() throws IOException {
+      PrioritizedState s = head;
+      readHead();
+      return s;
+    }
+
+    boolean isExhausted() {
+      return head == null;
+    }
+
+    void close() {
+      try {
+        in.close();
+      } catch (IOException iox) {
+        // nothing we can do
+      }
+      file.delete();
+    }
+  }
+
+  int memLimit;
+  int maxSegments;
+  File dir; // null means default temp dir
+
+  ArrayList<Segment> segments = new ArrayList<Segment>();
+  int nSpilled;    // number of states that are currently on disk
+
+  // statistics
+  long totalSpilled;
+  long totalLoaded;
+
+  public SpillingPriorityQueue (Config config) {
+    super(config);
+
+    memLimit = Math.max(config.getInt("search.heuristic.queue.mem_limit", 4096), 2);
+    maxSegments = Math.max(config.getInt("search.heuristic.queue.max_segments", 16), 1);
+
+    String dirName = config.getString("search.heuristic.queue.dir");
+    if (dirName != null) {
+      dir = new File(dirName);
+      if (!dir.isDirectory() && !dir.mkdirs()) {
+        throw new JPFException("cannot create queue directory: " + dirName);
+      }
+    }
+  }
+
+  public boolean needsChoiceTrails() {
+    return true;
+  }
+
+  public int size() {
+    return super.size() + nSpilled;
+  }
+
+  public boolean isEmpty() {
+    return size() == 0;
+  }
+
+  public boolean add (PrioritizedState s) {
+    if (size() >= maxQueueSize) {
+      // replace the lowest priority state, which might be on disk
+      Segment seg = getWorstSegment();
+
+      if (seg != null && (super.size() == 0 || seg.compareTail(last()) > 0)) {
+        if (seg.compareTail(s) <= 0) {
+          return false; // don't add with this priority value
+        }
+        seg.dropTail();
+        if (seg.isExhausted()) {
+          segments.remove(seg);
+        }
+        nSpilled--;
+
+      } else if (super.size() > 0 && s.compareTo(last()) < 0) {
+        remove(last());
+
+      } else {
+        return false;
+      }
+    }
+
+    int nMem = super.size();
+    if (nMem >= memLimit) {
+      spill(nMem - memLimit/2);
+    }
+
+    return addUnbounded(s);
+  }
+
+  public PrioritizedState first() {
+    Segment seg = getBestSegment();
+
+    if (seg != null) {
+      if (super.size() == 0 || seg.head.compareTo(super.first()) < 0) {
+        // the best state is on disk, move it back into memory
+        try {
+          PrioritizedState s = seg.poll();
+          if (seg.isExhausted()) {
+            segments.remove(seg);
+          }
+          nSpilled--;
+          totalLoaded++;
+
+          addUnbounded(s);
+
+        } catch (IOException iox) {
+          throw new JPFException("error reading queue segment " + seg.file + ": " + iox);
+        }
+      }
+    }
+
+    return super.first();
+  }
+
+  public void clear() {
+    super.clear();
+
+    for (Segment seg : segments) {
+      seg.close();
+    }
+    segments.clear();
+    nSpilled = 0;
+  }
+
+  Segment getBestSegment() {
+    Segment best = null;
+
+    for (Segment seg : segments) {
+      if (best == null || seg.head.compareTo(best.head) < 0) {
+        best = seg;
+      }
+    }
+
+    return best;
+  }
+
+  Segment getWorstSegment() {
+    Segment worst = null;
+
+    for (Segment seg : segments) {
+      if (worst == null || seg.compareTail(worst) > 0) {
+        worst = seg;
+      }
+    }
+
+    return worst;
+  }
+
+  File createSegmentFile() throws IOException {
+    File f = File.createTempFile("jpf-queue", ".seg", dir);
+    f.deleteOnExit();
+    return f;
+  }
+
+  static void writeEntry (DataOutputStream out, PrioritizedState s) throws IOException {
+    int[] trail = s.getChoiceTrail();
+    if (trail == null) {
+      throw new JPFException("cannot spill state without choice trail: " + s);
+    }
+
+    out.writeInt(s.getPriority());
+    out.writeInt(s.getStateId());
+    out.writeInt(trail.length);
+    for (int i=0; i<trail.length; i++) {
+      out.writeInt(trail[i]);
+    }
+  }
+
+  /**
+   * write the 'n' lowest priority in-memory states into a new segment
+   */
+  protected void spill (int n) {
+    PrioritizedState[] a = new PrioritizedState[n];
+    int[] priorities = new int[n];
+    int[] stateIds = new int[n];
+    for (int i=n-1; i>=0; i--) {
+      a[i] = pollLast();
+      priorities[i] = a[i].getPriority();
+      stateIds[i] = a[i].getStateId();
+    }
+
+    File f = null;
+    try {
+      f = createSegmentFile();
+      DataOutputStream out = new DataOutputStream( new BufferedOutputStream( new FileOutputStream(f)));
+      try {
+        for (int i=0; i<n; i++) {
+          writeEntry(out, a[i]);
+        }
+      } finally {
+        out.close();
+      }
+
+      segments.add( new Segment(f, priorities, stateIds, n));
+      nSpilled += n;
+      totalSpilled += n;
+
+    } catch (IOException iox) {
+      throw new JPFException("error writing queue segment " + f + ": " + iox);
+    }
+
+    if (segments.size() > maxSegments) {
+      mergeSegments();
+    }
+  }
+
+  /**
+   * merge all segments into a single one, so that we don't keep too many
+   * files open
+   */
+  protected void mergeSegments() {
+    File f = null;
+    try {
+      f = createSegmentFile();
+      DataOutputStream out = new DataOutputStream( new BufferedOutputStream( new FileOutputStream(f)));
+      int[] priorities = new int[nSpilled];
+      int[] stateIds = new int[nSpilled];
+      int n = 0;
+      try {
+        Segment seg;
+        while ((seg = getBestSegment()) != null) {
+          PrioritizedState s = seg.poll();
+          writeEntry(out, s);
+          priorities[n] = s.getPriority();
+          stateIds[n] = s.getStateId();
+          n++;
+          if (seg.isExhausted()) {
+            segments.remove(seg);
+          }
+        }
+      } finally {
+        out.close();
+      }
+
+      segments.add( new Segment(f, priorities, stateIds, n));
+
+    } catch (IOException iox) {
+      throw new JPFException("error merging queue segments into " + f + ": " + iox);
+    }
+  }
+
+  public int getNumberOfSpilledStates() {
+    return nSpilled;
+  }
+
+  public long getTotalNumberOfSpilledStates() {
+    return totalSpilled;
+  }
+
+  public long getTotalNumberOfLoadedStates() {
+    return totalLoaded;
+  }
+
+  public int getNumberOfSegments() {
+    return segments.size();
+  }
+}
@@ -71,9 +71,25 @@ public class StaticPriorityQueue extends TreeSet<PrioritizedState> {
     }
   }
   
+  /**
+   * add without checking the queue limit, for subclasses that do their own
+   * accounting
+   */
+  protected boolean addUnbounded (PrioritizedState s) {
+    return super.add(s);
+  }
+
   public boolean isQueueLimitReached() {
     return size() >= maxQueueSize;
   }
+
+  /**
+   * do queued states have to carry their choice trails, i.e. might we have
+   * to replay them?
+   */
+  public boolean needsChoiceTrails() {
+    return false;
+  }
   
   // for debugging purposes
   void dump() {
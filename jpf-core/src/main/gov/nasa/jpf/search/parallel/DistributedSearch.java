@@ -0,0 +1,196 @@
+//
+// Copyright (C) 2006 United States Government as represented by the
+// Administrator of the National Aeronautics and Space Administration
+// (NASA).  All Rights Reserved.
+//
+// This software is distributed under the NASA Open Source Agreement
+// (NOSA), version 1.3.  The NOSA has been approved by the Open Source
+// Initiative.  See the file NOSA-1.3-JPF at the top of the distribution
+// directory tree for the complete NOSA document.
+//
+// THE SUBJECT SOFTWARE IS PROVIDED "AS IS" WITHOUT ANY WARRANTY OF ANY
+// KIND, EITHER EXPRESSED, IMPLIED, OR STATUTORY, INCLUDING, BUT NOT
+// LIMITED TO, ANY WARRANTY THAT THE SUBJECT SOFTWARE WILL CONFORM TO
+// SPECIFICATIONS, ANY IMPLIED WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+// A PARTICULAR PURPOSE, OR FREEDOM FROM INFRINGEMENT, ANY WARRANTY THAT
+// THE SUBJECT SOFTWARE WILL BE ERROR FREE, OR ANY WARRANTY THAT
+// DOCUMENTATION, IF PROVIDED, WILL CONFORM TO THE SUBJECT SOFTWARE.
+//
+package gov.nasa.jpf.search.parallel;
+
+import gov.nasa.jpf.Config;
+import gov.nasa.jpf.JPFException;
+import gov.nasa.jpf.jvm.JVM;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.ArrayList;
+
+/**
+ * a multi-process version of ParallelSearch. The workers are separate JVM
+ * processes (DistributedWorker), which talk to a SearchServer in the
+ * coordinator process via SearchProtocol. The server owns the
+ * SharedSearchContext with the global fingerprint set and the work queue.
+ *
+ * Workers look up fingerprints in a local cache and exchange new ones with
+ * the coordinator in batches (see RemoteSearchContext), i.e. we only need a
+ * network round trip every 'batch_size' new states.
+ *
+ * Worker processes are started on the local machine by default. If
+ * 'search.distributed.spawn' is false, the coordinator waits for workers that
+ * are started manually (e.g. on other nodes).
+ *
+ * Config options:
+ *   search.distributed.workers       = <number of worker processes> (default: number of processors)
+ *   search.distributed.spawn         = <start workers as local processes> (default true)
+ *   search.distributed.host          = <host name spawned workers connect to> (default localhost)
+ *   search.distributed.port          = <server port, 0 picks a free one> (default 0)
+ *   search.distributed.timeout       = <msec to wait for each worker to connect> (default 60000)
+ *   search.distributed.vm_args       = <comma separated JVM arguments for spawned workers>
+ *   search.distributed.batch_size    = <new fingerprints per sync> (default 256)
+ *   search.distributed.sync_interval = <max msec between syncs> (default 200)
+ */
+public class DistributedSearch extends ParallelSearch {
+
+  protected boolean spawn;
+  protected String host;
+  protected int port;
+  protected int timeout;
+  protected String[] vmArgs;
+
+  public DistributedSearch (Config config, JVM vm) {
+    super(config, vm);
+
+    nWorkers = config.getInt("search.distributed.workers", Runtime.getRuntime().availableProcessors());
+    if (nWorkers < 1){
+      nWorkers = 1;
+    }
+
+    spawn = config.getBoolean("search.distributed.spawn", true);
+    host = config.getString("search.distributed.host", "localhost");
+    port = config.getInt("search.distributed.port", 0);
+    timeout = config.getInt("search.distributed.timeout", 60000);
+    vmArgs = config.getStringArray("search.distributed.vm_args", new String[0]);
+  }
+
+  protected void runWorkers (){
+    SearchServer server;
+    try {
+      server = new SearchServer(context, nWorkers, port, timeout);
+    } catch (IOException iox){
+      throw new JPFException("cannot start search server on port " + port + ": " + iox);
+    }
+    server.start();
+
+    ArrayList<Process> processes = new ArrayList<Process>();
+    try {
+      if (spawn){
+        for (int i=0; i<nWorkers; i++){
+          processes.add(startWorker(i, server.getPort()));
+        }
+      } else {
+        log.info("waiting for " + nWorkers + " workers to connect to port " + server.getPort());
+      }
+
+      server.waitForWorkers();
+
+    } finally {
+      server.close();
+
+      for (Process p : processes){
+        if (context.getFailure() != null){
+          p.destroy();
+        }
+        waitFor(p);
+      }
+    }
+  }
+
+  protected Process startWorker (int idx, int serverPort){
+    ArrayList<String> cmd = new ArrayList<String>();
+
+    cmd.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+    for (String a : vmArgs){
+      cmd.add(a);
+    }
+    cmd.add("-cp");
+    cmd.add(getWorkerClassPath());
+    cmd.add(DistributedWorker.class.getName());
+    cmd.add(host);
+    cmd.add(Integer.toString(serverPort));
+
+    try {
+      ProcessBuilder pb = new ProcessBuilder(cmd);
+      pb.redirectErrorStream(true);
+      Process p = pb.start();
+
+      new OutputPump(p.getInputStream(), idx).start();
+      return p;
+
+    } catch (IOException iox){
+      context.fail(iox);
+      throw new JPFException("cannot start worker process: " + iox);
+    }
+  }
+
+  protected String getWorkerClassPath (){
+    StringBuilder sb = new StringBuilder();
+
+    for (URL url : WorkerClassLoader.getClassPathURLs(config.getClassLoader())){
+      if ("file".equals(url.getProtocol())){
+        try {
+          if (sb.length() > 0){
+            sb.append(File.pathSeparatorChar);
+          }
+          sb.append(new File(url.toURI()).getPath());
+        } catch (URISyntaxException x){
+          log.warning("ignoring worker classpath element: " + url);
+        }
+      }
+    }
+
+    return sb.toString();
+  }
+
+  void waitFor (Process p){
+    while (true){
+      try {
+        p.waitFor();
+        return;
+      } catch (InterruptedException ix){
+        p.destroy();
+      }
+    }
+  }
+
+  /**
+   * copies the output of a worker process to our own
+   */
+  static class OutputPump extends Thread {
+    BufferedReader reader;
+    int workerIdx;
+
+    OutputPump (InputStream in, int workerIdx){
+      super("JPF-worker-output-" + workerIdx);
+      setDaemon(true);
+      reader = new BufferedReader(new InputStreamReader(in));
+      this.workerIdx = workerIdx;
+    }
+
+    public void run (){
+      try {
+        String line;
+        while ((line = reader.readLine()) != null){
+          System.out.println("[" + workerIdx + "] " + line);
+        }
+      } catch (IOException iox){
+        // process is gone
+      }
+    }
+  }
+}
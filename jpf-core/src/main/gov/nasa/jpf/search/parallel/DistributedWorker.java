@@ -0,0 +1,51 @@
+//
+// Copyright (C) 2006 United States Government as represented by the
+// Administrator of the National Aeronautics and Space Administration
+// (NASA).  All Rights Reserved.
+//
+// This software is distributed under the NASA Open Source Agreement
+// (NOSA), version 1.3.  The NOSA has been approved by the Open Source
+// Initiative.  See the file NOSA-1.3-JPF at the top of the distribution
+// directory tree for the complete NOSA document.
+//
+// THE SUBJECT SOFTWARE IS PROVIDED "AS IS" WITHOUT ANY WARRANTY OF ANY
+// KIND, EITHER EXPRESSED, IMPLIED, OR STATUTORY, INCLUDING, BUT NOT
+// LIMITED TO, ANY WARRANTY THAT THE SUBJECT SOFTWARE WILL CONFORM TO
+// SPECIFICATIONS, ANY IMPLIED WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+// A PARTICULAR PURPOSE, OR FREEDOM FROM INFRINGEMENT, ANY WARRANTY THAT
+// THE SUBJECT SOFTWARE WILL BE ERROR FREE, OR ANY WARRANTY THAT
+// DOCUMENTATION, IF PROVIDED, WILL CONFORM TO THE SUBJECT SOFTWARE.
+//
+package gov.nasa.jpf.search.parallel;
+
+import java.io.IOException;
+
+/**
+ * main class of DistributedSearch worker processes, which are either started
+ * by the coordinator, or manually with
+ *
+ *   java -cp <jpf classpath> gov.nasa.jpf.search.parallel.DistributedWorker <host> <port>
+ *
+ * The worker gets its Config from the coordinator, and otherwise runs the same
+ * loop as the threads of a ParallelSearch
+ */
+public class DistributedWorker {
+
+  public static void main (String[] args){
+    if (args.length != 2){
+      System.err.println("usage: DistributedWorker <coordinator-host> <coordinator-port>");
+      System.exit(1);
+    }
+
+    RemoteSearchContext context = null;
+    try {
+      context = RemoteSearchContext.connect(args[0], Integer.parseInt(args[1]));
+    } catch (IOException iox){
+      System.err.println("cannot connect to coordinator " + args[0] + ':' + args[1] + ": " + iox);
+      System.exit(1);
+    }
+
+    ParallelWorker.run(context, context.getWorkerId());
+    context.close();
+  }
+}
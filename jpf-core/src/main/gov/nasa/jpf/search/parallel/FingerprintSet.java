@@ -0,0 +1,179 @@
+//
+// Copyright (C) 2006 United States Government as represented by the
+// Administrator of the National Aeronautics and Space Administration
+// (NASA).  All Rights Reserved.
+//
+// This software is distributed under the NASA Open Source Agreement
+// (NOSA), version 1.3.  The NOSA has been approved by the Open Source
+// Initiative.  See the file NOSA-1.3-JPF at the top of the distribution
+// directory tree for the complete NOSA document.
+//
+// THE SUBJECT SOFTWARE IS PROVIDED "AS IS" WITHOUT ANY WARRANTY OF ANY
+// KIND, EITHER EXPRESSED, IMPLIED, OR STATUTORY, INCLUDING, BUT NOT
+// LIMITED TO, ANY WARRANTY THAT THE SUBJECT SOFTWARE WILL CONFORM TO
+// SPECIFICATIONS, ANY IMPLIED WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+// A PARTICULAR PURPOSE, OR FREEDOM FROM INFRINGEMENT, ANY WARRANTY THAT
+// THE SUBJECT SOFTWARE WILL BE ERROR FREE, OR ANY WARRANTY THAT
+// DOCUMENTATION, IF PROVIDED, WILL CONFORM TO THE SUBJECT SOFTWARE.
+//
+package gov.nasa.jpf.search.parallel;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * a thread safe set of 64bit state fingerprints that is shared between all
+ * workers of a ParallelSearch.
+ *
+ * The set is striped - the upper fingerprint bits select one of a (power of two)
+ * number of open addressed tables, each of which is guarded by its own lock.
+ * With enough stripes, concurrent lookups of different workers hardly ever
+ * contend.
+ *
+ * Ids are not assigned on insertion, they are reserved upfront by the caller
+ * (see SharedStateSet), which is required by the way JVM detects new states.
+ *
+ * NOTE - this class is loaded by the coordinator and shared between the worker
+ * classloaders, i.e. it must not refer to any JPF types
+ */
+public class FingerprintSet {
+
+  static final double MAX_LOAD = 0.7;
+
+  static class Stripe {
+    long[] fps;
+    int[] ids;   // id + 1, 0 means empty
+    int count;
+    int nextRehash;
+
+    boolean hasZero; // we can't store a 0 fingerprint in the table
+    int zeroId;
+
+    Stripe (int capacity){
+      fps = new long[capacity];
+      ids = new int[capacity];
+      nextRehash = (int)(MAX_LOAD * capacity);
+    }
+
+    synchronized int add (long fp, int newId){
+      if (fp == 0){
+        if (!hasZero){
+          hasZero = true;
+          zeroId = newId;
+        }
+        return zeroId;
+      }
+
+      int mask = fps.length - 1;
+      int idx = (int)fp & mask;
+      int delta = (int)(fp >>> 32) | 1; // must be odd
+
+      while (ids[idx] != 0){
+        if (fps[idx] == fp){
+          return ids[idx] - 1;
+        }
+        idx = (idx + delta) & mask;
+      }
+
+      if (count >= nextRehash){
+        grow();
+        idx = findFreeIdx(fps.length - 1, fp);
+      }
+
+      fps[idx] = fp;
+      ids[idx] = newId + 1;
+      count++;
+
+      return newId;
+    }
+
+    int findFreeIdx (int mask, long fp){
+      int idx = (int)fp & mask;
+      int delta = (int)(fp >>> 32) | 1;
+
+      while (ids[idx] != 0){
+        idx = (idx + delta) & mask;
+      }
+      return idx;
+    }
+
+    void grow (){
+      long[] oldFps = fps;
+      int[] oldIds = ids;
+      int newCapacity = oldFps.length << 1;
+
+      if (newCapacity <= 0){
+        throw new IllegalStateException("fingerprint stripe exhausted, increase search.parallel.stripes");
+      }
+
+      fps = new long[newCapacity];
+      ids = new int[newCapacity];
+      nextRehash = (int)(MAX_LOAD * newCapacity);
+
+      int mask = newCapacity - 1;
+      for (int i=0; i<oldFps.length; i++){
+        if (oldIds[i] != 0){
+          int idx = findFreeIdx(mask, oldFps[i]);
+          fps[idx] = oldFps[i];
+          ids[idx] = oldIds[i];
+        }
+      }
+    }
+  }
+
+
+  Stripe[] stripes;
+  int stripeShift;
+  int stripeMask;
+
+  AtomicInteger nextId = new AtomicInteger();
+  AtomicInteger nStored = new AtomicInteger();
+
+  public FingerprintSet (int nStripes, int initSize){
+    int n = (nStripes <= 1) ? 1 : Integer.highestOneBit(nStripes - 1) << 1;
+    stripeShift = 64 - Integer.numberOfTrailingZeros(n);  // 64 is a shift by 0, which is masked out
+    stripeMask = n - 1;
+
+    int cap = (initSize <= 16) ? 16 : Integer.highestOneBit(initSize - 1) << 1;
+
+    stripes = new Stripe[n];
+    for (int i=0; i<n; i++){
+      stripes[i] = new Stripe(cap);
+    }
+  }
+
+  /**
+   * reserve a new, unique state id. Ids that never get stored are just lost
+   */
+  public int reserveId (){
+    int id = nextId.getAndIncrement();
+    if (id < 0){
+      throw new IllegalStateException("state id space exhausted");
+    }
+    return id;
+  }
+
+  /**
+   * add fingerprint 'fp' with a previously reserved 'newId' if it is not yet
+   * in the set.
+   *
+   * @return 'newId' if the fingerprint was added, the id it was stored with otherwise
+   */
+  public int add (long fp, int newId){
+    int id = stripes[(int)(fp >>> stripeShift) & stripeMask].add(fp, newId);
+    if (id == newId){
+      nStored.incrementAndGet();
+    }
+    return id;
+  }
+
+  /**
+   * number of stored fingerprints
+   */
+  public int size (){
+    return nStored.get();
+  }
+
+  public int getNumberOfStripes (){
+    return stripes.length;
+  }
+}
@@ -0,0 +1,288 @@
+//
+// Copyright (C) 2006 United States Government as represented by the
+// Administrator of the National Aeronautics and Space Administration
+// (NASA).  All Rights Reserved.
+//
+// This software is distributed under the NASA Open Source Agreement
+// (NOSA), version 1.3.  The NOSA has been approved by the Open Source
+// Initiative.  See the file NOSA-1.3-JPF at the top of the distribution
+// directory tree for the complete NOSA document.
+//
+// THE SUBJECT SOFTWARE IS PROVIDED "AS IS" WITHOUT ANY WARRANTY OF ANY
+// KIND, EITHER EXPRESSED, IMPLIED, OR STATUTORY, INCLUDING, BUT NOT
+// LIMITED TO, ANY WARRANTY THAT THE SUBJECT SOFTWARE WILL CONFORM TO
+// SPECIFICATIONS, ANY IMPLIED WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+// A PARTICULAR PURPOSE, OR FREEDOM FROM INFRINGEMENT, ANY WARRANTY THAT
+// THE SUBJECT SOFTWARE WILL BE ERROR FREE, OR ANY WARRANTY THAT
+// DOCUMENTATION, IF PROVIDED, WILL CONFORM TO THE SUBJECT SOFTWARE.
+//
+package gov.nasa.jpf.search.parallel;
+
+import gov.nasa.jpf.Config;
+import gov.nasa.jpf.JPFException;
+import gov.nasa.jpf.JPFListenerException;
+import gov.nasa.jpf.jvm.JVM;
+import gov.nasa.jpf.report.Statistics;
+import gov.nasa.jpf.search.ChoiceReplayer;
+import gov.nasa.jpf.search.Search;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * a multi-threaded depth first search.
+ *
+ * JPF can't run several searches within the same classloader because of its
+ * static singletons (JVM.jvm, ThreadInfo.currentThread, ClassInfo.loadedClasses
+ * and the like), hence each worker thread gets its own WorkerClassLoader and
+ * creates its own JPF/JVM objects. The workers share a SharedSearchContext with
+ * a striped FingerprintSet of visited states, and a queue of unexplored
+ * subtrees that are identified by their choice trails. A worker that finds other
+ * workers idle splits off parts of its own subtree (see ParallelWorkerSearch).
+ *
+ * Since JPF objects of different classloaders can't be mixed, errors are
+ * reported as choice trails, which the coordinator replays with its own JVM once
+ * the workers are finished. This produces normal Error objects (with full paths)
+ * for the reporter.
+ *
+ * Per worker statistics are logged, and passed to ParallelSearchListeners.
+ *
+ * Note that the workers run the configured listeners and properties of the
+ * coordinator, but not its publishers. Fingerprints of different workers only
+ * match if the serialized states are the same, which depends on the class
+ * loading order of the SUT - states might therefore get explored more than once
+ *
+ * Config options:
+ *   search.parallel.workers   = <number of worker threads> (default: number of processors)
+ *   search.parallel.stripes   = <number of FingerprintSet stripes> (default 256)
+ *   search.parallel.init_size = <initial entries per stripe> (default 4096)
+ */
+public class ParallelSearch extends Search {
+
+  static final String WORKER_CLASS = "gov.nasa.jpf.search.parallel.ParallelWorker";
+
+  protected int nWorkers;
+  protected int nStripes;
+  protected int initSize;
+
+  protected SharedSearchContext context;
+
+  public ParallelSearch (Config config, JVM vm) {
+    super(config, vm);
+
+    nWorkers = config.getInt("search.parallel.workers", Runtime.getRuntime().availableProcessors());
+    if (nWorkers < 1){
+      nWorkers = 1;
+    }
+
+    nStripes = config.getInt("search.parallel.stripes", 256);
+    initSize = config.getInt("search.parallel.init_size", 4096);
+  }
+
+  public boolean requestBacktrack () {
+    doBacktrack = true;
+
+    return true;
+  }
+
+  public boolean supportsBacktrack () {
+    return true;
+  }
+
+  public int getNumberOfWorkers (){
+    return nWorkers;
+  }
+
+  public WorkerStatistics[] getWorkerStatistics (){
+    return (context != null) ? context.getStatistics() : null;
+  }
+
+  public void search () {
+    depth = 0;
+
+    notifySearchStarted();
+
+    context = new SharedSearchContext(nWorkers, new FingerprintSet(nStripes, initSize),
+                                      getWorkerConfig());
+    context.addWork(new int[0]); // the root of the state space
+
+    runWorkers();
+
+    Throwable failure = context.getFailure();
+    if (failure != null){
+      throw new JPFException("parallel search worker failed: " + failure, failure);
+    }
+
+    for (WorkerStatistics stats : context.getStatistics()){
+      log.info(stats.toString());
+      notifyWorkerFinished(stats);
+    }
+    updateStatistics();
+
+    String constraint = context.getSearchConstraint();
+    if (constraint != null){
+      notifySearchConstraintHit(constraint);
+    }
+
+    List<int[]> errorTrails = context.getErrorTrails();
+    if (!errorTrails.isEmpty()){
+      replayErrors(errorTrails, context.getErrorDescriptions());
+    }
+
+    notifySearchFinished();
+  }
+
+  /**
+   * the worker Config is the same as ours, except of the search, the state
+   * storage and the (silent) reporter
+   */
+  protected String getWorkerConfig (){
+    Properties p = new Properties();
+    for (Map.Entry<Object,Object> e : config.entrySet()){
+      p.put(e.getKey(), e.getValue());
+    }
+
+    p.put("search.class", ParallelWorkerSearch.class.getName());
+    p.put("vm.storage.class", SharedStateSet.class.getName());
+    p.remove("report.publisher");
+
+    try {
+      StringWriter w = new StringWriter();
+      p.store(w, null);
+      return w.toString();
+    } catch (IOException iox){
+      throw new JPFException("cannot create worker config: " + iox);
+    }
+  }
+
+  protected void runWorkers (){
+    URL[] cp = WorkerClassLoader.getClassPathURLs(config.getClassLoader());
+    ClassLoader parent = ParallelSearch.class.getClassLoader();
+
+    Thread[] workers = new Thread[nWorkers];
+    for (int i=0; i<nWorkers; i++){
+      workers[i] = new WorkerThread(i, new WorkerClassLoader(cp, parent));
+      workers[i].start();
+    }
+
+    for (int i=0; i<nWorkers; i++){
+      while (workers[i].isAlive()){
+        try {
+          workers[i].join();
+        } catch (InterruptedException ix){
+          context.terminate();
+        }
+      }
+    }
+  }
+
+  class WorkerThread extends Thread {
+    int id;
+    ClassLoader loader;
+
+    WorkerThread (int id, ClassLoader loader){
+      super("JPF-worker-" + id);
+      this.id = id;
+      this.loader = loader;
+      setContextClassLoader(loader);
+    }
+
+    public void run (){
+      try {
+        Class<?> cls = loader.loadClass(WORKER_CLASS);
+        Method m = cls.getMethod("run", SharedSearchContext.class, int.class);
+        m.invoke(null, context, id);
+
+      } catch (InvocationTargetException itx){
+        context.fail(itx.getCause());
+      } catch (Throwable t){
+        context.fail(t);
+      }
+    }
+  }
+
+  /**
+   * add the worker numbers to the reporter statistics, if there are any
+   */
+  protected void updateStatistics (){
+    Statistics stat = (reporter != null) ? reporter.getStatistics() : null;
+
+    if (stat != null){
+      for (WorkerStatistics ws : context.getStatistics()){
+        stat.newStates += ws.newStates;
+        stat.visitedStates += ws.visitedStates;
+        stat.endStates += ws.endStates;
+        stat.backtracked += ws.backtracked;
+        stat.constraints += ws.constraints;
+        if (ws.maxDepth > stat.maxDepth){
+          stat.maxDepth = ws.maxDepth;
+        }
+      }
+    }
+  }
+
+  /**
+   * re-execute the error trails reported by the workers with our own JVM, to
+   * get Error objects that have paths and thread snapshots
+   */
+  protected void replayErrors (List<int[]> trails, List<String> descriptions){
+    ChoiceReplayer replayer = new ChoiceReplayer();
+    vm.addListener(replayer);
+
+    for (int i=0; i<trails.size() && !done; i++){
+      int[] trail = trails.get(i);
+
+      if (depth > 0){ // reset to the initial state
+        while (depth > 0 && backtrack()){
+          depth--;
+          notifyStateBacktracked();
+        }
+        vm.getChoiceGenerator().reset();
+      }
+
+      replayer.setTrail(trail);
+      if (!replayError(replayer)){
+        log.warning("could not reproduce worker error: " + descriptions.get(i) +
+                    ", choice trail: " + Arrays.toString(trail));
+      }
+    }
+
+    vm.removeListener(replayer);
+  }
+
+  protected boolean replayError (ChoiceReplayer replayer){
+    while (replayer.isReplaying()){
+      if (!forward()){
+        return false;
+      }
+      depth++;
+      notifyStateAdvanced();
+
+      if (currentError != null){
+        notifyPropertyViolated();
+        return true;
+      }
+    }
+
+    return false;
+  }
+
+  protected void notifyWorkerFinished (WorkerStatistics stats){
+    try {
+      for (int i = 0; i < listeners.length; i++) {
+        if (listeners[i] instanceof ParallelSearchListener){
+          ((ParallelSearchListener)listeners[i]).workerFinished(this, stats);
+        }
+      }
+    } catch (Throwable t) {
+      throw new JPFListenerException("exception during workerFinished() notification", t);
+    }
+  }
+}
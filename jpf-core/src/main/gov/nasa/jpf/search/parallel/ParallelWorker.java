@@ -0,0 +1,85 @@
+//
+// Copyright (C) 2006 United States Government as represented by the
+// Administrator of the National Aeronautics and Space Administration
+// (NASA).  All Rights Reserved.
+//
+// This software is distributed under the NASA Open Source Agreement
+// (NOSA), version 1.3.  The NOSA has been approved by the Open Source
+// Initiative.  See the file NOSA-1.3-JPF at the top of the distribution
+// directory tree for the complete NOSA document.
+//
+// THE SUBJECT SOFTWARE IS PROVIDED "AS IS" WITHOUT ANY WARRANTY OF ANY
+// KIND, EITHER EXPRESSED, IMPLIED, OR STATUTORY, INCLUDING, BUT NOT
+// LIMITED TO, ANY WARRANTY THAT THE SUBJECT SOFTWARE WILL CONFORM TO
+// SPECIFICATIONS, ANY IMPLIED WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+// A PARTICULAR PURPOSE, OR FREEDOM FROM INFRINGEMENT, ANY WARRANTY THAT
+// THE SUBJECT SOFTWARE WILL BE ERROR FREE, OR ANY WARRANTY THAT
+// DOCUMENTATION, IF PROVIDED, WILL CONFORM TO THE SUBJECT SOFTWARE.
+//
+package gov.nasa.jpf.search.parallel;
+
+import gov.nasa.jpf.Config;
+import gov.nasa.jpf.JPF;
+import gov.nasa.jpf.JPFException;
+import gov.nasa.jpf.search.Search;
+
+import java.io.StringReader;
+
+/**
+ * the runtime of a single ParallelSearch worker.
+ *
+ * Each worker has its own WorkerClassLoader, i.e. its own copy of all the
+ * static JPF state (JVM.jvm, ThreadInfo.currentThread, ClassInfo.loadedClasses
+ * etc.). The worker creates a new JPF object for each work item it gets from
+ * the SharedSearchContext, replays the item's choice trail and then explores
+ * the subtree below it with a ParallelWorkerSearch.
+ *
+ * This class is instantiated reflectively by the coordinator, from within the
+ * worker classloader
+ */
+public class ParallelWorker {
+
+  // there is only one worker per classloader
+  static SharedSearchContext context;
+
+  public static SharedSearchContext getContext (){
+    return context;
+  }
+
+  public static void run (SharedSearchContext ctx, int workerId){
+    WorkerStatistics stats = ctx.getStatistics(workerId);
+    long t0 = System.currentTimeMillis();
+
+    context = ctx;
+    try {
+      int[] trail;
+      while ((trail = ctx.getWork()) != null){
+        try {
+          explore(ctx, trail, stats);
+        } finally {
+          ctx.workDone();
+        }
+      }
+
+    } catch (Throwable t){
+      ctx.fail(t);
+
+    } finally {
+      stats.elapsed = System.currentTimeMillis() - t0;
+      context = null;
+    }
+  }
+
+  static void explore (SharedSearchContext ctx, int[] trail, WorkerStatistics stats){
+    Config conf = new Config(new StringReader(ctx.getWorkerConfig()));
+    JPF jpf = new JPF(conf);
+
+    Search search = jpf.getSearch();
+    if (!jpf.isRunnable() || !(search instanceof ParallelWorkerSearch)){
+      throw new JPFException("worker JPF not runnable");
+    }
+
+    ((ParallelWorkerSearch)search).setWorkItem(ctx, trail, stats);
+    jpf.run();
+  }
+}
@@ -0,0 +1,211 @@
+//
+// Copyright (C) 2006 United States Government as represented by the
+// Administrator of the National Aeronautics and Space Administration
+// (NASA).  All Rights Reserved.
+//
+// This software is distributed under the NASA Open Source Agreement
+// (NOSA), version 1.3.  The NOSA has been approved by the Open Source
+// Initiative.  See the file NOSA-1.3-JPF at the top of the distribution
+// directory tree for the complete NOSA document.
+//
+// THE SUBJECT SOFTWARE IS PROVIDED "AS IS" WITHOUT ANY WARRANTY OF ANY
+// KIND, EITHER EXPRESSED, IMPLIED, OR STATUTORY, INCLUDING, BUT NOT
+// LIMITED TO, ANY WARRANTY THAT THE SUBJECT SOFTWARE WILL CONFORM TO
+// SPECIFICATIONS, ANY IMPLIED WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+// A PARTICULAR PURPOSE, OR FREEDOM FROM INFRINGEMENT, ANY WARRANTY THAT
+// THE SUBJECT SOFTWARE WILL BE ERROR FREE, OR ANY WARRANTY THAT
+// DOCUMENTATION, IF PROVIDED, WILL CONFORM TO THE SUBJECT SOFTWARE.
+//
+package gov.nasa.jpf.search.parallel;
+
+import gov.nasa.jpf.Config;
+import gov.nasa.jpf.JPFConfigException;
+import gov.nasa.jpf.jvm.ChoiceGenerator;
+import gov.nasa.jpf.jvm.JVM;
+import gov.nasa.jpf.search.ChoiceReplayer;
+import gov.nasa.jpf.search.Search;
+
+/**
+ * the depth first search that is executed by ParallelSearch workers.
+ *
+ * It first replays the choice trail of its work item (without state matching,
+ * the trail states were already seen by the worker that created the item),
+ * and then does a normal DFSearch of the subtree below, which does not
+ * backtrack beyond the root of the subtree.
+ *
+ * If other workers are waiting for work, we split off the unexplored choices
+ * of the shallowest ChoiceGenerator of our subtree into new work items, and
+ * set this ChoiceGenerator done
+ */
+public class ParallelWorkerSearch extends Search {
+
+  protected SharedSearchContext context;
+  protected WorkerStatistics stats;
+  protected ChoiceReplayer replayer;
+
+  protected int trailLength;
+  protected int baseDepth;
+
+  public ParallelWorkerSearch (Config config, JVM vm) {
+    super(config, vm);
+
+    replayer = new ChoiceReplayer();
+    vm.addListener(replayer);
+  }
+
+  public void setWorkItem (SharedSearchContext context, int[] trail, WorkerStatistics stats){
+    this.context = context;
+    this.stats = stats;
+
+    trailLength = trail.length;
+    replayer.setTrail(trail);
+  }
+
+  public boolean requestBacktrack () {
+    doBacktrack = true;
+
+    return true;
+  }
+
+  public boolean supportsBacktrack () {
+    return true;
+  }
+
+  /**
+   * same state model as DFSearch, except of that we don't check the states
+   * along the replayed trail, and we stop when we would leave our subtree
+   */
+  public void search () {
+    boolean depthLimitReached = false;
+
+    depth = 0;
+    baseDepth = 0;
+    stats.workItems++;
+
+    notifySearchStarted();
+
+    while (!done && !context.isDone()) {
+      if (!replayer.isReplaying()){
+        if (checkAndResetBacktrackRequest() || !isNewState() || isEndState() || isIgnoredState() || depthLimitReached ) {
+          if (depth <= baseDepth || !backtrack()) { // the rest belongs to somebody else
+            break;
+          }
+
+          depthLimitReached = false;
+          depth--;
+          stats.backtracked++;
+          notifyStateBacktracked();
+
+        } else if (context.needsWork()){
+          splitWork();
+        }
+      }
+
+      boolean isReplay = replayer.isReplaying();
+
+      if (forward()) {
+        depth++;
+
+        if (isReplay){
+          if (replayer.isReplaying()){
+            stats.replayed++;
+          } else {
+            baseDepth = depth; // this is the root of our subtree
+          }
+        }
+
+        if (!replayer.isReplaying()){
+          updateStatistics();
+        }
+
+        notifyStateAdvanced();
+
+        if (currentError != null){
+          stats.errors++;
+          context.addError(getChoiceTrail(), currentError.getDescription(), !getAllErrors);
+          notifyPropertyViolated();
+
+          if (hasPropertyTermination()) {
+            break;
+          }
+        }
+
+        if (depth >= depthLimit) {
+          depthLimitReached = true;
+          stats.constraints++;
+          context.setSearchConstraint("depth limit reached: " + depthLimit);
+          notifySearchConstraintHit("depth limit reached: " + depthLimit);
+          continue;
+        }
+
+        if (!checkStateSpaceLimit()) {
+          stats.constraints++;
+          context.setSearchConstraint("memory limit reached: " + minFreeMemory);
+          notifySearchConstraintHit("memory limit reached: " + minFreeMemory);
+          context.terminate();
+          break;
+        }
+
+      } else { // forward did not execute any instructions
+        if (isReplay){
+          // we could not reproduce the trail, i.e. the SUT is not deterministic
+          throw new JPFConfigException("choice trail diverged at depth " + depth);
+        }
+        notifyStateProcessed();
+      }
+    }
+
+    notifySearchFinished();
+  }
+
+  protected void updateStatistics (){
+    if (isNewState()){
+      stats.newStates++;
+      if (depth > stats.maxDepth){
+        stats.maxDepth = depth;
+      }
+    } else {
+      stats.visitedStates++;
+    }
+
+    if (isEndState()){
+      stats.endStates++;
+    }
+  }
+
+  /**
+   * hand out the remaining choices of the shallowest ChoiceGenerator in our
+   * subtree that still has some. We don't split cascaded ChoiceGenerators,
+   * since they get reset when their parents advance
+   */
+  protected void splitWork (){
+    ChoiceGenerator<?>[] cgs = vm.getChoiceGenerators();
+
+    for (int i=trailLength; i<cgs.length; i++){
+      ChoiceGenerator<?> cg = cgs[i];
+
+      if (cg.isCascaded() || cg.getCascadedParent() != null){
+        continue;
+      }
+
+      int nProcessed = cg.getProcessedNumberOfChoices();
+      int nTotal = cg.getTotalNumberOfChoices();
+
+      if (!cg.isDone() && cg.hasMoreChoices() && nProcessed < nTotal){
+        for (int n=nProcessed+1; n<=nTotal; n++){
+          int[] trail = new int[i+1];
+          for (int j=0; j<i; j++){
+            trail[j] = cgs[j].getProcessedNumberOfChoices();
+          }
+          trail[i] = n;
+
+          context.addWork(trail);
+          stats.donatedItems++;
+        }
+
+        cg.setDone();
+        return;
+      }
+    }
+  }
+}
@@ -0,0 +1,288 @@
+//
+// Copyright (C) 2006 United States Government as represented by the
+// Administrator of the National Aeronautics and Space Administration
+// (NASA).  All Rights Reserved.
+//
+// This software is distributed under the NASA Open Source Agreement
+// (NOSA), version 1.3.  The NOSA has been approved by the Open Source
+// Initiative.  See the file NOSA-1.3-JPF at the top of the distribution
+// directory tree for the complete NOSA document.
+//
+// THE SUBJECT SOFTWARE IS PROVIDED "AS IS" WITHOUT ANY WARRANTY OF ANY
+// KIND, EITHER EXPRESSED, IMPLIED, OR STATUTORY, INCLUDING, BUT NOT
+// LIMITED TO, ANY WARRANTY THAT THE SUBJECT SOFTWARE WILL CONFORM TO
+// SPECIFICATIONS, ANY IMPLIED WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+// A PARTICULAR PURPOSE, OR FREEDOM FROM INFRINGEMENT, ANY WARRANTY THAT
+// THE SUBJECT SOFTWARE WILL BE ERROR FREE, OR ANY WARRANTY THAT
+// DOCUMENTATION, IF PROVIDED, WILL CONFORM TO THE SUBJECT SOFTWARE.
+//
+package gov.nasa.jpf.search.parallel;
+
+import gov.nasa.jpf.Config;
+import gov.nasa.jpf.JPFException;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.net.Socket;
+
+/**
+ * the worker side of a DistributedSearch, which talks to the coordinator's
+ * SearchServer (see SearchProtocol).
+ *
+ * To avoid a network round trip per state, fingerprints are checked against a
+ * local FingerprintSet that contains our own states and all the states the
+ * coordinator told us about. New fingerprints are sent to the coordinator in
+ * batches, and each SYNC reply brings back the ones other workers have found
+ * in the meantime. This means we sometimes explore a state that another worker
+ * has already seen (but not yet told us about), but we never miss one.
+ *
+ * Termination and idle workers are piggybacked on SYNC replies. We sync when
+ * the batch is full, or when the last sync is older than the sync interval.
+ *
+ * Other than SharedSearchContext, this is only used by a single thread
+ */
+public class RemoteSearchContext extends SharedSearchContext {
+
+  Socket socket;
+  DataInputStream in;
+  DataOutputStream out;
+
+  int workerId;
+  WorkerStatistics stats;
+
+  long[] batch;
+  int nBatch;
+  int spareId = -1;
+
+  long syncInterval;
+  long lastSync;
+  boolean needsWork;
+
+  public static RemoteSearchContext connect (String host, int port) throws IOException {
+    Socket socket = new Socket(host, port);
+    socket.setTcpNoDelay(true);
+
+    DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+    out.writeInt(SearchProtocol.HELLO);
+    out.flush();
+
+    int workerId = in.readInt();
+    String config = SearchProtocol.readString(in);
+
+    return new RemoteSearchContext(socket, in, out, workerId, config);
+  }
+
+  protected RemoteSearchContext (Socket socket, DataInputStream in, DataOutputStream out,
+                                 int workerId, String workerConfig){
+    super(0, new FingerprintSet(16, 4096), workerConfig);
+
+    this.socket = socket;
+    this.in = in;
+    this.out = out;
+    this.workerId = workerId;
+
+    stats = new WorkerStatistics(workerId);
+
+    Config conf = new Config(new StringReader(workerConfig));
+    batch = new long[Math.max(1, conf.getInt("search.distributed.batch_size", 256))];
+    syncInterval = conf.getInt("search.distributed.sync_interval", 200);
+    lastSync = System.currentTimeMillis();
+  }
+
+  public int getWorkerId (){
+    return workerId;
+  }
+
+  public WorkerStatistics getStatistics (int id){
+    return stats;
+  }
+
+  //--- visited states
+
+  public int addFingerprint (long fp, int newId){
+    int id = fingerprints.add(fp, newId);
+
+    if (id == newId){
+      batch[nBatch++] = fp;
+      if (nBatch == batch.length){
+        sync();
+      }
+    }
+
+    return id;
+  }
+
+  protected void checkSync (){
+    if (System.currentTimeMillis() - lastSync > syncInterval){
+      sync();
+    }
+  }
+
+  protected void sync (){
+    try {
+      out.writeInt(SearchProtocol.SYNC);
+      out.writeInt(nBatch);
+      for (int i=0; i<nBatch; i++){
+        out.writeLong(batch[i]);
+      }
+      out.flush();
+      nBatch = 0;
+
+      int flags = in.readInt();
+      if ((flags & SearchProtocol.DONE) != 0){
+        done = true;
+      }
+      needsWork = (flags & SearchProtocol.NEEDS_WORK) != 0;
+
+      int n = in.readInt();
+      for (int i=0; i<n; i++){
+        if (spareId < 0){
+          spareId = fingerprints.reserveId();
+        }
+        if (fingerprints.add(in.readLong(), spareId) == spareId){
+          spareId = -1;
+        }
+      }
+
+      lastSync = System.currentTimeMillis();
+
+    } catch (IOException iox){
+      throw lostConnection(iox);
+    }
+  }
+
+  protected JPFException lostConnection (IOException iox){
+    done = true;
+    return new JPFException("lost connection to coordinator: " + iox, iox);
+  }
+
+  //--- work distribution
+
+  public void addWork (int[] trail){
+    try {
+      out.writeInt(SearchProtocol.ADD_WORK);
+      SearchProtocol.writeTrail(out, trail);
+      out.flush(); // somebody is waiting for it
+    } catch (IOException iox){
+      throw lostConnection(iox);
+    }
+  }
+
+  public int[] getWork (){
+    if (done){
+      return null;
+    }
+
+    try {
+      sync(); // make sure the coordinator knows all our states
+      out.writeInt(SearchProtocol.GET_WORK);
+      out.flush();
+
+      int[] trail = SearchProtocol.readTrail(in);
+      if (trail == null){
+        done = true;
+      }
+      return trail;
+
+    } catch (IOException iox){
+      throw lostConnection(iox);
+    }
+  }
+
+  public void workDone (){
+    if (!socket.isClosed()){
+      try {
+        out.writeInt(SearchProtocol.WORK_DONE);
+        out.flush();
+      } catch (IOException iox){
+        throw lostConnection(iox);
+      }
+    }
+  }
+
+  public boolean needsWork (){
+    checkSync();
+    return needsWork;
+  }
+
+  //--- termination and errors
+
+  public boolean isDone (){
+    if (!done){
+      checkSync();
+    }
+    return done;
+  }
+
+  public void terminate (){
+    done = true;
+    try {
+      out.writeInt(SearchProtocol.TERMINATE);
+      out.flush();
+    } catch (IOException iox){
+      throw lostConnection(iox);
+    }
+  }
+
+  public void addError (int[] trail, String description, boolean terminate){
+    if (terminate){
+      done = true;
+    }
+
+    try {
+      out.writeInt(SearchProtocol.ERROR);
+      SearchProtocol.writeTrail(out, trail);
+      SearchProtocol.writeString(out, description);
+      out.writeBoolean(terminate);
+      out.flush();
+    } catch (IOException iox){
+      throw lostConnection(iox);
+    }
+  }
+
+  public void setSearchConstraint (String details){
+    try {
+      out.writeInt(SearchProtocol.CONSTRAINT);
+      SearchProtocol.writeString(out, details);
+    } catch (IOException iox){
+      throw lostConnection(iox);
+    }
+  }
+
+  public void fail (Throwable t){
+    done = true;
+    if (failure == null){
+      failure = t;
+    }
+
+    try {
+      out.writeInt(SearchProtocol.FAILURE);
+      SearchProtocol.writeString(out, t.toString());
+      out.flush();
+    } catch (IOException iox){
+      // nothing we can do, the coordinator will notice
+    }
+  }
+
+  /**
+   * send our statistics and close the connection
+   */
+  public void close (){
+    try {
+      out.writeInt(SearchProtocol.STATISTICS);
+      SearchProtocol.writeStatistics(out, stats);
+      out.writeInt(SearchProtocol.BYE);
+      out.flush();
+      socket.close();
+
+    } catch (IOException iox){
+      // nothing we can do, the coordinator will notice
+    }
+  }
+}
@@ -0,0 +1,223 @@
+//
+// Copyright (C) 2006 United States Government as represented by the
+// Administrator of the National Aeronautics and Space Administration
+// (NASA).  All Rights Reserved.
+//
+// This software is distributed under the NASA Open Source Agreement
+// (NOSA), version 1.3.  The NOSA has been approved by the Open Source
+// Initiative.  See the file NOSA-1.3-JPF at the top of the distribution
+// directory tree for the complete NOSA document.
+//
+// THE SUBJECT SOFTWARE IS PROVIDED "AS IS" WITHOUT ANY WARRANTY OF ANY
+// KIND, EITHER EXPRESSED, IMPLIED, OR STATUTORY, INCLUDING, BUT NOT
+// LIMITED TO, ANY WARRANTY THAT THE SUBJECT SOFTWARE WILL CONFORM TO
+// SPECIFICATIONS, ANY IMPLIED WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+// A PARTICULAR PURPOSE, OR FREEDOM FROM INFRINGEMENT, ANY WARRANTY THAT
+// THE SUBJECT SOFTWARE WILL BE ERROR FREE, OR ANY WARRANTY THAT
+// DOCUMENTATION, IF PROVIDED, WILL CONFORM TO THE SUBJECT SOFTWARE.
+//
+package gov.nasa.jpf.search.parallel;
+
+import gov.nasa.jpf.JPFException;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * the protocol between a DistributedSearch coordinator and its worker processes.
+ * Each message starts with an int message id, followed by message specific
+ * data. Only HELLO, GET_WORK and SYNC have replies, everything else is
+ * asynchronous.
+ *
+ * This class implements the coordinator side, which just forwards requests to
+ * the SharedSearchContext. The worker side is implemented by RemoteSearchContext
+ */
+public class SearchProtocol {
+
+  //--- message ids
+  public static final int HELLO = 1;        // -> workerId, config
+  public static final int GET_WORK = 2;     // -> trail length (-1 if done), trail
+  public static final int WORK_DONE = 3;
+  public static final int ADD_WORK = 4;     // trail length, trail
+  public static final int SYNC = 5;         // n, n fingerprints -> flags, m, m fingerprints of other workers
+  public static final int ERROR = 6;        // trail length, trail, description, terminate
+  public static final int CONSTRAINT = 7;   // details
+  public static final int TERMINATE = 8;
+  public static final int FAILURE = 9;      // details
+  public static final int STATISTICS = 10;  // WorkerStatistics fields
+  public static final int BYE = 11;
+
+  //--- SYNC reply flags
+  public static final int DONE = 0x1;
+  public static final int NEEDS_WORK = 0x2;
+
+  SharedSearchContext context;
+  SearchServer server;
+  int workerId;
+
+  DataInputStream in;
+  DataOutputStream out;
+
+  // position in the servers fingerprint log up to which this worker is in sync
+  int syncPos;
+
+  public SearchProtocol (SharedSearchContext context, SearchServer server, int workerId,
+                         DataInputStream in, DataOutputStream out){
+    this.context = context;
+    this.server = server;
+    this.workerId = workerId;
+    this.in = in;
+    this.out = out;
+  }
+
+  /**
+   * process messages until the worker says BYE
+   */
+  public void processInput () throws IOException {
+    while (true){
+      int msgId = in.readInt();
+
+      switch (msgId){
+      case HELLO: {
+        out.writeInt(workerId);
+        writeString(out, context.getWorkerConfig());
+        out.flush();
+        break;
+      }
+      case GET_WORK: {
+        writeTrail(out, context.getWork());
+        out.flush();
+        break;
+      }
+      case WORK_DONE: {
+        context.workDone();
+        break;
+      }
+      case ADD_WORK: {
+        context.addWork(readTrail(in));
+        break;
+      }
+      case SYNC: {
+        int n = in.readInt();
+        long[] fps = new long[n];
+        for (int i=0; i<n; i++){
+          fps[i] = in.readLong();
+        }
+
+        long[] others = server.sync(this, fps);
+
+        int flags = 0;
+        if (context.isDone()){
+          flags |= DONE;
+        }
+        if (context.needsWork()){
+          flags |= NEEDS_WORK;
+        }
+        out.writeInt(flags);
+        out.writeInt(others.length);
+        for (int i=0; i<others.length; i++){
+          out.writeLong(others[i]);
+        }
+        out.flush();
+        break;
+      }
+      case ERROR: {
+        int[] trail = readTrail(in);
+        String description = readString(in);
+        boolean terminate = in.readBoolean();
+        context.addError(trail, description, terminate);
+        break;
+      }
+      case CONSTRAINT: {
+        context.setSearchConstraint(readString(in));
+        break;
+      }
+      case TERMINATE: {
+        context.terminate();
+        break;
+      }
+      case FAILURE: {
+        context.fail(new JPFException("worker " + workerId + " failed: " + readString(in)));
+        break;
+      }
+      case STATISTICS: {
+        readStatistics(in, context.getStatistics(workerId));
+        break;
+      }
+      case BYE: {
+        return;
+      }
+      default:
+        throw new IOException("unknown message id: " + msgId);
+      }
+    }
+  }
+
+  //--- helpers that are used by both sides
+
+  static void writeTrail (DataOutputStream out, int[] trail) throws IOException {
+    if (trail == null){
+      out.writeInt(-1);
+    } else {
+      out.writeInt(trail.length);
+      for (int i=0; i<trail.length; i++){
+        out.writeInt(trail[i]);
+      }
+    }
+  }
+
+  static int[] readTrail (DataInputStream in) throws IOException {
+    int n = in.readInt();
+    if (n < 0){
+      return null;
+    }
+
+    int[] trail = new int[n];
+    for (int i=0; i<n; i++){
+      trail[i] = in.readInt();
+    }
+    return trail;
+  }
+
+  // writeUTF is limited to 64k, which is not enough for Configs
+  static void writeString (DataOutputStream out, String s) throws IOException {
+    byte[] b = s.getBytes("UTF-8");
+    out.writeInt(b.length);
+    out.write(b);
+  }
+
+  static String readString (DataInputStream in) throws IOException {
+    byte[] b = new byte[in.readInt()];
+    in.readFully(b);
+    return new String(b, "UTF-8");
+  }
+
+  static void writeStatistics (DataOutputStream out, WorkerStatistics stats) throws IOException {
+    out.writeLong(stats.newStates);
+    out.writeLong(stats.visitedStates);
+    out.writeLong(stats.endStates);
+    out.writeLong(stats.backtracked);
+    out.writeLong(stats.replayed);
+    out.writeInt(stats.maxDepth);
+    out.writeInt(stats.workItems);
+    out.writeInt(stats.donatedItems);
+    out.writeInt(stats.errors);
+    out.writeInt(stats.constraints);
+    out.writeLong(stats.elapsed);
+  }
+
+  static void readStatistics (DataInputStream in, WorkerStatistics stats) throws IOException {
+    stats.newStates = in.readLong();
+    stats.visitedStates = in.readLong();
+    stats.endStates = in.readLong();
+    stats.backtracked = in.readLong();
+    stats.replayed = in.readLong();
+    stats.maxDepth = in.readInt();
+    stats.workItems = in.readInt();
+    stats.donatedItems = in.readInt();
+    stats.errors = in.readInt();
+    stats.constraints = in.readInt();
+    stats.elapsed = in.readLong();
+  }
+}
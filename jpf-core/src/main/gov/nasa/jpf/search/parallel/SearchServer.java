@@ -0,0 +1,210 @@
+//
+// Copyright (C) 2006 United States Government as represented by the
+// Administrator of the National Aeronautics and Space Administration
+// (NASA).  All Rights Reserved.
+//
+// This software is distributed under the NASA Open Source Agreement
+// (NOSA), version 1.3.  The NOSA has been approved by the Open Source
+// Initiative.  See the file NOSA-1.3-JPF at the top of the distribution
+// directory tree for the complete NOSA document.
+//
+// THE SUBJECT SOFTWARE IS PROVIDED "AS IS" WITHOUT ANY WARRANTY OF ANY
+// KIND, EITHER EXPRESSED, IMPLIED, OR STATUTORY, INCLUDING, BUT NOT
+// LIMITED TO, ANY WARRANTY THAT THE SUBJECT SOFTWARE WILL CONFORM TO
+// SPECIFICATIONS, ANY IMPLIED WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+// A PARTICULAR PURPOSE, OR FREEDOM FROM INFRINGEMENT, ANY WARRANTY THAT
+// THE SUBJECT SOFTWARE WILL BE ERROR FREE, OR ANY WARRANTY THAT
+// DOCUMENTATION, IF PROVIDED, WILL CONFORM TO THE SUBJECT SOFTWARE.
+//
+package gov.nasa.jpf.search.parallel;
+
+import gov.nasa.jpf.JPFException;
+import gov.nasa.jpf.util.IntVector;
+import gov.nasa.jpf.util.LongVector;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+
+/**
+ * the coordinator side server of a DistributedSearch. It accepts a fixed
+ * number of worker connections, each of which gets its own thread that runs
+ * a SearchProtocol.
+ *
+ * Besides the SharedSearchContext, the server keeps a log of all fingerprints
+ * in the order in which they were added, so that we can send each worker the
+ * new fingerprints of all other workers with every SYNC reply
+ */
+public class SearchServer {
+
+  SharedSearchContext context;
+  ServerSocket serverSocket;
+  int nWorkers;
+
+  Thread acceptThread;
+  ArrayList<Thread> handlers = new ArrayList<Thread>();
+  volatile boolean closed;
+
+  LongVector fpLog = new LongVector(4096);
+  IntVector fpOwners = new IntVector(4096);
+
+  /**
+   * @param port the port to listen on, 0 picks a free one
+   * @param timeout msec to wait for each worker to connect, 0 waits forever
+   */
+  public SearchServer (SharedSearchContext context, int nWorkers, int port, int timeout) throws IOException {
+    this.context = context;
+    this.nWorkers = nWorkers;
+
+    serverSocket = new ServerSocket(port);
+    serverSocket.setSoTimeout(timeout);
+  }
+
+  public int getPort (){
+    return serverSocket.getLocalPort();
+  }
+
+  public void start (){
+    acceptThread = new Thread("JPF-search-server"){
+      public void run(){
+        acceptWorkers();
+      }
+    };
+    acceptThread.start();
+  }
+
+  void acceptWorkers (){
+    try {
+      for (int i=0; i<nWorkers && !context.isDone(); i++){
+        final Socket socket = serverSocket.accept();
+        final int workerId = i;
+
+        Thread t = new Thread("JPF-search-server-" + i){
+          public void run(){
+            communicate(socket, workerId);
+          }
+        };
+
+        synchronized (handlers){
+          handlers.add(t);
+        }
+        t.start();
+      }
+
+    } catch (SocketTimeoutException stx){
+      if (!context.isDone()){
+        context.fail(new JPFException("not all workers connected, got " + handlers.size() + " of " + nWorkers));
+      }
+    } catch (IOException iox){
+      if (!closed){
+        context.fail(new JPFException("search server failed: " + iox, iox));
+      }
+    }
+  }
+
+  void communicate (Socket socket, int workerId){
+    try {
+      DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+      DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+      SearchProtocol protocol = new SearchProtocol(context, this, workerId, in, out);
+      protocol.processInput();
+
+    } catch (IOException iox){
+      // if the search isn't done yet, we have lost parts of the state space
+      if (!context.isDone()){
+        context.fail(new JPFException("lost connection to worker " + workerId + ": " + iox, iox));
+      }
+
+    } finally {
+      try {
+        socket.close();
+      } catch (IOException iox){
+        // nothing we can do
+      }
+    }
+  }
+
+  /**
+   * add the new fingerprints of a worker, and return the ones that were added
+   * by other workers since its last sync
+   */
+  synchronized long[] sync (SearchProtocol p, long[] fps){
+    int id = context.reserveStateId();
+
+    for (int i=0; i<fps.length; i++){
+      if (context.addFingerprint(fps[i], id) == id){
+        fpLog.add(fps[i]);
+        fpOwners.add(p.workerId);
+        id = context.reserveStateId();
+      }
+    }
+
+    int n = 0;
+    int len = fpLog.size();
+    for (int i=p.syncPos; i<len; i++){
+      if (fpOwners.get(i) != p.workerId){
+        n++;
+      }
+    }
+
+    long[] others = new long[n];
+    for (int i=p.syncPos, j=0; i<len; i++){
+      if (fpOwners.get(i) != p.workerId){
+        others[j++] = fpLog.get(i);
+      }
+    }
+    p.syncPos = len;
+
+    return others;
+  }
+
+  /**
+   * wait until all workers have connected and said BYE (or the search failed)
+   */
+  public void waitForWorkers (){
+    while (acceptThread.isAlive()){
+      if (context.isDone()){
+        close(); // nobody needs the missing workers anymore
+      }
+      try {
+        acceptThread.join(100);
+      } catch (InterruptedException ix){
+        context.terminate();
+      }
+    }
+
+    Thread[] threads;
+    synchronized (handlers){
+      threads = handlers.toArray(new Thread[handlers.size()]);
+    }
+    for (Thread t : threads){
+      join(t);
+    }
+  }
+
+  void join (Thread t){
+    while (t.isAlive()){
+      try {
+        t.join();
+      } catch (InterruptedException ix){
+        context.terminate();
+      }
+    }
+  }
+
+  public void close (){
+    closed = true;
+    try {
+      serverSocket.close();
+    } catch (IOException iox){
+      // nothing we can do
+    }
+  }
+}
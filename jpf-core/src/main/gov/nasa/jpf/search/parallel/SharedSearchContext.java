@@ -0,0 +1,200 @@
+//
+// Copyright (C) 2006 United States Government as represented by the
+// Administrator of the National Aeronautics and Space Administration
+// (NASA).  All Rights Reserved.
+//
+// This software is distributed under the NASA Open Source Agreement
+// (NOSA), version 1.3.  The NOSA has been approved by the Open Source
+// Initiative.  See the file NOSA-1.3-JPF at the top of the distribution
+// directory tree for the complete NOSA document.
+//
+// THE SUBJECT SOFTWARE IS PROVIDED "AS IS" WITHOUT ANY WARRANTY OF ANY
+// KIND, EITHER EXPRESSED, IMPLIED, OR STATUTORY, INCLUDING, BUT NOT
+// LIMITED TO, ANY WARRANTY THAT THE SUBJECT SOFTWARE WILL CONFORM TO
+// SPECIFICATIONS, ANY IMPLIED WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+// A PARTICULAR PURPOSE, OR FREEDOM FROM INFRINGEMENT, ANY WARRANTY THAT
+// THE SUBJECT SOFTWARE WILL BE ERROR FREE, OR ANY WARRANTY THAT
+// DOCUMENTATION, IF PROVIDED, WILL CONFORM TO THE SUBJECT SOFTWARE.
+//
+package gov.nasa.jpf.search.parallel;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * the state that is shared between the coordinator and the workers of a
+ * ParallelSearch: the visited fingerprints, the queue of unexplored subtrees,
+ * termination and the errors found so far.
+ *
+ * Work items are choice trails, i.e. the processed number of choices of each
+ * ChoiceGenerator on the path from the initial state to the root of the subtree
+ * (see ChoicePoint for the same representation in stored traces).
+ *
+ * The search is finished if the queue is empty and no worker is busy anymore,
+ * or if the search got terminated (e.g. because of an error).
+ *
+ * NOTE - this class is loaded by the coordinator and shared between the worker
+ * classloaders, i.e. it must not refer to any JPF types
+ */
+public class SharedSearchContext {
+
+  protected final FingerprintSet fingerprints;
+  protected final String workerConfig; // serialized worker Config
+  protected final WorkerStatistics[] statistics;
+
+  protected final ArrayDeque<int[]> queue = new ArrayDeque<int[]>();
+  protected volatile int nQueued;
+  protected volatile int nWaiting;
+  protected int nBusy;
+
+  protected volatile boolean done;
+
+  protected final List<int[]> errorTrails = new ArrayList<int[]>();
+  protected final List<String> errorDescriptions = new ArrayList<String>();
+  protected String searchConstraint;
+  protected Throwable failure;
+
+  public SharedSearchContext (int nWorkers, FingerprintSet fingerprints, String workerConfig){
+    this.fingerprints = fingerprints;
+    this.workerConfig = workerConfig;
+
+    statistics = new WorkerStatistics[nWorkers];
+    for (int i=0; i<nWorkers; i++){
+      statistics[i] = new WorkerStatistics(i);
+    }
+  }
+
+  public FingerprintSet getFingerprintSet (){
+    return fingerprints;
+  }
+
+  //--- visited states
+
+  public int reserveStateId (){
+    return fingerprints.reserveId();
+  }
+
+  /**
+   * @return 'newId' if the fingerprint was added, the id it was stored with otherwise
+   */
+  public int addFingerprint (long fp, int newId){
+    return fingerprints.add(fp, newId);
+  }
+
+  public String getWorkerConfig (){
+    return workerConfig;
+  }
+
+  public WorkerStatistics getStatistics (int workerId){
+    return statistics[workerId];
+  }
+
+  public WorkerStatistics[] getStatistics (){
+    return statistics;
+  }
+
+  //--- work distribution
+
+  public synchronized void addWork (int[] trail){
+    queue.add(trail);
+    nQueued = queue.size();
+    notifyAll();
+  }
+
+  /**
+   * blocks until there is a new work item, or the search is finished. Each
+   * non-null return has to be followed by a workDone() call
+   *
+   * @return the choice trail of the next subtree to explore, null if the search is finished
+   */
+  public synchronized int[] getWork (){
+    while (!done && queue.isEmpty() && nBusy > 0){
+      nWaiting++;
+      try {
+        wait();
+      } catch (InterruptedException ix){
+        done = true;
+      } finally {
+        nWaiting--;
+      }
+    }
+
+    if (done || queue.isEmpty()){
+      done = true;
+      notifyAll(); // wake up everybody else who is still waiting
+      return null;
+    }
+
+    nBusy++;
+    int[] trail = queue.poll();
+    nQueued = queue.size();
+    return trail;
+  }
+
+  public synchronized void workDone (){
+    nBusy--;
+    if (nBusy == 0 && queue.isEmpty()){
+      notifyAll();
+    }
+  }
+
+  /**
+   * this is called frequently by busy workers, hence no synchronization.
+   * A stale value only means we split a bit too late or too early
+   */
+  public boolean needsWork (){
+    return (nWaiting > 0) && (nQueued == 0);
+  }
+
+  //--- termination and errors
+
+  public boolean isDone (){
+    return done;
+  }
+
+  public synchronized void terminate (){
+    done = true;
+    notifyAll();
+  }
+
+  public synchronized void addError (int[] trail, String description, boolean terminate){
+    errorTrails.add(trail);
+    errorDescriptions.add(description);
+
+    if (terminate){
+      terminate();
+    }
+  }
+
+  public synchronized List<int[]> getErrorTrails (){
+    return new ArrayList<int[]>(errorTrails);
+  }
+
+  public synchronized List<String> getErrorDescriptions (){
+    return new ArrayList<String>(errorDescriptions);
+  }
+
+  public synchronized void setSearchConstraint (String details){
+    searchConstraint = details;
+  }
+
+  public synchronized String getSearchConstraint (){
+    return searchConstraint;
+  }
+
+  /**
+   * a worker died with an exception, there is no point to go on since we
+   * might have lost parts of the state space
+   */
+  public synchronized void fail (Throwable t){
+    if (failure == null){
+      failure = t;
+    }
+    terminate();
+  }
+
+  public synchronized Throwable getFailure (){
+    return failure;
+  }
+}
@@ -0,0 +1,63 @@
+//
+// Copyright (C) 2006 United States Government as represented by the
+// Administrator of the National Aeronautics and Space Administration
+// (NASA).  All Rights Reserved.
+//
+// This software is distributed under the NASA Open Source Agreement
+// (NOSA), version 1.3.  The NOSA has been approved by the Open Source
+// Initiative.  See the file NOSA-1.3-JPF at the top of the distribution
+// directory tree for the complete NOSA document.
+//
+// THE SUBJECT SOFTWARE IS PROVIDED "AS IS" WITHOUT ANY WARRANTY OF ANY
+// KIND, EITHER EXPRESSED, IMPLIED, OR STATUTORY, INCLUDING, BUT NOT
+// LIMITED TO, ANY WARRANTY THAT THE SUBJECT SOFTWARE WILL CONFORM TO
+// SPECIFICATIONS, ANY IMPLIED WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+// A PARTICULAR PURPOSE, OR FREEDOM FROM INFRINGEMENT, ANY WARRANTY THAT
+// THE SUBJECT SOFTWARE WILL BE ERROR FREE, OR ANY WARRANTY THAT
+// DOCUMENTATION, IF PROVIDED, WILL CONFORM TO THE SUBJECT SOFTWARE.
+//
+package gov.nasa.jpf.search.parallel;
+
+import gov.nasa.jpf.Config;
+import gov.nasa.jpf.JPFConfigException;
+import gov.nasa.jpf.jvm.JenkinsStateSet;
+import gov.nasa.jpf.jvm.SerializingStateSet;
+
+/**
+ * the worker side of the visited state set of a ParallelSearch, which just
+ * forwards the fingerprints to the SharedSearchContext of the worker.
+ *
+ * Since several workers add states concurrently, size() can't be used to
+ * predict the id of the next new state (which is what JVM.updatePath() does).
+ * We therefore reserve a unique id before each add, and return it from size()
+ */
+public class SharedStateSet extends SerializingStateSet {
+
+  SharedSearchContext context;
+  int nextId = -1;
+
+  public SharedStateSet (Config conf){
+    context = ParallelWorker.getContext();
+    if (context == null){
+      throw new JPFConfigException("SharedStateSet can only be used by ParallelSearch workers");
+    }
+  }
+
+  public int size () {
+    if (nextId < 0){
+      nextId = context.reserveStateId();
+    }
+    return nextId;
+  }
+
+  protected int add (int[] val){
+    int newId = size();
+    int id = context.addFingerprint(JenkinsStateSet.longLookup3Hash(val), newId);
+
+    if (id == newId){ // used up
+      nextId = -1;
+    }
+
+    return id;
+  }
+}
@@ -0,0 +1,112 @@
+//
+// Copyright (C) 2006 United States Government as represented by the
+// Administrator of the National Aeronautics and Space Administration
+// (NASA).  All Rights Reserved.
+//
+// This software is distributed under the NASA Open Source Agreement
+// (NOSA), version 1.3.  The NOSA has been approved by the Open Source
+// Initiative.  See the file NOSA-1.3-JPF at the top of the distribution
+// directory tree for the complete NOSA document.
+//
+// THE SUBJECT SOFTWARE IS PROVIDED "AS IS" WITHOUT ANY WARRANTY OF ANY
+// KIND, EITHER EXPRESSED, IMPLIED, OR STATUTORY, INCLUDING, BUT NOT
+// LIMITED TO, ANY WARRANTY THAT THE SUBJECT SOFTWARE WILL CONFORM TO
+// SPECIFICATIONS, ANY IMPLIED WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+// A PARTICULAR PURPOSE, OR FREEDOM FROM INFRINGEMENT, ANY WARRANTY THAT
+// THE SUBJECT SOFTWARE WILL BE ERROR FREE, OR ANY WARRANTY THAT
+// DOCUMENTATION, IF PROVIDED, WILL CONFORM TO THE SUBJECT SOFTWARE.
+//
+package gov.nasa.jpf.search.parallel;
+
+import java.io.File;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+
+/**
+ * a child-first classloader for ParallelSearch workers, which gives each
+ * worker its own copy of all gov.nasa.jpf classes, and hence of all their
+ * static fields.
+ *
+ * Only the classes that are used to communicate with the coordinator are
+ * delegated to the parent. Non-JPF classes are loaded parent-first as usual
+ */
+public class WorkerClassLoader extends URLClassLoader {
+
+  static final String[] SHARED = {
+    "gov.nasa.jpf.search.parallel.SharedSearchContext",
+    "gov.nasa.jpf.search.parallel.FingerprintSet",
+    "gov.nasa.jpf.search.parallel.WorkerStatistics"
+  };
+
+  public WorkerClassLoader (URL[] urls, ClassLoader parent){
+    super(urls, parent);
+  }
+
+  protected static boolean isShared (String clsName){
+    for (String s : SHARED){
+      if (clsName.equals(s) || (clsName.startsWith(s) && clsName.charAt(s.length()) == '$')){
+        return true;
+      }
+    }
+    return false;
+  }
+
+  protected synchronized Class<?> loadClass (String clsName, boolean resolve) throws ClassNotFoundException {
+    if (!clsName.startsWith("gov.nasa.jpf.") || isShared(clsName)){
+      return super.loadClass(clsName, resolve);
+    }
+
+    Class<?> cls = findLoadedClass(clsName);
+    if (cls == null){
+      try {
+        cls = findClass(clsName);
+      } catch (ClassNotFoundException cnfx){
+        return super.loadClass(clsName, resolve);
+      }
+    }
+
+    if (resolve){
+      resolveClass(cls);
+    }
+    return cls;
+  }
+
+  /**
+   * collect the classpath of 'cl' and all its parents, so that we can find
+   * all JPF classes (core and extensions) from a single loader
+   */
+  public static URL[] getClassPathURLs (ClassLoader cl){
+    ArrayList<URL> list = new ArrayList<URL>();
+
+    for (; cl != null; cl = cl.getParent()){
+      if (cl instanceof URLClassLoader){
+        for (URL url : ((URLClassLoader)cl).getURLs()){
+          if (!list.contains(url)){
+            list.add(url);
+          }
+        }
+      }
+    }
+
+    // the system classloader is not always a URLClassLoader
+    String cp = System.getProperty("java.class.path");
+    if (cp != null){
+      for (String e : cp.split(File.pathSeparator)){
+        if (e.length() > 0){
+          try {
+            URL url = new File(e).toURI().toURL();
+            if (!list.contains(url)){
+              list.add(url);
+            }
+          } catch (MalformedURLException mux){
+            // ignore, it can't hold JPF classes then
+          }
+        }
+      }
+    }
+
+    return list.toArray(new URL[list.size()]);
+  }
+}
@@ -0,0 +1,78 @@
+//
+// Copyright (C) 2006 United States Government as represented by the
+// Administrator of the National Aeronautics and Space Administration
+// (NASA).  All Rights Reserved.
+//
+// This software is distributed under the NASA Open Source Agreement
+// (NOSA), version 1.3.  The NOSA has been approved by the Open Source
+// Initiative.  See the file NOSA-1.3-JPF at the top of the distribution
+// directory tree for the complete NOSA document.
+//
+// THE SUBJECT SOFTWARE IS PROVIDED "AS IS" WITHOUT ANY WARRANTY OF ANY
+// KIND, EITHER EXPRESSED, IMPLIED, OR STATUTORY, INCLUDING, BUT NOT
+// LIMITED TO, ANY WARRANTY THAT THE SUBJECT SOFTWARE WILL CONFORM TO
+// SPECIFICATIONS, ANY IMPLIED WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+// A PARTICULAR PURPOSE, OR FREEDOM FROM INFRINGEMENT, ANY WARRANTY THAT
+// THE SUBJECT SOFTWARE WILL BE ERROR FREE, OR ANY WARRANTY THAT
+// DOCUMENTATION, IF PROVIDED, WILL CONFORM TO THE SUBJECT SOFTWARE.
+//
+package gov.nasa.jpf.search.parallel;
+
+/**
+ * per worker statistics of a ParallelSearch. Each worker only updates its own
+ * object, the coordinator reads them after all workers are finished.
+ *
+ * NOTE - this class is shared between the worker classloaders, i.e. it must
+ * not refer to any JPF types
+ */
+public class WorkerStatistics {
+
+  // public for the same reasons as in report.Statistics
+  public final int workerId;
+
+  public long newStates = 0;
+  public long visitedStates = 0;
+  public long endStates = 0;
+  public long backtracked = 0;
+  public long replayed = 0;   // transitions executed to reach the start of work items
+  public int maxDepth = 0;
+
+  public int workItems = 0;
+  public int donatedItems = 0;
+  public int errors = 0;
+  public int constraints = 0;
+
+  public long elapsed = 0;    // in msec
+
+  public WorkerStatistics (int workerId){
+    this.workerId = workerId;
+  }
+
+  public String toString() {
+    StringBuilder sb = new StringBuilder();
+    sb.append("worker ");
+    sb.append(workerId);
+    sb.append(": new=");
+    sb.append(newStates);
+    sb.append(",visited=");
+    sb.append(visitedStates);
+    sb.append(",backtracked=");
+    sb.append(backtracked);
+    sb.append(",end=");
+    sb.append(endStates);
+    sb.append(",replayed=");
+    sb.append(replayed);
+    sb.append(",maxDepth=");
+    sb.append(maxDepth);
+    sb.append(",items=");
+    sb.append(workItems);
+    sb.append(",donated=");
+    sb.append(donatedItems);
+    sb.append(",errors=");
+    sb.append(errors);
+    sb.append(",time=");
+    sb.append(elapsed);
+    sb.append("ms");
+    return sb.toString();
+  }
+}
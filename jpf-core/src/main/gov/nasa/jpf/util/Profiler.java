@@ -0,0 +1,289 @@
+//
+// Copyright (C) 2011 United States Government as represented by the
+// Administrator of the National Aeronautics and Space Administration
+// (NASA).  All Rights Reserved.
+//
+// This software is distributed under the NASA Open Source Agreement
+// (NOSA), version 1.3.  The NOSA has been approved by the Open Source
+// Initiative.  See the file NOSA-1.3-JPF at the top of the distribution
+// directory tree for the complete NOSA document.
+//
+// THE SUBJECT SOFTWARE IS PROVIDED "AS IS" WITHOUT ANY WARRANTY OF ANY
+// KIND, EITHER EXPRESSED, IMPLIED, OR STATUTORY, INCLUDING, BUT NOT
+// LIMITED TO, ANY WARRANTY THAT THE SUBJECT SOFTWARE WILL CONFORM TO
+// SPECIFICATIONS, ANY IMPLIED WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+// A PARTICULAR PURPOSE, OR FREEDOM FROM INFRINGEMENT, ANY WARRANTY THAT
+// THE SUBJECT SOFTWARE WILL BE ERROR FREE, OR ANY WARRANTY THAT
+// DOCUMENTATION, IF PROVIDED, WILL CONFORM TO THE SUBJECT SOFTWARE.
+//
+package gov.nasa.jpf.util;
+
+import gov.nasa.jpf.Config;
+import gov.nasa.jpf.JPF;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.logging.Logger;
+
+/**
+ * low overhead wall clock profiler for the main phases of the search loop
+ * (transition execution, state storage, backtracking etc.)
+ *
+ * Probes are supposed to be used like this:
+ * <pre>
+ *   static final Profiler.Phase MY_PHASE = Profiler.getPhase("my-phase");
+ *   ..
+ *   long t = Profiler.ENABLED ? System.nanoTime() : 0;
+ *   ..
+ *   if (Profiler.ENABLED) MY_PHASE.record(t);
+ * </pre>
+ *
+ * ENABLED is a static final that is set from the 'jpf.profile' system
+ * property (i.e. the host VM has to be started with -Djpf.profile=true),
+ * so that the JIT removes disabled probes altogether. We can't use our
+ * Config for this since the flag has to be known when Profiler gets loaded.
+ *
+ * Each phase keeps a call count, total and max time, and a histogram of
+ * durations with log2(ns) buckets. Phases can nest (e.g. solver calls are
+ * part of the transition execution), times are always inclusive.
+ *
+ * Counters are only updated from the JPF thread. Reports and dumps that are
+ * created from other threads might see slightly inconsistent values, which
+ * is acceptable for our purposes.
+ *
+ * Config options (only used if ENABLED):
+ *   jpf.profile.dump     = <file> for periodic machine readable (JSON) dumps
+ *   jpf.profile.interval = <seconds between dumps> (default 10)
+ */
+public class Profiler {
+
+  static Logger log = JPF.getLogger("gov.nasa.jpf.util.Profiler");
+
+  public static final boolean ENABLED = Boolean.getBoolean("jpf.profile");
+
+  static final int NBUCKETS = 40; // 2^40ns is more than 18min
+
+  static ArrayList<Phase> phases = new ArrayList<Phase>();
+
+  public static class Phase {
+    String name;
+
+    long count;
+    long total;
+    long max;
+    long[] histogram = new long[NBUCKETS];
+
+    Phase (String name){
+      this.name = name;
+    }
+
+    public String getName(){
+      return name;
+    }
+
+    public long getCount(){
+      return count;
+    }
+
+    public long getTotalTime(){
+      return total;
+    }
+
+    public long getMaxTime(){
+      return max;
+    }
+
+    /**
+     * number of samples d with 2^i <= d < 2^(i+1) ns (bucket 0 also has d < 1)
+     */
+    public long[] getHistogram(){
+      return histogram.clone();
+    }
+
+    /**
+     * record the time since 'tStart' (obtained from System.nanoTime())
+     */
+    public void record (long tStart){
+      long d = System.nanoTime() - tStart;
+      if (d < 0){
+        d = 0;
+      }
+
+      count++;
+      total += d;
+      if (d > max){
+        max = d;
+      }
+
+      int i = (d > 0) ? 63 - Long.numberOfLeadingZeros(d) : 0;
+      histogram[(i < NBUCKETS) ? i : NBUCKETS-1]++;
+    }
+
+    void reset(){
+      count = 0;
+      total = 0;
+      max = 0;
+      histogram = new long[NBUCKETS];
+    }
+  }
+
+  //--- the core phases, extensions can add their own with getPhase()
+  public static final Phase CG_INIT = getPhase("cg-init");
+  public static final Phase EXECUTE = getPhase("execute");
+  public static final Phase STATE_PUSH = getPhase("state-push");
+  public static final Phase GC = getPhase("gc");
+  public static final Phase SERIALIZE = getPhase("serialize");
+  public static final Phase STATE_MATCH = getPhase("state-match");
+  public static final Phase BACKTRACK = getPhase("backtrack");
+  public static final Phase RESTORE = getPhase("restore");
+
+  static Timer dumpTimer;
+  static File dumpFile;
+
+  /**
+   * get or create the phase with the given name
+   */
+  public static synchronized Phase getPhase (String name){
+    for (Phase p : phases){
+      if (p.name.equals(name)){
+        return p;
+      }
+    }
+
+    Phase p = new Phase(name);
+    phases.add(p);
+    return p;
+  }
+
+  public static synchronized Phase[] getPhases(){
+    return phases.toArray(new Phase[phases.size()]);
+  }
+
+  public static synchronized void reset(){
+    for (Phase p : phases){
+      p.reset();
+    }
+  }
+
+  /**
+   * reset counters and start periodic dumps if configured. Called at the
+   * beginning of JPF.run()
+   */
+  public static synchronized void start (Config config){
+    reset();
+
+    String fname = config.getString("jpf.profile.dump");
+    if (fname != null){
+      dumpFile = new File(fname);
+      long interval = Math.max(config.getInt("jpf.profile.interval", 10), 1) * 1000L;
+
+      dumpTimer = new Timer("jpf-profile-dump", true);
+      dumpTimer.schedule( new TimerTask(){
+        public void run(){
+          dump();
+        }
+      }, interval, interval);
+    }
+  }
+
+  /**
+   * stop periodic dumps and write the final one
+   */
+  public static synchronized void stop (){
+    if (dumpTimer != null){
+      dumpTimer.cancel();
+      dumpTimer = null;
+    }
+    if (dumpFile != null){
+      dump();
+      dumpFile = null;
+    }
+  }
+
+  static synchronized void dump (){
+    if (dumpFile == null){
+      return;
+    }
+
+    // write to a temp file first, so that readers never see a partial dump
+    File tmp = new File(dumpFile.getPath() + ".tmp");
+    try {
+      PrintWriter pw = new PrintWriter( new FileWriter(tmp));
+      try {
+        printJSON(pw);
+      } finally {
+        pw.close();
+      }
+
+      dumpFile.delete();
+      if (!tmp.renameTo(dumpFile)){
+        log.warning("could not rename profile dump: " + tmp);
+      }
+
+    } catch (IOException iox){
+      log.warning("could not write profile dump " + dumpFile + ": " + iox);
+    }
+  }
+
+  /**
+   * machine readable version of the counters
+   */
+  public static synchronized void printJSON (PrintWriter pw){
+    pw.println("{");
+    pw.println("  \"time\": " + System.currentTimeMillis() + ",");
+    pw.println("  \"phases\": {");
+
+    for (int i=0; i<phases.size(); i++){
+      Phase p = phases.get(i);
+      pw.print("    \"" + p.name + "\": { \"count\": " + p.count + ", \"total_ns\": " + p.total
+              + ", \"max_ns\": " + p.max + ", \"histogram\": [");
+      long[] h = p.histogram;
+      for (int j=0; j<h.length; j++){
+        if (j > 0){
+          pw.print(',');
+        }
+        pw.print(h[j]);
+      }
+      pw.print("] }");
+      if (i < phases.size()-1){
+        pw.print(',');
+      }
+      pw.println();
+    }
+
+    pw.println("  }");
+    pw.println("}");
+  }
+
+  static String formatTime (long ns){
+    if (ns < 10000L){
+      return ns + "ns";
+    } else if (ns < 10000000L){
+      return (ns / 1000) + "us";
+    } else {
+      return (ns / 1000000) + "ms";
+    }
+  }
+
+  /**
+   * human readable report, one line per phase that was recorded
+   */
+  public static synchronized void printReport (PrintWriter pw){
+    for (Phase p : phases){
+      if (p.count > 0){
+        String s = "phase " + p.name + ':';
+        pw.print(s);
+        for (int i=s.length(); i<20; i++){
+          pw.print(' ');
+        }
+        pw.println("calls=" + p.count + ", total=" + formatTime(p.total)
+                + ", avg=" + formatTime(p.total / p.count) + ", max=" + formatTime(p.max));
+      }
+    }
+  }
+}
@@ -0,0 +1,157 @@
+//
+// Copyright (C) 2006 United States Government as represented by the
+// Administrator of the National Aeronautics and Space Administration
+// (NASA).  All Rights Reserved.
+//
+// This software is distributed under the NASA Open Source Agreement
+// (NOSA), version 1.3.  The NOSA has been approved by the Open Source
+// Initiative.  See the file NOSA-1.3-JPF at the top of the distribution
+// directory tree for the complete NOSA document.
+//
+// THE SUBJECT SOFTWARE IS PROVIDED "AS IS" WITHOUT ANY WARRANTY OF ANY
+// KIND, EITHER EXPRESSED, IMPLIED, OR STATUTORY, INCLUDING, BUT NOT
+// LIMITED TO, ANY WARRANTY THAT THE SUBJECT SOFTWARE WILL CONFORM TO
+// SPECIFICATIONS, ANY IMPLIED WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+// A PARTICULAR PURPOSE, OR FREEDOM FROM INFRINGEMENT, ANY WARRANTY THAT
+// THE SUBJECT SOFTWARE WILL BE ERROR FREE, OR ANY WARRANTY THAT
+// DOCUMENTATION, IF PROVIDED, WILL CONFORM TO THE SUBJECT SOFTWARE.
+//
+package gov.nasa.jpf.classfile;
+
+import gov.nasa.jpf.util.test.TestJPF;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+/**
+ * unit test for the persistent ClassFileCache
+ */
+public class ClassFileCacheTest extends TestJPF {
+
+  static class Target {
+    String s = "some \u00e4\u20ac constant";
+    long l = 0x123456789L;
+    double d = 42.0;
+  }
+
+  static final String TARGET_NAME = Target.class.getName();
+
+  static File createTempDir (String prefix) throws Exception {
+    File d = File.createTempFile(prefix, "");
+    d.delete();
+    d.mkdirs();
+    return d;
+  }
+
+  static void delete (File f){
+    File[] files = f.listFiles();
+    if (files != null){
+      for (File e : files){
+        delete(e);
+      }
+    }
+    f.delete();
+  }
+
+  // copy the Target classfile into a new classpath root dir
+  static File createClassFileDir () throws Exception {
+    File root = createTempDir("jpf-classes");
+    String cfName = TARGET_NAME.substring(TARGET_NAME.lastIndexOf('.')+1) + ".class";
+
+    File pkgDir = new File(root, ClassFileCacheTest.class.getPackage().getName().replace('.', File.separatorChar));
+    pkgDir.mkdirs();
+
+    InputStream is = ClassFileCacheTest.class.getResourceAsStream(cfName);
+    FileOutputStream os = new FileOutputStream(new File(pkgDir, cfName));
+    byte[] buf = new byte[4096];
+    for (int n = is.read(buf); n > 0; n = is.read(buf)){
+      os.write(buf, 0, n);
+    }
+    is.close();
+    os.close();
+
+    return root;
+  }
+
+  static ClassPath createClassPath (File root, File cacheDir){
+    ClassPath cp = new ClassPath();
+    cp.addPathName(root.getPath());
+    cp.setCache( new ClassFileCache(cacheDir)); // don't use the shared instances
+    return cp;
+  }
+
+  static ClassFile load (ClassPath cp) throws ClassFileException {
+    ClassPath.Match match = cp.findMatch(TARGET_NAME);
+    ClassFile cf = match.createClassFile(TARGET_NAME);
+    cf.parse( new ClassFileReaderAdapter());
+    match.classFileParsed(cf);
+    return cf;
+  }
+
+  @Test
+  public void testStoreAndLoad() throws Exception {
+    File root = createClassFileDir();
+    File cacheDir = createTempDir("jpf-classcache");
+
+    try {
+      ClassPath cp = createClassPath(root, cacheDir);
+      assertFalse(cp.findMatch(TARGET_NAME).isCached());
+
+      ClassFile cf = load(cp);
+      String[] cpStrings = cf.getCpStrings();
+      assertTrue(Arrays.asList(cpStrings).contains("some \u00e4\u20ac constant"));
+
+      // in memory hit
+      assertTrue(cp.findMatch(TARGET_NAME).isCached());
+
+      cp.storeCache();
+
+      // from the cache file
+      cp = createClassPath(root, cacheDir);
+      ClassPath.Match match = cp.findMatch(TARGET_NAME);
+      assertTrue(match.isCached());
+      assertTrue(Arrays.equals(match.getBytes(), cf.getData()));
+
+      ClassFile cf2 = load(cp);
+      assertTrue(Arrays.equals(cpStrings, cf2.getCpStrings()));
+
+      assertTrue(cp.getCache().getNumberOfHits() == 2);
+
+    } finally {
+      delete(root);
+      delete(cacheDir);
+    }
+  }
+
+  @Test
+  public void testInvalidation() throws Exception {
+    File root = createClassFileDir();
+    File cacheDir = createTempDir("jpf-classcache");
+
+    try {
+      ClassPath cp = createClassPath(root, cacheDir);
+      load(cp);
+      cp.storeCache();
+
+      // change the classfile stamp
+      File pkgDir = new File(root, ClassFileCacheTest.class.getPackage().getName().replace('.', File.separatorChar));
+      for (File f : pkgDir.listFiles()){
+        f.setLastModified(f.lastModified() - 100000);
+      }
+
+      cp = createClassPath(root, cacheDir);
+      assertFalse(cp.findMatch(TARGET_NAME).isCached());
+
+      load(cp);
+      assertTrue(cp.findMatch(TARGET_NAME).isCached());
+
+    } finally {
+      delete(root);
+      delete(cacheDir);
+    }
+  }
+}
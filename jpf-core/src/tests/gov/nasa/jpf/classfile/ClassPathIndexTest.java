@@ -0,0 +1,176 @@
+//
+// Copyright (C) 2006 United States Government as represented by the
+// Administrator of the National Aeronautics and Space Administration
+// (NASA).  All Rights Reserved.
+//
+// This software is distributed under the NASA Open Source Agreement
+// (NOSA), version 1.3.  The NOSA has been approved by the Open Source
+// Initiative.  See the file NOSA-1.3-JPF at the top of the distribution
+// directory tree for the complete NOSA document.
+//
+// THE SUBJECT SOFTWARE IS PROVIDED "AS IS" WITHOUT ANY WARRANTY OF ANY
+// KIND, EITHER EXPRESSED, IMPLIED, OR STATUTORY, INCLUDING, BUT NOT
+// LIMITED TO, ANY WARRANTY THAT THE SUBJECT SOFTWARE WILL CONFORM TO
+// SPECIFICATIONS, ANY IMPLIED WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+// A PARTICULAR PURPOSE, OR FREEDOM FROM INFRINGEMENT, ANY WARRANTY THAT
+// THE SUBJECT SOFTWARE WILL BE ERROR FREE, OR ANY WARRANTY THAT
+// DOCUMENTATION, IF PROVIDED, WILL CONFORM TO THE SUBJECT SOFTWARE.
+//
+package gov.nasa.jpf.classfile;
+
+import gov.nasa.jpf.util.test.TestJPF;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+
+import org.junit.Test;
+
+/**
+ * unit test for indexed ClassPaths and MappedJar
+ */
+public class ClassPathIndexTest extends TestJPF {
+
+  static class A {}
+  static class B {}
+
+  static final String PKG = ClassPathIndexTest.class.getPackage().getName();
+
+  static byte[] getClassData (Class<?> cls) throws Exception {
+    String name = cls.getName();
+    InputStream is = cls.getResourceAsStream(name.substring(name.lastIndexOf('.')+1) + ".class");
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    byte[] buf = new byte[4096];
+    for (int n = is.read(buf); n > 0; n = is.read(buf)){
+      os.write(buf, 0, n);
+    }
+    is.close();
+    return os.toByteArray();
+  }
+
+  static String getEntryName (Class<?> cls){
+    return cls.getName().replace('.', '/') + ".class";
+  }
+
+  static void putEntry (JarOutputStream jos, Class<?> cls, boolean stored) throws Exception {
+    byte[] data = getClassData(cls);
+    JarEntry e = new JarEntry(getEntryName(cls));
+
+    if (stored){
+      CRC32 crc = new CRC32();
+      crc.update(data);
+      e.setMethod(ZipEntry.STORED);
+      e.setSize(data.length);
+      e.setCompressedSize(data.length);
+      e.setCrc(crc.getValue());
+    }
+
+    jos.putNextEntry(e);
+    jos.write(data);
+    jos.closeEntry();
+  }
+
+  // A is stored, B is deflated
+  static File createJar () throws Exception {
+    File f = File.createTempFile("jpf-index", ".jar");
+    f.deleteOnExit();
+
+    JarOutputStream jos = new JarOutputStream( new FileOutputStream(f));
+    putEntry(jos, A.class, true);
+    putEntry(jos, B.class, false);
+    jos.close();
+
+    return f;
+  }
+
+  // only has A
+  static File createDir () throws Exception {
+    File root = File.createTempFile("jpf-index", "");
+    root.delete();
+
+    File f = new File(root, getEntryName(A.class).replace('/', File.separatorChar));
+    f.getParentFile().mkdirs();
+    FileOutputStream os = new FileOutputStream(f);
+    os.write(getClassData(A.class));
+    os.close();
+
+    return root;
+  }
+
+  static void delete (File f){
+    File[] files = f.listFiles();
+    if (files != null){
+      for (File e : files){
+        delete(e);
+      }
+    }
+    f.delete();
+  }
+
+  @Test
+  public void testMappedJar() throws Exception {
+    File f = createJar();
+    MappedJar mj = MappedJar.getMappedJar(f);
+    assertTrue(mj == MappedJar.getMappedJar(f)); // shared
+
+    assertTrue(mj.getNumberOfEntries() == 2);
+
+    JarFile jar = new JarFile(f);
+    for (Class<?> cls : new Class<?>[] { A.class, B.class }){
+      String eName = getEntryName(cls);
+      MappedJar.Entry e = mj.getEntry(eName);
+      assertTrue(e != null);
+
+      JarEntry je = jar.getJarEntry(eName);
+      assertTrue(e.getCrc() == je.getCrc());
+      assertTrue(Arrays.equals(mj.getData(e), getClassData(cls)));
+    }
+    jar.close();
+
+    assertTrue(mj.getEntry("gov/nasa/jpf/classfile/C.class") == null);
+  }
+
+  @Test
+  public void testIndexedLookup() throws Exception {
+    File jar = createJar();
+    File dir = createDir();
+
+    try {
+      ClassPath cp = new ClassPath();
+      cp.setIndexed(true);
+      cp.addPathName(dir.getPath());
+      cp.addPathName(jar.getPath());
+
+      // A is shadowed, and has to come from the dir
+      ClassPath.Match m = cp.findMatch(A.class.getName());
+      assertTrue(m != null);
+      assertTrue(m.container.getName().equals(dir.getPath()));
+
+      m = cp.findMatch(B.class.getName());
+      assertTrue(m != null);
+      assertTrue(m.container.getName().equals(jar.getPath()));
+      assertTrue(Arrays.equals(m.getBytes(), getClassData(B.class)));
+
+      assertTrue(cp.findMatch(PKG + ".C") == null);
+      assertTrue(cp.findMatch("x.y.Z") == null);
+      assertTrue(cp.getContainers("x.y.Z").isEmpty());
+      assertTrue(cp.getContainers(B.class.getName()).size() == 2);
+
+      // the stamps don't depend on the reader
+      ClassFileContainer jc = ClassFileContainer.getClassFileContainer(jar.getPath());
+      ClassFileContainer mjc = ClassFileContainer.getClassFileContainer(jar.getPath(), true);
+      assertTrue(jc.getClassFileStamp(B.class.getName()) == mjc.getClassFileStamp(B.class.getName()));
+      assertTrue(mjc.getClassNames(PKG).size() == 2);
+
+    } finally {
+      delete(dir);
+    }
+  }
+}
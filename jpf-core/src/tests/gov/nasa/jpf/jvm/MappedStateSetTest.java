@@ -0,0 +1,74 @@
+//
+// Copyright (C) 2006 United States Government as represented by the
+// Administrator of the National Aeronautics and Space Administration
+// (NASA).  All Rights Reserved.
+//
+// This software is distributed under the NASA Open Source Agreement
+// (NOSA), version 1.3.  The NOSA has been approved by the Open Source
+// Initiative.  See the file NOSA-1.3-JPF at the top of the distribution
+// directory tree for the complete NOSA document.
+//
+// THE SUBJECT SOFTWARE IS PROVIDED "AS IS" WITHOUT ANY WARRANTY OF ANY
+// KIND, EITHER EXPRESSED, IMPLIED, OR STATUTORY, INCLUDING, BUT NOT
+// LIMITED TO, ANY WARRANTY THAT THE SUBJECT SOFTWARE WILL CONFORM TO
+// SPECIFICATIONS, ANY IMPLIED WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+// A PARTICULAR PURPOSE, OR FREEDOM FROM INFRINGEMENT, ANY WARRANTY THAT
+// THE SUBJECT SOFTWARE WILL BE ERROR FREE, OR ANY WARRANTY THAT
+// DOCUMENTATION, IF PROVIDED, WILL CONFORM TO THE SUBJECT SOFTWARE.
+//
+package gov.nasa.jpf.jvm;
+
+import gov.nasa.jpf.util.test.TestJPF;
+
+import java.io.File;
+
+import org.junit.Test;
+
+/**
+ * unit test for MappedStateSet
+ */
+public class MappedStateSetTest extends TestJPF {
+
+  void checkAddAndMatch (MappedStateSet set, int n){
+    int[] v = new int[8];
+    for (int i=0; i<v.length; i++){
+      v[i] = i - 42;
+    }
+
+    for (int i=0; i<n; i++){
+      v[0] = i * 3;
+      assert set.add(v) == i;
+      assert set.size() == i+1;
+    }
+
+    for (int i=0; i<n; i++){
+      v[0] = i * 3;
+      assert set.add(v) == i;
+      assert set.size() == n;
+    }
+  }
+
+  @Test
+  public void testDirectBuffers(){
+    // small partitions so that we grow a couple of times
+    MappedStateSet set = new MappedStateSet(4, 16, null);
+    checkAddAndMatch(set, 10000);
+    assert set.getCapacity() >= 10000;
+
+    double load = set.getLoadFactor();
+    assert load > 0.0 && load <= MappedStateSet.MAX_LOAD;
+  }
+
+  @Test
+  public void testSinglePartition(){
+    MappedStateSet set = new MappedStateSet(1, 16, null);
+    checkAddAndMatch(set, 1000);
+  }
+
+  @Test
+  public void testMappedFiles(){
+    File dir = new File(System.getProperty("java.io.tmpdir"));
+    MappedStateSet set = new MappedStateSet(8, 16, dir);
+    checkAddAndMatch(set, 10000);
+  }
+}
@@ -0,0 +1,202 @@
+//
+// Copyright (C) 2006 United States Government as represented by the
+// Administrator of the National Aeronautics and Space Administration
+// (NASA).  All Rights Reserved.
+//
+// This software is distributed under the NASA Open Source Agreement
+// (NOSA), version 1.3.  The NOSA has been approved by the Open Source
+// Initiative.  See the file NOSA-1.3-JPF at the top of the distribution
+// directory tree for the complete NOSA document.
+//
+// THE SUBJECT SOFTWARE IS PROVIDED "AS IS" WITHOUT ANY WARRANTY OF ANY
+// KIND, EITHER EXPRESSED, IMPLIED, OR STATUTORY, INCLUDING, BUT NOT
+// LIMITED TO, ANY WARRANTY THAT THE SUBJECT SOFTWARE WILL CONFORM TO
+// SPECIFICATIONS, ANY IMPLIED WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+// A PARTICULAR PURPOSE, OR FREEDOM FROM INFRINGEMENT, ANY WARRANTY THAT
+// THE SUBJECT SOFTWARE WILL BE ERROR FREE, OR ANY WARRANTY THAT
+// DOCUMENTATION, IF PROVIDED, WILL CONFORM TO THE SUBJECT SOFTWARE.
+//
+package gov.nasa.jpf.jvm;
+
+import gov.nasa.jpf.jvm.bytecode.InstructionFactory;
+import gov.nasa.jpf.util.test.TestJPF;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * unit test for generated NativeStubs
+ */
+public class NativeStubTest extends TestJPF {
+
+  public static class JPF_Peer {
+    static int voidCalls;
+
+    public static int mix (MJIEnv env, int objRef, int a, long b, double c, boolean z, char ch, float f, short s, byte bt){
+      return objRef + a + (int)b + (int)c + (z ? 1000 : 0) + ch + (int)f + s + bt;
+    }
+
+    public static double scale (MJIEnv env, int objRef, double d, long l){
+      return d * l;
+    }
+
+    public static float half (MJIEnv env, int objRef, float f){
+      return f / 2;
+    }
+
+    public static boolean isNegative (MJIEnv env, int objRef, long l){
+      return l < 0;
+    }
+
+    public static int getRef (MJIEnv env, int objRef){
+      return objRef;
+    }
+
+    public static void count (MJIEnv env, int objRef){
+      voidCalls++;
+    }
+
+    public static long wrongSize (MJIEnv env, int objRef, int a){
+      return a;
+    }
+
+    public static void fail (MJIEnv env, int objRef){
+      throw new IllegalStateException("peer failure");
+    }
+  }
+
+  static class JPF_NonPublicPeer {
+    public static int get (MJIEnv env, int objRef){
+      return 42;
+    }
+  }
+
+  @BeforeClass
+  public static void setUp (){
+    MethodInfo.insnFactory = new InstructionFactory(); // we don't have a JVM
+    NativePeer.useStubs = true;
+  }
+
+  static Method getPeerMethod (Class<?> cls, String name){
+    for (Method m : cls.getDeclaredMethods()){
+      if (m.getName().equals(name)){
+        return m;
+      }
+    }
+    return null;
+  }
+
+  static NativeMethodInfo createNativeMethodInfo (Class<?> peerCls, String name, String signature, int modifiers){
+    MethodInfo mi = new MethodInfo(null, name, signature, 0, 0, modifiers);
+    return new NativeMethodInfo(mi, getPeerMethod(peerCls, name), null);
+  }
+
+  static NativeMethodInfo createNativeMethodInfo (Class<?> peerCls, String name, String signature){
+    return createNativeMethodInfo(peerCls, name, signature, Modifier.PUBLIC | Modifier.STATIC);
+  }
+
+  static NativeStackFrame call (NativeMethodInfo nmi, int objRef, StackFrame caller){
+    NativeStackFrame frame = new NativeStackFrame(nmi, caller);
+    frame.setPrevious(caller);
+
+    assertTrue(nmi.getStub() != null);
+    nmi.getStub().call(null, objRef, caller, frame);
+    return frame;
+  }
+
+  @Test
+  public void testArguments(){
+    // an instance method, so that we also get the 'this' argument
+    NativeMethodInfo nmi = createNativeMethodInfo(JPF_Peer.class, "mix", "(IJDZCFSB)I", Modifier.PUBLIC);
+
+    StackFrame caller = new StackFrame(0, 16);
+    caller.push(10000); // this (no JVM for a reference push)
+    caller.push(1);
+    caller.longPush(20);
+    caller.longPush(Types.doubleToLong(300.5));
+    caller.push(1);
+    caller.push('A');
+    caller.push(Types.floatToInt(4000.75f));
+    caller.push(-5);
+    caller.push(0x1ff); // gets narrowed to byte -1
+
+    NativeStackFrame frame = call(nmi, 10000, caller);
+    int expected = 10000 + 1 + 20 + 300 + 1000 + 'A' + 4000 - 5 - 1;
+
+    assertTrue(frame.hasRawReturnValue());
+    assertTrue(frame.getRawReturnValue() == expected);
+    assertTrue(frame.getReturnValue().equals(Integer.valueOf(expected)));
+
+    // the boxed arguments are still available on demand
+    Object[] args = frame.getArguments();
+    assertTrue(args.length == 10);
+    assertTrue(args[1].equals(Integer.valueOf(10000)));
+    assertTrue(args[2].equals(Integer.valueOf(1)));
+    assertTrue(args[3].equals(Long.valueOf(20)));
+    assertTrue(args[4].equals(Double.valueOf(300.5)));
+    assertTrue(args[5].equals(Boolean.TRUE));
+    assertTrue(args[6].equals(Character.valueOf('A')));
+  }
+
+  @Test
+  public void testReturnValues(){
+    StackFrame caller = new StackFrame(0, 8);
+    caller.longPush(Types.doubleToLong(1.5));
+    caller.longPush(4);
+    NativeStackFrame frame = call(createNativeMethodInfo(JPF_Peer.class, "scale", "(DJ)D"), 0, caller);
+    assertTrue(Types.longToDouble(frame.getRawReturnValue()) == 6.0);
+    assertTrue(frame.getReturnValue().equals(Double.valueOf(6.0)));
+
+    caller = new StackFrame(0, 8);
+    caller.push(Types.floatToInt(5.0f));
+    frame = call(createNativeMethodInfo(JPF_Peer.class, "half", "(F)F"), 0, caller);
+    assertTrue(Types.intToFloat((int)frame.getRawReturnValue()) == 2.5f);
+
+    caller = new StackFrame(0, 8);
+    caller.longPush(-1);
+    frame = call(createNativeMethodInfo(JPF_Peer.class, "isNegative", "(J)Z"), 0, caller);
+    assertTrue(frame.getReturnValue().equals(Boolean.TRUE));
+
+    caller = new StackFrame(0, 8);
+    frame = call(createNativeMethodInfo(JPF_Peer.class, "getRef", "()Ljava/lang/Object;"), 42, caller);
+    assertTrue(frame.getRawReturnValue() == 42);
+
+    int n = JPF_Peer.voidCalls;
+    frame = call(createNativeMethodInfo(JPF_Peer.class, "count", "()V"), 0, caller);
+    assertTrue(JPF_Peer.voidCalls == n+1);
+    assertFalse(frame.hasRawReturnValue());
+    assertTrue(frame.getReturnValue() == null);
+  }
+
+  @Test
+  public void testSharedStubs(){
+    NativeMethodInfo nmi1 = createNativeMethodInfo(JPF_Peer.class, "half", "(F)F");
+    NativeMethodInfo nmi2 = createNativeMethodInfo(JPF_Peer.class, "half", "(F)F");
+    assertTrue(nmi1.getStub() == nmi2.getStub());
+  }
+
+  @Test
+  public void testFallback(){
+    // slot size mismatch between model and peer return types
+    NativeMethodInfo nmi = createNativeMethodInfo(JPF_Peer.class, "wrongSize", "(I)I");
+    assertTrue(nmi.getStub() == null);
+
+    // we can't link against non-public peers
+    nmi = createNativeMethodInfo(JPF_NonPublicPeer.class, "get", "()I");
+    assertTrue(nmi.getStub() == null);
+  }
+
+  @Test
+  public void testPeerException(){
+    NativeMethodInfo nmi = createNativeMethodInfo(JPF_Peer.class, "fail", "()V");
+    try {
+      call(nmi, 0, new StackFrame(0, 4));
+      fail("peer exception not passed through");
+    } catch (IllegalStateException x){
+      assertTrue(x.getMessage().equals("peer failure"));
+    }
+  }
+}
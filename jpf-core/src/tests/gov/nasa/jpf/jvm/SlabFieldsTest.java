@@ -0,0 +1,95 @@
+//
+// Copyright (C) 2006 United States Government as represented by the
+// Administrator of the National Aeronautics and Space Administration
+// (NASA).  All Rights Reserved.
+//
+// This software is distributed under the NASA Open Source Agreement
+// (NOSA), version 1.3.  The NOSA has been approved by the Open Source
+// Initiative.  See the file NOSA-1.3-JPF at the top of the distribution
+// directory tree for the complete NOSA document.
+//
+// THE SUBJECT SOFTWARE IS PROVIDED "AS IS" WITHOUT ANY WARRANTY OF ANY
+// KIND, EITHER EXPRESSED, IMPLIED, OR STATUTORY, INCLUDING, BUT NOT
+// LIMITED TO, ANY WARRANTY THAT THE SUBJECT SOFTWARE WILL CONFORM TO
+// SPECIFICATIONS, ANY IMPLIED WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+// A PARTICULAR PURPOSE, OR FREEDOM FROM INFRINGEMENT, ANY WARRANTY THAT
+// THE SUBJECT SOFTWARE WILL BE ERROR FREE, OR ANY WARRANTY THAT
+// DOCUMENTATION, IF PROVIDED, WILL CONFORM TO THE SUBJECT SOFTWARE.
+//
+package gov.nasa.jpf.jvm;
+
+import gov.nasa.jpf.util.test.TestJPF;
+
+import org.junit.Test;
+
+/**
+ * unit test for SlabFields views
+ */
+public class SlabFieldsTest extends TestJPF {
+
+  static SlabFields createFields (int[] block, int base, int size){
+    SlabFields f = new SlabFields(block, base, size);
+    f.clear();
+    return f;
+  }
+
+  @Test
+  public void testAccess() {
+    int[] block = new int[16];
+    SlabFields f = createFields(block, 5, 4);
+
+    f.setIntValue(0, 42);
+    f.setLongValue(1, 0x123456789L);
+    f.setBooleanValue(3, true);
+
+    assertTrue(f.getIntValue(0) == 42);
+    assertTrue(f.getLongValue(1) == 0x123456789L);
+    assertTrue(f.getBooleanValue(3));
+
+    assertTrue(block[5] == 42);
+    assertTrue(block[4] == 0); // header not touched
+    assertTrue(block[9] == 0); // neither is the next region
+
+    int[] slots = f.asFieldSlots();
+    assertTrue(slots.length == 4);
+    slots[0] = -1;
+    assertTrue(f.getIntValue(0) == 42);
+  }
+
+  @Test
+  public void testCloneAndEquals() {
+    int[] block = new int[16];
+    SlabFields f = createFields(block, 1, 3);
+    f.setIntValue(0, 1);
+    f.setIntValue(2, 3);
+
+    NamedFields nf = f.clone();
+    assertTrue(f.equals(nf));
+    assertTrue(nf.equals(f.clone()));
+    assertTrue(f.hashCode() == nf.hashCode());
+
+    f.setIntValue(1, 2);
+    assertTrue(nf.getIntValue(1) == 0);
+    assertFalse(f.equals(nf));
+
+    SlabFields f2 = createFields(block, 5, 3);
+    f2.copyFrom(f.clone());
+    assertTrue(f.equals(f2));
+  }
+
+  @Test
+  public void testDetach() {
+    int[] block = new int[16];
+    SlabFields f = createFields(block, 1, 2);
+    f.setIntValue(0, 42);
+    assertTrue(f.isBound());
+
+    f.detach();
+    assertFalse(f.isBound());
+    block[1] = -1;  // somebody else owns the region now
+    assertTrue(f.getIntValue(0) == 42);
+
+    f.unbind();
+    assertFalse(f.isBound());
+  }
+}
@@ -0,0 +1,179 @@
+//
+// Copyright (C) 2011 United States Government as represented by the
+// Administrator of the National Aeronautics and Space Administration
+// (NASA).  All Rights Reserved.
+//
+// This software is distributed under the NASA Open Source Agreement
+// (NOSA), version 1.3.  The NOSA has been approved by the Open Source
+// Initiative.  See the file NOSA-1.3-JPF at the top of the distribution
+// directory tree for the complete NOSA document.
+//
+// THE SUBJECT SOFTWARE IS PROVIDED "AS IS" WITHOUT ANY WARRANTY OF ANY
+// KIND, EITHER EXPRESSED, IMPLIED, OR STATUTORY, INCLUDING, BUT NOT
+// LIMITED TO, ANY WARRANTY THAT THE SUBJECT SOFTWARE WILL CONFORM TO
+// SPECIFICATIONS, ANY IMPLIED WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+// A PARTICULAR PURPOSE, OR FREEDOM FROM INFRINGEMENT, ANY WARRANTY THAT
+// THE SUBJECT SOFTWARE WILL BE ERROR FREE, OR ANY WARRANTY THAT
+// DOCUMENTATION, IF PROVIDED, WILL CONFORM TO THE SUBJECT SOFTWARE.
+//
+package gov.nasa.jpf.jvm;
+
+import gov.nasa.jpf.jvm.bytecode.Instruction;
+import gov.nasa.jpf.jvm.bytecode.NOP;
+import gov.nasa.jpf.util.test.TestJPF;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+
+import org.junit.Test;
+
+/**
+ * unit test for the compact StepTrail encoding of Transitions
+ */
+public class StepTrailTest extends TestJPF {
+
+  static MethodInfo createMethod (String name, int len){
+    MethodInfo mi = new MethodInfo(null, name, "()V", 0, 0, 0);
+    Instruction[] code = new Instruction[len];
+    for (int i=0; i<len; i++){
+      code[i] = new NOP();
+      code[i].setLocation(i, i);
+    }
+    mi.setCode(code);
+    return mi;
+  }
+
+  static void add (Transition t, StepTrail.MethodTable methods, ArrayList<Instruction> ref,
+                   MethodInfo mi, int start, int len){
+    for (int i=start; i<start+len; i++){
+      Instruction insn = mi.getInstruction(i);
+      t.addStep(insn, methods);
+      ref.add(insn);
+    }
+  }
+
+  static void check (Transition t, ArrayList<Instruction> ref){
+    assertTrue(t.getRecordedStepCount() == ref.size());
+
+    int i = 0;
+    Step prev = null;
+    for (Step s : t){
+      assertTrue(s.getInstruction() == ref.get(i));
+      if (prev != null){
+        assertTrue(prev.getNext() == s);
+      }
+      prev = s;
+      i++;
+    }
+    assertTrue(i == ref.size());
+
+    if (!ref.isEmpty()){
+      assertTrue(t.getLastStep().getInstruction() == ref.get(ref.size()-1));
+      assertTrue(t.getStep(ref.size()/2).getInstruction() == ref.get(ref.size()/2));
+    }
+  }
+
+  @Test
+  public void testLoopEncoding (){
+    StepTrail.MethodTable methods = new StepTrail.MethodTable();
+    MethodInfo m = createMethod("m", 20);
+    MethodInfo f = createMethod("f", 5);
+    Transition t = new Transition(null, null);
+    ArrayList<Instruction> ref = new ArrayList<Instruction>();
+
+    add(t, methods, ref, m, 0, 3);
+    for (int i=0; i<1000; i++){ // loop with a call
+      add(t, methods, ref, m, 3, 4);
+      add(t, methods, ref, f, 0, 5);
+      add(t, methods, ref, m, 7, 2);
+      add(t, methods, ref, m, 3, 1); // backjump
+    }
+    add(t, methods, ref, m, 3, 2);  // partial iteration, then loop exit
+    add(t, methods, ref, m, 10, 5);
+
+    check(t, ref);
+
+    // the 1000 iterations should be collapsed into a single repeat entry
+    StepTrail trail = t.steps;
+    assertTrue(trail.getEncodedSize() < 50);
+  }
+
+  @Test
+  public void testNoLoop (){
+    StepTrail.MethodTable methods = new StepTrail.MethodTable();
+    MethodInfo m = createMethod("m", 110);
+    Transition t = new Transition(null, null);
+    ArrayList<Instruction> ref = new ArrayList<Instruction>();
+
+    assertTrue(t.getLastStep() == null);
+    assertFalse(t.iterator().hasNext());
+
+    for (int i=0; i<30; i++){
+      add(t, methods, ref, m, (i*7) % 100, 1 + i % 3);
+    }
+    check(t, ref);
+  }
+
+  @Test
+  public void testComments (){
+    StepTrail.MethodTable methods = new StepTrail.MethodTable();
+    MethodInfo m = createMethod("m", 10);
+    Transition t = new Transition(null, null);
+    ArrayList<Instruction> ref = new ArrayList<Instruction>();
+
+    add(t, methods, ref, m, 0, 5);
+    t.getLastStep().setComment("last");
+    t.getStep(1).setComment("second");
+
+    Iterator<Step> it = t.iterator();
+    it.next();
+    assertTrue("second".equals(it.next().getComment()));
+    assertTrue(t.getLastStep().getComment().equals("last"));
+    assertTrue(t.getStep(0).getComment() == null);
+  }
+
+  @Test
+  public void testRemove (){
+    StepTrail.MethodTable methods = new StepTrail.MethodTable();
+    MethodInfo m = createMethod("m", 20);
+    MethodInfo f = createMethod("f", 5);
+    Transition t = new Transition(null, null);
+    ArrayList<Instruction> ref = new ArrayList<Instruction>();
+
+    add(t, methods, ref, m, 0, 3);
+    for (int i=0; i<10; i++){
+      add(t, methods, ref, m, 3, 4);
+      add(t, methods, ref, f, 0, 5);
+    }
+    add(t, methods, ref, m, 10, 5);
+    t.getStep(4).setComment("four");
+    t.getLastStep().setComment("last");
+
+    // remove every third step, which splits runs and loop iterations
+    int i = 0;
+    for (Iterator<Step> it = t.iterator(); it.hasNext(); i++){
+      Step s = it.next();
+      if (i % 3 == 0){
+        assertTrue(s.getInstruction() == ref.remove(i - i/3));
+        it.remove();
+      }
+    }
+    check(t, ref);
+    assertTrue(t.getStepCount() == ref.size());
+    assertTrue("four".equals(t.getStep(2).getComment()));
+    assertTrue("last".equals(t.getLastStep().getComment()));
+
+    Iterator<Step> it = t.iterator();
+    try {
+      it.remove();
+      fail("remove() before next() should throw");
+    } catch (IllegalStateException x){
+      // expected
+    }
+
+    it.next();
+    it.remove();
+    ref.remove(0);
+    check(t, ref);
+  }
+}
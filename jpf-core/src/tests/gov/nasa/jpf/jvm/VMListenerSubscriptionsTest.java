@@ -0,0 +1,110 @@
+//
+// Copyright (C) 2006 United States Government as represented by the
+// Administrator of the National Aeronautics and Space Administration
+// (NASA).  All Rights Reserved.
+//
+// This software is distributed under the NASA Open Source Agreement
+// (NOSA), version 1.3.  The NOSA has been approved by the Open Source
+// Initiative.  See the file NOSA-1.3-JPF at the top of the distribution
+// directory tree for the complete NOSA document.
+//
+// THE SUBJECT SOFTWARE IS PROVIDED "AS IS" WITHOUT ANY WARRANTY OF ANY
+// KIND, EITHER EXPRESSED, IMPLIED, OR STATUTORY, INCLUDING, BUT NOT
+// LIMITED TO, ANY WARRANTY THAT THE SUBJECT SOFTWARE WILL CONFORM TO
+// SPECIFICATIONS, ANY IMPLIED WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+// A PARTICULAR PURPOSE, OR FREEDOM FROM INFRINGEMENT, ANY WARRANTY THAT
+// THE SUBJECT SOFTWARE WILL BE ERROR FREE, OR ANY WARRANTY THAT
+// DOCUMENTATION, IF PROVIDED, WILL CONFORM TO THE SUBJECT SOFTWARE.
+//
+package gov.nasa.jpf.jvm;
+
+import gov.nasa.jpf.ListenerAdapter;
+import gov.nasa.jpf.PropertyListenerAdapter;
+import gov.nasa.jpf.classfile.ClassFile;
+import gov.nasa.jpf.util.test.TestJPF;
+
+import org.junit.Test;
+
+import static gov.nasa.jpf.jvm.VMListenerSubscriptions.*;
+
+/**
+ * unit test for computing the VMListener subscriptions
+ */
+public class VMListenerSubscriptionsTest extends TestJPF {
+
+  static class InsnListener extends ListenerAdapter {
+    public void instructionExecuted (JVM vm){}
+  }
+
+  static class DerivedInsnListener extends InsnListener {
+    public void loadClass (JVM vm, ClassFile cf){}
+  }
+
+  static class GCProperty extends PropertyListenerAdapter {
+    public void gcEnd (JVM vm){}
+  }
+
+  static class PlainListener extends ListenerAdapter {
+    public String toString(){ return "plain"; }
+  }
+
+  @Test
+  public void testAdapterSubclasses(){
+    boolean[] s = getSubscriptions(InsnListener.class);
+    for (int i=0; i<NUMBER_OF_EVENTS; i++){
+      assertTrue(getEventName(i), s[i] == (i == INSTRUCTION_EXECUTED));
+    }
+
+    s = getSubscriptions(DerivedInsnListener.class);
+    for (int i=0; i<NUMBER_OF_EVENTS; i++){
+      assertTrue(getEventName(i), s[i] == (i == INSTRUCTION_EXECUTED || i == LOAD_CLASS));
+    }
+
+    s = getSubscriptions(GCProperty.class);
+    for (int i=0; i<NUMBER_OF_EVENTS; i++){
+      assertTrue(getEventName(i), s[i] == (i == GC_END));
+    }
+
+    s = getSubscriptions(PlainListener.class);
+    for (int i=0; i<NUMBER_OF_EVENTS; i++){
+      assertFalse(getEventName(i), s[i]);
+    }
+  }
+
+  @Test
+  public void testAnonymousSubclass(){
+    VMListener l = new InsnListener(){
+      public void executeInstruction (JVM vm){}
+    };
+    assertTrue(isSubscribed(l, EXECUTE_INSTRUCTION));
+    assertTrue(isSubscribed(l, INSTRUCTION_EXECUTED));
+    assertFalse(isSubscribed(l, METHOD_ENTERED));
+  }
+
+  @Test
+  public void testEventListeners(){
+    VMListener l1 = new InsnListener();
+    VMListener l2 = new GCProperty();
+    VMListener l3 = new DerivedInsnListener();
+
+    VMListener[][] el = getEventListeners(new VMListener[] { l1, l2, l3 });
+    assertTrue(el.length == NUMBER_OF_EVENTS);
+
+    VMListener[] a = el[INSTRUCTION_EXECUTED];
+    assertTrue(a.length == 2 && a[0] == l1 && a[1] == l3);
+
+    a = el[GC_END];
+    assertTrue(a.length == 1 && a[0] == l2);
+
+    a = el[LOAD_CLASS];
+    assertTrue(a.length == 1 && a[0] == l3);
+
+    assertTrue(el[EXECUTE_INSTRUCTION].length == 0);
+    assertTrue(el[OBJECT_CREATED].length == 0);
+
+    el = getEventListeners(new VMListener[0]);
+    for (int i=0; i<NUMBER_OF_EVENTS; i++){
+      assertTrue(el[i].length == 0);
+    }
+  }
+}
@@ -0,0 +1,142 @@
+//
+// Copyright (C) 2011 United States Government as represented by the
+// Administrator of the National Aeronautics and Space Administration
+// (NASA).  All Rights Reserved.
+//
+// This software is distributed under the NASA Open Source Agreement
+// (NOSA), version 1.3.  The NOSA has been approved by the Open Source
+// Initiative.  See the file NOSA-1.3-JPF at the top of the distribution
+// directory tree for the complete NOSA document.
+//
+// THE SUBJECT SOFTWARE IS PROVIDED "AS IS" WITHOUT ANY WARRANTY OF ANY
+// KIND, EITHER EXPRESSED, IMPLIED, OR STATUTORY, INCLUDING, BUT NOT
+// LIMITED TO, ANY WARRANTY THAT THE SUBJECT SOFTWARE WILL CONFORM TO
+// SPECIFICATIONS, ANY IMPLIED WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+// A PARTICULAR PURPOSE, OR FREEDOM FROM INFRINGEMENT, ANY WARRANTY THAT
+// THE SUBJECT SOFTWARE WILL BE ERROR FREE, OR ANY WARRANTY THAT
+// DOCUMENTATION, IF PROVIDED, WILL CONFORM TO THE SUBJECT SOFTWARE.
+//
+package gov.nasa.jpf.search;
+
+import gov.nasa.jpf.jvm.JenkinsStateSet;
+import gov.nasa.jpf.report.Statistics;
+import gov.nasa.jpf.util.test.TestJPF;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.HashMap;
+
+import org.junit.Test;
+
+/**
+ * unit test for storing and loading SearchCheckpoints
+ */
+public class SearchCheckpointTest extends TestJPF {
+
+  static void addStates (JenkinsStateSet set, int from, int to){
+    for (int i=from; i<to; i++){
+      set.add(new int[] { i, i*31, 42 });
+    }
+  }
+
+  @Test
+  public void testStoreLoad () throws Exception {
+    File f = File.createTempFile("jpf-search", ".cp");
+    File fStates = new File(f.getPath() + ".states");
+    f.deleteOnExit();
+    fStates.deleteOnExit();
+
+    JenkinsStateSet set = new JenkinsStateSet();
+    SearchCheckpoint cp = new SearchCheckpoint(f);
+
+    Statistics stat = new Statistics();
+    stat.newStates = 4711;
+    HashMap<String,Serializable> clientData = new HashMap<String,Serializable>();
+    clientData.put("stat", stat.getCheckpoint());
+
+    addStates(set, 0, 1000);
+    cp.store(new int[] {1, 2}, set, clientData);
+    assertTrue(fStates.length() == 1000*8);
+
+    addStates(set, 1000, 1500);
+    cp.store(new int[] {1, 2, 3}, set, clientData);
+    assertTrue(fStates.length() == 1500*8); // only the new ones got appended
+
+    addStates(set, 1500, 1600);
+    cp.store(new int[] {2}, set, clientData);
+
+    JenkinsStateSet set2 = new JenkinsStateSet();
+    SearchCheckpoint cp2 = new SearchCheckpoint(f);
+    cp2.load(set2);
+
+    assertTrue(Arrays.equals(cp2.getTrail(), new int[] {2}));
+    assertTrue(set2.size() == 1600);
+    assertTrue(cp2.getNumberOfStoredStates() == 1600);
+    assertTrue(set2.add(new int[] { 1234, 1234*31, 42 }) == 1234); // already visited
+    assertTrue(set2.add(new int[] { 1600, 1600*31, 42 }) == 1600); // new
+
+    Statistics stat2 = new Statistics();
+    stat2.restoreCheckpoint((Statistics)cp2.getClientData().get("stat"));
+    assertTrue(stat2.newStates == 4711);
+  }
+
+  @Test
+  public void testTruncate () throws Exception {
+    File f = File.createTempFile("jpf-search", ".cp");
+    File fStates = new File(f.getPath() + ".states");
+    f.deleteOnExit();
+    fStates.deleteOnExit();
+
+    JenkinsStateSet set = new JenkinsStateSet();
+    SearchCheckpoint cp = new SearchCheckpoint(f);
+    addStates(set, 0, 100);
+    cp.store(new int[] {1}, set, new HashMap<String,Serializable>());
+
+    // simulate states of a checkpoint that didn't complete
+    FileOutputStream out = new FileOutputStream(fStates, true);
+    out.write(new byte[80]);
+    out.close();
+
+    JenkinsStateSet set2 = new JenkinsStateSet();
+    SearchCheckpoint cp2 = new SearchCheckpoint(f);
+    cp2.load(set2);
+    assertTrue(set2.size() == 100);
+
+    cp2.truncateStates();
+    assertTrue(fStates.length() == 100*8);
+
+    addStates(set2, 100, 120);
+    cp2.store(new int[] {1, 1}, set2, new HashMap<String,Serializable>());
+    assertTrue(fStates.length() == 120*8);
+  }
+
+  @Test
+  public void testBackupFallback () throws Exception {
+    File f = File.createTempFile("jpf-search", ".cp");
+    File fStates = new File(f.getPath() + ".states");
+    File fBak = new File(f.getPath() + ".bak");
+    f.deleteOnExit();
+    fStates.deleteOnExit();
+    fBak.deleteOnExit();
+
+    JenkinsStateSet set = new JenkinsStateSet();
+    SearchCheckpoint cp = new SearchCheckpoint(f);
+    addStates(set, 0, 10);
+    cp.store(new int[] {1, 2}, set, new HashMap<String,Serializable>());
+    addStates(set, 10, 20);
+    cp.store(new int[] {3}, set, new HashMap<String,Serializable>());
+    assertTrue(f.exists());
+    assertFalse(fBak.exists());
+
+    // simulate dying after the old checkpoint was moved out of the way
+    assertTrue(f.renameTo(fBak));
+
+    JenkinsStateSet set2 = new JenkinsStateSet();
+    SearchCheckpoint cp2 = new SearchCheckpoint(f);
+    cp2.load(set2);
+    assertTrue(Arrays.equals(cp2.getTrail(), new int[] {3}));
+    assertTrue(set2.size() == 20);
+  }
+}
@@ -0,0 +1,102 @@
+//
+// Copyright (C) 2006 United States Government as represented by the
+// Administrator of the National Aeronautics and Space Administration
+// (NASA).  All Rights Reserved.
+//
+// This software is distributed under the NASA Open Source Agreement
+// (NOSA), version 1.3.  The NOSA has been approved by the Open Source
+// Initiative.  See the file NOSA-1.3-JPF at the top of the distribution
+// directory tree for the complete NOSA document.
+//
+// THE SUBJECT SOFTWARE IS PROVIDED "AS IS" WITHOUT ANY WARRANTY OF ANY
+// KIND, EITHER EXPRESSED, IMPLIED, OR STATUTORY, INCLUDING, BUT NOT
+// LIMITED TO, ANY WARRANTY THAT THE SUBJECT SOFTWARE WILL CONFORM TO
+// SPECIFICATIONS, ANY IMPLIED WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+// A PARTICULAR PURPOSE, OR FREEDOM FROM INFRINGEMENT, ANY WARRANTY THAT
+// THE SUBJECT SOFTWARE WILL BE ERROR FREE, OR ANY WARRANTY THAT
+// DOCUMENTATION, IF PROVIDED, WILL CONFORM TO THE SUBJECT SOFTWARE.
+//
+package gov.nasa.jpf.search.dpor;
+
+import gov.nasa.jpf.ListenerAdapter;
+import gov.nasa.jpf.jvm.ChoiceGenerator;
+import gov.nasa.jpf.search.Search;
+import gov.nasa.jpf.util.test.TestJPF;
+
+import org.junit.Test;
+
+/**
+ * regression test for the DPORSearch bookkeeping on backtrack
+ */
+public class DPORSearchTest extends TestJPF {
+
+  static final String SEARCH_ARG = "+search.class=.search.dpor.DPORSearch";
+  static final String FACTORY_ARG = "+vm.scheduler_factory.class=.search.dpor.DPORSchedulerFactory";
+  static final String LISTENER_ARG = "+listener=.search.dpor.DPORSearchTest$BacktrackChecker";
+
+  // set by the listener, which runs in the same (host) JVM
+  static int nBacktracks;
+  static int nPendingBacktracks;
+  static int nStaleStarts;
+  static int nStateSets;
+
+  public static class BacktrackChecker extends ListenerAdapter {
+    public void stateBacktracked (Search search) {
+      DPORSearch dpor = (DPORSearch) search;
+      nBacktracks++;
+
+      // we don't set vm.storage.class, the search has to turn off state storage
+      if (search.getVM().getStateSet() != null) {
+        nStateSets++;
+      }
+
+      // threads that were started by transitions we backtracked over
+      int len = dpor.getPathLength();
+      for (int i=0; i<dpor.startedBy.length; i++) {
+        if (dpor.startedBy[i] > len) {
+          nStaleStarts++;
+        }
+      }
+
+      // the race of the explored path has to be in the backtrack set of
+      // an earlier scheduling point
+      ChoiceGenerator<?> cg = search.getVM().getChoiceGenerator();
+      if (cg instanceof DPORThreadChoice && cg.hasMoreChoices()) {
+        nPendingBacktracks++;
+      }
+    }
+  }
+
+  static int shared;
+
+  static class Incrementer extends Thread {
+    public void run(){
+      int v = shared;
+      shared = v + 1;
+    }
+  }
+
+  @Test
+  public void testBacktrack() {
+    if (!isJPFRun()){
+      nBacktracks = 0;
+      nPendingBacktracks = 0;
+      nStaleStarts = 0;
+      nStateSets = 0;
+    }
+
+    if (verifyNoPropertyViolation(SEARCH_ARG, FACTORY_ARG, LISTENER_ARG)){
+      Incrementer t1 = new Incrementer();
+      Incrementer t2 = new Incrementer();
+      t1.start();
+      t2.start();
+    }
+
+    if (!isJPFRun()){
+      assertTrue( nBacktracks > 0);
+      assertTrue( nPendingBacktracks > 0);
+      assertTrue( nStaleStarts == 0);
+      assertTrue( nStateSets == 0);
+    }
+  }
+}
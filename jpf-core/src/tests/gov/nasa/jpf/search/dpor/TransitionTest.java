@@ -0,0 +1,81 @@
+//
+// Copyright (C) 2006 United States Government as represented by the
+// Administrator of the National Aeronautics and Space Administration
+// (NASA).  All Rights Reserved.
+//
+// This software is distributed under the NASA Open Source Agreement
+// (NOSA), version 1.3.  The NOSA has been approved by the Open Source
+// Initiative.  See the file NOSA-1.3-JPF at the top of the distribution
+// directory tree for the complete NOSA document.
+//
+// THE SUBJECT SOFTWARE IS PROVIDED "AS IS" WITHOUT ANY WARRANTY OF ANY
+// KIND, EITHER EXPRESSED, IMPLIED, OR STATUTORY, INCLUDING, BUT NOT
+// LIMITED TO, ANY WARRANTY THAT THE SUBJECT SOFTWARE WILL CONFORM TO
+// SPECIFICATIONS, ANY IMPLIED WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+// A PARTICULAR PURPOSE, OR FREEDOM FROM INFRINGEMENT, ANY WARRANTY THAT
+// THE SUBJECT SOFTWARE WILL BE ERROR FREE, OR ANY WARRANTY THAT
+// DOCUMENTATION, IF PROVIDED, WILL CONFORM TO THE SUBJECT SOFTWARE.
+//
+package gov.nasa.jpf.search.dpor;
+
+import gov.nasa.jpf.util.test.TestJPF;
+
+import org.junit.Test;
+
+/**
+ * unit test for the DPOR dependency and happens-before computation
+ */
+public class TransitionTest extends TestJPF {
+
+  static Transition createTransition (int index, int tid, long[] keys, boolean[] isWrite){
+    return new Transition(index, tid, null, 0, keys, isWrite);
+  }
+
+  @Test
+  public void testKeys(){
+    assertTrue( Transition.getFieldKey(1, 2) != Transition.getFieldKey(2, 1));
+    assertTrue( Transition.getFieldKey(1, 2) != Transition.getStaticFieldKey(1, 2));
+    assertTrue( Transition.getLockKey(3) != Transition.getFieldKey(3, 0));
+    assertTrue( Transition.getLockKey(3) == Transition.getLockKey(3));
+  }
+
+  @Test
+  public void testDependency(){
+    long x = Transition.getFieldKey(1, 0);
+    long y = Transition.getFieldKey(1, 1);
+    long l = Transition.getLockKey(1);
+
+    Transition readX = createTransition(1, 0, new long[] {x}, new boolean[] {false});
+    Transition readXY = createTransition(2, 1, new long[] {x, y}, new boolean[] {false, false});
+    Transition writeY = createTransition(3, 2, new long[] {y}, new boolean[] {true});
+    Transition lock = createTransition(4, 0, new long[] {l}, new boolean[] {true});
+    Transition lock2 = createTransition(5, 1, new long[] {l}, new boolean[] {true});
+
+    assertFalse( readX.isDependent(readXY)); // read-read
+    assertTrue( readXY.isDependent(writeY));
+    assertTrue( writeY.isDependent(readXY));
+    assertFalse( readX.isDependent(writeY));
+    assertTrue( lock.isDependent(lock2));
+    assertFalse( lock.isDependent(readXY));
+
+    assertTrue( readX.isDependent(x, true));
+    assertFalse( readX.isDependent(x, false));
+  }
+
+  @Test
+  public void testClocks(){
+    Transition t1 = createTransition(1, 0, new long[0], new boolean[0]);
+    t1.clock = new int[] {1};
+    Transition t2 = createTransition(2, 2, new long[0], new boolean[0]);
+    t2.clock = new int[] {0, 0, 2};
+
+    int[] c = Transition.join(t1.clock, t2.clock);
+    assertTrue( c.length == 3 && c[0] == 1 && c[2] == 2);
+    assertTrue( t1.clock.length == 1); // no side effects
+
+    assertTrue( t1.happensBefore(c));
+    assertTrue( t2.happensBefore(c));
+    assertFalse( t2.happensBefore(t1.clock));
+    assertFalse( t1.happensBefore(t2.clock));
+  }
+}
@@ -0,0 +1,72 @@
+//
+// Copyright (C) 2006 United States Government as represented by the
+// Administrator of the National Aeronautics and Space Administration
+// (NASA).  All Rights Reserved.
+// 
+// This software is distributed under the NASA Open Source Agreement
+// (NOSA), version 1.3.  The NOSA has been approved by the Open Source
+// Initiative.  See the file NOSA-1.3-JPF at the top of the distribution
+// directory tree for the complete NOSA document.
+// 
+// THE SUBJECT SOFTWARE IS PROVIDED "AS IS" WITHOUT ANY WARRANTY OF ANY
+// KIND, EITHER EXPRESSED, IMPLIED, OR STATUTORY, INCLUDING, BUT NOT
+// LIMITED TO, ANY WARRANTY THAT THE SUBJECT SOFTWARE WILL CONFORM TO
+// SPECIFICATIONS, ANY IMPLIED WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+// A PARTICULAR PURPOSE, OR FREEDOM FROM INFRINGEMENT, ANY WARRANTY THAT
+// THE SUBJECT SOFTWARE WILL BE ERROR FREE, OR ANY WARRANTY THAT
+// DOCUMENTATION, IF PROVIDED, WILL CONFORM TO THE SUBJECT SOFTWARE.
+//
+package gov.nasa.jpf.search.heuristic;
+
+import gov.nasa.jpf.util.test.TestJPF;
+
+import org.junit.Test;
+
+/**
+ * unit test for the choice trail keyed CheckpointCache
+ */
+public class CheckpointCacheTest extends TestJPF {
+
+  @Test
+  public void testNearest(){
+    CheckpointCache<String> cache = new CheckpointCache<String>(4);
+
+    cache.put(new int[] {1}, "1");
+    cache.put(new int[] {1,2}, "1,2");
+    cache.put(new int[] {1,2,3,4}, "1,2,3,4");
+
+    CheckpointCache.Checkpoint<String> cp = cache.getNearest(new int[] {1,2,3});
+    assertTrue(cp.getDepth() == 2);
+    assertTrue(cp.getState().equals("1,2"));
+
+    cp = cache.getNearest(new int[] {1,2,3,4});
+    assertTrue(cp.getState().equals("1,2,3,4"));
+
+    cp = cache.getNearest(new int[] {1,3,3,4,5});
+    assertTrue(cp.getDepth() == 1);
+
+    assertTrue(cache.getNearest(new int[] {2,1}) == null);
+    assertTrue(cache.getNearest(new int[0]) == null);
+
+    assertTrue(cache.getNumberOfHits() == 3);
+    assertTrue(cache.getNumberOfMisses() == 2);
+  }
+
+  @Test
+  public void testEviction(){
+    CheckpointCache<String> cache = new CheckpointCache<String>(2);
+
+    cache.put(new int[] {1}, "1");
+    cache.put(new int[] {1,1}, "1,1");
+    cache.getNearest(new int[] {1,2});   // touches {1}
+    cache.put(new int[] {1,1,1}, "1,1,1"); // evicts {1,1}
+
+    assertTrue(cache.size() == 2);
+    assertTrue(cache.getNearest(new int[] {1,1,2}).getDepth() == 1);
+    assertTrue(cache.getNearest(new int[] {1,1,1,2}).getDepth() == 3);
+
+    CheckpointCache<String> disabled = new CheckpointCache<String>(0);
+    disabled.put(new int[] {1}, "1");
+    assertTrue(disabled.size() == 0);
+  }
+}
@@ -0,0 +1,143 @@
+//
+// Copyright (C) 2006 United States Government as represented by the
+// Administrator of the National Aeronautics and Space Administration
+// (NASA).  All Rights Reserved.
+//
+// This software is distributed under the NASA Open Source Agreement
+// (NOSA), version 1.3.  The NOSA has been approved by the Open Source
+// Initiative.  See the file NOSA-1.3-JPF at the top of the distribution
+// directory tree for the complete NOSA document.
+//
+// THE SUBJECT SOFTWARE IS PROVIDED "AS IS" WITHOUT ANY WARRANTY OF ANY
+// KIND, EITHER EXPRESSED, IMPLIED, OR STATUTORY, INCLUDING, BUT NOT
+// LIMITED TO, ANY WARRANTY THAT THE SUBJECT SOFTWARE WILL CONFORM TO
+// SPECIFICATIONS, ANY IMPLIED WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+// A PARTICULAR PURPOSE, OR FREEDOM FROM INFRINGEMENT, ANY WARRANTY THAT
+// THE SUBJECT SOFTWARE WILL BE ERROR FREE, OR ANY WARRANTY THAT
+// DOCUMENTATION, IF PROVIDED, WILL CONFORM TO THE SUBJECT SOFTWARE.
+//
+package gov.nasa.jpf.search.heuristic;
+
+import gov.nasa.jpf.Config;
+import gov.nasa.jpf.util.test.TestJPF;
+
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * unit test for the disk spilling SpillingPriorityQueue
+ */
+public class SpillingPriorityQueueTest extends TestJPF {
+
+  static SpillingPriorityQueue createQueue (int memLimit, int maxSegments){
+    return createQueue(memLimit, maxSegments, -1);
+  }
+
+  static SpillingPriorityQueue createQueue (int memLimit, int maxSegments, int queueLimit){
+    String props = "search.heuristic.queue_limit=" + queueLimit + '\n' +
+                   "search.heuristic.queue.mem_limit=" + memLimit + '\n' +
+                   "search.heuristic.queue.max_segments=" + maxSegments + '\n';
+    return new SpillingPriorityQueue( new Config( new StringReader(props)));
+  }
+
+  static PrioritizedState createState (int id, int priority){
+    int[] trail = new int[id % 7];
+    Arrays.fill(trail, id);
+    return new PrioritizedState(id, priority, trail);
+  }
+
+  static PrioritizedState poll (StaticPriorityQueue queue){
+    PrioritizedState s = queue.first();
+    queue.remove(s);
+    return s;
+  }
+
+  @Test
+  public void testOrder(){
+    SpillingPriorityQueue queue = createQueue(8, 3);
+    StaticPriorityQueue ref = createQueue(Integer.MAX_VALUE, 1); // never spills
+    Random rand = new Random(42);
+
+    int id = 0;
+    for (int round=0; round<20; round++){
+      for (int i=0; i<50; i++, id++){
+        int priority = rand.nextInt(100);
+        queue.add(createState(id, priority));
+        ref.add(createState(id, priority));
+      }
+
+      assertTrue(queue.size() == ref.size());
+      assertTrue(queue.getNumberOfSegments() <= 4);
+
+      for (int i=0; i<20; i++){
+        PrioritizedState s = poll(queue);
+        PrioritizedState r = poll(ref);
+        assertTrue(s.equals(r));
+        assertTrue(Arrays.equals(s.getChoiceTrail(), r.getChoiceTrail()));
+      }
+    }
+
+    assertTrue(queue.getTotalNumberOfSpilledStates() > 0);
+
+    while (ref.size() > 0){
+      assertTrue(poll(queue).equals(poll(ref)));
+    }
+    assertTrue(queue.size() == 0);
+    assertTrue(queue.getNumberOfSegments() == 0);
+  }
+
+  @Test
+  public void testQueueLimit(){
+    SpillingPriorityQueue queue = createQueue(8, 3, 100);
+    StaticPriorityQueue ref = new StaticPriorityQueue( new Config( new StringReader("search.heuristic.queue_limit=100")));
+    Random rand = new Random(42);
+
+    int id = 0;
+    for (int round=0; round<20; round++){
+      // the limit has to drop the overall lowest priority states, some of which are on disk
+      for (int i=0; i<50; i++, id++){
+        int priority = rand.nextInt(1000);
+        assertTrue(queue.add(createState(id, priority)) == ref.add(createState(id, priority)));
+      }
+
+      assertTrue(queue.size() == ref.size());
+      assertTrue(queue.size() <= 100);
+      if (round > 1){
+        assertTrue(queue.isQueueLimitReached());
+      }
+
+      for (int i=0; i<10; i++){
+        assertTrue(poll(queue).equals(poll(ref)));
+      }
+    }
+
+    assertTrue(queue.getTotalNumberOfSpilledStates() > 0);
+
+    while (ref.size() > 0){
+      assertTrue(poll(queue).equals(poll(ref)));
+    }
+    assertTrue(queue.size() == 0);
+    assertTrue(queue.getNumberOfSegments() == 0);
+  }
+
+  @Test
+  public void testClear(){
+    SpillingPriorityQueue queue = createQueue(4, 2);
+
+    for (int i=0; i<100; i++){
+      queue.add(createState(i, 100 - i));
+    }
+    assertTrue(queue.size() == 100);
+    assertTrue(queue.getNumberOfSpilledStates() > 0);
+
+    queue.clear();
+    assertTrue(queue.size() == 0);
+    assertTrue(queue.getNumberOfSegments() == 0);
+
+    queue.add(createState(1000, 1));
+    assertTrue(poll(queue).getStateId() == 1000);
+  }
+}
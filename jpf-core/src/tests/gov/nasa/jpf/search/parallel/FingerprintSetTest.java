@@ -0,0 +1,118 @@
+//
+// Copyright (C) 2006 United States Government as represented by the
+// Administrator of the National Aeronautics and Space Administration
+// (NASA).  All Rights Reserved.
+//
+// This software is distributed under the NASA Open Source Agreement
+// (NOSA), version 1.3.  The NOSA has been approved by the Open Source
+// Initiative.  See the file NOSA-1.3-JPF at the top of the distribution
+// directory tree for the complete NOSA document.
+//
+// THE SUBJECT SOFTWARE IS PROVIDED "AS IS" WITHOUT ANY WARRANTY OF ANY
+// KIND, EITHER EXPRESSED, IMPLIED, OR STATUTORY, INCLUDING, BUT NOT
+// LIMITED TO, ANY WARRANTY THAT THE SUBJECT SOFTWARE WILL CONFORM TO
+// SPECIFICATIONS, ANY IMPLIED WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+// A PARTICULAR PURPOSE, OR FREEDOM FROM INFRINGEMENT, ANY WARRANTY THAT
+// THE SUBJECT SOFTWARE WILL BE ERROR FREE, OR ANY WARRANTY THAT
+// DOCUMENTATION, IF PROVIDED, WILL CONFORM TO THE SUBJECT SOFTWARE.
+//
+package gov.nasa.jpf.search.parallel;
+
+import gov.nasa.jpf.util.test.TestJPF;
+
+import org.junit.Test;
+
+/**
+ * unit test for the shared FingerprintSet and SharedSearchContext of ParallelSearch
+ */
+public class FingerprintSetTest extends TestJPF {
+
+  static long fp (int i){
+    return ((i + 1) * 0x9E3779B97F4A7C15L) ^ (i >>> 3);
+  }
+
+  @Test
+  public void testBasic(){
+    FingerprintSet set = new FingerprintSet(4, 16); // small, so that we have to grow
+
+    for (int i=0; i<1000; i++){
+      int id = set.reserveId();
+      assertTrue( set.add(fp(i), id) == id);
+    }
+    assertTrue( set.size() == 1000);
+
+    for (int i=0; i<1000; i++){
+      int id = set.reserveId();
+      assertTrue( set.add(fp(i), id) == i);
+    }
+    assertTrue( set.size() == 1000);
+
+    // 0 is not a valid table entry
+    int id = set.reserveId();
+    assertTrue( set.add(0, id) == id);
+    assertTrue( set.add(0, set.reserveId()) == id);
+  }
+
+  @Test
+  public void testConcurrentAdd() throws InterruptedException {
+    final FingerprintSet set = new FingerprintSet(8, 16);
+    final int nStates = 20000;
+    final int[][] ids = new int[4][nStates];
+
+    Thread[] threads = new Thread[ids.length];
+    for (int t=0; t<threads.length; t++){
+      final int[] tIds = ids[t];
+      threads[t] = new Thread(){
+        public void run(){
+          for (int i=0; i<nStates; i++){
+            tIds[i] = set.add(fp(i), set.reserveId());
+          }
+        }
+      };
+      threads[t].start();
+    }
+    for (Thread t : threads){
+      t.join();
+    }
+
+    assertTrue( set.size() == nStates);
+    for (int i=0; i<nStates; i++){
+      for (int t=1; t<ids.length; t++){
+        assertTrue( ids[t][i] == ids[0][i]);
+      }
+    }
+  }
+
+  @Test
+  public void testWorkDistribution() throws InterruptedException {
+    final SharedSearchContext ctx = new SharedSearchContext(2, new FingerprintSet(1, 16), "");
+    ctx.addWork(new int[0]);
+
+    int[] trail = ctx.getWork();
+    assertTrue( trail != null && trail.length == 0);
+
+    // the other worker has to wait until we hand out something or are done
+    final int[][] result = new int[1][];
+    Thread t = new Thread(){
+      public void run(){
+        result[0] = ctx.getWork();
+        if (result[0] != null){
+          ctx.workDone();
+        }
+      }
+    };
+    t.start();
+
+    while (!ctx.needsWork()){
+      Thread.sleep(10);
+    }
+    ctx.addWork(new int[] {1, 2});
+    t.join();
+
+    assertTrue( result[0] != null && result[0].length == 2);
+    assertFalse( ctx.needsWork());
+
+    ctx.workDone();
+    assertTrue( ctx.getWork() == null); // nothing queued, nobody busy
+  }
+}
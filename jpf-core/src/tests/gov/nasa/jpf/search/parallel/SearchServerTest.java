@@ -0,0 +1,79 @@
+//
+// Copyright (C) 2006 United States Government as represented by the
+// Administrator of the National Aeronautics and Space Administration
+// (NASA).  All Rights Reserved.
+//
+// This software is distributed under the NASA Open Source Agreement
+// (NOSA), version 1.3.  The NOSA has been approved by the Open Source
+// Initiative.  See the file NOSA-1.3-JPF at the top of the distribution
+// directory tree for the complete NOSA document.
+//
+// THE SUBJECT SOFTWARE IS PROVIDED "AS IS" WITHOUT ANY WARRANTY OF ANY
+// KIND, EITHER EXPRESSED, IMPLIED, OR STATUTORY, INCLUDING, BUT NOT
+// LIMITED TO, ANY WARRANTY THAT THE SUBJECT SOFTWARE WILL CONFORM TO
+// SPECIFICATIONS, ANY IMPLIED WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+// A PARTICULAR PURPOSE, OR FREEDOM FROM INFRINGEMENT, ANY WARRANTY THAT
+// THE SUBJECT SOFTWARE WILL BE ERROR FREE, OR ANY WARRANTY THAT
+// DOCUMENTATION, IF PROVIDED, WILL CONFORM TO THE SUBJECT SOFTWARE.
+//
+package gov.nasa.jpf.search.parallel;
+
+import gov.nasa.jpf.util.test.TestJPF;
+
+import org.junit.Test;
+
+/**
+ * unit test for the SearchServer / RemoteSearchContext pair of DistributedSearch,
+ * with both sides running in the same process
+ */
+public class SearchServerTest extends TestJPF {
+
+  @Test
+  public void testProtocol() throws Exception {
+    SharedSearchContext ctx = new SharedSearchContext(2, new FingerprintSet(4, 16),
+                                                      "search.distributed.batch_size=2\n");
+    ctx.addWork(new int[0]);
+
+    SearchServer server = new SearchServer(ctx, 2, 0, 10000);
+    server.start();
+
+    RemoteSearchContext c0 = RemoteSearchContext.connect("localhost", server.getPort());
+    RemoteSearchContext c1 = RemoteSearchContext.connect("localhost", server.getPort());
+    assertTrue( c0.getWorkerId() != c1.getWorkerId());
+
+    int[] trail = c0.getWork();
+    assertTrue( trail != null && trail.length == 0);
+
+    int id = c0.reserveStateId();
+    assertTrue( c0.addFingerprint(42, id) == id);
+    id = c0.reserveStateId();
+    assertTrue( c0.addFingerprint(43, id) == id); // this fills the batch and syncs
+    assertTrue( c0.addFingerprint(43, c0.reserveStateId()) == id);
+
+    c0.addWork(new int[] {1, 2});
+    trail = c1.getWork(); // this syncs c1
+    assertTrue( trail != null && trail.length == 2 && trail[1] == 2);
+
+    // c1 now knows c0's states
+    id = c1.reserveStateId();
+    assertTrue( c1.addFingerprint(42, id) != id);
+    assertTrue( c1.addFingerprint(44, id) == id);
+
+    c1.getStatistics(c1.getWorkerId()).newStates = 1;
+    c1.workDone();
+    c0.workDone();
+
+    assertTrue( c0.getWork() == null);
+    assertTrue( c1.getWork() == null);
+
+    c0.close();
+    c1.close();
+    server.waitForWorkers();
+    server.close();
+
+    assertTrue( ctx.getFailure() == null);
+    assertTrue( ctx.isDone());
+    assertTrue( ctx.getFingerprintSet().size() == 3);
+    assertTrue( ctx.getStatistics(c1.getWorkerId()).newStates == 1);
+  }
+}
@@ -0,0 +1,166 @@
+//
+// Copyright (C) 2006 United States Government as represented by the
+// Administrator of the National Aeronautics and Space Administration
+// (NASA).  All Rights Reserved.
+//
+// This software is distributed under the NASA Open Source Agreement
+// (NOSA), version 1.3.  The NOSA has been approved by the Open Source
+// Initiative.  See the file NOSA-1.3-JPF at the top of the distribution
+// directory tree for the complete NOSA document.
+//
+// THE SUBJECT SOFTWARE IS PROVIDED "AS IS" WITHOUT ANY WARRANTY OF ANY
+// KIND, EITHER EXPRESSED, IMPLIED, OR STATUTORY, INCLUDING, BUT NOT
+// LIMITED TO, ANY WARRANTY THAT THE SUBJECT SOFTWARE WILL CONFORM TO
+// SPECIFICATIONS, ANY IMPLIED WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+// A PARTICULAR PURPOSE, OR FREEDOM FROM INFRINGEMENT, ANY WARRANTY THAT
+// THE SUBJECT SOFTWARE WILL BE ERROR FREE, OR ANY WARRANTY THAT
+// DOCUMENTATION, IF PROVIDED, WILL CONFORM TO THE SUBJECT SOFTWARE.
+//
+package gov.nasa.jpf.test.mc.basic;
+
+import gov.nasa.jpf.jvm.Verify;
+import gov.nasa.jpf.util.test.TestJPF;
+
+import org.junit.Test;
+
+/**
+ * regression test for executing straight-line instruction blocks without
+ * per instruction notifications
+ */
+public class BlockExecutionTest extends TestJPF {
+
+  static final String BLOCKS_ARG = "+vm.execute_blocks=true";
+
+  static class Data {
+    int i;
+    long l;
+    double d;
+  }
+
+  static int compute (Data o, int a, int b){
+    int x = a * 31 + b;
+    long y = (long)x << 3;
+    o.i = x ^ b;
+    o.l = y - o.i;
+    o.d = (double)o.l / 3;
+    return (int)(o.l % 1000) + (int)o.d;
+  }
+
+  @Test
+  public void testArithmetic(){
+    if (verifyNoPropertyViolation(BLOCKS_ARG)){
+      Data o = new Data();
+      int r = 0;
+      for (int i=0; i<100; i++){
+        r += compute(o, i, 42);
+      }
+      assert r == 416471 : "wrong result: " + r;
+    }
+  }
+
+  static int divide (int a, int b){
+    int x = a + 1;
+    int y = x / b;   // throws within a block
+    return y + 1;
+  }
+
+  @Test
+  public void testExceptionInBlock(){
+    if (verifyNoPropertyViolation(BLOCKS_ARG)){
+      int b = Verify.getInt(0, 1);
+      try {
+        int r = divide(41, b);
+        assert b == 1 && r == 43;
+      } catch (ArithmeticException ax){
+        assert b == 0;
+        StackTraceElement[] st = ax.getStackTrace();
+        assert st[0].getMethodName().equals("divide");
+      }
+    }
+  }
+
+  static class Counter {
+    int value;
+  }
+
+  static class Incrementer extends Thread {
+    Counter c;
+
+    Incrementer (Counter c){
+      this.c = c;
+    }
+
+    public void run(){
+      int v = c.value;
+      v = v * 2 + 1;
+      c.value = v;
+    }
+  }
+
+  @Test
+  public void testSharedFieldBreaksBlock(){
+    // the race can only be found if shared field access still breaks transitions
+    if (verifyAssertionErrorDetails("lost update", BLOCKS_ARG)){
+      Counter c = new Counter();
+      Incrementer t1 = new Incrementer(c);
+      Incrementer t2 = new Incrementer(c);
+      t1.start();
+      t2.start();
+
+      try {
+        t1.join();
+        t2.join();
+      } catch (InterruptedException ix){}
+
+      assert c.value == 3 : "lost update";
+    }
+  }
+
+  static class Adder extends Thread {
+    Counter c;
+    int d;
+
+    Adder (Counter c, int d){
+      this.c = c;
+      this.d = d;
+    }
+
+    public void run(){
+      int x = d * 2;    // block local insns, the shared field access comes second
+      c.value += x;
+    }
+  }
+
+  @Test
+  public void testSharedFieldAfterBlockLocalInsn(){
+    if (!isJPFRun()){
+      Verify.resetCounter(0);
+      Verify.resetCounter(1);
+    }
+
+    if (verifyNoPropertyViolation(BLOCKS_ARG)){
+      Counter c = new Counter();
+      Adder t1 = new Adder(c, 1);
+      Adder t2 = new Adder(c, 2);
+      t1.start();
+      t2.start();
+
+      try {
+        t1.join();
+        t2.join();
+      } catch (InterruptedException ix){}
+
+      if (c.value == 6){
+        Verify.incrementCounter(0);
+      } else {
+        assert c.value == 2 || c.value == 4 : "unexpected value: " + c.value;
+        Verify.incrementCounter(1);
+      }
+    }
+
+    if (!isJPFRun()){
+      assertTrue("no complete update", Verify.getCounter(0) > 0);
+      assertTrue("no lost update", Verify.getCounter(1) > 0);
+    }
+  }
+}
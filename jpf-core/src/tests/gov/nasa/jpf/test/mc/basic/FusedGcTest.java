@@ -0,0 +1,114 @@
+//
+// Copyright (C) 2006 United States Government as represented by the
+// Administrator of the National Aeronautics and Space Administration
+// (NASA).  All Rights Reserved.
+//
+// This software is distributed under the NASA Open Source Agreement
+// (NOSA), version 1.3.  The NOSA has been approved by the Open Source
+// Initiative.  See the file NOSA-1.3-JPF at the top of the distribution
+// directory tree for the complete NOSA document.
+//
+// THE SUBJECT SOFTWARE IS PROVIDED "AS IS" WITHOUT ANY WARRANTY OF ANY
+// KIND, EITHER EXPRESSED, IMPLIED, OR STATUTORY, INCLUDING, BUT NOT
+// LIMITED TO, ANY WARRANTY THAT THE SUBJECT SOFTWARE WILL CONFORM TO
+// SPECIFICATIONS, ANY IMPLIED WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+// A PARTICULAR PURPOSE, OR FREEDOM FROM INFRINGEMENT, ANY WARRANTY THAT
+// THE SUBJECT SOFTWARE WILL BE ERROR FREE, OR ANY WARRANTY THAT
+// DOCUMENTATION, IF PROVIDED, WILL CONFORM TO THE SUBJECT SOFTWARE.
+//
+package gov.nasa.jpf.test.mc.basic;
+
+import gov.nasa.jpf.jvm.Verify;
+import gov.nasa.jpf.util.test.TestJPF;
+
+import java.lang.ref.WeakReference;
+
+import org.junit.Test;
+
+/**
+ * regression test for collecting garbage during state serialization
+ */
+public class FusedGcTest extends TestJPF {
+
+  static final String FUSED_GC_ARG = "+vm.gc.fused=true";
+
+  static class Node {
+    Node next;
+    int data;
+
+    Node (int data, Node next){
+      this.data = data;
+      this.next = next;
+    }
+  }
+
+  static class Target {
+  }
+
+  static void forceGC(){
+    System.gc();              // mark that gc is needed
+    Verify.breakTransition(); // cause a state to be stored, which collects the garbage
+  }
+
+  @Test
+  public void testWeakReferences(){
+    if (verifyNoPropertyViolation(FUSED_GC_ARG)){
+      Target target = new Target();
+      WeakReference<Target> strong = new WeakReference<Target>(target);
+      WeakReference<Target> weak = new WeakReference<Target>(new Target());
+
+      forceGC();
+
+      assertSame(target, strong.get());
+      assertNull(weak.get());
+    }
+  }
+
+  @Test
+  public void testWeakReferenceMatching(){
+    if (!isJPFRun()){
+      Verify.resetCounter(0);
+    }
+
+    if (verifyNoPropertyViolation(FUSED_GC_ARG)){
+      Target target = new Target();
+      WeakReference<Target> ref = new WeakReference<Target>(target);
+
+      int d = Verify.getInt(0, 1);
+      if (d == 0){
+        System.gc(); // the next state is stored with fused gc
+      }
+      d = 0;
+      Verify.breakTransition(); // both paths end up in the same state
+
+      System.out.println("new state");
+      Verify.incrementCounter(0);
+      assertSame(target, ref.get());
+    }
+
+    if (!isJPFRun()){
+      assertTrue( Verify.getCounter(0) == 1);
+    }
+  }
+
+  @Test
+  public void testGarbage(){
+    if (verifyNoPropertyViolation(FUSED_GC_ARG)){
+      Node list = null;
+      int n = Verify.getInt(1, 3);
+
+      for (int i=0; i<n; i++){
+        list = new Node(i, list);
+        new Node(-1, null); // garbage
+      }
+
+      forceGC();
+
+      int sum = 0;
+      for (Node p = list; p != null; p = p.next){
+        sum += p.data;
+      }
+      assertTrue(sum == n*(n-1)/2);
+    }
+  }
+}
@@ -0,0 +1,174 @@
+//
+// Copyright (C) 2006 United States Government as represented by the
+// Administrator of the National Aeronautics and Space Administration
+// (NASA).  All Rights Reserved.
+//
+// This software is distributed under the NASA Open Source Agreement
+// (NOSA), version 1.3.  The NOSA has been approved by the Open Source
+// Initiative.  See the file NOSA-1.3-JPF at the top of the distribution
+// directory tree for the complete NOSA document.
+//
+// THE SUBJECT SOFTWARE IS PROVIDED "AS IS" WITHOUT ANY WARRANTY OF ANY
+// KIND, EITHER EXPRESSED, IMPLIED, OR STATUTORY, INCLUDING, BUT NOT
+// LIMITED TO, ANY WARRANTY THAT THE SUBJECT SOFTWARE WILL CONFORM TO
+// SPECIFICATIONS, ANY IMPLIED WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+// A PARTICULAR PURPOSE, OR FREEDOM FROM INFRINGEMENT, ANY WARRANTY THAT
+// THE SUBJECT SOFTWARE WILL BE ERROR FREE, OR ANY WARRANTY THAT
+// DOCUMENTATION, IF PROVIDED, WILL CONFORM TO THE SUBJECT SOFTWARE.
+//
+package gov.nasa.jpf.test.mc.basic;
+
+import gov.nasa.jpf.ListenerAdapter;
+import gov.nasa.jpf.jvm.Verify;
+import gov.nasa.jpf.listener.MetricsExporter;
+import gov.nasa.jpf.search.Search;
+import gov.nasa.jpf.util.test.TestJPF;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+
+/**
+ * regression test for the MetricsExporter listener
+ */
+public class MetricsExporterTest extends TestJPF {
+
+  static final String COUNTER = "MetricsExporterTest$SolverCallCounter";
+
+  // solver calls are faked by a listener that counts advanced states. Like
+  // the symbc counter, the count is cumulative over all runs in the host JVM
+  static long nSolverCalls;
+  static long nRunSolverCalls;
+
+  public static class SolverCallCounter implements MetricsExporter.Counter {
+    public long getValue (){
+      return nSolverCalls;
+    }
+  }
+
+  public static class FakeSolver extends ListenerAdapter {
+    public void stateAdvanced (Search search){
+      nSolverCalls++;
+      nRunSolverCalls++;
+    }
+  }
+
+  static String[] getArgs (File f, String format){
+    return new String[] {
+      "+listener=.listener.MetricsExporter,.test.mc.basic.MetricsExporterTest$FakeSolver",
+      "+metrics.file=" + f.getPath(),
+      "+metrics.format=" + format,
+      "+metrics.interval=60000", // only the final snapshot
+      "+metrics.jmx=false",
+      "+metrics.solver_counter=.test.mc.basic." + COUNTER
+    };
+  }
+
+  static ArrayList<String> readLines (File f) throws IOException {
+    ArrayList<String> lines = new ArrayList<String>();
+    BufferedReader r = new BufferedReader( new FileReader(f));
+    try {
+      for (String line = r.readLine(); line != null; line = r.readLine()){
+        lines.add(line);
+      }
+    } finally {
+      r.close();
+    }
+    return lines;
+  }
+
+  static String getJSONValue (String json, String key){
+    Matcher m = Pattern.compile("\"" + key + "\": ([-0-9.E]+)").matcher(json);
+    assertTrue("no " + key + " in snapshot", m.find());
+    return m.group(1);
+  }
+
+  // 2 x 3 end states
+  static void createStates (){
+    boolean b = Verify.getBoolean();
+    int i = Verify.getInt(0, 2);
+  }
+
+  @Test
+  public void testCSV () throws IOException {
+    File f = null;
+    String[] args = null;
+
+    if (!isJPFRun()){
+      f = File.createTempFile("jpf-metrics", ".csv");
+      f.deleteOnExit();
+      args = getArgs(f, "csv");
+      nRunSolverCalls = 0;
+    }
+
+    if (verifyNoPropertyViolation(args)){
+      createStates();
+    }
+
+    if (!isJPFRun()){
+      ArrayList<String> lines = readLines(f);
+      assertTrue( lines.size() == 2); // header and final snapshot
+      assertTrue( lines.get(0).startsWith("time,new,visited,end,"));
+
+      String[] header = lines.get(0).split(",");
+      String[] values = lines.get(1).split(",");
+      assertTrue( values.length == header.length);
+
+      assertTrue( Long.parseLong(values[1]) > 0);       // new
+      assertTrue( Long.parseLong(values[3]) == 6);      // end
+      assertTrue( Integer.parseInt(values[8]) >= 2);    // max depth
+      assertTrue( Integer.parseInt(values[9]) > 0);     // stateset size
+      double load = Double.parseDouble(values[10]);     // stateset load
+      assertTrue( load > 0.0 && load < 1.0);
+      assertTrue( Long.parseLong(values[16]) == nRunSolverCalls);
+    }
+  }
+
+  @Test
+  public void testJSONSolverCallsPerRun () throws IOException {
+    File f = null;
+    String[] args = null;
+
+    if (!isJPFRun()){
+      f = File.createTempFile("jpf-metrics", ".json");
+      f.deleteOnExit();
+      args = getArgs(f, "json");
+
+      // pretend there was an earlier run with a lot of solver calls
+      nSolverCalls = 1000000;
+      nRunSolverCalls = 0;
+    }
+
+    if (verifyNoPropertyViolation(args)){
+      createStates();
+    }
+
+    if (!isJPFRun()){
+      StringBuilder sb = new StringBuilder();
+      for (String line : readLines(f)){
+        sb.append(line);
+      }
+      String json = sb.toString();
+
+      assertTrue( Long.parseLong(getJSONValue(json, "new")) > 0);
+      assertTrue( Long.parseLong(getJSONValue(json, "end")) == 6);
+      assertTrue( Integer.parseInt(getJSONValue(json, "stateset_size")) > 0);
+      double load = Double.parseDouble(getJSONValue(json, "stateset_load"));
+      assertTrue( load > 0.0 && load < 1.0);
+
+      // counts and rates only cover this run
+      long calls = Long.parseLong(getJSONValue(json, "solver_calls"));
+      assertTrue( calls > 0 && calls == nRunSolverCalls);
+
+      double rate = Double.parseDouble(getJSONValue(json, "solver_calls_per_sec"));
+      long time = Long.parseLong(getJSONValue(json, "time"));
+      assertTrue( rate >= 0.0 && rate * time / 1000 < 1000000);
+    }
+  }
+}
@@ -0,0 +1,94 @@
+//
+// Copyright (C) 2006 United States Government as represented by the
+// Administrator of the National Aeronautics and Space Administration
+// (NASA).  All Rights Reserved.
+//
+// This software is distributed under the NASA Open Source Agreement
+// (NOSA), version 1.3.  The NOSA has been approved by the Open Source
+// Initiative.  See the file NOSA-1.3-JPF at the top of the distribution
+// directory tree for the complete NOSA document.
+//
+// THE SUBJECT SOFTWARE IS PROVIDED "AS IS" WITHOUT ANY WARRANTY OF ANY
+// KIND, EITHER EXPRESSED, IMPLIED, OR STATUTORY, INCLUDING, BUT NOT
+// LIMITED TO, ANY WARRANTY THAT THE SUBJECT SOFTWARE WILL CONFORM TO
+// SPECIFICATIONS, ANY IMPLIED WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+// A PARTICULAR PURPOSE, OR FREEDOM FROM INFRINGEMENT, ANY WARRANTY THAT
+// THE SUBJECT SOFTWARE WILL BE ERROR FREE, OR ANY WARRANTY THAT
+// DOCUMENTATION, IF PROVIDED, WILL CONFORM TO THE SUBJECT SOFTWARE.
+//
+package gov.nasa.jpf.test.mc.basic;
+
+import gov.nasa.jpf.jvm.Verify;
+import gov.nasa.jpf.util.test.TestJPF;
+
+import org.junit.Test;
+
+/**
+ * regression test for the multi-threaded ParallelSearch and its multi-process
+ * DistributedSearch variant. Note that we can't use Verify counters here
+ * since the workers run in their own classloaders or processes
+ */
+public class ParallelSearchTest extends TestJPF {
+
+  static final String SEARCH_ARG = "+search.class=.search.parallel.ParallelSearch";
+  static final String WORKERS_ARG = "+search.parallel.workers=4";
+
+  @Test
+  public void testNoViolation() {
+    if (verifyNoPropertyViolation(SEARCH_ARG, WORKERS_ARG)){
+      int a = Verify.getInt(0, 3);
+      int b = Verify.getInt(0, 3);
+      int c = Verify.getInt(0, 3);
+
+      assert (a + b + c) <= 9;
+    }
+  }
+
+  @Test
+  public void testAssertion() {
+    if (verifyAssertionError(SEARCH_ARG, WORKERS_ARG)){
+      int a = Verify.getInt(0, 3);
+      int b = Verify.getInt(0, 3);
+      int c = Verify.getInt(0, 3);
+      System.out.println("a=" + a + ", b=" + b + ", c=" + c);
+
+      assert !(a == 2 && b == 3 && c == 1) : "found it";
+    }
+  }
+
+  @Test
+  public void testDistributedAssertion() {
+    if (verifyAssertionError("+search.class=.search.parallel.DistributedSearch",
+                             "+search.distributed.workers=2")){
+      int a = Verify.getInt(0, 3);
+      int b = Verify.getInt(0, 3);
+
+      assert !(a == 3 && b == 2) : "found it";
+    }
+  }
+
+  @Test
+  public void testDeadlock() {
+    if (verifyDeadlock(SEARCH_ARG, WORKERS_ARG)){
+      final Object lock1 = new Object();
+      final Object lock2 = new Object();
+
+      Thread t = new Thread(){
+        public void run(){
+          synchronized (lock2){
+            synchronized (lock1){
+              System.out.println("t got both locks");
+            }
+          }
+        }
+      };
+      t.start();
+
+      synchronized (lock1){
+        synchronized (lock2){
+          System.out.println("main got both locks");
+        }
+      }
+    }
+  }
+}
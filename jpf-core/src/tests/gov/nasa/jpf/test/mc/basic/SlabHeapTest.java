@@ -0,0 +1,134 @@
+//
+// Copyright (C) 2006 United States Government as represented by the
+// Administrator of the National Aeronautics and Space Administration
+// (NASA).  All Rights Reserved.
+//
+// This software is distributed under the NASA Open Source Agreement
+// (NOSA), version 1.3.  The NOSA has been approved by the Open Source
+// Initiative.  See the file NOSA-1.3-JPF at the top of the distribution
+// directory tree for the complete NOSA document.
+//
+// THE SUBJECT SOFTWARE IS PROVIDED "AS IS" WITHOUT ANY WARRANTY OF ANY
+// KIND, EITHER EXPRESSED, IMPLIED, OR STATUTORY, INCLUDING, BUT NOT
+// LIMITED TO, ANY WARRANTY THAT THE SUBJECT SOFTWARE WILL CONFORM TO
+// SPECIFICATIONS, ANY IMPLIED WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+// A PARTICULAR PURPOSE, OR FREEDOM FROM INFRINGEMENT, ANY WARRANTY THAT
+// THE SUBJECT SOFTWARE WILL BE ERROR FREE, OR ANY WARRANTY THAT
+// DOCUMENTATION, IF PROVIDED, WILL CONFORM TO THE SUBJECT SOFTWARE.
+//
+package gov.nasa.jpf.test.mc.basic;
+
+import gov.nasa.jpf.jvm.Verify;
+import gov.nasa.jpf.util.test.TestJPF;
+
+import org.junit.Test;
+
+/**
+ * regression test for state storage and backtracking with the SlabHeap
+ */
+public class SlabHeapTest extends TestJPF {
+
+  static final String HEAP_ARG = "+vm.heap.class=.jvm.SlabHeap";
+
+  static class MyClass implements Cloneable {
+    int data;
+    long l;
+    MyClass next;
+
+    public MyClass clone() {
+      try {
+        return (MyClass)super.clone();
+      } catch (CloneNotSupportedException x){
+        return null;
+      }
+    }
+  }
+
+  @Test
+  public void testFieldRestore() {
+    if (!isJPFRun()){
+      Verify.resetCounter(0);
+    }
+
+    if (verifyNoPropertyViolation(HEAP_ARG)){
+      MyClass o = new MyClass();
+      o.data = 42;
+      o.l = Long.MAX_VALUE;
+
+      int i = Verify.getInt(0, 3);
+      assert o.data == 42 : "field not restored: " + o.data;
+      assert o.l == Long.MAX_VALUE : "long field not restored: " + o.l;
+      assert o.next == null : "reference field not restored";
+      o.data += i;
+      o.next = new MyClass();
+      o.next.data = i;
+
+      boolean b = Verify.getBoolean();
+      assert o.data == 42 + i : "field not restored: " + o.data;
+      assert o.next.data == i;
+      o.data = b ? -1 : -2;
+      o.l = 0;
+
+      Verify.incrementCounter(0);
+    }
+
+    if (!isJPFRun()){
+      assertTrue( Verify.getCounter(0) == 8);
+    }
+  }
+
+  @Test
+  public void testClone() {
+    if (verifyNoPropertyViolation(HEAP_ARG)){
+      MyClass o = new MyClass();
+      o.data = 1;
+
+      MyClass c = o.clone();
+      boolean b = Verify.getBoolean();
+
+      assert c.data == 1;
+      c.data = b ? 2 : 3;
+      assert o.data == 1 : "clone shares fields with original";
+    }
+  }
+
+  static int shared;
+
+  static class Incrementer extends Thread {
+    public void run(){
+      synchronized (SlabHeapTest.class){
+        int v = shared;
+        shared = v + 1;
+      }
+    }
+  }
+
+  @Test
+  public void testLocking() {
+    if (verifyNoPropertyViolation(HEAP_ARG)){
+      Incrementer t1 = new Incrementer();
+      Incrementer t2 = new Incrementer();
+      t1.start();
+      t2.start();
+
+      try {
+        t1.join();
+        t2.join();
+      } catch (InterruptedException ix){}
+
+      assert shared == 2 : "lost update";
+    }
+  }
+
+  @Test
+  public void testUndoBacktracker() {
+    if (verifyNoPropertyViolation(HEAP_ARG, "+vm.backtracker.class=.jvm.UndoBacktracker", "+vm.storage.class=null")){
+      MyClass o = new MyClass();
+      int i = Verify.getInt(0, 2);
+      assert o.data == 0 : "field not restored: " + o.data;
+      o.data = i + 1;
+      Verify.breakTransition();
+      assert o.data == i + 1;
+    }
+  }
+}
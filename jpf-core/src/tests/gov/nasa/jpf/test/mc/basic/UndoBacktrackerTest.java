@@ -0,0 +1,125 @@
+//
+// Copyright (C) 2006 United States Government as represented by the
+// Administrator of the National Aeronautics and Space Administration
+// (NASA).  All Rights Reserved.
+//
+// This software is distributed under the NASA Open Source Agreement
+// (NOSA), version 1.3.  The NOSA has been approved by the Open Source
+// Initiative.  See the file NOSA-1.3-JPF at the top of the distribution
+// directory tree for the complete NOSA document.
+//
+// THE SUBJECT SOFTWARE IS PROVIDED "AS IS" WITHOUT ANY WARRANTY OF ANY
+// KIND, EITHER EXPRESSED, IMPLIED, OR STATUTORY, INCLUDING, BUT NOT
+// LIMITED TO, ANY WARRANTY THAT THE SUBJECT SOFTWARE WILL CONFORM TO
+// SPECIFICATIONS, ANY IMPLIED WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+// A PARTICULAR PURPOSE, OR FREEDOM FROM INFRINGEMENT, ANY WARRANTY THAT
+// THE SUBJECT SOFTWARE WILL BE ERROR FREE, OR ANY WARRANTY THAT
+// DOCUMENTATION, IF PROVIDED, WILL CONFORM TO THE SUBJECT SOFTWARE.
+//
+package gov.nasa.jpf.test.mc.basic;
+
+import gov.nasa.jpf.jvm.Verify;
+import gov.nasa.jpf.util.test.TestJPF;
+
+import org.junit.Test;
+
+/**
+ * regression test for backtracking with the UndoBacktracker
+ */
+public class UndoBacktrackerTest extends TestJPF {
+
+  static final String BACKTRACKER_ARG = "+vm.backtracker.class=.jvm.UndoBacktracker";
+
+  static class MyClass {
+    int data;
+    int[] values = new int[4];
+  }
+
+  static MyClass last; // would leak between paths if allocations are not undone
+  static int count;
+
+  @Test
+  public void testFieldRestore() {
+    if (!isJPFRun()){
+      Verify.resetCounter(0);
+    }
+
+    if (verifyNoPropertyViolation(BACKTRACKER_ARG, "+vm.storage.class=null")){
+      MyClass o = new MyClass();
+      o.data = 42;
+
+      int i = Verify.getInt(0, 3);
+      assert o.data == 42 : "field not restored: " + o.data;
+      assert o.values[i] == 0 : "array element not restored: " + o.values[i];
+      o.data += i;
+      o.values[i] = i + 1;
+
+      boolean b = Verify.getBoolean();
+      assert o.data == 42 + i : "field not restored: " + o.data;
+      o.data = b ? -1 : -2;
+
+      Verify.incrementCounter(0);
+    }
+
+    if (!isJPFRun()){
+      assertTrue( Verify.getCounter(0) == 8);
+    }
+  }
+
+  @Test
+  public void testAllocationAndStatics() {
+    if (!isJPFRun()){
+      Verify.resetCounter(0);
+    }
+
+    if (verifyNoPropertyViolation(BACKTRACKER_ARG, "+vm.storage.class=null")){
+      int i = Verify.getInt(0, 3);
+
+      assert last == null : "allocation not undone";
+      assert count == 0 : "static field not restored: " + count;
+
+      last = new MyClass();
+      last.data = i;
+      count++;
+
+      Verify.breakTransition();
+      assert last.data == i;
+
+      last = null; // make it garbage
+      count++;
+      Verify.breakTransition();
+
+      Verify.incrementCounter(0);
+    }
+
+    if (!isJPFRun()){
+      assertTrue( Verify.getCounter(0) == 4);
+    }
+  }
+
+  static int shared;
+
+  static class Incrementer extends Thread {
+    public void run(){
+      int v = shared;
+      shared = v + 1;
+    }
+  }
+
+  @Test
+  public void testRace() {
+    if (verifyAssertionErrorDetails("lost update", BACKTRACKER_ARG)){
+      Incrementer t1 = new Incrementer();
+      Incrementer t2 = new Incrementer();
+      t1.start();
+      t2.start();
+
+      try {
+        t1.join();
+        t2.join();
+      } catch (InterruptedException ix){}
+
+      assert shared == 2 : "lost update";
+    }
+  }
+}
@@ -278,4 +278,20 @@ public class CrossingTest extends TestJPF {
       run();
     }
   }
+
+  @Test public void testBFSSpillingQueue() {
+    if (verifyAssertionError("+search.class=gov.nasa.jpf.search.heuristic.BFSHeuristic",
+                             "+search.heuristic.queue.class=gov.nasa.jpf.search.heuristic.SpillingPriorityQueue",
+                             "+search.heuristic.queue.mem_limit=16")){
+      run();
+    }
+  }
+
+  @Test public void testBFSReplay() {
+    if (verifyAssertionError("+search.class=gov.nasa.jpf.search.heuristic.BFSHeuristic",
+                             "+search.heuristic.replay=true",
+                             "+search.heuristic.replay.checkpoints=8")){
+      run();
+    }
+  }
 }
@@ -0,0 +1,138 @@
+//
+// Copyright (C) 2010 United States Government as represented by the
+// Administrator of the National Aeronautics and Space Administration
+// (NASA).  All Rights Reserved.
+//
+// This software is distributed under the NASA Open Source Agreement
+// (NOSA), version 1.3.  The NOSA has been approved by the Open Source
+// Initiative.  See the file NOSA-1.3-JPF at the top of the distribution
+// directory tree for the complete NOSA document.
+//
+// THE SUBJECT SOFTWARE IS PROVIDED "AS IS" WITHOUT ANY WARRANTY OF ANY
+// KIND, EITHER EXPRESSED, IMPLIED, OR STATUTORY, INCLUDING, BUT NOT
+// LIMITED TO, ANY WARRANTY THAT THE SUBJECT SOFTWARE WILL CONFORM TO
+// SPECIFICATIONS, ANY IMPLIED WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+// A PARTICULAR PURPOSE, OR FREEDOM FROM INFRINGEMENT, ANY WARRANTY THAT
+// THE SUBJECT SOFTWARE WILL BE ERROR FREE, OR ANY WARRANTY THAT
+// DOCUMENTATION, IF PROVIDED, WILL CONFORM TO THE SUBJECT SOFTWARE.
+//
+package gov.nasa.jpf.test.mc.data;
+
+import gov.nasa.jpf.jvm.Verify;
+import gov.nasa.jpf.util.test.TestJPF;
+
+import org.junit.Test;
+
+/**
+ * regression test for state matching with the IncrementalSerializer
+ */
+public class IncrementalSerializerTest extends TestJPF {
+
+  static final String SERIALIZER_ARG = "+vm.serializer.class=.jvm.serialize.IncrementalSerializer";
+
+  static class MyClass {
+    int data;
+  }
+
+  @Test
+  public void testLocalMatching() {
+    if (!isJPFRun()){
+      Verify.resetCounter(0);
+    }
+
+    if (verifyNoPropertyViolation(SERIALIZER_ARG)){
+      int d = Verify.getInt(0, 5);
+      d = 0;
+      Verify.breakTransition(); // all paths end up in the same state
+      System.out.println("new state for d = " + d);
+      Verify.incrementCounter(0);
+    }
+
+    if (!isJPFRun()){
+      assertTrue( Verify.getCounter(0) == 1);
+    }
+  }
+
+  @Test
+  public void testObjectMatching() {
+    if (!isJPFRun()){
+      Verify.resetCounter(0);
+    }
+
+    if (verifyNoPropertyViolation(SERIALIZER_ARG)){
+      MyClass o = new MyClass();
+      o.data = Verify.getInt(0, 5) % 2;
+
+      Verify.breakTransition(); // only the (changed) object differs
+      System.out.println("new state for o.data = " + o.data);
+      Verify.incrementCounter(0);
+    }
+
+    if (!isJPFRun()){
+      assertTrue( Verify.getCounter(0) == 2);
+    }
+  }
+
+  //--- the same program has to produce the same number of states as with the CFSerializer
+
+  static final String CF_SERIALIZER_ARG = "+vm.serializer.class=.jvm.serialize.CFSerializer";
+
+  static class Pair {
+    MyClass a, b;
+  }
+
+  // allocates in different orders and leaves different garbage behind, which
+  // gives us different reference values but only two canonical heaps
+  static void runSymmetricAllocations() {
+    int d = Verify.getInt(0, 5);
+
+    Pair p = new Pair();
+    if (d < 3) {
+      p.a = new MyClass();
+      p.b = new MyClass();
+    } else {
+      p.b = new MyClass();
+      p.a = new MyClass();
+    }
+    if ((d % 3) == 1) {
+      new MyClass(); // garbage
+    }
+    p.a.data = d % 2;
+    p.b.data = 42;
+    d = 0;
+
+    Verify.breakTransition();
+    System.out.println("new state for p.a.data = " + p.a.data);
+    Verify.incrementCounter(0);
+  }
+
+  @Test
+  public void testCFSerializerMatching() {
+    if (!isJPFRun()){
+      Verify.resetCounter(0);
+    }
+
+    if (verifyNoPropertyViolation(CF_SERIALIZER_ARG)){
+      runSymmetricAllocations();
+    }
+
+    if (!isJPFRun()){
+      assertTrue( Verify.getCounter(0) == 2);
+    }
+  }
+
+  @Test
+  public void testSameMatchingAsCFSerializer() {
+    if (!isJPFRun()){
+      Verify.resetCounter(0);
+    }
+
+    if (verifyNoPropertyViolation(SERIALIZER_ARG)){
+      runSymmetricAllocations();
+    }
+
+    if (!isJPFRun()){
+      assertTrue( Verify.getCounter(0) == 2);
+    }
+  }
+}
@@ -0,0 +1,148 @@
+//
+// Copyright (C) 2006 United States Government as represented by the
+// Administrator of the National Aeronautics and Space Administration
+// (NASA).  All Rights Reserved.
+//
+// This software is distributed under the NASA Open Source Agreement
+// (NOSA), version 1.3.  The NOSA has been approved by the Open Source
+// Initiative.  See the file NOSA-1.3-JPF at the top of the distribution
+// directory tree for the complete NOSA document.
+//
+// THE SUBJECT SOFTWARE IS PROVIDED "AS IS" WITHOUT ANY WARRANTY OF ANY
+// KIND, EITHER EXPRESSED, IMPLIED, OR STATUTORY, INCLUDING, BUT NOT
+// LIMITED TO, ANY WARRANTY THAT THE SUBJECT SOFTWARE WILL CONFORM TO
+// SPECIFICATIONS, ANY IMPLIED WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+// A PARTICULAR PURPOSE, OR FREEDOM FROM INFRINGEMENT, ANY WARRANTY THAT
+// THE SUBJECT SOFTWARE WILL BE ERROR FREE, OR ANY WARRANTY THAT
+// DOCUMENTATION, IF PROVIDED, WILL CONFORM TO THE SUBJECT SOFTWARE.
+//
+package gov.nasa.jpf.test.mc.threads;
+
+import gov.nasa.jpf.jvm.Verify;
+import gov.nasa.jpf.util.test.TestJPF;
+
+import org.junit.Test;
+
+/**
+ * regression test for the DPORSearch, which still has to find all races and
+ * deadlocks, and reach all distinguishable outcomes
+ */
+public class DPORTest extends TestJPF {
+
+  static final String SEARCH_ARG = "+search.class=.search.dpor.DPORSearch";
+  static final String FACTORY_ARG = "+vm.scheduler_factory.class=.search.dpor.DPORSchedulerFactory";
+  static final String STORAGE_ARG = "+vm.storage.class=null";
+
+  static int shared;
+
+  static class Incrementer extends Thread {
+    public void run(){
+      int v = shared;
+      shared = v + 1;
+    }
+  }
+
+  @Test
+  public void testLostUpdate() {
+    if (verifyAssertionErrorDetails("lost update", SEARCH_ARG, FACTORY_ARG, STORAGE_ARG)){
+      Incrementer t1 = new Incrementer();
+      Incrementer t2 = new Incrementer();
+      t1.start();
+      t2.start();
+
+      try {
+        t1.join();
+        t2.join();
+      } catch (InterruptedException ix){}
+
+      assert shared == 2 : "lost update";
+    }
+  }
+
+  static int x;
+
+  static class Writer extends Thread {
+    int v;
+    Writer (int v){
+      this.v = v;
+    }
+    public void run(){
+      x = v;
+    }
+  }
+
+  @Test
+  public void testAllOutcomes() {
+    if (!isJPFRun()){
+      Verify.resetCounter(0);
+      Verify.resetCounter(1);
+    }
+
+    if (verifyNoPropertyViolation(SEARCH_ARG, FACTORY_ARG, STORAGE_ARG)){
+      Writer t1 = new Writer(1);
+      Writer t2 = new Writer(2);
+      t1.start();
+      t2.start();
+
+      try {
+        t1.join();
+        t2.join();
+      } catch (InterruptedException ix){}
+
+      Verify.incrementCounter(x - 1);
+    }
+
+    if (!isJPFRun()){
+      assertTrue( Verify.getCounter(0) > 0);
+      assertTrue( Verify.getCounter(1) > 0);
+    }
+  }
+
+  static final Object lockA = new Object();
+  static final Object lockB = new Object();
+
+  @Test
+  public void testLockOrderDeadlock() {
+    if (verifyDeadlock(SEARCH_ARG, FACTORY_ARG, STORAGE_ARG)){
+      Thread t1 = new Thread(){
+        public void run(){
+          synchronized (lockA){
+            synchronized (lockB){
+              shared++;
+            }
+          }
+        }
+      };
+      Thread t2 = new Thread(){
+        public void run(){
+          synchronized (lockB){
+            synchronized (lockA){
+              shared--;
+            }
+          }
+        }
+      };
+
+      t1.start();
+      t2.start();
+    }
+  }
+
+  @Test
+  public void testNoSleepSets() {
+    if (verifyAssertionErrorDetails("lost update", SEARCH_ARG, FACTORY_ARG, STORAGE_ARG,
+                                    "+search.dpor.sleep_sets=false")){
+      Incrementer t1 = new Incrementer();
+      Incrementer t2 = new Incrementer();
+      t1.start();
+      t2.start();
+
+      try {
+        t1.join();
+        t2.join();
+      } catch (InterruptedException ix){}
+
+      assert shared == 2 : "lost update";
+    }
+  }
+}
@@ -0,0 +1,83 @@
+//
+// Copyright (C) 2011 United States Government as represented by the
+// Administrator of the National Aeronautics and Space Administration
+// (NASA).  All Rights Reserved.
+//
+// This software is distributed under the NASA Open Source Agreement
+// (NOSA), version 1.3.  The NOSA has been approved by the Open Source
+// Initiative.  See the file NOSA-1.3-JPF at the top of the distribution
+// directory tree for the complete NOSA document.
+//
+// THE SUBJECT SOFTWARE IS PROVIDED "AS IS" WITHOUT ANY WARRANTY OF ANY
+// KIND, EITHER EXPRESSED, IMPLIED, OR STATUTORY, INCLUDING, BUT NOT
+// LIMITED TO, ANY WARRANTY THAT THE SUBJECT SOFTWARE WILL CONFORM TO
+// SPECIFICATIONS, ANY IMPLIED WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+// A PARTICULAR PURPOSE, OR FREEDOM FROM INFRINGEMENT, ANY WARRANTY THAT
+// THE SUBJECT SOFTWARE WILL BE ERROR FREE, OR ANY WARRANTY THAT
+// DOCUMENTATION, IF PROVIDED, WILL CONFORM TO THE SUBJECT SOFTWARE.
+//
+package gov.nasa.jpf.util;
+
+import gov.nasa.jpf.Config;
+import gov.nasa.jpf.util.test.TestJPF;
+
+import java.io.File;
+import java.io.PrintWriter;
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import org.junit.Test;
+
+/**
+ * unit test for the Profiler counters and dumps
+ */
+public class ProfilerTest extends TestJPF {
+
+  @Test
+  public void testRecord (){
+    Profiler.Phase p = Profiler.getPhase("test-record");
+    assertTrue(Profiler.getPhase("test-record") == p);
+
+    long t = System.nanoTime();
+    p.record(t - 1000);
+    p.record(t - 3000000);
+    p.record(System.nanoTime() + 1000); // clock skew, counts as 0
+
+    assertTrue(p.getCount() == 3);
+    assertTrue(p.getMaxTime() >= 3000000);
+    assertTrue(p.getTotalTime() >= 3001000);
+
+    long[] h = p.getHistogram();
+    long n = 0;
+    for (int i=0; i<h.length; i++){
+      n += h[i];
+    }
+    assertTrue(n == 3);
+    assertTrue(h[0] == 1);
+
+    Profiler.reset();
+    assertTrue(p.getCount() == 0);
+    assertTrue(p.getHistogram()[0] == 0);
+  }
+
+  @Test
+  public void testDump () throws Exception {
+    File f = File.createTempFile("jpf-profile", ".json");
+    f.deleteOnExit();
+
+    Config config = new Config( new StringReader("jpf.profile.dump=" + f.getPath() + '\n'));
+    Profiler.start(config);
+    Profiler.getPhase("test-dump").record(System.nanoTime() - 5000);
+    Profiler.stop();
+
+    String s = FileUtils.getContentsAsString(f);
+    assertTrue(s.startsWith("{"));
+    assertTrue(s.contains("\"test-dump\": { \"count\": 1,"));
+    assertTrue(s.contains("\"execute\": { \"count\": 0,"));
+
+    StringWriter sw = new StringWriter();
+    Profiler.printReport( new PrintWriter(sw, true));
+    assertTrue(sw.toString().contains("phase test-dump:"));
+    assertFalse(sw.toString().contains("phase execute:"));
+  }
+}
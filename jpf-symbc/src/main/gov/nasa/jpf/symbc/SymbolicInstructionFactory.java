@@ -23,12 +23,18 @@ import gov.nasa.jpf.Config;
 import gov.nasa.jpf.jvm.ClassInfo;
 import gov.nasa.jpf.jvm.bytecode.Instruction;
 import gov.nasa.jpf.symbc.bytecode.*;
+import gov.nasa.jpf.symbc.numeric.BranchFastPath;
+import gov.nasa.jpf.symbc.numeric.ConstraintCache;
+import gov.nasa.jpf.symbc.numeric.ExpressionPool;
 import gov.nasa.jpf.symbc.numeric.MinMax;
+import gov.nasa.jpf.symbc.numeric.SolverSession;
 import gov.nasa.jpf.symbc.numeric.SymbolicInteger;
 import gov.nasa.jpf.symbc.numeric.SymbolicReal;
 import gov.nasa.jpf.symbc.numeric.solvers.ProblemChoco;
 import gov.nasa.jpf.util.InstructionFactoryFilter;
 
+import java.io.File;
+
 
 public class SymbolicInstructionFactory extends gov.nasa.jpf.jvm.bytecode.InstructionFactory {
 
@@ -479,6 +485,18 @@ public class SymbolicInstructionFactory extends gov.nasa.jpf.jvm.bytecode.Instru
 	static public boolean heuristicPartitionMode;
 	static public int MaxTries = 1;
 
+	/*
+	 * only send the part of the PC to the decision procedure that
+	 * (transitively) shares variables with the new constraint
+	 */
+	static public boolean slicing;
+
+	/*
+	 * try to answer the satisfiability checks of branches by reusing the
+	 * last model, or by inferring them from the other outcome of the branch
+	 */
+	static public boolean fastPath;
+
 	ClassInfo ci;
 	InstructionFactoryFilter filter;
 
@@ -586,6 +604,35 @@ public class SymbolicInstructionFactory extends gov.nasa.jpf.jvm.bytecode.Instru
 			(SymbolicInteger.UNDEFINED >= MinMax.MINDOUBLE && SymbolicInteger.UNDEFINED <= MinMax.MAXDOUBLE))
 			System.err.println("Warning: undefined value should be outside  min..max ranges");
 
+		// one solver session per search, i.e. per factory
+		if (conf.getBoolean("symbolic.incremental", false)) {
+			SolverSession.setSession(new SolverSession());
+			System.out.println("symbolic.incremental=true");
+		} else {
+			SolverSession.setSession(null);
+		}
+
+		slicing = conf.getBoolean("symbolic.slicing", false);
+		if (slicing)
+			System.out.println("symbolic.slicing=true");
+
+		fastPath = conf.getBoolean("symbolic.fastpath", false);
+		if (fastPath)
+			System.out.println("symbolic.fastpath=true");
+		BranchFastPath.reset();
+		ExpressionPool.clear();
+
+		if (conf.getBoolean("symbolic.cache", false)) {
+			int cacheSize = conf.getInt("symbolic.cache.size", 100000);
+			String cacheFile = conf.getString("symbolic.cache.file");
+			ConstraintCache.setCache(new ConstraintCache(cacheSize, (cacheFile != null) ? new File(cacheFile) : null));
+			System.out.println("symbolic.cache=true");
+			System.out.println("symbolic.cache.size="+cacheSize);
+			if (cacheFile != null)
+				System.out.println("symbolic.cache.file="+cacheFile);
+		} else {
+			ConstraintCache.setCache(null);
+		}
 	}
 
 
@@ -55,6 +55,7 @@ import gov.nasa.jpf.symbc.bytecode.INVOKESTATIC;
 import gov.nasa.jpf.symbc.concolic.PCAnalyzer;
 
 
+import gov.nasa.jpf.symbc.numeric.BranchFastPath;
 import gov.nasa.jpf.symbc.numeric.Comparator;
 import gov.nasa.jpf.symbc.numeric.Expression;
 import gov.nasa.jpf.symbc.numeric.IntegerConstant;
@@ -672,6 +673,11 @@ public class SymbolicListener extends PropertyListenerAdapter implements Publish
 	    	MethodSummary methodSummary = (MethodSummary)me.getValue();
 	    	printMethodSummaryHTML(pw, methodSummary);
 	    }
+
+	    if (SymbolicInstructionFactory.fastPath) {
+	    	publisher.publishTopicStart("Branch Fast Path");
+	    	BranchFastPath.printStatistics(pw);
+	    }
 	  }
 
 	  protected class MethodSummary{
@@ -90,7 +90,7 @@ public class IFEQ extends gov.nasa.jpf.jvm.bytecode.IFEQ {
 
 			if (conditionValue) {
 				pc._addDet(Comparator.EQ, sym_v, 0);
-				if(!pc.simplify())  {// not satisfiable
+				if(!pc.simplify((PCChoiceGenerator) cg))  {// not satisfiable
 					ss.setIgnored(true);
 				}else{
 					//pc.solve();
@@ -111,7 +111,7 @@ public class IFEQ extends gov.nasa.jpf.jvm.bytecode.IFEQ {
 				}
 				else
 					pc._addDet(Comparator.NE, sym_v, 0);
-				if(!pc.simplify())  {// not satisfiable
+				if(!pc.simplify((PCChoiceGenerator) cg))  {// not satisfiable
 					ss.setIgnored(true);
 				}else{
 					//pc.solve();
@@ -82,7 +82,7 @@ public class IFGE extends gov.nasa.jpf.jvm.bytecode.IFGE {
 
 			if (conditionValue) {
 				pc._addDet(Comparator.GE, sym_v, 0);
-				if(!pc.simplify())  {// not satisfiable
+				if(!pc.simplify((PCChoiceGenerator) cg))  {// not satisfiable
 					ss.setIgnored(true);
 				}else{
 					//pc.solve();
@@ -92,7 +92,7 @@ public class IFGE extends gov.nasa.jpf.jvm.bytecode.IFGE {
 				return getTarget();
 			} else {
 				pc._addDet(Comparator.LT, sym_v, 0);
-				if(!pc.simplify())  {// not satisfiable
+				if(!pc.simplify((PCChoiceGenerator) cg))  {// not satisfiable
 					ss.setIgnored(true);
 				}else {
 					//pc.solve();
@@ -83,7 +83,7 @@ public class IFGT extends gov.nasa.jpf.jvm.bytecode.IFGT {
 
 			if (conditionValue) {
 				pc._addDet(Comparator.GT, sym_v, 0);
-				if(!pc.simplify())  {// not satisfiable
+				if(!pc.simplify((PCChoiceGenerator) cg))  {// not satisfiable
 					ss.setIgnored(true);
 				}else{
 				//pc.solve();
@@ -93,7 +93,7 @@ public class IFGT extends gov.nasa.jpf.jvm.bytecode.IFGT {
 				return getTarget();
 			} else {
 				pc._addDet(Comparator.LE, sym_v, 0);
-				if(!pc.simplify())  {// not satisfiable
+				if(!pc.simplify((PCChoiceGenerator) cg))  {// not satisfiable
 					ss.setIgnored(true);
 				}else {
 					//pc.solve();
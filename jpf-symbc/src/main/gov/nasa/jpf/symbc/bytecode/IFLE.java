@@ -87,7 +87,7 @@ public class IFLE extends gov.nasa.jpf.jvm.bytecode.IFLE {
 
 			if (conditionValue) {
 				pc._addDet(Comparator.LE, sym_v, 0);
-				if(!pc.simplify())  {// not satisfiable
+				if(!pc.simplify((PCChoiceGenerator) cg))  {// not satisfiable
 					ss.setIgnored(true);
 				}
 				else {
@@ -98,7 +98,7 @@ public class IFLE extends gov.nasa.jpf.jvm.bytecode.IFLE {
 				return getTarget();
 			} else {
 				pc._addDet(Comparator.GT, sym_v, 0);
-				if(!pc.simplify())  {// not satisfiable
+				if(!pc.simplify((PCChoiceGenerator) cg))  {// not satisfiable
 					ss.setIgnored(true);
 				}
 				else {
@@ -82,7 +82,7 @@ public class IFLT extends gov.nasa.jpf.jvm.bytecode.IFLT {
 
 			if (conditionValue) {
 				pc._addDet(Comparator.LT, sym_v, 0);
-				if(!pc.simplify())  {// not satisfiable
+				if(!pc.simplify((PCChoiceGenerator) cg))  {// not satisfiable
 					ss.setIgnored(true);
 				}
 				else {
@@ -93,7 +93,7 @@ public class IFLT extends gov.nasa.jpf.jvm.bytecode.IFLT {
 				return getTarget();
 			} else {
 				pc._addDet(Comparator.GE, sym_v, 0);
-				if(!pc.simplify())  {// not satisfiable
+				if(!pc.simplify((PCChoiceGenerator) cg))  {// not satisfiable
 					ss.setIgnored(true);
 				}
 				else {
@@ -98,7 +98,7 @@ public class IFNE extends gov.nasa.jpf.jvm.bytecode.IFNE {
 				}
 				else
 					pc._addDet(Comparator.NE, sym_v, 0);
-				if(!pc.simplify())  {// not satisfiable
+				if(!pc.simplify((PCChoiceGenerator) cg))  {// not satisfiable
 					ss.setIgnored(true);
 				}else{
 					((PCChoiceGenerator) cg).setCurrentPC(pc);
@@ -107,7 +107,7 @@ public class IFNE extends gov.nasa.jpf.jvm.bytecode.IFNE {
 				return getTarget();
 			} else {
 				pc._addDet(Comparator.EQ, sym_v, 0);
-				if(!pc.simplify())  {// not satisfiable
+				if(!pc.simplify((PCChoiceGenerator) cg))  {// not satisfiable
 					ss.setIgnored(true);
 				}else{
 					((PCChoiceGenerator) cg).setCurrentPC(pc);
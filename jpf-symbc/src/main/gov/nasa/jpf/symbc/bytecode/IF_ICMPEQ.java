@@ -88,7 +88,7 @@ public class IF_ICMPEQ extends gov.nasa.jpf.jvm.bytecode.IF_ICMPEQ{
 						pc._addDet(Comparator.EQ,sym_v1,v2);
 				}else
 					pc._addDet(Comparator.EQ, v1, sym_v2);
-				if(!pc.simplify())  {// not satisfiable
+				if(!pc.simplify((PCChoiceGenerator) cg))  {// not satisfiable
 					ss.setIgnored(true);
 				}else{
 					//pc.solve();
@@ -104,7 +104,7 @@ public class IF_ICMPEQ extends gov.nasa.jpf.jvm.bytecode.IF_ICMPEQ{
 						pc._addDet(Comparator.NE,sym_v1,v2);
 				}else
 					pc._addDet(Comparator.NE, v1, sym_v2);
-				if(!pc.simplify())  {// not satisfiable
+				if(!pc.simplify((PCChoiceGenerator) cg))  {// not satisfiable
 					ss.setIgnored(true);
 				}else {
 					//pc.solve();
@@ -87,7 +87,7 @@ public class IF_ICMPGE extends gov.nasa.jpf.jvm.bytecode.IF_ICMPGE{
 						pc._addDet(Comparator.GE,sym_v1,v2);
 				}else
 					pc._addDet(Comparator.GE, v1, sym_v2);
-				if(!pc.simplify())  {// not satisfiable
+				if(!pc.simplify((PCChoiceGenerator) cg))  {// not satisfiable
 					ss.setIgnored(true);
 				}else{
 					//pc.solve();
@@ -103,7 +103,7 @@ public class IF_ICMPGE extends gov.nasa.jpf.jvm.bytecode.IF_ICMPGE{
 						pc._addDet(Comparator.LT,sym_v1,v2);
 				}else
 					pc._addDet(Comparator.LT, v1, sym_v2);
-				if(!pc.simplify())  {// not satisfiable
+				if(!pc.simplify((PCChoiceGenerator) cg))  {// not satisfiable
 					ss.setIgnored(true);
 				}else {
 					//pc.solve();
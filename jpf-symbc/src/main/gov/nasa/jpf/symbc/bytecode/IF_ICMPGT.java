@@ -88,7 +88,7 @@ public class IF_ICMPGT extends gov.nasa.jpf.jvm.bytecode.IF_ICMPGT{
 						pc._addDet(Comparator.GT,sym_v1,v2);
 				}else
 					pc._addDet(Comparator.GT, v1, sym_v2);
-				if(!pc.simplify())  {// not satisfiable
+				if(!pc.simplify((PCChoiceGenerator) cg))  {// not satisfiable
 					ss.setIgnored(true);
 				}else{
 					//pc.solve();
@@ -104,7 +104,7 @@ public class IF_ICMPGT extends gov.nasa.jpf.jvm.bytecode.IF_ICMPGT{
 						pc._addDet(Comparator.LE,sym_v1,v2);
 				}else
 					pc._addDet(Comparator.LE, v1, sym_v2);
-				if(!pc.simplify())  {// not satisfiable
+				if(!pc.simplify((PCChoiceGenerator) cg))  {// not satisfiable
 					ss.setIgnored(true);
 				}else {
 					//pc.solve();
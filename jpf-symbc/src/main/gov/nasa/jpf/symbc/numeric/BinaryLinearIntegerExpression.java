@@ -26,6 +26,7 @@ public class BinaryLinearIntegerExpression extends LinearIntegerExpression
 	IntegerExpression left;
 	Operator   op;
 	IntegerExpression right;
+	int hash; // cached, 0 if not computed yet
 
 	public BinaryLinearIntegerExpression (IntegerExpression l, Operator o, IntegerExpression r)
 	{
@@ -81,12 +82,23 @@ public class BinaryLinearIntegerExpression extends LinearIntegerExpression
 	}
 
 	public boolean equals(Object o) {
+	    if (o == this) // the common case for interned expressions
+	        return true;
 	    return ((o instanceof BinaryLinearIntegerExpression) &&
 	            ((BinaryLinearIntegerExpression) o).left.equals(this.left) &&
 	            ((BinaryLinearIntegerExpression) o).op.equals(this.op) &&
 	            ((BinaryLinearIntegerExpression) o).right.equals(this.right));
 	}
 
+	public int hashCode() {
+	    int h = hash;
+	    if (h == 0) {
+	        h = (left.hashCode() * 31 + op.ordinal()) * 31 + right.hashCode();
+	        hash = h;
+	    }
+	    return h;
+	}
+
 	//protected void finalize() throws Throwable {
     //	System.out.println("Finalized BLIExp -> " + this);
     //}
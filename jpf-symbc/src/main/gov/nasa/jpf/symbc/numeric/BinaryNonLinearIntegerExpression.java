@@ -32,6 +32,8 @@ public class BinaryNonLinearIntegerExpression extends NonLinearIntegerExpression
 
 	public IntegerExpression right;
 
+	int hash; // cached, 0 if not computed yet
+
 	BinaryNonLinearIntegerExpression(IntegerExpression l, Operator o, IntegerExpression r) {
 		left = l;
 		op = o;
@@ -68,4 +70,22 @@ public class BinaryNonLinearIntegerExpression extends NonLinearIntegerExpression
 	public String toString() {
 		return "(" + left.toString() + op.toString() + right.toString() + ")";
 	}
+
+	public boolean equals(Object o) {
+		if (o == this) // the common case for interned expressions
+			return true;
+		return ((o instanceof BinaryNonLinearIntegerExpression) &&
+				((BinaryNonLinearIntegerExpression) o).left.equals(this.left) &&
+				((BinaryNonLinearIntegerExpression) o).op.equals(this.op) &&
+				((BinaryNonLinearIntegerExpression) o).right.equals(this.right));
+	}
+
+	public int hashCode() {
+		int h = hash;
+		if (h == 0) {
+			h = (left.hashCode() * 31 + op.ordinal()) * 31 + right.hashCode();
+			hash = h;
+		}
+		return h;
+	}
 }
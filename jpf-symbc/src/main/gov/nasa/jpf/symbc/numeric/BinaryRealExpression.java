@@ -26,6 +26,7 @@ public class BinaryRealExpression extends RealExpression
 	RealExpression left;
 	Operator   op;
 	RealExpression right;
+	int hash; // cached, 0 if not computed yet
 
 	public BinaryRealExpression (RealExpression l, Operator o, RealExpression r) 
 	{
@@ -73,4 +74,22 @@ public class BinaryRealExpression extends RealExpression
 	public RealExpression getRight() {
 		return right;
 	}
+
+	public boolean equals(Object o) {
+		if (o == this) // the common case for interned expressions
+			return true;
+		return ((o instanceof BinaryRealExpression) &&
+				((BinaryRealExpression) o).left.equals(this.left) &&
+				((BinaryRealExpression) o).op.equals(this.op) &&
+				((BinaryRealExpression) o).right.equals(this.right));
+	}
+
+	public int hashCode() {
+		int h = hash;
+		if (h == 0) {
+			h = (left.hashCode() * 31 + op.ordinal()) * 31 + right.hashCode();
+			hash = h;
+		}
+		return h;
+	}
 }
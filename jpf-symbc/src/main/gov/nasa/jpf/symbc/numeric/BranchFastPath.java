@@ -0,0 +1,282 @@
+//
+//Copyright (C) 2011 United States Government as represented by the
+//Administrator of the National Aeronautics and Space Administration
+//(NASA).  All Rights Reserved.
+//
+//This software is distributed under the NASA Open Source Agreement
+//(NOSA), version 1.3.  The NOSA has been approved by the Open Source
+//Initiative.  See the file NOSA-1.3-JPF at the top of the distribution
+//directory tree for the complete NOSA document.
+//
+//THE SUBJECT SOFTWARE IS PROVIDED "AS IS" WITHOUT ANY WARRANTY OF ANY
+//KIND, EITHER EXPRESSED, IMPLIED, OR STATUTORY, INCLUDING, BUT NOT
+//LIMITED TO, ANY WARRANTY THAT THE SUBJECT SOFTWARE WILL CONFORM TO
+//SPECIFICATIONS, ANY IMPLIED WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+//A PARTICULAR PURPOSE, OR FREEDOM FROM INFRINGEMENT, ANY WARRANTY THAT
+//THE SUBJECT SOFTWARE WILL BE ERROR FREE, OR ANY WARRANTY THAT
+//DOCUMENTATION, IF PROVIDED, WILL CONFORM TO THE SUBJECT SOFTWARE.
+//
+
+package gov.nasa.jpf.symbc.numeric;
+
+import java.io.PrintWriter;
+
+/**
+ * fast path for the satisfiability checks of symbolic branches, which tries
+ * to answer them without calling the decision procedure:
+ *
+ *  - model reuse: if the current solutions of the symbolic variables
+ *    (SymbolicInteger.solution, SymbolicReal.solution) satisfy the whole PC,
+ *    the PC is satisfiable. Since we solve (not only check) the queries we
+ *    can't answer, the current solutions usually are the model of the parent
+ *    PC, which satisfies one of the two outcomes of the next branch
+ *
+ *  - branch-pair inference: the outcomes of a branch partition the parent PC.
+ *    If the parent is known to be satisfiable and all other outcomes of the
+ *    branch were proven to be unsatisfiable, the remaining one has to be
+ *    satisfiable
+ *
+ * Evaluation is conservative, i.e. undefined solutions, solutions outside of
+ * the variable bounds, integer results that don't fit into an int and
+ * expressions or operators we don't know just mean we have to ask the solver.
+ *
+ * Config options:
+ *   symbolic.fastpath = true|false (default false)
+ */
+public class BranchFastPath {
+
+	static final long UNDEFINED_INT = Long.MIN_VALUE;
+
+	// statistics
+	static long queries;
+	static long modelHits;
+	static long inferred;
+	static long solved;     // queries that had to go to the solver
+	static long solverTime; // ns spent in these
+
+	public static void reset() {
+		queries = 0;
+		modelHits = 0;
+		inferred = 0;
+		solved = 0;
+		solverTime = 0;
+	}
+
+	/**
+	 * check the numeric constraints of 'pc', which is a parent PC plus the
+	 * constraint of the current outcome of 'branchCG' (null if the PC is not
+	 * created by a branch)
+	 */
+	public static boolean isSatisfiable(SymbolicConstraintsGeneral solver, PathCondition pc, PCChoiceGenerator branchCG) {
+		queries++;
+
+		if (pc.isKnownSatisfiable()) { // nothing new
+			return true;
+		}
+
+		if (isSatisfiedBySolutions(pc)) {
+			modelHits++;
+			pc.setKnownSatisfiable();
+			return true;
+		}
+
+		if (branchCG != null && pc.isParentKnownSatisfiable() && branchCG.isOnlyRemainingChoice()) {
+			inferred++;
+			pc.setKnownSatisfiable();
+			return true;
+		}
+
+		long t = System.nanoTime();
+		boolean isSat = solver.solve(pc);
+		solverTime += System.nanoTime() - t;
+		solved++;
+
+		if (isSat) {
+			pc.setKnownSatisfiable();
+		} else if (!solver.isUnknown && branchCG != null) {
+			branchCG.setCurrentUnsat();
+		}
+
+		return isSat;
+	}
+
+	/**
+	 * do the current solutions of all variables satisfy the numeric constraints
+	 * of 'pc'?
+	 */
+	public static boolean isSatisfiedBySolutions(PathCondition pc) {
+		for (Constraint c = pc.header; c != null; c = c.and) {
+			if (!isSatisfied(c)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	static boolean isSatisfied(Constraint c) {
+		if (c instanceof LogicalORLinearIntegerConstraints) {
+			for (LinearIntegerConstraint lic : ((LogicalORLinearIntegerConstraints) c).getList()) {
+				if (isSatisfied(lic)) {
+					return true;
+				}
+			}
+			return false;
+
+		} else if (c instanceof LinearIntegerConstraint || c instanceof NonLinearIntegerConstraint) {
+			long l = evalInt(c.getLeft());
+			long r = evalInt(c.getRight());
+			if (l == UNDEFINED_INT || r == UNDEFINED_INT) {
+				return false;
+			}
+			int cmp = (l < r) ? -1 : ((l == r) ? 0 : 1);
+			return compare(c.getComparator(), cmp);
+
+		} else if (c instanceof RealConstraint) {
+			double l = evalReal(c.getLeft());
+			double r = evalReal(c.getRight());
+			if (Double.isNaN(l) || Double.isNaN(r)) {
+				return false;
+			}
+			int cmp = (l < r) ? -1 : ((l == r) ? 0 : 1);
+			return compare(c.getComparator(), cmp);
+
+		} else { // mixed constraints depend on how the solver encodes the cast
+			return false;
+		}
+	}
+
+	static boolean compare(Comparator comp, int cmp) {
+		switch (comp) {
+		case EQ: return cmp == 0;
+		case NE: return cmp != 0;
+		case LT: return cmp < 0;
+		case LE: return cmp <= 0;
+		case GT: return cmp > 0;
+		case GE: return cmp >= 0;
+		default: return false;
+		}
+	}
+
+	/**
+	 * evaluate with mathematical integers, and give up if we leave the int
+	 * range, so that the result is the same for solvers that use bounded
+	 * (bit vector) semantics
+	 */
+	static long evalInt(Expression e) {
+		long v;
+
+		if (e instanceof IntegerConstant) {
+			return ((IntegerConstant) e).value;
+
+		} else if (e instanceof SymbolicInteger) {
+			SymbolicInteger si = (SymbolicInteger) e;
+			if (si.solution == SymbolicInteger.UNDEFINED || si.solution < si._min || si.solution > si._max) {
+				return UNDEFINED_INT;
+			}
+			return si.solution;
+
+		} else if (e instanceof BinaryLinearIntegerExpression) {
+			BinaryLinearIntegerExpression be = (BinaryLinearIntegerExpression) e;
+			v = evalInt(be.left, be.op, be.right);
+
+		} else if (e instanceof BinaryNonLinearIntegerExpression) {
+			BinaryNonLinearIntegerExpression be = (BinaryNonLinearIntegerExpression) e;
+			v = evalInt(be.left, be.op, be.right);
+
+		} else {
+			return UNDEFINED_INT;
+		}
+
+		if (v < Integer.MIN_VALUE || v > Integer.MAX_VALUE) {
+			return UNDEFINED_INT;
+		}
+		return v;
+	}
+
+	static long evalInt(IntegerExpression left, Operator op, IntegerExpression right) {
+		long l = evalInt(left);
+		if (l == UNDEFINED_INT) {
+			return UNDEFINED_INT;
+		}
+		long r = evalInt(right);
+		if (r == UNDEFINED_INT) {
+			return UNDEFINED_INT;
+		}
+
+		switch (op) {
+		case PLUS: return l + r;
+		case MINUS: return l - r;
+		case MUL: return l * r;
+		default: return UNDEFINED_INT; // division and bit operations are solver specific
+		}
+	}
+
+	static double evalReal(Expression e) {
+		double v;
+
+		if (e instanceof RealConstant) {
+			return ((RealConstant) e).value;
+
+		} else if (e instanceof SymbolicReal) {
+			SymbolicReal sr = (SymbolicReal) e;
+			if (sr.solution == SymbolicReal.UNDEFINED || sr.solution < sr._min || sr.solution > sr._max) {
+				return Double.NaN;
+			}
+			return sr.solution;
+
+		} else if (e instanceof BinaryRealExpression) {
+			BinaryRealExpression be = (BinaryRealExpression) e;
+			double l = evalReal(be.left);
+			double r = evalReal(be.right);
+			switch (be.op) {
+			case PLUS: v = l + r; break;
+			case MINUS: v = l - r; break;
+			case MUL: v = l * r; break;
+			case DIV: v = l / r; break;
+			default: return Double.NaN;
+			}
+
+		} else if (e instanceof IntegerExpression) {
+			long l = evalInt(e);
+			return (l == UNDEFINED_INT) ? Double.NaN : l;
+
+		} else {
+			return Double.NaN;
+		}
+
+		return Double.isInfinite(v) ? Double.NaN : v;
+	}
+
+	public static long getNumberOfQueries() {
+		return queries;
+	}
+
+	public static long getNumberOfModelHits() {
+		return modelHits;
+	}
+
+	public static long getNumberOfInferredBranches() {
+		return inferred;
+	}
+
+	public static long getNumberOfSolvedQueries() {
+		return solved;
+	}
+
+	/**
+	 * estimate of the time we saved, based on the average time of the queries
+	 * that went to the solver
+	 */
+	public static long getSavedTime() {
+		return (solved == 0) ? 0 : (modelHits + inferred) * (solverTime / solved);
+	}
+
+	public static void printStatistics(PrintWriter pw) {
+		pw.println("branch queries:          " + queries);
+		pw.println("answered by model reuse: " + modelHits);
+		pw.println("inferred from sibling:   " + inferred);
+		pw.println("solved:                  " + solved + " (" + (solverTime / 1000000) + " ms)");
+		pw.println("total solver calls:      " + SymbolicConstraintsGeneral.getNumberOfSolverCalls());
+		pw.println("estimated time saved:    " + (getSavedTime() / 1000000) + " ms");
+	}
+}
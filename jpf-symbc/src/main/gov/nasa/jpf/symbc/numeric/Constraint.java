@@ -30,6 +30,12 @@ public abstract class Constraint {
 
   public Constraint and;
 
+  private int hash; // cached, 0 if not computed yet
+
+  // incremented whenever a constraint is changed, so that PathConditions
+  // know their set of conjuncts has to be rebuilt
+  static int modCount;
+
   public Constraint(Expression l, Comparator c, Expression r) {
     left = l;
     comp = c;
@@ -55,6 +61,8 @@ public abstract class Constraint {
 
   public void setComparator(Comparator c) {
 	    comp = c;
+	    hash = 0;
+	    modCount++;
 	  }
   /**
    * Returns the negation of this constraint, but without the tail.
@@ -86,6 +94,9 @@ public abstract class Constraint {
   }
 
   public boolean equals(Object o) {
+    if (o == this) {
+      return true;
+    }
     if (!(o instanceof Constraint)) {
       return false;
     }
@@ -96,6 +107,9 @@ public abstract class Constraint {
   }
 
   public int hashCode() {
+	  if (hash != 0) {
+		  return hash;
+	  }
 	  int result = Integer.MAX_VALUE;
 	  if (left != null) {
 		  result = result ^ left.hashCode();
@@ -106,6 +120,7 @@ public abstract class Constraint {
 	  if (right != null) {
 		  result = result ^ right.hashCode();
 	  }
+	  hash = result;
 	  return result;
 	  //return left.hashCode() ^ comp.hashCode() ^ right.hashCode();
   }
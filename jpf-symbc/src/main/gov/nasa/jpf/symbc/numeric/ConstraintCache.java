@@ -0,0 +1,623 @@
+//
+//Copyright (C) 2011 United States Government as represented by the
+//Administrator of the National Aeronautics and Space Administration
+//(NASA).  All Rights Reserved.
+//
+//This software is distributed under the NASA Open Source Agreement
+//(NOSA), version 1.3.  The NOSA has been approved by the Open Source
+//Initiative.  See the file NOSA-1.3-JPF at the top of the distribution
+//directory tree for the complete NOSA document.
+//
+//THE SUBJECT SOFTWARE IS PROVIDED "AS IS" WITHOUT ANY WARRANTY OF ANY
+//KIND, EITHER EXPRESSED, IMPLIED, OR STATUTORY, INCLUDING, BUT NOT
+//LIMITED TO, ANY WARRANTY THAT THE SUBJECT SOFTWARE WILL CONFORM TO
+//SPECIFICATIONS, ANY IMPLIED WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+//A PARTICULAR PURPOSE, OR FREEDOM FROM INFRINGEMENT, ANY WARRANTY THAT
+//THE SUBJECT SOFTWARE WILL BE ERROR FREE, OR ANY WARRANTY THAT
+//DOCUMENTATION, IF PROVIDED, WILL CONFORM TO THE SUBJECT SOFTWARE.
+//
+
+package gov.nasa.jpf.symbc.numeric;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * cache for satisfiability queries and solutions of numeric path conditions,
+ * which sits in front of SymbolicConstraintsGeneral.isSatisfiable()/solve().
+ *
+ * Path conditions are normalized before lookup, so that queries which only
+ * differ in variable names, order of conjuncts, orientation of comparisons
+ * and operands of commutative operators are mapped to the same key:
+ *  - constant sub-expressions are folded
+ *  - '>' and '>=' are turned into '<' and '<=' by swapping operands
+ *  - operands of commutative operators and (in)equalities are ordered
+ *  - conjuncts are sorted by their shape (expression with anonymous variables)
+ *  - variables are renamed in order of their first occurrence
+ * Since operands or conjuncts can have the same shape, this is done twice,
+ * the second time using the variable order of the first pass to break ties.
+ * This is not a complete canonicalization, i.e. some equivalent queries still
+ * end up with different keys, but that only costs us a cache miss.
+ * The key includes the variable bounds and the decision procedure, since both
+ * affect the result. Path conditions with expressions we don't know (e.g.
+ * string or concolic function expressions) are not cached.
+ *
+ * Entries are kept in a bounded LRU map. If a cache file is configured, new
+ * entries are appended to it and loaded again by subsequent runs.
+ *
+ * Config options:
+ *   symbolic.cache      = true|false (default false)
+ *   symbolic.cache.size = <max number of entries> (default 100000)
+ *   symbolic.cache.file = <file to persist entries in>
+ */
+public class ConstraintCache {
+
+	static final char INT_VAR = '\u0001';
+	static final char REAL_VAR = '\u0002';
+
+	static ConstraintCache cache; // null if we don't cache
+
+	public static ConstraintCache getCache() {
+		return cache;
+	}
+
+	public static void setCache(ConstraintCache c) {
+		cache = c;
+	}
+
+	/**
+	 * a normalized path condition, with its variables in key order
+	 */
+	public static class Query {
+		String key;
+		ArrayList<SymbolicInteger> intVars = new ArrayList<SymbolicInteger>();
+		ArrayList<SymbolicReal> realVars = new ArrayList<SymbolicReal>();
+
+		public String getKey() {
+			return key;
+		}
+	}
+
+	public static class Result {
+		boolean isSat;
+		int[] intSolutions;     // null if we only know satisfiability
+		double[] realSolutions;
+
+		public boolean isSatisfiable() {
+			return isSat;
+		}
+
+		public boolean hasModel() {
+			return intSolutions != null;
+		}
+	}
+
+	/**
+	 * rendered expression. Variables are represented by marker chars in
+	 * 'shape', the corresponding variable objects are stored in 'vars'.
+	 * 'ids' holds the variable numbers of a previous pass (if any), and is
+	 * only used to order terms of the same shape
+	 */
+	static class Term implements Comparable<Term> {
+		String shape;
+		String ids;
+		ArrayList<Expression> vars;
+
+		Term(String shape, String ids, ArrayList<Expression> vars) {
+			this.shape = shape;
+			this.ids = ids;
+			this.vars = vars;
+		}
+
+		Term(String shape) {
+			this(shape, "", new ArrayList<Expression>(0));
+		}
+
+		public int compareTo(Term o) {
+			int c = shape.compareTo(o.shape);
+			return (c != 0) ? c : ids.compareTo(o.ids);
+		}
+	}
+
+	@SuppressWarnings("serial")
+	static class UnsupportedExpression extends Exception {
+		UnsupportedExpression(Object o) {
+			super(o.getClass().getName());
+		}
+	}
+
+	final int maxSize;
+	LinkedHashMap<String,Result> map;
+	File file;
+	PrintWriter out;
+
+	// statistics
+	long hits;
+	long misses;
+
+	@SuppressWarnings("serial")
+	public ConstraintCache(int maxSize, File file) {
+		this.maxSize = maxSize;
+		this.file = file;
+
+		map = new LinkedHashMap<String,Result>(1024, 0.75f, true) {
+			protected boolean removeEldestEntry(Map.Entry<String,Result> e) {
+				return size() > ConstraintCache.this.maxSize;
+			}
+		};
+
+		if (file != null && file.isFile()) {
+			load();
+		}
+	}
+
+	public long getHits() {
+		return hits;
+	}
+
+	public long getMisses() {
+		return misses;
+	}
+
+	public int size() {
+		return map.size();
+	}
+
+	//--- normalization
+
+	/**
+	 * create the normalized query for 'pc', or return null if the path
+	 * condition cannot be cached
+	 */
+	public Query createQuery(PathCondition pc, String dp) {
+		if (pc == null || pc.header == null) {
+			return null;
+		}
+
+		try {
+			List<Term> conjuncts = renderConjuncts(pc, null);
+			HashMap<Expression,Integer> ids = new HashMap<Expression,Integer>();
+			for (Term t : conjuncts) {
+				for (Expression v : t.vars) {
+					if (!ids.containsKey(v)) {
+						ids.put(v, ids.size());
+					}
+				}
+			}
+			conjuncts = renderConjuncts(pc, ids);
+
+			Query q = new Query();
+			ids = new HashMap<Expression,Integer>();
+			StringBuilder sb = new StringBuilder(dp);
+
+			for (Term t : conjuncts) {
+				sb.append(';');
+				int nextVar = 0;
+				String s = t.shape;
+				for (int i = 0; i < s.length(); i++) {
+					char ch = s.charAt(i);
+					if (ch == INT_VAR || ch == REAL_VAR) {
+						Expression v = t.vars.get(nextVar++);
+						Integer id = ids.get(v);
+						if (id == null) {
+							if (ch == INT_VAR) {
+								id = q.intVars.size();
+								q.intVars.add((SymbolicInteger) v);
+							} else {
+								id = q.realVars.size();
+								q.realVars.add((SymbolicReal) v);
+							}
+							ids.put(v, id);
+						}
+						sb.append((ch == INT_VAR) ? 'x' : 'y');
+						sb.append(id);
+					} else {
+						sb.append(ch);
+					}
+				}
+			}
+
+			sb.append(";bounds");
+			for (SymbolicInteger v : q.intVars) {
+				sb.append('[').append(v._min).append(',').append(v._max).append(']');
+			}
+			for (SymbolicReal v : q.realVars) {
+				sb.append('[').append(v._min).append(',').append(v._max).append(']');
+			}
+
+			q.key = sb.toString();
+			return q;
+
+		} catch (UnsupportedExpression x) {
+			return null;
+		}
+	}
+
+	List<Term> renderConjuncts(PathCondition pc, Map<Expression,Integer> ids) throws UnsupportedExpression {
+		ArrayList<Term> conjuncts = new ArrayList<Term>();
+		for (Constraint c = pc.header; c != null; c = c.and) {
+			conjuncts.add(renderConstraint(c, ids));
+		}
+		Collections.sort(conjuncts);
+		return conjuncts;
+	}
+
+	static Term concat(Object... parts) {
+		StringBuilder sb = new StringBuilder();
+		StringBuilder ids = new StringBuilder();
+		ArrayList<Expression> vars = new ArrayList<Expression>();
+		for (Object p : parts) {
+			if (p instanceof Term) {
+				Term t = (Term) p;
+				sb.append(t.shape);
+				ids.append(t.ids);
+				vars.addAll(t.vars);
+			} else {
+				sb.append(p);
+			}
+		}
+		return new Term(sb.toString(), ids.toString(), vars);
+	}
+
+	static Term variable(Expression v, char marker, Map<Expression,Integer> ids) {
+		ArrayList<Expression> vars = new ArrayList<Expression>(1);
+		vars.add(v);
+		String id = "";
+		if (ids != null) {
+			id = String.format("%08d,", ids.get(v));
+		}
+		return new Term(String.valueOf(marker), id, vars);
+	}
+
+	static boolean isCommutative(Operator op) {
+		return op == Operator.PLUS || op == Operator.MUL || op == Operator.AND
+			|| op == Operator.OR || op == Operator.XOR;
+	}
+
+	Term renderConstraint(Constraint c, Map<Expression,Integer> ids) throws UnsupportedExpression {
+		String tag;
+		if (c instanceof LinearIntegerConstraint) {
+			tag = "L";
+		} else if (c instanceof NonLinearIntegerConstraint) {
+			tag = "N";
+		} else if (c instanceof RealConstraint) {
+			tag = "R";
+		} else if (c instanceof MixedConstraint) {
+			tag = "M";
+		} else if (c instanceof LogicalORLinearIntegerConstraints) {
+			ArrayList<Term> alternatives = new ArrayList<Term>();
+			for (LinearIntegerConstraint lic : ((LogicalORLinearIntegerConstraints) c).getList()) {
+				alternatives.add(renderConstraint(lic, ids));
+			}
+			Collections.sort(alternatives);
+			Object[] parts = new Object[alternatives.size() * 2 + 1];
+			parts[0] = "O(";
+			for (int i = 0; i < alternatives.size(); i++) {
+				parts[2 * i + 1] = alternatives.get(i);
+				parts[2 * i + 2] = (i < alternatives.size() - 1) ? "|" : ")";
+			}
+			return concat(parts);
+		} else {
+			throw new UnsupportedExpression(c);
+		}
+
+		Term l = renderExpression(c.getLeft(), ids);
+		Term r = renderExpression(c.getRight(), ids);
+		Comparator comp = c.getComparator();
+
+		if (!(c instanceof MixedConstraint)) { // mixed constraints have a fixed real/int operand order
+			if (comp == Comparator.GT || comp == Comparator.GE) {
+				Term t = l; l = r; r = t;
+				comp = (comp == Comparator.GT) ? Comparator.LT : Comparator.LE;
+			} else if ((comp == Comparator.EQ || comp == Comparator.NE) && l.compareTo(r) > 0) {
+				Term t = l; l = r; r = t;
+			}
+		}
+
+		return concat(tag, l, comp.toString().trim(), r);
+	}
+
+	Term renderExpression(Expression e, Map<Expression,Integer> ids) throws UnsupportedExpression {
+		Class<?> cls = e.getClass();
+
+		if (cls == IntegerConstant.class) {
+			return new Term(Integer.toString(((IntegerConstant) e).value));
+		} else if (cls == RealConstant.class) {
+			return new Term(Double.toString(((RealConstant) e).value) + 'd');
+
+		} else if (cls == SymbolicInteger.class) {
+			return variable(e, INT_VAR, ids);
+		} else if (cls == SymbolicReal.class) {
+			return variable(e, REAL_VAR, ids);
+
+		} else if (cls == BinaryLinearIntegerExpression.class) {
+			BinaryLinearIntegerExpression b = (BinaryLinearIntegerExpression) e;
+			return renderBinary(e, b.getLeft(), b.getOp(), b.getRight(), ids);
+		} else if (cls == BinaryNonLinearIntegerExpression.class) {
+			BinaryNonLinearIntegerExpression b = (BinaryNonLinearIntegerExpression) e;
+			return renderBinary(e, b.left, b.op, b.right, ids);
+		} else if (cls == BinaryRealExpression.class) {
+			BinaryRealExpression b = (BinaryRealExpression) e;
+			return renderBinary(e, b.getLeft(), b.getOp(), b.getRight(), ids);
+
+		} else if (cls == MathRealExpression.class) {
+			MathRealExpression m = (MathRealExpression) e;
+			Term folded = fold(e);
+			if (folded != null) {
+				return folded;
+			}
+			if (m.arg2 != null) {
+				return concat(m.op.toString(), '(', renderExpression(m.arg1, ids), ',', renderExpression(m.arg2, ids), ')');
+			} else {
+				return concat(m.op.toString(), '(', renderExpression(m.arg1, ids), ')');
+			}
+
+		} else {
+			throw new UnsupportedExpression(e);
+		}
+	}
+
+	Term renderBinary(Expression e, Expression left, Operator op, Expression right, Map<Expression,Integer> ids) throws UnsupportedExpression {
+		Term folded = fold(e);
+		if (folded != null) {
+			return folded;
+		}
+
+		Term l = renderExpression(left, ids);
+		Term r = renderExpression(right, ids);
+		if (isCommutative(op) && l.compareTo(r) > 0) {
+			Term t = l; l = r; r = t;
+		}
+
+		return concat('(', l, op.toString().trim(), r, ')');
+	}
+
+	static boolean isConstant(Expression e) {
+		Class<?> cls = e.getClass();
+
+		if (cls == IntegerConstant.class || cls == RealConstant.class) {
+			return true;
+		} else if (cls == BinaryLinearIntegerExpression.class) {
+			BinaryLinearIntegerExpression b = (BinaryLinearIntegerExpression) e;
+			return isConstant(b.getLeft()) && isConstant(b.getRight());
+		} else if (cls == BinaryNonLinearIntegerExpression.class) {
+			BinaryNonLinearIntegerExpression b = (BinaryNonLinearIntegerExpression) e;
+			return isConstant(b.left) && isConstant(b.right);
+		} else if (cls == BinaryRealExpression.class) {
+			BinaryRealExpression b = (BinaryRealExpression) e;
+			return isConstant(b.getLeft()) && isConstant(b.getRight());
+		} else if (cls == MathRealExpression.class) {
+			MathRealExpression m = (MathRealExpression) e;
+			return isConstant(m.arg1) && (m.arg2 == null || isConstant(m.arg2));
+		} else {
+			return false;
+		}
+	}
+
+	/**
+	 * the value of a constant expression, or null if 'e' is not constant or
+	 * cannot be evaluated
+	 */
+	static Term fold(Expression e) {
+		if (isConstant(e)) {
+			try {
+				if (e instanceof IntegerExpression) {
+					return new Term(Integer.toString(((IntegerExpression) e).solution()));
+				} else if (e instanceof RealExpression) {
+					return new Term(Double.toString(((RealExpression) e).solution()) + 'd');
+				}
+			} catch (ArithmeticException ax) {
+				// leave it to the solver, e.g. division by zero
+			}
+		}
+		return null;
+	}
+
+	//--- cache access
+
+	public Result get(Query q) {
+		Result r = map.get(q.key);
+		if (r != null) {
+			hits++;
+		} else {
+			misses++;
+		}
+		return r;
+	}
+
+	/**
+	 * store the satisfiability of 'q', plus the current solutions of its
+	 * variables if 'withModel' is set
+	 */
+	public void put(Query q, boolean isSat, boolean withModel) {
+		Result r = new Result();
+		r.isSat = isSat;
+
+		if (isSat && withModel) {
+			r.intSolutions = new int[q.intVars.size()];
+			for (int i = 0; i < r.intSolutions.length; i++) {
+				r.intSolutions[i] = q.intVars.get(i).solution;
+			}
+			r.realSolutions = new double[q.realVars.size()];
+			for (int i = 0; i < r.realSolutions.length; i++) {
+				r.realSolutions[i] = q.realVars.get(i).solution;
+			}
+		}
+
+		map.put(q.key, r);
+
+		if (file != null) {
+			append(q.key, r);
+		}
+	}
+
+	/**
+	 * set the solutions of the variables of 'q' from a cached model
+	 */
+	public boolean applyModel(Query q, Result r) {
+		if (r.intSolutions == null || r.intSolutions.length != q.intVars.size()
+				|| r.realSolutions.length != q.realVars.size()) {
+			return false;
+		}
+
+		for (int i = 0; i < r.intSolutions.length; i++) {
+			q.intVars.get(i).solution = r.intSolutions[i];
+		}
+		for (int i = 0; i < r.realSolutions.length; i++) {
+			q.realVars.get(i).solution = r.realSolutions[i];
+		}
+		return true;
+	}
+
+	//--- persistence
+	// each entry is a line 'U <key>', 'S <key>' or 'M <key> <int solutions> <real solutions>'
+	// (tab separated, solutions comma separated). Later entries override earlier ones
+
+	protected void append(String key, Result r) {
+		try {
+			if (out == null) {
+				out = new PrintWriter(new FileWriter(file, true));
+			}
+			writeEntry(out, key, r);
+			out.flush();
+
+		} catch (IOException iox) {
+			System.err.println("## Warning: cannot write constraint cache " + file + ": " + iox);
+			file = null;
+		}
+	}
+
+	static void writeEntry(PrintWriter pw, String key, Result r) {
+		if (!r.isSat) {
+			pw.print("U\t");
+			pw.println(key);
+		} else if (r.intSolutions == null) {
+			pw.print("S\t");
+			pw.println(key);
+		} else {
+			pw.print("M\t");
+			pw.print(key);
+			pw.print('\t');
+			for (int i = 0; i < r.intSolutions.length; i++) {
+				if (i > 0) pw.print(',');
+				pw.print(r.intSolutions[i]);
+			}
+			pw.print('\t');
+			for (int i = 0; i < r.realSolutions.length; i++) {
+				if (i > 0) pw.print(',');
+				pw.print(r.realSolutions[i]);
+			}
+			pw.println();
+		}
+	}
+
+	static int[] parseInts(String s) {
+		if (s.length() == 0) return new int[0];
+		String[] a = s.split(",");
+		int[] v = new int[a.length];
+		for (int i = 0; i < a.length; i++) {
+			v[i] = Integer.parseInt(a[i]);
+		}
+		return v;
+	}
+
+	static double[] parseDoubles(String s) {
+		if (s.length() == 0) return new double[0];
+		String[] a = s.split(",");
+		double[] v = new double[a.length];
+		for (int i = 0; i < a.length; i++) {
+			v[i] = Double.parseDouble(a[i]);
+		}
+		return v;
+	}
+
+	protected void load() {
+		int nLines = 0;
+		try {
+			BufferedReader in = new BufferedReader(new FileReader(file));
+			try {
+				String line;
+				while ((line = in.readLine()) != null) {
+					String[] a = line.split("\t", -1);
+					Result r = new Result();
+					if (a.length == 2 && a[0].equals("U")) {
+						r.isSat = false;
+					} else if (a.length == 2 && a[0].equals("S")) {
+						r.isSat = true;
+					} else if (a.length == 4 && a[0].equals("M")) {
+						r.isSat = true;
+						r.intSolutions = parseInts(a[2]);
+						r.realSolutions = parseDoubles(a[3]);
+					} else {
+						continue; // probably a partially written line
+					}
+					map.put(a[1], r);
+					nLines++;
+				}
+			} finally {
+				in.close();
+			}
+		} catch (IOException iox) {
+			System.err.println("## Warning: cannot read constraint cache " + file + ": " + iox);
+			return;
+		} catch (NumberFormatException nfx) {
+			System.err.println("## Warning: corrupted constraint cache " + file + ": " + nfx);
+		}
+
+		if (nLines > 2 * map.size()) {
+			compact();
+		}
+	}
+
+	/**
+	 * rewrite the cache file with the current entries, to get rid of
+	 * overridden and evicted ones. If anything goes wrong, we keep the old file
+	 */
+	protected void compact() {
+		File tmp = new File(file.getPath() + ".tmp");
+		try {
+			PrintWriter pw = new PrintWriter(new FileWriter(tmp));
+			boolean failed;
+			try {
+				for (Map.Entry<String,Result> e : map.entrySet()) {
+					writeEntry(pw, e.getKey(), e.getValue());
+				}
+			} finally {
+				pw.close();
+				failed = pw.checkError(); // PrintWriter doesn't throw
+			}
+			if (failed) {
+				throw new IOException("error writing " + tmp);
+			}
+
+			// this atomically replaces the old file on POSIX systems, but might
+			// not be supported if the target exists
+			if (!tmp.renameTo(file)) {
+				File bak = new File(file.getPath() + ".bak");
+				bak.delete();
+				if (!file.renameTo(bak)) {
+					throw new IOException("cannot rename " + file);
+				}
+				if (!tmp.renameTo(file)) {
+					bak.renameTo(file);
+					throw new IOException("cannot rename " + tmp);
+				}
+				bak.delete();
+			}
+
+		} catch (IOException iox) {
+			tmp.delete();
+			System.err.println("## Warning: cannot compact constraint cache " + file + ": " + iox);
+		}
+	}
+}
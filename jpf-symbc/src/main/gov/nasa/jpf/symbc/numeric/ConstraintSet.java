@@ -0,0 +1,143 @@
+//
+//Copyright (C) 2011 United States Government as represented by the
+//Administrator of the National Aeronautics and Space Administration
+//(NASA).  All Rights Reserved.
+//
+//This software is distributed under the NASA Open Source Agreement
+//(NOSA), version 1.3.  The NOSA has been approved by the Open Source
+//Initiative.  See the file NOSA-1.3-JPF at the top of the distribution
+//directory tree for the complete NOSA document.
+//
+//THE SUBJECT SOFTWARE IS PROVIDED "AS IS" WITHOUT ANY WARRANTY OF ANY
+//KIND, EITHER EXPRESSED, IMPLIED, OR STATUTORY, INCLUDING, BUT NOT
+//LIMITED TO, ANY WARRANTY THAT THE SUBJECT SOFTWARE WILL CONFORM TO
+//SPECIFICATIONS, ANY IMPLIED WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+//A PARTICULAR PURPOSE, OR FREEDOM FROM INFRINGEMENT, ANY WARRANTY THAT
+//THE SUBJECT SOFTWARE WILL BE ERROR FREE, OR ANY WARRANTY THAT
+//DOCUMENTATION, IF PROVIDED, WILL CONFORM TO THE SUBJECT SOFTWARE.
+//
+
+package gov.nasa.jpf.symbc.numeric;
+
+/**
+ * persistent (immutable) hash set of constraints, implemented as a hash array
+ * mapped trie. add() returns a new set that shares everything but the nodes
+ * on the path to the new entry with the old one, so a PathCondition copy can
+ * share the set of its parent like it shares the parent's constraint chain,
+ * and both can be extended independently.
+ *
+ * Each level uses 5 bits of the (cached) constraint hashCode, constraints
+ * with the same hashCode end up in a collision bucket below the last level.
+ */
+public final class ConstraintSet {
+
+	public static final ConstraintSet EMPTY = new ConstraintSet(null, 0);
+
+	static final int BITS = 5;
+	static final int MASK = (1 << BITS) - 1;
+
+	/**
+	 * inner trie node, 'entries' only has slots for the bits set in 'bitmap'.
+	 * Entries are Constraints, Nodes or Constraint[] collision buckets
+	 */
+	static final class Node {
+		final int bitmap;
+		final Object[] entries;
+
+		Node(int bitmap, Object[] entries) {
+			this.bitmap = bitmap;
+			this.entries = entries;
+		}
+	}
+
+	final Object root; // null, a single Constraint or a Node
+	final int size;
+
+	ConstraintSet(Object root, int size) {
+		this.root = root;
+		this.size = size;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean contains(Constraint c) {
+		int h = c.hashCode();
+		Object e = root;
+
+		for (int shift = 0; e != null; shift += BITS) {
+			if (e instanceof Constraint) {
+				return c.equals(e);
+
+			} else if (e instanceof Node) {
+				Node n = (Node) e;
+				int bit = 1 << ((h >>> shift) & MASK);
+				if ((n.bitmap & bit) == 0) {
+					return false;
+				}
+				e = n.entries[Integer.bitCount(n.bitmap & (bit - 1))];
+
+			} else {
+				for (Constraint x : (Constraint[]) e) {
+					if (c.equals(x)) {
+						return true;
+					}
+				}
+				return false;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * returns a set that also contains 'c', which is this set if 'c' is
+	 * already in it
+	 */
+	public ConstraintSet add(Constraint c) {
+		if (contains(c)) {
+			return this;
+		}
+		return new ConstraintSet(insert(root, c, c.hashCode(), 0), size + 1);
+	}
+
+	static Object insert(Object e, Constraint c, int h, int shift) {
+		if (e == null) {
+			return c;
+
+		} else if (e instanceof Constraint) {
+			Constraint x = (Constraint) e;
+			if (shift >= 32) { // same hashCode
+				return new Constraint[] { x, c };
+			}
+			Node n = new Node(1 << ((x.hashCode() >>> shift) & MASK), new Object[] { x });
+			return insert(n, c, h, shift);
+
+		} else if (e instanceof Node) {
+			Node n = (Node) e;
+			int bit = 1 << ((h >>> shift) & MASK);
+			int idx = Integer.bitCount(n.bitmap & (bit - 1));
+
+			if ((n.bitmap & bit) != 0) {
+				Object[] entries = n.entries.clone();
+				entries[idx] = insert(entries[idx], c, h, shift + BITS);
+				return new Node(n.bitmap, entries);
+
+			} else {
+				Object[] entries = new Object[n.entries.length + 1];
+				System.arraycopy(n.entries, 0, entries, 0, idx);
+				entries[idx] = c;
+				System.arraycopy(n.entries, idx, entries, idx + 1, n.entries.length - idx);
+				return new Node(n.bitmap | bit, entries);
+			}
+
+		} else {
+			Constraint[] bucket = (Constraint[]) e;
+			Constraint[] a = new Constraint[bucket.length + 1];
+			System.arraycopy(bucket, 0, a, 0, bucket.length);
+			a[bucket.length] = c;
+			return a;
+		}
+	}
+}
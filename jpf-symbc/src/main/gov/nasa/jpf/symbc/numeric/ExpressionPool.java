@@ -0,0 +1,139 @@
+//
+//Copyright (C) 2011 United States Government as represented by the
+//Administrator of the National Aeronautics and Space Administration
+//(NASA).  All Rights Reserved.
+//
+//This software is distributed under the NASA Open Source Agreement
+//(NOSA), version 1.3.  The NOSA has been approved by the Open Source
+//Initiative.  See the file NOSA-1.3-JPF at the top of the distribution
+//directory tree for the complete NOSA document.
+//
+//THE SUBJECT SOFTWARE IS PROVIDED "AS IS" WITHOUT ANY WARRANTY OF ANY
+//KIND, EITHER EXPRESSED, IMPLIED, OR STATUTORY, INCLUDING, BUT NOT
+//LIMITED TO, ANY WARRANTY THAT THE SUBJECT SOFTWARE WILL CONFORM TO
+//SPECIFICATIONS, ANY IMPLIED WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+//A PARTICULAR PURPOSE, OR FREEDOM FROM INFRINGEMENT, ANY WARRANTY THAT
+//THE SUBJECT SOFTWARE WILL BE ERROR FREE, OR ANY WARRANTY THAT
+//DOCUMENTATION, IF PROVIDED, WILL CONFORM TO THE SUBJECT SOFTWARE.
+//
+
+package gov.nasa.jpf.symbc.numeric;
+
+import java.lang.ref.WeakReference;
+import java.util.WeakHashMap;
+
+/**
+ * hash-consing of the expressions we add to path conditions. intern()
+ * returns the canonical instance for a structurally equal expression, so
+ * that equal sub-expressions of different constraints and paths are shared,
+ * and equals() of interned expressions mostly succeeds on the reference
+ * check. Since the children are interned first, looking up a node only
+ * compares references of its children, and hashCodes are cached by the nodes.
+ *
+ * We only intern constants and binary integer and real expressions.
+ * Symbolic variables are unique anyway, and other expressions (e.g. math
+ * functions, concolic or string expressions) are kept as they are.
+ *
+ * The pool doesn't keep expressions alive, entries go away once no path
+ * condition refers to them anymore.
+ *
+ * Constraints can't be shared the same way since they are linked into the
+ * constraint chain of their PathCondition (see ConstraintSet for how PCs
+ * find repeated constraints).
+ */
+public class ExpressionPool {
+
+	static WeakHashMap<Expression, WeakReference<Expression>> pool = new WeakHashMap<Expression, WeakReference<Expression>>();
+
+	// statistics
+	static long lookups;
+	static long hits;
+
+	public static IntegerExpression intern(IntegerExpression e) {
+		return (IntegerExpression) internExpression(e);
+	}
+
+	public static RealExpression intern(RealExpression e) {
+		return (RealExpression) internExpression(e);
+	}
+
+	static Expression internExpression(Expression e) {
+		if (e instanceof BinaryLinearIntegerExpression) {
+			BinaryLinearIntegerExpression be = (BinaryLinearIntegerExpression) e;
+			IntegerExpression l = intern(be.left);
+			IntegerExpression r = intern(be.right);
+			if (l != be.left || r != be.right) {
+				be = new BinaryLinearIntegerExpression(l, be.op, r);
+			}
+			return lookup(be);
+
+		} else if (e instanceof BinaryNonLinearIntegerExpression) {
+			BinaryNonLinearIntegerExpression be = (BinaryNonLinearIntegerExpression) e;
+			IntegerExpression l = intern(be.left);
+			IntegerExpression r = intern(be.right);
+			if (l != be.left || r != be.right) {
+				be = new BinaryNonLinearIntegerExpression(l, be.op, r);
+			}
+			return lookup(be);
+
+		} else if (e instanceof BinaryRealExpression) {
+			BinaryRealExpression be = (BinaryRealExpression) e;
+			RealExpression l = intern(be.left);
+			RealExpression r = intern(be.right);
+			if (l != be.left || r != be.right) {
+				be = new BinaryRealExpression(l, be.op, r);
+			}
+			return lookup(be);
+
+		} else if (e instanceof IntegerConstant) {
+			return lookup(e);
+
+		} else if (e instanceof RealConstant) {
+			double v = ((RealConstant) e).value;
+			if (v == 0.0 && Double.doubleToLongBits(v) != 0L) {
+				return e; // -0.0 equals 0.0, but doesn't behave like it
+			}
+			return lookup(e);
+
+		} else {
+			return e;
+		}
+	}
+
+	static Expression lookup(Expression e) {
+		lookups++;
+
+		WeakReference<Expression> ref = pool.get(e);
+		if (ref != null) {
+			Expression canonical = ref.get();
+			if (canonical != null) {
+				hits++;
+				return canonical;
+			}
+		}
+
+		pool.put(e, new WeakReference<Expression>(e));
+		return e;
+	}
+
+	public static void clear() {
+		pool.clear();
+		lookups = 0;
+		hits = 0;
+	}
+
+	public static int size() {
+		return pool.size();
+	}
+
+	public static long getNumberOfLookups() {
+		return lookups;
+	}
+
+	/**
+	 * number of expression nodes we didn't have to store again
+	 */
+	public static long getHits() {
+		return hits;
+	}
+}
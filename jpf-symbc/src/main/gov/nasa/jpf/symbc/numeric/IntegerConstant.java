@@ -276,6 +276,10 @@ public class IntegerConstant extends LinearIntegerExpression {
     return value == ((IntegerConstant) o).value;
   }
 
+  public int hashCode() {
+    return value;
+  }
+
   public String toString () {
     return "CONST_" + value + "";
   }
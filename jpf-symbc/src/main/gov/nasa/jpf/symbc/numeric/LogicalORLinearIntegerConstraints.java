@@ -73,4 +73,8 @@ public class LogicalORLinearIntegerConstraints extends Constraint{
 		}
 		return true;
 	}
+
+	public int hashCode () {
+		return list.hashCode(); // not cached, the list can still change
+	}
 }
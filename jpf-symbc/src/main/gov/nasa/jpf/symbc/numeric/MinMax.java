@@ -33,5 +33,6 @@ public class MinMax {
 	
 	public static void reset() {
 	  UniqueId = 0;
+	  ExpressionPool.clear(); // variables are compared by their ids
 	}
 }
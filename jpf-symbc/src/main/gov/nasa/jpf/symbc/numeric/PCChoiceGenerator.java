@@ -28,6 +28,9 @@ public class PCChoiceGenerator extends IntIntervalGenerator {
 	PathCondition[] PC;
 	boolean isReverseOrder;
 
+	// choices whose numeric constraints were proven to be unsatisfiable
+	boolean[] isUnsat;
+
 	int offset; // to be used in the CFG
 	public int getOffset() { return offset;}
 	public void setOffset(int off) {
@@ -45,6 +48,7 @@ public class PCChoiceGenerator extends IntIntervalGenerator {
 	public PCChoiceGenerator(int size) {
 		super(0, size - 1);
 		PC = new PathCondition[size];
+		isUnsat = new boolean[size];
 		isReverseOrder = false;
 	}
 
@@ -58,6 +62,7 @@ public class PCChoiceGenerator extends IntIntervalGenerator {
 	public PCChoiceGenerator(int size, boolean reverseOrder) {
 		super(0, size - 1, reverseOrder ? -1 : 1);
 		PC = new PathCondition[size];
+		isUnsat = new boolean[size];
 		isReverseOrder = reverseOrder;
 	}
 
@@ -83,6 +88,25 @@ public class PCChoiceGenerator extends IntIntervalGenerator {
 		}
 	}
 
+	public void setCurrentUnsat() {
+		isUnsat[getNextChoice()] = true;
+	}
+
+	/**
+	 * are all other choices known to be unsatisfiable? If the choices partition
+	 * the parent PC, and the parent is satisfiable, the current one has to be
+	 * satisfiable then
+	 */
+	public boolean isOnlyRemainingChoice() {
+		int current = getNextChoice();
+		for (int i = 0; i < isUnsat.length; i++) {
+			if (i != current && !isUnsat[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
 	public IntChoiceGenerator randomize() {
 		return new PCChoiceGenerator(PC.length, random.nextBoolean());
 	}
@@ -39,6 +39,19 @@ public class PathCondition {
     int count = 0;
     protected int solverCalls = 0;
 
+    // header, count and Constraint.modCount for which the numeric constraints
+    // are known to be satisfiable, used by BranchFastPath
+    Constraint satHeader = null;
+    int satCount = 0;
+    int satModCount = 0;
+
+    // set of the constraints in the chain, shared with copies. It is rebuilt
+    // if the chain was changed without prependUnlessRepeated()
+    ConstraintSet conjuncts = ConstraintSet.EMPTY;
+    Constraint conjunctsHeader = null;
+    int conjunctsCount = 0;
+    int conjunctsModCount = 0;
+
     // TODO: to review
     public StringPathCondition spc = new StringPathCondition(this);
 
@@ -63,18 +76,21 @@ public class PathCondition {
 	    pc_new.count = this.count;
 	    pc_new.spc = this.spc.make_copy(pc_new); // TODO: to review
 	    pc_new.solverCalls = this.solverCalls;
+	    pc_new.satHeader = this.satHeader;
+	    pc_new.satCount = this.satCount;
+	    pc_new.satModCount = this.satModCount;
+	    pc_new.conjuncts = this.conjuncts;
+	    pc_new.conjunctsHeader = this.conjunctsHeader;
+	    pc_new.conjunctsCount = this.conjunctsCount;
+	    pc_new.conjunctsModCount = this.conjunctsModCount;
 		return pc_new;
 	}
 
 	//Added by Gideon
 	public void _addDet (LogicalORLinearIntegerConstraints loic) {
 		//throw new RuntimeException ("Not being used right now");
-		if (!this.hasConstraint(loic)) {
+		if (prependUnlessRepeated(loic)) {
 			flagSolved = false;
-			Constraint t = (Constraint) loic;
-			t.and = header;
-			header = t;
-			count++;
 		}
 	}
 
@@ -115,6 +131,8 @@ public class PathCondition {
 
 		Constraint t;
 		flagSolved = false;
+		l = ExpressionPool.intern(l);
+		r = ExpressionPool.intern(r);
 		if ((l instanceof LinearIntegerExpression) && (r instanceof LinearIntegerExpression)) {
 			t = new LinearIntegerConstraint(l, c, r);
 		} else {
@@ -142,7 +160,7 @@ public class PathCondition {
 
 		flagSolved = false; // C
 
-		t = new RealConstraint(l, c, r);
+		t = new RealConstraint(ExpressionPool.intern(l), c, ExpressionPool.intern(r));
 
 		prependUnlessRepeated(t);
 
@@ -155,7 +173,7 @@ public class PathCondition {
 
 		flagSolved = false; // C
 
-		t = new MixedConstraint(l, c, r);
+		t = new MixedConstraint(ExpressionPool.intern(l), c, ExpressionPool.intern(r));
 
 		prependUnlessRepeated(t);
 
@@ -166,7 +184,7 @@ public class PathCondition {
 
 		flagSolved = false; // C
 
-		t = new MixedConstraint(r, c, l);
+		t = new MixedConstraint(ExpressionPool.intern(r), c, ExpressionPool.intern(l));
 
 		prependUnlessRepeated(t);
 
@@ -179,10 +197,14 @@ public class PathCondition {
      * Returns whether the condition was extended with the constraint.
      */
     public boolean prependUnlessRepeated(Constraint t) {
-        if (!hasConstraint(t)) {
+        ConstraintSet set = getConjuncts();
+        if (!set.contains(t)) {
             t.and = header;
             header = t;
             count++;
+            conjuncts = set.add(t);
+            conjunctsHeader = header;
+            conjunctsCount = count;
             return true;
         } else {
             return false;
@@ -221,17 +243,25 @@ public class PathCondition {
 	 * Returns whether this path condition contains the constraint.
 	 */
 	public boolean hasConstraint(Constraint c) {
-		Constraint t = header;
+		return getConjuncts().contains(c);
+	}
 
-		while (t != null) {
-			if (c.equals(t)) {
-				return true;
+	/**
+	 * returns the set of constraints in the chain, which we only have to
+	 * rebuild if the chain or one of its constraints was modified directly
+	 */
+	ConstraintSet getConjuncts() {
+		if (conjunctsHeader != header || conjunctsCount != count || conjunctsModCount != Constraint.modCount) {
+			ConstraintSet set = ConstraintSet.EMPTY;
+			for (Constraint t = header; t != null; t = t.and) {
+				set = set.add(t);
 			}
-
-			t = t.and;
+			conjuncts = set;
+			conjunctsHeader = header;
+			conjunctsCount = count;
+			conjunctsModCount = Constraint.modCount;
 		}
-
-		return false;
+		return conjuncts;
 	}
 
 	public Constraint last() {
@@ -259,6 +289,14 @@ public class PathCondition {
 	}
 
 	public boolean simplify() {
+		return simplify(null);
+	}
+
+	/**
+	 * simplify the PC of the current outcome of 'branchCG', whose outcomes
+	 * have to partition the parent PC (like the two outcomes of IFxx)
+	 */
+	public boolean simplify(PCChoiceGenerator branchCG) {
 		if(isReplay){
 			return true;
 		}
@@ -270,6 +308,8 @@ public class PathCondition {
 			PCAnalyzer pa = new PCAnalyzer();
 			result1 = pa.isSatisfiable(this,solver);
 		}
+		else if (SymbolicInstructionFactory.fastPath)
+			result1 = BranchFastPath.isSatisfiable(solver, this, branchCG);
 		else
 			result1 = solver.isSatisfiable(this);
 		solverCalls++;
@@ -289,6 +329,30 @@ public class PathCondition {
 		return result1  && result2;
 	}
 
+	/**
+	 * are the numeric constraints known to be satisfiable? Constraints that
+	 * were changed in place (e.g. setComparator()) invalidate this
+	 */
+	boolean isKnownSatisfiable() {
+		return header == satHeader && count == satCount && satModCount == Constraint.modCount;
+	}
+
+	/**
+	 * is this a PC that is known to be satisfiable plus one new constraint?
+	 */
+	boolean isParentKnownSatisfiable() {
+		if (satModCount != Constraint.modCount) {
+			return false;
+		}
+		return isKnownSatisfiable() || (header != null && header.and == satHeader && count == satCount + 1);
+	}
+
+	void setKnownSatisfiable() {
+		satHeader = header;
+		satCount = count;
+		satModCount = Constraint.modCount;
+	}
+
 	public String stringPC() {
 		return "constraint # = " + count + ((header == null) ? "" : "\n" + header.stringPC());
 	}
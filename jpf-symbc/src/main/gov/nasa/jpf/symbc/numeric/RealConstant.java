@@ -144,6 +144,11 @@ public class RealConstant extends RealExpression {
     return value == ((RealConstant) o).value;
   }
 
+  public int hashCode() {
+    long bits = Double.doubleToLongBits(value + 0.0); // -0.0 == 0.0
+    return (int)(bits ^ (bits >>> 32));
+  }
+
   public String toString () {
     return "CONST_" + value + "";
   }
@@ -0,0 +1,215 @@
+//
+//Copyright (C) 2011 United States Government as represented by the
+//Administrator of the National Aeronautics and Space Administration
+//(NASA).  All Rights Reserved.
+//
+//This software is distributed under the NASA Open Source Agreement
+//(NOSA), version 1.3.  The NOSA has been approved by the Open Source
+//Initiative.  See the file NOSA-1.3-JPF at the top of the distribution
+//directory tree for the complete NOSA document.
+//
+//THE SUBJECT SOFTWARE IS PROVIDED "AS IS" WITHOUT ANY WARRANTY OF ANY
+//KIND, EITHER EXPRESSED, IMPLIED, OR STATUTORY, INCLUDING, BUT NOT
+//LIMITED TO, ANY WARRANTY THAT THE SUBJECT SOFTWARE WILL CONFORM TO
+//SPECIFICATIONS, ANY IMPLIED WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+//A PARTICULAR PURPOSE, OR FREEDOM FROM INFRINGEMENT, ANY WARRANTY THAT
+//THE SUBJECT SOFTWARE WILL BE ERROR FREE, OR ANY WARRANTY THAT
+//DOCUMENTATION, IF PROVIDED, WILL CONFORM TO THE SUBJECT SOFTWARE.
+//
+
+package gov.nasa.jpf.symbc.numeric;
+
+import gov.nasa.jpf.symbc.SymbolicInstructionFactory;
+import gov.nasa.jpf.symbc.numeric.solvers.ProblemGeneral;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * a long lived decision procedure problem that is used incrementally for
+ * all satisfiability checks of a search.
+ *
+ * Each conjunct of the checked PC is posted within its own scope
+ * (ProblemGeneral.push()/pop()). Since PCs of child choices share the
+ * constraint objects of their parent PC (PCChoiceGenerators store
+ * PathCondition.make_copy() and _addDet() prepends), we only have to pop
+ * the scopes that are not a prefix of the new PC anymore, and to push its
+ * new constraints. Usually this is just the branch constraint, i.e. we
+ * don't re-encode the parent constraints. The scopes of backtracked paths
+ * are retracted lazily, once we get the PC of the next path.
+ *
+ * This only works for backends that support scopes (choco, choco2,
+ * iasolver). For others, the session is disabled and we fall back to
+ * solving each PC from scratch.
+ *
+ * Config options:
+ *   symbolic.incremental = true|false (default false)
+ */
+public class SolverSession {
+
+	static SolverSession session; // null if not incremental
+
+	public static SolverSession getSession() {
+		return session;
+	}
+
+	public static void setSession(SolverSession s) {
+		session = s;
+	}
+
+	/**
+	 * variable map that logs new entries, so that we can remove the
+	 * variables that were created in a scope when we pop it
+	 */
+	@SuppressWarnings("serial")
+	static class VarMap<K> extends HashMap<K,Object> {
+		ArrayList<K> log = new ArrayList<K>();
+
+		public Object put(K key, Object value) {
+			Object old = super.put(key, value);
+			if (old == null) {
+				log.add(key);
+			}
+			return old;
+		}
+
+		void truncate(int n) {
+			while (log.size() > n) {
+				remove(log.remove(log.size() - 1));
+			}
+		}
+	}
+
+	static class Scope {
+		Constraint constraint;
+		int nIntVars;   // size of var logs before we posted 'constraint'
+		int nRealVars;
+		boolean isFalse; // this or a previous constraint was trivially unsatisfiable
+	}
+
+	ProblemGeneral pb;
+	boolean disabled;
+
+	VarMap<SymbolicInteger> symIntegerVar = new VarMap<SymbolicInteger>();
+	VarMap<SymbolicReal> symRealVar = new VarMap<SymbolicReal>();
+	ArrayList<Scope> scopes = new ArrayList<Scope>();
+
+	// statistics
+	long pushed;
+	long reused;
+
+	public long getNumberOfPushedConstraints() {
+		return pushed;
+	}
+
+	public long getNumberOfReusedConstraints() {
+		return reused;
+	}
+
+	public int getDepth() {
+		return scopes.size();
+	}
+
+	/**
+	 * check 'pc' with the session problem. Returns null if the session can't
+	 * do this, in which case the caller has to solve the PC from scratch
+	 */
+	public Boolean isSatisfiable(SymbolicConstraintsGeneral scg, PathCondition pc) {
+		if (disabled) {
+			return null;
+		}
+
+		if (pb == null) {
+			pb = scg.createProblem(pc);
+			if (pb == null || !pb.supportsScopes()) {
+				if (pb != null) {
+					System.out.println("## Warning: " + pb.getClass().getName() + " does not support incremental solving");
+				}
+				pb = null;
+				disabled = true;
+				return null;
+			}
+		}
+
+		ArrayList<Constraint> conjuncts = new ArrayList<Constraint>(pc.count);
+		for (Constraint c = pc.header; c != null; c = c.and) {
+			conjuncts.add(c);
+		}
+
+		// find the scopes we can keep (constraints are ordered newest first)
+		int nConjuncts = conjuncts.size();
+		int n = 0;
+		while (n < scopes.size() && n < nConjuncts) {
+			Constraint c = conjuncts.get(nConjuncts - 1 - n);
+			Constraint sc = scopes.get(n).constraint;
+			if (c != sc && !c.equals(sc)) {
+				break;
+			}
+			n++;
+		}
+		while (scopes.size() > n) {
+			popScope();
+		}
+		reused += n;
+
+		scg.pb = pb;
+		scg.symIntegerVar = symIntegerVar;
+		scg.symRealVar = symRealVar;
+
+		for (int i = nConjuncts - 1 - n; i >= 0; i--) {
+			pushScope(scg, conjuncts.get(i));
+		}
+
+		if (scopes.isEmpty()) {
+			return Boolean.TRUE;
+		}
+		if (scopes.get(scopes.size() - 1).isFalse) {
+			return Boolean.FALSE;
+		}
+
+		SymbolicConstraintsGeneral.solverCalls++;
+		Boolean result = pb.solve();
+
+		if (SymbolicInstructionFactory.debugMode)
+			System.out.println("numeric PC (incremental): " + pc + " -> " + result + "\n");
+
+		if (result == null) {
+			System.out.println("## Warning: timed out/ don't know (returned PC not-satisfiable) " + pc);
+			scg.isUnknown = true;
+			return Boolean.FALSE;
+		}
+		return result;
+	}
+
+	void pushScope(SymbolicConstraintsGeneral scg, Constraint c) {
+		Scope scope = new Scope();
+		scope.constraint = c;
+		scope.nIntVars = symIntegerVar.log.size();
+		scope.nRealVars = symRealVar.log.size();
+		scope.isFalse = !scopes.isEmpty() && scopes.get(scopes.size() - 1).isFalse;
+
+		pb.push();
+		try {
+			if (!scope.isFalse) {
+				scope.isFalse = !scg.createDPConstraint(c);
+			}
+		} catch (RuntimeException x) {
+			pb.pop();
+			symIntegerVar.truncate(scope.nIntVars);
+			symRealVar.truncate(scope.nRealVars);
+			throw x;
+		}
+
+		scopes.add(scope);
+		pushed++;
+	}
+
+	void popScope() {
+		Scope scope = scopes.remove(scopes.size() - 1);
+		pb.pop();
+
+		// variables created in this scope are not valid anymore
+		symIntegerVar.truncate(scope.nIntVars);
+		symRealVar.truncate(scope.nRealVars);
+	}
+}
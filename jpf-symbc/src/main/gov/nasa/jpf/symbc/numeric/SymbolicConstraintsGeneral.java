@@ -20,6 +20,8 @@
 package gov.nasa.jpf.symbc.numeric;
 
 import gov.nasa.jpf.symbc.SymbolicInstructionFactory;
+import gov.nasa.jpf.symbc.probsym.DependencyCalc;
+import gov.nasa.jpf.util.Profiler;
 import gov.nasa.jpf.symbc.numeric.solvers.ProblemCompare;
 import gov.nasa.jpf.symbc.numeric.solvers.DebugSolvers;
 import gov.nasa.jpf.symbc.numeric.solvers.ProblemCVC3;
@@ -52,8 +54,18 @@ public class SymbolicConstraintsGeneral {
 	  protected Map<SymbolicReal, Object>	symRealVar; // a map between symbolic real variables and DP variables
 	  protected Map<SymbolicInteger,Object>	symIntegerVar; // a map between symbolic variables and DP variables
 	  protected Boolean result; // tells whether result is satisfiable or not
+	  protected boolean isUnknown; // last query timed out, don't cache it
 	  protected static int tempVars = 0; //Used to construct "or" clauses
 
+	  static final Profiler.Phase SOLVER_CHECK = Profiler.getPhase("solver-check");
+	  static final Profiler.Phase SOLVER_SOLVE = Profiler.getPhase("solver-solve");
+
+	  static long solverCalls; // number of queries that were not answered by the cache, read by MetricsExporter
+
+	  public static long getNumberOfSolverCalls() {
+		  return solverCalls;
+	  }
+
 	  //	 Converts IntegerExpression's into DP's IntExp's
 	  Object getExpression(IntegerExpression eRef) {
 			assert eRef != null;
@@ -891,6 +903,114 @@ public class SymbolicConstraintsGeneral {
 	//static Map<String,Boolean> dpMap = new HashMap<String,Boolean>();
 
 	public boolean isSatisfiable(PathCondition pc) {
+		boolean isSat;
+
+		if (SymbolicInstructionFactory.slicing && pc != null && pc.count > 1) {
+			// only the dependency closure of the new constraint goes to the
+			// solver if we know the independent rest of the PC is satisfiable
+			PathCondition[] split = new DependencyCalc().calcHeaderSlice(pc);
+			Boolean isRestSat = (split != null) ? getKnownSatisfiability(pc, split[1]) : null;
+			if (isRestSat == null) {
+				isSat = isSatisfiableSlice(pc);
+			} else if (isRestSat) {
+				isSat = isSatisfiableSlice(split[0]);
+			} else {
+				isUnknown = false;
+				isSat = false;
+			}
+		} else {
+			isSat = isSatisfiableSlice(pc);
+		}
+
+		if (isSat && !isUnknown && pc != null)
+			pc.setKnownSatisfiable();
+		return isSat;
+	}
+
+	/**
+	 * do we know without calling the solver if 'rest', which is the part of
+	 * 'pc' that does not depend on the new constraint, is satisfiable? It is
+	 * if the parent PC was, or if the current solutions satisfy it. Otherwise
+	 * we can only ask the cache. Returns null if we don't know
+	 */
+	protected Boolean getKnownSatisfiability(PathCondition pc, PathCondition rest) {
+		if (pc.isParentKnownSatisfiable() || BranchFastPath.isSatisfiedBySolutions(rest))
+			return Boolean.TRUE;
+
+		ConstraintCache cache = ConstraintCache.getCache();
+		if (cache != null) {
+			ConstraintCache.Query q = createCacheQuery(cache, rest);
+			if (q != null) {
+				ConstraintCache.Result r = cache.get(q);
+				if (r != null)
+					return r.isSatisfiable();
+			}
+		}
+		return null;
+	}
+
+	protected boolean isSatisfiableSlice(PathCondition pc) {
+		isUnknown = false;
+
+		ConstraintCache cache = ConstraintCache.getCache();
+		ConstraintCache.Query q = null;
+		if (cache != null) {
+			q = createCacheQuery(cache, pc);
+			if (q != null) {
+				ConstraintCache.Result r = cache.get(q);
+				if (r != null)
+					return r.isSatisfiable();
+			}
+		}
+
+		boolean isSat;
+		if (!Profiler.ENABLED) {
+			isSat = checkSatisfiableIncremental(pc);
+		} else {
+			long t = System.nanoTime();
+			try {
+				isSat = checkSatisfiableIncremental(pc);
+			} finally {
+				SOLVER_CHECK.record(t);
+			}
+		}
+
+		if (q != null && !isUnknown)
+			cache.put(q, isSat, false);
+
+		return isSat;
+	}
+
+	/**
+	 * use the incremental solver session if there is one, and if it can
+	 * handle the configured decision procedure
+	 */
+	protected boolean checkSatisfiableIncremental(PathCondition pc) {
+		SolverSession session = SolverSession.getSession();
+		if (session != null && pc != null && pc.count > 0) {
+			Boolean isSat = session.isSatisfiable(this, pc);
+			if (isSat != null)
+				return isSat;
+		}
+		return checkSatisfiable(pc);
+	}
+
+	ConstraintCache.Query createCacheQuery(ConstraintCache cache, PathCondition pc) {
+		if (pc == null || pc.count == 0)
+			return null;
+
+		String[] dp = SymbolicInstructionFactory.dp;
+		String dpName = (dp == null) ? "choco" : dp[0].toLowerCase();
+		if (dpName.equals("no_solver"))
+			return null;
+
+		return cache.createQuery(pc, dpName);
+	}
+
+	protected boolean checkSatisfiable(PathCondition pc) {
+		solverCalls++;
+		isUnknown = false;
+
 		if (pc == null || pc.count == 0) {
 			if (SymbolicInstructionFactory.debugMode)
 				System.out.println("## Warning: empty path condition");
@@ -901,6 +1021,54 @@ public class SymbolicConstraintsGeneral {
 //		if (SymbolicInstructionFactory.debugMode)
 //			System.out.println("checking: PC "+pc);
 
+		pb = createProblem(pc);
+		if (pb == null) // no_solver
+			return true;
+
+		symRealVar = new HashMap<SymbolicReal,Object>();
+		symIntegerVar = new HashMap<SymbolicInteger,Object>();
+		//result = null;
+
+		Constraint cRef = pc.header;
+
+		while (cRef != null) {
+			if (!createDPConstraint(cRef))
+				return false;
+
+			cRef = cRef.and;
+		}
+
+		//pb.getSolver().setTimeLimit(30000);
+
+
+
+		result = pb.solve();
+
+		if (SymbolicInstructionFactory.debugMode)
+			System.out.println("numeric PC: " + pc + " -> " + result+"\n");
+
+		if(result == null) {
+			System.out.println("## Warning: timed out/ don't know (returned PC not-satisfiable) "+pc);
+			isUnknown = true;
+			return false;
+		}
+		if (result == Boolean.TRUE) {
+			return true;
+		}
+		else {
+			return false;
+		}
+
+
+	}
+
+	/**
+	 * create the problem for the configured decision procedure, or return
+	 * null if we don't solve at all (symbolic.dp=no_solver)
+	 */
+	protected ProblemGeneral createProblem(PathCondition pc) {
+		ProblemGeneral pb;
+
 		String[] dp = SymbolicInstructionFactory.dp;
 		if(dp == null) { // default: use choco
 			pb = new ProblemChoco();
@@ -928,73 +1096,45 @@ public class SymbolicConstraintsGeneral {
 		// as a result symbolic execution will explore an over-approximation of the program paths
 		// equivalent to a CFG analysis
 		else if (dp[0].equalsIgnoreCase("no_solver")) {
-			return true;
+			return null;
 		}
 		else
 			throw new RuntimeException("## Error: unknown decision procedure symbolic.dp="+dp[0]+
 					"\n(use choco or IAsolver or CVC3)");
 
+		return pb;
+	}
 
-
-		symRealVar = new HashMap<SymbolicReal,Object>();
-		symIntegerVar = new HashMap<SymbolicInteger,Object>();
-		//result = null;
-
-
-
-		Constraint cRef = pc.header;
-
-		while (cRef != null) {
-			boolean constraintResult = true;
-
-			if (cRef instanceof RealConstraint)
-				constraintResult= createDPRealConstraint((RealConstraint)cRef);// create choco real constraint
-			else if (cRef instanceof LinearIntegerConstraint)
-				constraintResult= createDPLinearIntegerConstraint((LinearIntegerConstraint)cRef);// create choco linear integer constraint
-			else if (cRef instanceof MixedConstraint)
-				// System.out.println("Mixed Constraint");
-				constraintResult= createDPMixedConstraint((MixedConstraint)cRef);
-			else if (cRef instanceof LogicalORLinearIntegerConstraints) {
+	/**
+	 * post a single conjunct of the PC to the problem. Returns false if the
+	 * constraint is already known to be unsatisfiable
+	 */
+	protected boolean createDPConstraint(Constraint cRef) {
+		boolean constraintResult = true;
+
+		if (cRef instanceof RealConstraint)
+			constraintResult= createDPRealConstraint((RealConstraint)cRef);// create choco real constraint
+		else if (cRef instanceof LinearIntegerConstraint)
+			constraintResult= createDPLinearIntegerConstraint((LinearIntegerConstraint)cRef);// create choco linear integer constraint
+		else if (cRef instanceof MixedConstraint)
+			// System.out.println("Mixed Constraint");
+			constraintResult= createDPMixedConstraint((MixedConstraint)cRef);
+		else if (cRef instanceof LogicalORLinearIntegerConstraints) {
 //				if (!(pb instanceof ProblemChoco)) {
 //					throw new RuntimeException ("String solving only works with Choco for now");
 //				}
-				//System.out.println("[SymbolicConstraintsGeneral] reached");
-				constraintResult= createDPLinearOrIntegerConstraint((LogicalORLinearIntegerConstraints)cRef);
+			//System.out.println("[SymbolicConstraintsGeneral] reached");
+			constraintResult= createDPLinearOrIntegerConstraint((LogicalORLinearIntegerConstraints)cRef);
 
-			}
-			else {
-				System.out.println("## Warning: Non Linear Integer Constraint (only coral can handle it)" + cRef);
-				if(pb instanceof ProblemCoral)
-					constraintResult= createDPNonLinearIntegerConstraint((NonLinearIntegerConstraint)cRef);
-				else
-					throw new RuntimeException("## Error: Non Linear Integer Constraint not handled " + cRef);
-			}
-			if(constraintResult == false) return false;
-
-			cRef = cRef.and;
-		}
-
-		//pb.getSolver().setTimeLimit(30000);
-
-
-
-		result = pb.solve();
-
-		if (SymbolicInstructionFactory.debugMode)
-			System.out.println("numeric PC: " + pc + " -> " + result+"\n");
-
-		if(result == null) {
-			System.out.println("## Warning: timed out/ don't know (returned PC not-satisfiable) "+pc);
-			return false;
-		}
-		if (result == Boolean.TRUE) {
-			return true;
 		}
 		else {
-			return false;
+			System.out.println("## Warning: Non Linear Integer Constraint (only coral can handle it)" + cRef);
+			if(pb instanceof ProblemCoral)
+				constraintResult= createDPNonLinearIntegerConstraint((NonLinearIntegerConstraint)cRef);
+			else
+				throw new RuntimeException("## Error: Non Linear Integer Constraint not handled " + cRef);
 		}
-
-
+		return constraintResult;
 	}
 
 
@@ -1006,6 +1146,79 @@ public class SymbolicConstraintsGeneral {
 
 
 	public boolean solve(PathCondition pc) {
+		boolean isSat;
+
+		if (SymbolicInstructionFactory.slicing && pc != null && pc.count > 1) {
+			// the solutions of the independent rest of the PC stay valid if they
+			// satisfy it, or if we can take them from the cache
+			PathCondition[] split = new DependencyCalc().calcHeaderSlice(pc);
+			if (split != null && hasKnownSolutions(split[1])) {
+				isSat = solveSlice(split[0]);
+			} else {
+				isSat = solveSlice(pc);
+			}
+		} else {
+			isSat = solveSlice(pc);
+		}
+
+		if (isSat && !isUnknown && pc != null)
+			pc.setKnownSatisfiable();
+		return isSat;
+	}
+
+	protected boolean hasKnownSolutions(PathCondition rest) {
+		if (BranchFastPath.isSatisfiedBySolutions(rest))
+			return true;
+
+		ConstraintCache cache = ConstraintCache.getCache();
+		if (cache != null) {
+			ConstraintCache.Query q = createCacheQuery(cache, rest);
+			if (q != null) {
+				ConstraintCache.Result r = cache.get(q);
+				return (r != null && r.isSatisfiable() && r.hasModel() && cache.applyModel(q, r));
+			}
+		}
+		return false;
+	}
+
+	protected boolean solveSlice(PathCondition pc) {
+		isUnknown = false;
+
+		ConstraintCache cache = ConstraintCache.getCache();
+		ConstraintCache.Query q = null;
+		if (cache != null) {
+			q = createCacheQuery(cache, pc);
+			if (q != null) {
+				ConstraintCache.Result r = cache.get(q);
+				if (r != null) {
+					if (!r.isSatisfiable())
+						return false;
+					if (r.hasModel() && cache.applyModel(q, r))
+						return true;
+					// satisfiable, but we still have to compute the solutions
+				}
+			}
+		}
+
+		boolean isSat;
+		if (!Profiler.ENABLED) {
+			isSat = solveModel(pc);
+		} else {
+			long t = System.nanoTime();
+			try {
+				isSat = solveModel(pc);
+			} finally {
+				SOLVER_SOLVE.record(t);
+			}
+		}
+
+		if (q != null && !isUnknown)
+			cache.put(q, isSat, isSat);
+
+		return isSat;
+	}
+
+	protected boolean solveModel(PathCondition pc) {
 		//if (SymbolicInstructionFactory.debugMode)
 			//System.out.println("solving: PC " + pc);
 
@@ -1016,7 +1229,7 @@ public class SymbolicConstraintsGeneral {
 		if (dp[0].equalsIgnoreCase("no_solver"))
 			return true;
 
-		if(isSatisfiable(pc)) {
+		if(checkSatisfiable(pc)) {
 
 			// compute solutions for real variables:
 			Set<Entry<SymbolicReal,Object>> sym_realvar_mappings = symRealVar.entrySet();
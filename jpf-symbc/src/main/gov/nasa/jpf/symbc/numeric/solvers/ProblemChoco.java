@@ -22,14 +22,30 @@ package gov.nasa.jpf.symbc.numeric.solvers;
 //import choco.Problem;
 import gov.nasa.jpf.symbc.numeric.RealProblem;
 import choco.integer.*;
+import choco.integer.search.MinDomain;
 import choco.integer.var.IntTerm;
 import choco.integer.var.IntTerm.*;
 import choco.real.*;
 import choco.real.constraint.MixedEqXY;
 
+import java.util.ArrayList;
+
 public class ProblemChoco extends ProblemGeneral {
 	RealProblem pb;
 	public static int timeBound;// = 30000;
+
+	// scopes are choco worlds. Each solve() runs in its own world, since it
+	// leaves the problem in the world of the solution (or with partially
+	// narrowed domains if there is none). We go back to where we started
+	// before we push, pop or solve again
+	ArrayList<Integer> scopeWorlds;
+	int solveWorld = -1;
+
+	// the int vars of the current scopes. Vars of popped scopes stay in the
+	// choco problem, but we don't want the search to enumerate them
+	ArrayList<IntDomainVar> scopeVars;
+	ArrayList<Integer> scopeVarCounts;
+
 	public ProblemChoco() {
 		pb = new RealProblem();
 		//pb.setPrecision(1e-8);// need to check this
@@ -37,7 +53,10 @@ public class ProblemChoco extends ProblemGeneral {
 
 	public IntDomainVar makeIntVar(String name, int min, int max) {
 	// nikola	System.out.println("ZSUK makeIntVar  name: " + name + "  min: " + min + "  max: "+ max);
-		return pb.makeBoundIntVar(name,min,max);
+		IntDomainVar v = pb.makeBoundIntVar(name,min,max);
+		if (scopeVars != null)
+			scopeVars.add(v);
+		return v;
 		
 	}
 
@@ -303,12 +322,53 @@ public class ProblemChoco extends ProblemGeneral {
 	public Boolean solve() {
         pb.getSolver().setTimeLimit(ProblemChoco.timeBound);
 
+        if (scopeWorlds != null) {
+        	restoreWorld();
+        	solveWorld = pb.getWorldIndex();
+        	pb.worldPush();
+        	pb.getSolver().setVarSelector(new MinDomain(pb, scopeVars.toArray(new IntDomainVar[scopeVars.size()])));
+        }
+
         Boolean result = pb.solve();
 //        if (result == null)
  //       	System.out.println("Choco PC"+pb.pretty());
 
 		return result;
 	}
+
+	void restoreWorld() {
+		if (solveWorld >= 0) {
+			pb.worldPopUntil(solveWorld);
+			solveWorld = -1;
+		}
+	}
+
+	public boolean supportsScopes() {
+		return true;
+	}
+
+	public void push() {
+		if (scopeWorlds == null) {
+			scopeWorlds = new ArrayList<Integer>();
+			scopeVars = new ArrayList<IntDomainVar>();
+			scopeVarCounts = new ArrayList<Integer>();
+		}
+		restoreWorld();
+		scopeWorlds.add(pb.getWorldIndex());
+		scopeVarCounts.add(scopeVars.size());
+		pb.worldPush();
+	}
+
+	public void pop() {
+		restoreWorld();
+		pb.worldPopUntil(scopeWorlds.remove(scopeWorlds.size()-1));
+
+		int n = scopeVarCounts.remove(scopeVarCounts.size()-1);
+		while (scopeVars.size() > n) {
+			scopeVars.remove(scopeVars.size()-1);
+		}
+	}
+
 	public void post(Object constraint) {
 		pb.post((choco.Constraint)constraint);
 	}
@@ -8,6 +8,8 @@ import choco.kernel.model.constraints.Constraint;
 import choco.kernel.model.variables.integer.IntegerExpressionVariable;
 import choco.kernel.model.variables.integer.IntegerVariable;
 
+import java.util.ArrayList;
+
 /**
  * Integration of the Choco CP library version 2 (2.1.1, specifically).
  * Currently only supports integer operations.
@@ -21,6 +23,11 @@ public class ProblemChoco2 extends ProblemGeneral {
 	private Model model;
 	public static int timeBound = 300;
 
+	// constraints that were posted while we have scopes, and the number of
+	// them at each push()
+	private ArrayList<Constraint> posted;
+	private ArrayList<Integer> scopeSizes;
+
 	public ProblemChoco2() {
 		model = new CPModel();
 		solver = new CPSolver();
@@ -125,6 +132,27 @@ public class ProblemChoco2 extends ProblemGeneral {
 
 	public void post(Object constraint) {
 		model.addConstraint((Constraint) constraint);
+		if (scopeSizes != null)
+			posted.add((Constraint) constraint);
+	}
+
+	public boolean supportsScopes() {
+		return true;
+	}
+
+	public void push() {
+		if (scopeSizes == null) {
+			scopeSizes = new ArrayList<Integer>();
+			posted = new ArrayList<Constraint>();
+		}
+		scopeSizes.add(posted.size());
+	}
+
+	public void pop() {
+		int n = scopeSizes.remove(scopeSizes.size()-1);
+		while (posted.size() > n) {
+			model.removeConstraint(posted.remove(posted.size()-1));
+		}
 	}
 
 	public Object shiftL(int value, Object exp) {	throw new RuntimeException("## Unsupported shiftL"); }
@@ -149,6 +177,8 @@ public class ProblemChoco2 extends ProblemGeneral {
 	 *
 	 */
 	public Boolean solve() {
+		if (scopeSizes != null) // the model changes between solves
+			solver = new CPSolver();
 		solver.read(model);
 
 		System.out.println("Model:" + model.constraintsToString());
@@ -174,4 +174,19 @@ public abstract class ProblemGeneral{
 
 	public abstract void postLogicalOR(Object [] constraint);
 
+	// incremental solving (see SolverSession). Constraints that are posted after
+	// a push() are retracted by the corresponding pop()
+
+	public boolean supportsScopes() {
+		return false;
+	}
+
+	public void push() {
+		throw new RuntimeException("## Error: push not supported");
+	}
+
+	public void pop() {
+		throw new RuntimeException("## Error: pop not supported");
+	}
+
 }
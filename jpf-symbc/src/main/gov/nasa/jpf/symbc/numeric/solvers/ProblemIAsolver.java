@@ -23,11 +23,14 @@ import ia_math.RealInterval;
 import ia_parser.Exp;
 import ia_parser.IAParser;
 import ia_parser.RealIntervalTable;
+
+import java.util.ArrayList;
 //import ia_parser.sym;
 
 public class ProblemIAsolver extends ProblemGeneral {
 	String pb;
 	String format = "%20.10f";
+	ArrayList<Integer> scopeLengths; // length of pb at each push()
 
 	public ProblemIAsolver() {
 		pb = "";
@@ -250,6 +253,22 @@ public class ProblemIAsolver extends ProblemGeneral {
 		pb = pb + constraint;
 	}
 
+	public boolean supportsScopes() {
+		return true;
+	}
+
+	public void push() {
+		if (scopeLengths == null) {
+			scopeLengths = new ArrayList<Integer>();
+		}
+		scopeLengths.add(pb.length());
+	}
+
+	public void pop() {
+		int len = scopeLengths.remove(scopeLengths.size()-1);
+		pb = (len == 0) ? "" : pb.substring(0, len);
+	}
+
 	public Object and(int value, Object exp) {
 		throw new RuntimeException("## Error IASolver does not support bitwise AND");
 	}
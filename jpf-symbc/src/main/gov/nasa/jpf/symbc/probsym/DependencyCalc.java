@@ -3,14 +3,17 @@ package gov.nasa.jpf.symbc.probsym;
 import gov.nasa.jpf.symbc.SymbolicInstructionFactory;
 import gov.nasa.jpf.symbc.numeric.Constraint;
 import gov.nasa.jpf.symbc.numeric.LinearIntegerConstraint;
+import gov.nasa.jpf.symbc.numeric.LogicalORLinearIntegerConstraints;
 import gov.nasa.jpf.symbc.numeric.MixedConstraint;
 import gov.nasa.jpf.symbc.numeric.NonLinearIntegerConstraint;
 import gov.nasa.jpf.symbc.numeric.RealConstraint;
 import gov.nasa.jpf.symbc.numeric.PathCondition;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 
 public class DependencyCalc {
@@ -20,8 +23,15 @@ public class DependencyCalc {
 
 	private LinkedList<String> getSymbolicVariables(Constraint c) {
 		Map<String,Object> varMap = new HashMap<String,Object>();
-		c.getLeft().getVarsVals(varMap);
-		c.getRight().getVarsVals(varMap);
+		if (c instanceof LogicalORLinearIntegerConstraints) {
+			for (LinearIntegerConstraint lic : ((LogicalORLinearIntegerConstraints)c).getList()) {
+				lic.getLeft().getVarsVals(varMap);
+				lic.getRight().getVarsVals(varMap);
+			}
+		} else {
+			c.getLeft().getVarsVals(varMap);
+			c.getRight().getVarsVals(varMap);
+		}
 		LinkedList<String> result = new LinkedList<String>();
 		for (String s : varMap.keySet()) {
 			result.add(s);
@@ -56,6 +66,55 @@ public class DependencyCalc {
 	} 
 	
 	
+	// calculates variable to constraints mapping
+	private Map<String,List<Constraint>> getVariableConstraintMap(Map<Constraint,LinkedList<String>> map) {
+		Map<String,List<Constraint>> varMap = new HashMap<String,List<Constraint>>();
+		for (Map.Entry<Constraint,LinkedList<String>> entry : map.entrySet()) {
+			Constraint c = entry.getKey();
+			for (String s : entry.getValue()) {
+				List<Constraint> consList = varMap.get(s);
+				if (consList == null) {
+					consList = new ArrayList<Constraint>();
+					varMap.put(s, consList);
+				}
+				consList.add(c);
+			}
+		}
+		return varMap;
+	}
+
+	/*
+	 * adds all constraints that (transitively) share variables with 'c' to 'closure'.
+	 * We use a worklist over variables, i.e. each variable and each constraint
+	 * is only processed once
+	 */
+	private void addClosure(Constraint c, Map<Constraint,LinkedList<String>> map,
+			Map<String,List<Constraint>> varMap, HashSet<Constraint> closure) {
+		HashSet<String> visitedVars = new HashSet<String>();
+		LinkedList<String> worklist = new LinkedList<String>();
+
+		closure.add(c);
+		worklist.addAll(map.get(c));
+
+		while (!worklist.isEmpty()) {
+			String v = worklist.removeFirst();
+			if (visitedVars.add(v)) {
+				for (Constraint dc : varMap.get(v)) {
+					if (closure.add(dc)) {
+						if (DEBUG && dc != c) {
+							System.out.println("##########Found transitive constraints##########");
+						}
+						worklist.addAll(map.get(dc));
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * returns the constraints of 'pc' that (transitively) share variables
+	 * with the last added one, i.e. pc.header
+	 */
 	public HashSet<Constraint> calcDependencies(PathCondition pc) {
 		//System.out.println("PC = " + pc);
 		//PathCondition pc = getPC(vm);
@@ -63,55 +122,114 @@ public class DependencyCalc {
 			//System.out.println("PC null");
 			return null;
 		}
-		LinkedList<String> newVars = getSymbolicVariables(pc.header);
 		// calculate constraint -> variable map
 		Map<Constraint,LinkedList<String>> map = getConstraintVariableMap(pc.header);
 		if (map == null)
 			return null;
 		// calculate variable -> constraint map
-		Map<String, HashSet<Constraint>> varMap = new HashMap<String, HashSet<Constraint>>(); 
-		for (Map.Entry<Constraint, LinkedList<String>> entry : map.entrySet()) {
-			Constraint c = entry.getKey();
-			LinkedList<String> consVars = entry.getValue();
-			for (String s : consVars) {
-				HashSet<Constraint> consList = varMap.get(s);
-				if (consList == null) {
-					consList = new HashSet<Constraint>();
-				}
-				consList.add(c);
-				varMap.put(s, consList);
+		Map<String,List<Constraint>> varMap = getVariableConstraintMap(map);
+
+		HashSet<Constraint> finalConstraintSet = new HashSet<Constraint>();
+		addClosure(pc.header, map, varMap, finalConstraintSet);
+		return finalConstraintSet;
+	}
+
+	/**
+	 * splits 'pc' into independent path conditions, i.e. slices that don't
+	 * share any variables. The first slice is the one that contains pc.header.
+	 * Constraints are copied, and keep their relative order
+	 */
+	public List<PathCondition> calcIndependentSlices(PathCondition pc) {
+		DEBUG = SymbolicInstructionFactory.debugMode;
+		List<PathCondition> slices = new ArrayList<PathCondition>();
+		if (pc.header == null) {
+			return slices;
+		}
+
+		Map<Constraint,LinkedList<String>> map = getConstraintVariableMap(pc.header);
+		Map<String,List<Constraint>> varMap = getVariableConstraintMap(map);
+
+		// equal constraints are mapped to the same entry, i.e. we can't rely
+		// on identity of the PC conjuncts
+		HashSet<Constraint> assigned = new HashSet<Constraint>();
+		List<HashSet<Constraint>> closures = new ArrayList<HashSet<Constraint>>();
+		for (Constraint c = pc.header; c != null; c = c.and) {
+			if (!assigned.contains(c)) {
+				HashSet<Constraint> closure = new HashSet<Constraint>();
+				addClosure(c, map, varMap, closure);
+				assigned.addAll(closure);
+				closures.add(closure);
 			}
 		}
-		// now we have the direct mapping of vars -> constraints
-		// but we need the closure or indirect mappings as well
-		// we will cycle through the mapping until we get to a fixpoint
-		boolean done = false;
-		while (!done) {
-			done = true;
-			for (Map.Entry<String, HashSet<Constraint>> entry : varMap.entrySet()) {
-				String v = entry.getKey();
-				HashSet<Constraint> tmpSet = new HashSet<Constraint>();
-				int setSize = entry.getValue().size();
-				for (Constraint c : entry.getValue()) {
-					LinkedList<String> varList = map.get(c);
-					for (String newVar : varList) {
-						tmpSet.addAll(varMap.get(newVar));
-					}
-				}
-				int newSize = tmpSet.size();
-				done &= (newSize == setSize);
-				if (DEBUG && done == false) {
-					System.out.println("##########Found transitive constraints##########");
+
+		if (closures.size() == 1) {
+			slices.add(pc);
+			return slices;
+		}
+
+		// collect the conjuncts of each slice in reverse order, so that we can prepend them
+		List<LinkedList<Constraint>> sliceConjuncts = new ArrayList<LinkedList<Constraint>>();
+		for (int i = 0; i < closures.size(); i++) {
+			sliceConjuncts.add(new LinkedList<Constraint>());
+		}
+		for (Constraint c = pc.header; c != null; c = c.and) {
+			for (int i = 0; i < closures.size(); i++) {
+				if (closures.get(i).contains(c)) {
+					sliceConjuncts.get(i).addFirst(c);
+					break;
 				}
-				varMap.put(v, tmpSet);
-			}		
+			}
 		}
-		
-		HashSet<Constraint> finalConstraintSet = new HashSet<Constraint>();
-		for (String s : newVars) {
-			finalConstraintSet.addAll(varMap.get(s));
+
+		for (LinkedList<Constraint> conjuncts : sliceConjuncts) {
+			PathCondition slice = new PathCondition();
+			for (Constraint c : conjuncts) {
+				slice.prependUnlessRepeated(copyConstraint(c));
+			}
+			slices.add(slice);
 		}
-		return finalConstraintSet;
+
+		if (DEBUG) {
+			System.out.println("Slices = " + slices.size() + ", size of first slice = " + slices.get(0).count() + " " + pc.count());
+		}
+		return slices;
+	}
+
+	/**
+	 * splits 'pc' into the constraints that (transitively) share variables
+	 * with pc.header, and the rest. Returns null if there is no rest, i.e. if
+	 * the whole PC depends on the new constraint. Constraints are copied, and
+	 * keep their relative order
+	 */
+	public PathCondition[] calcHeaderSlice(PathCondition pc) {
+		HashSet<Constraint> deps = calcDependencies(pc);
+		if (deps == null) {
+			return null;
+		}
+
+		LinkedList<Constraint> slice = new LinkedList<Constraint>();
+		LinkedList<Constraint> rest = new LinkedList<Constraint>();
+		for (Constraint c = pc.header; c != null; c = c.and) {
+			if (deps.contains(c)) {
+				slice.addFirst(c);
+			} else {
+				rest.addFirst(c);
+			}
+		}
+
+		if (rest.isEmpty()) {
+			return null;
+		}
+
+		PathCondition slicePC = new PathCondition();
+		for (Constraint c : slice) {
+			slicePC.prependUnlessRepeated(copyConstraint(c));
+		}
+		PathCondition restPC = new PathCondition();
+		for (Constraint c : rest) {
+			restPC.prependUnlessRepeated(copyConstraint(c));
+		}
+		return new PathCondition[] { slicePC, restPC };
 	}
 
 	private Constraint copyConstraint(Constraint cRef) {
@@ -124,6 +242,11 @@ public class DependencyCalc {
 		  return new RealConstraint((RealConstraint)cRef);
 		else if (cRef instanceof MixedConstraint)
 		  return new MixedConstraint((MixedConstraint)cRef);
+		else if (cRef instanceof LogicalORLinearIntegerConstraints) {
+		  LogicalORLinearIntegerConstraints loic = new LogicalORLinearIntegerConstraints(((LogicalORLinearIntegerConstraints)cRef).getList());
+		  loic.comment = ((LogicalORLinearIntegerConstraints)cRef).comment;
+		  return loic;
+		}
 		else { 
             System.out.println("Should never happen, missed a type in copyConstraint");
 			return null;
@@ -0,0 +1,184 @@
+package gov.nasa.jpf.symbc.numeric;
+
+import gov.nasa.jpf.Config;
+import gov.nasa.jpf.symbc.SymbolicInstructionFactory;
+
+import java.util.Random;
+
+import junit.framework.Assert;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+
+public class BranchFastPathTest {
+
+	static final Comparator[] COMPARATORS = { Comparator.EQ, Comparator.NE, Comparator.LT, Comparator.LE, Comparator.GT, Comparator.GE };
+
+	@Before
+	public void setUp() {
+		new SymbolicInstructionFactory(new Config(new String[] {"+symbolic.dp=choco", "+symbolic.fastpath=true",
+				"+symbolic.minint=-100", "+symbolic.maxint=100"}));
+	}
+
+	@After
+	public void tearDown() {
+		SymbolicInstructionFactory.fastPath = false;
+	}
+
+	static PCChoiceGenerator createBranch() {
+		PCChoiceGenerator cg = new PCChoiceGenerator(2);
+		cg.advance();
+		return cg;
+	}
+
+	@Test
+	public void testModelReuse() {
+		SymbolicInteger x = new SymbolicInteger("x");
+		SymbolicInteger y = new SymbolicInteger("y");
+
+		PathCondition pc = new PathCondition();
+		pc._addDet(Comparator.GT, x, 0);
+		Assert.assertTrue(pc.simplify(createBranch()));
+		Assert.assertTrue(BranchFastPath.getNumberOfSolvedQueries() == 1);
+		Assert.assertTrue(x.solution > 0);
+
+		// the model of the parent also satisfies this one
+		long calls = SymbolicConstraintsGeneral.getNumberOfSolverCalls();
+		PathCondition child = pc.make_copy();
+		child._addDet(Comparator.LE, x, 100);
+		Assert.assertTrue(child.simplify(createBranch()));
+		Assert.assertTrue(BranchFastPath.getNumberOfModelHits() == 1);
+		Assert.assertTrue(SymbolicConstraintsGeneral.getNumberOfSolverCalls() == calls);
+
+		// undefined solutions have to go to the solver
+		child = pc.make_copy();
+		child._addDet(Comparator.LT, x._plus(y), 5);
+		y.solution = SymbolicInteger.UNDEFINED;
+		Assert.assertTrue(child.simplify(createBranch()));
+		Assert.assertTrue(BranchFastPath.getNumberOfModelHits() == 1);
+		Assert.assertTrue(SymbolicConstraintsGeneral.getNumberOfSolverCalls() == calls + 1);
+
+		// and so do results outside of the int range
+		x.solution = 1;
+		y.solution = 2;
+		x._max = Integer.MAX_VALUE;
+		y._max = Integer.MAX_VALUE;
+		Assert.assertTrue(BranchFastPath.isSatisfied(new LinearIntegerConstraint(x._plus(y), Comparator.GT, new IntegerConstant(0))));
+		x.solution = Integer.MAX_VALUE;
+		Assert.assertFalse(BranchFastPath.isSatisfied(new LinearIntegerConstraint(x._plus(y), Comparator.LT, new IntegerConstant(0))));
+		Assert.assertFalse(BranchFastPath.isSatisfied(new LinearIntegerConstraint(x._plus(y), Comparator.GT, new IntegerConstant(0))));
+	}
+
+	@Test
+	public void testInference() {
+		SymbolicInteger x = new SymbolicInteger("x");
+
+		PathCondition pc = new PathCondition();
+		pc._addDet(Comparator.GT, x, 0);
+		Assert.assertTrue(pc.simplify());
+
+		PCChoiceGenerator cg = createBranch();
+		PathCondition child = pc.make_copy();
+		child._addDet(Comparator.LT, x, 0);
+		Assert.assertFalse(child.simplify(cg));
+
+		// the other outcome has to be satisfiable, even if we don't have a model
+		x.solution = SymbolicInteger.UNDEFINED;
+		cg.advance();
+		long calls = SymbolicConstraintsGeneral.getNumberOfSolverCalls();
+		child = pc.make_copy();
+		child._addDet(Comparator.GE, x, 0);
+		Assert.assertTrue(child.simplify(cg));
+		Assert.assertTrue(BranchFastPath.getNumberOfInferredBranches() == 1);
+		Assert.assertTrue(SymbolicConstraintsGeneral.getNumberOfSolverCalls() == calls);
+
+		// but not if we don't know the parent is satisfiable
+		PathCondition unchecked = new PathCondition();
+		unchecked._addDet(Comparator.GT, x, 5);
+		unchecked._addDet(Comparator.LT, x, 5);
+		cg = createBranch();
+		cg.setCurrentUnsat();
+		cg.advance();
+		unchecked._addDet(Comparator.EQ, x, 7);
+		Assert.assertFalse(unchecked.simplify(cg));
+		Assert.assertTrue(BranchFastPath.getNumberOfInferredBranches() == 1);
+	}
+
+	@Test
+	public void testChangedConstraint() {
+		SymbolicInteger x = new SymbolicInteger("x");
+
+		PathCondition pc = new PathCondition();
+		pc._addDet(Comparator.GT, x, 5);
+		pc._addDet(Comparator.GT, x, 3);
+		Assert.assertTrue(pc.simplify());
+		Assert.assertTrue(pc.isKnownSatisfiable());
+
+		// changing a constraint in place makes the PC unsatisfiable
+		pc.header.setComparator(Comparator.LT);
+		Assert.assertFalse(pc.isKnownSatisfiable());
+
+		// hence we can't infer the other outcome of a branch
+		x.solution = SymbolicInteger.UNDEFINED;
+		PCChoiceGenerator cg = createBranch();
+		cg.setCurrentUnsat();
+		cg.advance();
+		PathCondition child = pc.make_copy();
+		child._addDet(Comparator.GE, x, 0);
+		Assert.assertFalse(child.simplify(cg));
+		Assert.assertTrue(BranchFastPath.getNumberOfInferredBranches() == 0);
+	}
+
+	SymbolicInteger[] vars;
+	Random random;
+	int nChecks;
+
+	void explore(PathCondition pc, int depth) {
+		if (depth == 0) {
+			return;
+		}
+
+		SymbolicInteger v = vars[random.nextInt(vars.length)];
+		IntegerExpression e = (random.nextBoolean()) ? v : v._plus(vars[random.nextInt(vars.length)]);
+		Comparator comp = COMPARATORS[random.nextInt(COMPARATORS.length)];
+		int value = random.nextInt(20) - 10;
+
+		PCChoiceGenerator cg = new PCChoiceGenerator(2);
+		while (cg.hasMoreChoices()) {
+			cg.advance();
+			PathCondition child = pc.make_copy();
+			child._addDet((cg.getNextChoice() == 0) ? comp : comp.not(), e, value);
+
+			boolean isSat = child.simplify(cg);
+
+			SymbolicConstraintsGeneral solver = new SymbolicConstraintsGeneral();
+			boolean expected = solver.isSatisfiable(child);
+			solver.cleanup();
+
+			Assert.assertTrue("different result for " + child, isSat == expected);
+			nChecks++;
+
+			if (isSat) {
+				explore(child, depth - 1);
+			}
+		}
+	}
+
+	@Test
+	public void testRandom() {
+		for (long seed = 0; seed < 4; seed++) {
+			random = new Random(seed);
+			vars = new SymbolicInteger[3];
+			for (int i = 0; i < vars.length; i++) {
+				vars[i] = new SymbolicInteger("v" + i);
+			}
+			explore(new PathCondition(), 6);
+		}
+
+		Assert.assertTrue(nChecks > 50);
+		Assert.assertTrue(BranchFastPath.getNumberOfModelHits() > 0);
+		Assert.assertTrue(BranchFastPath.getNumberOfSolvedQueries() < BranchFastPath.getNumberOfQueries());
+	}
+}
@@ -0,0 +1,190 @@
+package gov.nasa.jpf.symbc.numeric;
+
+import gov.nasa.jpf.Config;
+import gov.nasa.jpf.symbc.SymbolicInstructionFactory;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+
+public class ConstraintCacheTest {
+
+	@Test
+	public void testRenaming() {
+		ConstraintCache cache = new ConstraintCache(100, null);
+
+		SymbolicInteger a = new SymbolicInteger("a");
+		SymbolicInteger b = new SymbolicInteger("b");
+		PathCondition pc1 = new PathCondition();
+		pc1._addDet(Comparator.GT, a, b);
+		pc1._addDet(Comparator.EQ, a._plus(b), 10);
+
+		// same constraints with other variables, in different order and orientation
+		SymbolicInteger x = new SymbolicInteger("x");
+		SymbolicInteger y = new SymbolicInteger("y");
+		PathCondition pc2 = new PathCondition();
+		pc2._addDet(Comparator.EQ, new IntegerConstant(10), y._plus(x));
+		pc2._addDet(Comparator.LT, y, x);
+
+		ConstraintCache.Query q1 = cache.createQuery(pc1, "choco");
+		ConstraintCache.Query q2 = cache.createQuery(pc2, "choco");
+		Assert.assertEquals(q1.getKey(), q2.getKey());
+
+		// variables have to map to each other
+		Assert.assertTrue(q1.intVars.indexOf(a) == q2.intVars.indexOf(x));
+		Assert.assertTrue(q1.intVars.indexOf(b) == q2.intVars.indexOf(y));
+
+		PathCondition pc3 = new PathCondition();
+		pc3._addDet(Comparator.GT, a, b);
+		pc3._addDet(Comparator.EQ, a._plus(b), 11);
+		Assert.assertFalse(q1.getKey().equals(cache.createQuery(pc3, "choco").getKey()));
+
+		pc3 = new PathCondition();
+		pc3._addDet(Comparator.GT, a, b);
+		pc3._addDet(Comparator.EQ, a._minus(b), 10);
+		Assert.assertFalse(q1.getKey().equals(cache.createQuery(pc3, "choco").getKey()));
+		Assert.assertFalse(q1.getKey().equals(cache.createQuery(pc1, "coral").getKey()));
+	}
+
+	@Test
+	public void testBounds() {
+		ConstraintCache cache = new ConstraintCache(100, null);
+
+		PathCondition pc1 = new PathCondition();
+		pc1._addDet(Comparator.GT, new SymbolicInteger("a", 0, 10), 5);
+		PathCondition pc2 = new PathCondition();
+		pc2._addDet(Comparator.GT, new SymbolicInteger("b", 0, 5), 5);
+
+		Assert.assertFalse(cache.createQuery(pc1, "choco").getKey().equals(cache.createQuery(pc2, "choco").getKey()));
+	}
+
+	@Test
+	public void testEviction() {
+		ConstraintCache cache = new ConstraintCache(2, null);
+		SymbolicInteger a = new SymbolicInteger("a");
+
+		ConstraintCache.Query[] q = new ConstraintCache.Query[3];
+		for (int i = 0; i < q.length; i++) {
+			PathCondition pc = new PathCondition();
+			pc._addDet(Comparator.GT, a, i);
+			q[i] = cache.createQuery(pc, "choco");
+			cache.put(q[i], true, false);
+		}
+
+		Assert.assertTrue(cache.size() == 2);
+		Assert.assertNull(cache.get(q[0]));
+		Assert.assertNotNull(cache.get(q[2]));
+	}
+
+	@Test
+	public void testPersistence() throws Exception {
+		File f = File.createTempFile("constraints", ".cache");
+		f.delete();
+		f.deleteOnExit();
+
+		SymbolicInteger a = new SymbolicInteger("a");
+		SymbolicReal r = new SymbolicReal("r");
+		PathCondition pc = new PathCondition();
+		pc._addDet(Comparator.GE, a, 3);
+		pc._addDet(Comparator.LT, r, 1.5);
+
+		ConstraintCache cache = new ConstraintCache(100, f);
+		ConstraintCache.Query q = cache.createQuery(pc, "choco");
+		a.solution = 3;
+		r.solution = 0.5;
+		cache.put(q, true, true);
+
+		a.solution = SymbolicInteger.UNDEFINED;
+		r.solution = SymbolicReal.UNDEFINED;
+
+		ConstraintCache cache2 = new ConstraintCache(100, f);
+		ConstraintCache.Result res = cache2.get(q);
+		Assert.assertNotNull(res);
+		Assert.assertTrue(res.isSatisfiable() && res.hasModel());
+		Assert.assertTrue(cache2.applyModel(q, res));
+		Assert.assertTrue(a.solution == 3);
+		Assert.assertTrue(r.solution == 0.5);
+	}
+
+	static void writeLines(File f, int nDuplicates) throws IOException {
+		PrintWriter pw = new PrintWriter(new FileWriter(f));
+		for (int i = 0; i < nDuplicates; i++) {
+			pw.println("U\tk1");
+		}
+		pw.println("S\tk2");
+		pw.close();
+	}
+
+	static int countLines(File f) throws IOException {
+		BufferedReader in = new BufferedReader(new FileReader(f));
+		int n = 0;
+		while (in.readLine() != null) {
+			n++;
+		}
+		in.close();
+		return n;
+	}
+
+	@Test
+	public void testCompact() throws Exception {
+		File f = File.createTempFile("constraints", ".cache");
+		f.deleteOnExit();
+
+		writeLines(f, 10);
+		ConstraintCache cache = new ConstraintCache(100, f);
+		Assert.assertTrue(cache.size() == 2);
+		Assert.assertTrue(countLines(f) == 2);
+
+		// if we can't write the compacted file, the old one has to stay
+		writeLines(f, 10);
+		File tmp = new File(f.getPath() + ".tmp");
+		Assert.assertTrue(tmp.mkdir());
+		try {
+			cache = new ConstraintCache(100, f);
+			Assert.assertTrue(cache.size() == 2);
+			Assert.assertTrue(countLines(f) == 11);
+		} finally {
+			tmp.delete();
+		}
+	}
+
+	@Test
+	public void testSolver() {
+		new SymbolicInstructionFactory(new Config(new String[] {"+symbolic.dp=choco", "+symbolic.cache=true"}));
+		ConstraintCache cache = ConstraintCache.getCache();
+		Assert.assertNotNull(cache);
+
+		try {
+			SymbolicInteger a = new SymbolicInteger("a");
+			PathCondition pc1 = new PathCondition();
+			pc1._addDet(Comparator.GT, a, 5);
+			pc1._addDet(Comparator.LT, a, 7);
+			Assert.assertTrue(pc1.solve());
+			Assert.assertTrue(a.solution == 6);
+
+			SymbolicInteger x = new SymbolicInteger("x");
+			PathCondition pc2 = new PathCondition();
+			pc2._addDet(Comparator.LT, x, 7);
+			pc2._addDet(Comparator.GT, x, 5);
+			long calls = SymbolicConstraintsGeneral.getNumberOfSolverCalls();
+			Assert.assertTrue(pc2.solve());
+			Assert.assertTrue(x.solution == 6);
+			Assert.assertTrue(SymbolicConstraintsGeneral.getNumberOfSolverCalls() == calls);
+
+			pc2._addDet(Comparator.NE, x, 6);
+			Assert.assertFalse(pc2.simplify());
+			Assert.assertTrue(cache.getHits() == 1);
+
+		} finally {
+			ConstraintCache.setCache(null);
+		}
+	}
+}
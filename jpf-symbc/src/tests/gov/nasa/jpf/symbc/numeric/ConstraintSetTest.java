@@ -0,0 +1,125 @@
+package gov.nasa.jpf.symbc.numeric;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+
+public class ConstraintSetTest {
+
+	static Constraint createConstraint(SymbolicInteger v, int value) {
+		return new LinearIntegerConstraint(v, Comparator.LT, new IntegerConstant(value));
+	}
+
+	@Test
+	public void testPersistence() {
+		SymbolicInteger[] vars = new SymbolicInteger[5];
+		for (int i = 0; i < vars.length; i++) {
+			vars[i] = new SymbolicInteger("v" + i);
+		}
+		Random random = new Random(42);
+
+		List<ConstraintSet> sets = new ArrayList<ConstraintSet>();
+		List<HashSet<Constraint>> refs = new ArrayList<HashSet<Constraint>>();
+		ConstraintSet set = ConstraintSet.EMPTY;
+		HashSet<Constraint> ref = new HashSet<Constraint>();
+
+		for (int i = 0; i < 2000; i++) {
+			// structurally equal, but not the same object
+			Constraint c = createConstraint(vars[random.nextInt(vars.length)], random.nextInt(500));
+			set = set.add(c);
+			ref = new HashSet<Constraint>(ref);
+			ref.add(c);
+			Assert.assertTrue(set.contains(c));
+			Assert.assertTrue(set.size() == ref.size());
+
+			if (i % 100 == 0) {
+				sets.add(set);
+				refs.add(ref);
+			}
+		}
+
+		// old versions are not changed by adding to newer ones
+		for (int i = 0; i < sets.size(); i++) {
+			for (int j = 0; j < 500; j++) {
+				for (SymbolicInteger v : vars) {
+					Constraint c = createConstraint(v, j);
+					Assert.assertTrue(sets.get(i).contains(c) == refs.get(i).contains(c));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testCollisions() {
+		SymbolicInteger x = new SymbolicInteger("x");
+		ConstraintSet set = ConstraintSet.EMPTY;
+
+		for (int i = 0; i < 10; i++) {
+			set = set.add(new LinearIntegerConstraint(x, Comparator.EQ, new IntegerConstant(i)) {
+				public int hashCode() {
+					return 42;
+				}
+			});
+		}
+		Assert.assertTrue(set.size() == 10);
+
+		Constraint c = new LinearIntegerConstraint(x, Comparator.EQ, new IntegerConstant(7)) {
+			public int hashCode() {
+				return 42;
+			}
+		};
+		Assert.assertTrue(set.contains(c));
+		Assert.assertTrue(set.add(c) == set);
+		Assert.assertFalse(set.contains(new LinearIntegerConstraint(x, Comparator.EQ, new IntegerConstant(10)) {
+			public int hashCode() {
+				return 42;
+			}
+		}));
+	}
+
+	@Test
+	public void testPathCondition() {
+		SymbolicInteger x = new SymbolicInteger("x");
+		SymbolicInteger y = new SymbolicInteger("y");
+
+		PathCondition pc = new PathCondition();
+		pc._addDet(Comparator.LT, x._plus(y), 10);
+		pc._addDet(Comparator.GT, x._plus(y)._minus(3), y);
+
+		// structurally equal expressions are shared
+		LinearIntegerConstraint c1 = (LinearIntegerConstraint) pc.header;
+		LinearIntegerConstraint c2 = (LinearIntegerConstraint) pc.header.and;
+		Assert.assertTrue(((BinaryLinearIntegerExpression) c1.getLeft()).left == c2.getLeft());
+
+		// repeated constraints are not added again
+		pc._addDet(Comparator.LT, x._plus(y), 10);
+		Assert.assertTrue(pc.count() == 2);
+
+		// copies share the conjuncts, but are extended independently
+		PathCondition pc1 = pc.make_copy();
+		PathCondition pc2 = pc.make_copy();
+		pc1._addDet(Comparator.EQ, x, 1);
+		pc2._addDet(Comparator.NE, x, 1);
+		Assert.assertTrue(pc1.count() == 3 && pc2.count() == 3);
+		Assert.assertTrue(pc1.hasConstraint(new LinearIntegerConstraint(x, Comparator.EQ, new IntegerConstant(1))));
+		Assert.assertFalse(pc2.hasConstraint(new LinearIntegerConstraint(x, Comparator.EQ, new IntegerConstant(1))));
+		Assert.assertFalse(pc.hasConstraint(new LinearIntegerConstraint(x, Comparator.NE, new IntegerConstant(1))));
+
+		// constraints that are changed in place are found again
+		pc2.header.setComparator(Comparator.GE);
+		Assert.assertTrue(pc2.hasConstraint(new LinearIntegerConstraint(x, Comparator.GE, new IntegerConstant(1))));
+		Assert.assertFalse(pc2.hasConstraint(new LinearIntegerConstraint(x, Comparator.NE, new IntegerConstant(1))));
+
+		// and so are constraints that were added to the chain directly
+		PathCondition pc3 = new PathCondition();
+		pc3._addDet(Comparator.LT, x, y);
+		pc3.appendAllConjuncts(new LinearIntegerConstraint(y, Comparator.LE, new IntegerConstant(5)));
+		Assert.assertTrue(pc3.hasConstraint(new LinearIntegerConstraint(y, Comparator.LE, new IntegerConstant(5))));
+	}
+}
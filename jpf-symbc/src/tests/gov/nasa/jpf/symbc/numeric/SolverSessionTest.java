@@ -0,0 +1,108 @@
+package gov.nasa.jpf.symbc.numeric;
+
+import gov.nasa.jpf.Config;
+import gov.nasa.jpf.symbc.SymbolicInstructionFactory;
+
+import java.util.Random;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+
+public class SolverSessionTest {
+
+	static final Comparator[] COMPARATORS = { Comparator.EQ, Comparator.NE, Comparator.LT, Comparator.LE, Comparator.GT, Comparator.GE };
+
+	SymbolicInteger[] vars;
+	Random random;
+	int nChecks;
+
+	void explore(PathCondition pc, int depth) {
+		if (depth == 0) {
+			return;
+		}
+
+		// two branches on a random constraint, like a PCChoiceGenerator would create
+		SymbolicInteger v = vars[random.nextInt(vars.length)];
+		IntegerExpression e = (random.nextBoolean()) ? v : v._plus(vars[random.nextInt(vars.length)]);
+		Comparator comp = COMPARATORS[random.nextInt(COMPARATORS.length)];
+		int value = random.nextInt(20) - 10;
+
+		for (int i = 0; i < 2; i++) {
+			PathCondition child = pc.make_copy();
+			child._addDet((i == 0) ? comp : comp.not(), e, value);
+
+			SymbolicConstraintsGeneral solver = new SymbolicConstraintsGeneral();
+			boolean isSat = solver.isSatisfiable(child);
+			solver.cleanup();
+
+			SolverSession session = SolverSession.getSession();
+			SolverSession.setSession(null);
+			solver = new SymbolicConstraintsGeneral();
+			boolean expected = solver.isSatisfiable(child);
+			solver.cleanup();
+			SolverSession.setSession(session);
+
+			Assert.assertTrue("different result for " + child, isSat == expected);
+			nChecks++;
+
+			if (isSat) {
+				explore(child, depth - 1);
+			}
+		}
+	}
+
+	void testBackend(String dp, boolean withReals, long seed) {
+		random = new Random(seed);
+		nChecks = 0;
+
+		new SymbolicInstructionFactory(new Config(new String[] {"+symbolic.dp=" + dp, "+symbolic.incremental=true",
+				"+symbolic.minint=-100", "+symbolic.maxint=100"}));
+		try {
+			vars = new SymbolicInteger[3];
+			for (int i = 0; i < vars.length; i++) {
+				vars[i] = new SymbolicInteger("v" + i);
+			}
+
+			PathCondition pc = new PathCondition();
+			if (withReals) {
+				pc._addDet(Comparator.LT, new SymbolicReal("r"), 1.5);
+			}
+			explore(pc, 6);
+
+			SolverSession session = SolverSession.getSession();
+			Assert.assertTrue(nChecks > 20);
+			// we only push the branch constraints, and reuse the parent ones
+			Assert.assertTrue(session.getNumberOfPushedConstraints() <= nChecks + 1);
+			Assert.assertTrue(session.getNumberOfReusedConstraints() > session.getNumberOfPushedConstraints());
+
+		} finally {
+			SolverSession.setSession(null);
+		}
+	}
+
+	@Test
+	public void testChoco() {
+		for (int seed = 0; seed < 6; seed++) {
+			testBackend("choco", (seed % 2) == 0, seed);
+		}
+	}
+
+	@Test
+	public void testIAsolver() {
+		testBackend("iasolver", false, 42);
+	}
+
+	@Test
+	public void testUnsupported() {
+		new SymbolicInstructionFactory(new Config(new String[] {"+symbolic.dp=coral", "+symbolic.incremental=true"}));
+		try {
+			PathCondition pc = new PathCondition();
+			pc._addDet(Comparator.GT, new SymbolicInteger("a"), 5);
+			Assert.assertNull(SolverSession.getSession().isSatisfiable(new SymbolicConstraintsGeneral(), pc));
+		} finally {
+			SolverSession.setSession(null);
+		}
+	}
+}
@@ -0,0 +1,123 @@
+package gov.nasa.jpf.symbc.probsym;
+
+import gov.nasa.jpf.Config;
+import gov.nasa.jpf.symbc.SymbolicInstructionFactory;
+import gov.nasa.jpf.symbc.numeric.Comparator;
+import gov.nasa.jpf.symbc.numeric.Constraint;
+import gov.nasa.jpf.symbc.numeric.ConstraintCache;
+import gov.nasa.jpf.symbc.numeric.PathCondition;
+import gov.nasa.jpf.symbc.numeric.SymbolicConstraintsGeneral;
+import gov.nasa.jpf.symbc.numeric.SymbolicInteger;
+
+import java.util.HashSet;
+import java.util.List;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+
+public class DependencyCalcTest {
+
+	@Test
+	public void testSlices() {
+		SymbolicInteger a = new SymbolicInteger("a");
+		SymbolicInteger b = new SymbolicInteger("b");
+		SymbolicInteger c = new SymbolicInteger("c");
+		SymbolicInteger d = new SymbolicInteger("d");
+
+		PathCondition pc = new PathCondition();
+		pc._addDet(Comparator.GT, a, 0);
+		pc._addDet(Comparator.GT, c, 1);
+		pc._addDet(Comparator.LT, b, a);
+		pc._addDet(Comparator.NE, d, c);
+		pc._addDet(Comparator.EQ, b, 5);   // new constraint, depends on a through 'b < a'
+
+		HashSet<Constraint> deps = new DependencyCalc().calcDependencies(pc);
+		Assert.assertTrue(deps.size() == 3);
+
+		List<PathCondition> slices = new DependencyCalc().calcIndependentSlices(pc);
+		Assert.assertTrue(slices.size() == 2);
+		Assert.assertTrue(slices.get(0).count() == 3);
+		Assert.assertTrue(slices.get(0).header.equals(pc.header));
+		Assert.assertTrue(slices.get(1).count() == 2);
+
+		// slices keep the original conjunct order, and don't change the PC
+		Assert.assertTrue(slices.get(1).header.equals(pc.header.and));
+		Assert.assertTrue(slices.get(1).header.and.equals(pc.header.and.and.and));
+		Assert.assertTrue(pc.count() == 5);
+
+		PathCondition[] split = new DependencyCalc().calcHeaderSlice(pc);
+		Assert.assertTrue(split[0].count() == 3);
+		Assert.assertTrue(split[0].header.equals(pc.header));
+		Assert.assertTrue(split[1].count() == 2);
+		Assert.assertTrue(split[1].header.equals(pc.header.and));
+
+		// everything depends on the new constraint
+		pc._addDet(Comparator.LT, a, c);
+		Assert.assertNull(new DependencyCalc().calcHeaderSlice(pc));
+	}
+
+	@Test
+	public void testSlicedSolving() {
+		new SymbolicInstructionFactory(new Config(new String[] {"+symbolic.dp=choco", "+symbolic.slicing=true"}));
+		// slicing doesn't need the cache
+		Assert.assertNull(ConstraintCache.getCache());
+
+		try {
+			SymbolicInteger a = new SymbolicInteger("a");
+			SymbolicInteger b = new SymbolicInteger("b");
+			SymbolicInteger c = new SymbolicInteger("c");
+
+			PathCondition pc = new PathCondition();
+			pc._addDet(Comparator.GT, a, 3);
+			Assert.assertTrue(pc.simplify());
+
+			long calls = SymbolicConstraintsGeneral.getNumberOfSolverCalls();
+			pc._addDet(Comparator.LT, b, 3);
+			Assert.assertTrue(pc.simplify());
+			// only the new constraint was sent to the solver
+			Assert.assertTrue(SymbolicConstraintsGeneral.getNumberOfSolverCalls() == calls + 1);
+
+			// three independent slices, still one query
+			pc._addDet(Comparator.EQ, c, 2);
+			Assert.assertTrue(pc.simplify());
+			Assert.assertTrue(SymbolicConstraintsGeneral.getNumberOfSolverCalls() == calls + 2);
+
+			PathCondition pcUnsat = pc.make_copy();
+			pcUnsat._addDet(Comparator.GT, b, 3);
+			Assert.assertFalse(pcUnsat.simplify());
+
+			// a PC we didn't check before goes to the solver as a whole, in one query
+			pc = new PathCondition();
+			pc._addDet(Comparator.GT, a, 3);
+			pc._addDet(Comparator.LT, b, 3);
+			pc._addDet(Comparator.LT, c, a);
+			calls = SymbolicConstraintsGeneral.getNumberOfSolverCalls();
+			Assert.assertTrue(pc.simplify());
+			Assert.assertTrue(SymbolicConstraintsGeneral.getNumberOfSolverCalls() == calls + 1);
+
+			pc = new PathCondition();
+			pc._addDet(Comparator.GT, a, 3);
+			pc._addDet(Comparator.LT, a, 5);
+			pc._addDet(Comparator.EQ, b, 7);
+			Assert.assertTrue(pc.solve());
+			Assert.assertTrue(a.solution == 4);
+			Assert.assertTrue(b.solution == 7);
+
+			// the solutions of the independent part are still valid
+			pc = pc.make_copy();
+			pc._addDet(Comparator.GT, c, 10);
+			calls = SymbolicConstraintsGeneral.getNumberOfSolverCalls();
+			Assert.assertTrue(pc.solve());
+			Assert.assertTrue(SymbolicConstraintsGeneral.getNumberOfSolverCalls() == calls + 1);
+			Assert.assertTrue(a.solution == 4);
+			Assert.assertTrue(b.solution == 7);
+			Assert.assertTrue(c.solution > 10);
+
+		} finally {
+			SymbolicInstructionFactory.slicing = false;
+			ConstraintCache.setCache(null);
+		}
+	}
+}